@@ -1,56 +1,43 @@
 package com.team254.lib.util;
 
-import java.util.LinkedList;
+import com.team8013.lib.stats.WindowedStats;
 
 /**
  * Implements a simple circular buffer.
  */
 public class CircularBuffer {
     int mWindowSize;
-    LinkedList<Double> mSamples;
-    double mSum;
+    WindowedStats mSamples;
 
     public CircularBuffer(int window_size) {
         mWindowSize = window_size;
-        mSamples = new LinkedList<Double>();
-        mSum = 0.0;
+        mSamples = new WindowedStats(window_size);
     }
 
     public void clear() {
         mSamples.clear();
-        mSum = 0.0;
     }
 
     public double getAverage() {
         if (mSamples.isEmpty())
             return 0.0;
-        return mSum / mSamples.size();
+        return mSamples.getMean();
     }
 
     public void recomputeAverage() {
         // Reset any accumulation drift.
-        mSum = 0.0;
-        if (mSamples.isEmpty())
-            return;
-        for (Double val : mSamples) {
-            mSum += val;
-        }
-        mSum /= mWindowSize;
+        mSamples.recompute();
     }
 
     public void addValue(double val) {
-        mSamples.addLast(val);
-        mSum += val;
-        if (mSamples.size() > mWindowSize) {
-            mSum -= mSamples.removeFirst();
-        }
+        mSamples.add(val);
     }
 
     public int getNumValues() {
-        return mSamples.size();
+        return mSamples.getSize();
     }
 
     public boolean isFull() {
-        return mWindowSize == mSamples.size();
+        return mSamples.isFull();
     }
 }
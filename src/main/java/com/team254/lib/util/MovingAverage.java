@@ -1,38 +1,30 @@
 package com.team254.lib.util;
 
-import java.util.ArrayList;
+import com.team8013.lib.stats.WindowedStats;
 
 /**
  * Helper class for storing and calculating a moving average
  */
 public class MovingAverage {
 
-    ArrayList<Double> numbers = new ArrayList<Double>();
+    private final WindowedStats numbers;
     int maxSize;
 
     public MovingAverage(int maxSize) {
         this.maxSize = maxSize;
+        numbers = new WindowedStats(maxSize);
     }
 
     public void addNumber(double newNumber) {
         numbers.add(newNumber);
-        if (numbers.size() > maxSize) {
-            numbers.remove(0);
-        }
     }
 
     public double getAverage() {
-        double total = 0;
-
-        for (double number : numbers) {
-            total += number;
-        }
-
-        return total / numbers.size();
+        return numbers.getMean();
     }
 
     public int getSize() {
-        return numbers.size();
+        return numbers.getSize();
     }
 
     public boolean isUnderMaxSize() {
@@ -1,8 +1,8 @@
 package com.team254.lib.util;
 
-import java.util.ArrayList;
 import java.util.DoubleSummaryStatistics;
-import java.util.List;
+
+import com.team8013.lib.stats.RunningStats;
 
 /**
  * Finds the stats (mean, standard deviation, etc.) of a list
@@ -10,7 +10,7 @@ import java.util.List;
  * Example use case: finding out how long a planner takes from the average of 100 tries
  */
 public class StatFinder {
-    private final List<Double> numbers = new ArrayList<>();
+    private final RunningStats numbers = new RunningStats();
     private final int numberToIgnore;
     private int numberIgnored = 0;
 
@@ -50,20 +50,19 @@ public class StatFinder {
     }
 
     public DoubleSummaryStatistics getStats() {
-        return numbers.stream().mapToDouble(x -> x).summaryStatistics();
+        return new DoubleSummaryStatistics(numbers.getCount(), numbers.getMin(), numbers.getMax(), numbers.getSum());
     }
 
     public double getMean() {
-        return getStats().getAverage();
+        return numbers.getCount() == 0 ? 0.0 : numbers.getMean();
     }
 
     public double getStandardDeviation() {
-        double mean = getMean();
-        return Math.sqrt(numbers.stream().mapToDouble(x -> Math.pow(x - mean, 2)).sum() / (getSize() - 1));
+        return numbers.getStandardDeviation();
     }
 
     public double getSize() {
-        return numbers.size();
+        return numbers.getCount();
     }
 
     public void printStats() {
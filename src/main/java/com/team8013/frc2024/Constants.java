@@ -9,6 +9,8 @@ import com.ctre.phoenix6.signals.SensorDirectionValue;
 import com.team8013.frc2024.subsystems.Drive.KinematicLimits;
 import com.team8013.lib.Conversions;
 import com.team8013.lib.swerve.SwerveModule.SwerveModuleConstants;
+import com.team8013.lib.trajectory.SwerveLimits;
+import com.team8013.lib.vision.CameraConfig;
 
 import edu.wpi.first.math.VecBuilder;
 import edu.wpi.first.math.Vector;
@@ -45,6 +47,17 @@ public class Constants {
     // robot loop time
     public static final double kLooperDt = 0.02;
 
+    // overlap subsystem reads on different CAN buses, false reads them one at a
+    // time
+    public static final boolean kParallelSubsystemReads = true;
+    // a failed parallel read is redone sequentially, this many in a row and the
+    // reads stay sequential for kParallelReadRetryTicks before trying again
+    public static final int kMaxParallelReadFailures = 5;
+    public static final int kParallelReadRetryTicks = 250;
+
+    // longest robotInit waits on device configs before moving on
+    public static final double kDeviceBringupTimeout = 5.0;
+
     /* Control Board */
     public static final double kTriggerThreshold = 0.2;
 
@@ -54,8 +67,60 @@ public class Constants {
     public static final int rightXAxis = 3;
     public static final int rightYAxis = 4;
 
+    // binary telemetry stream, see TelemetryReceiver for the desktop side
+    public static final class TelemetryConstants {
+        // false never opens the socket, the channels are registered but never sampled
+        public static final boolean kEnabled = true;
+
+        public static final String kHost = "10.80.13.5"; // driver station laptop
+        public static final String kSimHost = "127.0.0.1";
+        public static final int kPort = 5809;
+    }
+
+    public static final class LoadGovernorConstants {
+        // false never sheds anything
+        public static final boolean kEnabled = true;
+
+        public static final double kWindow = 0.25; // s between measurements
+        public static final double kShedDelay = 0.5; // s overloaded before shedding a tier
+        public static final double kRestoreDelay = 5.0; // s healthy before restoring one
+
+        // a loop period counts as overrun past this many periods
+        public static final double kOverrunFactor = 1.5;
+
+        // any of these sheds
+        public static final double kShedLoopLoad = 0.8; // fraction of the loop period used
+        public static final double kShedOverrunFraction = 0.1;
+        public static final double kShedCpuLoad = 0.9;
+        public static final double kShedGcFraction = 0.05;
+
+        // all of these (and no overruns) restore
+        public static final double kRestoreLoopLoad = 0.5;
+        public static final double kRestoreCpuLoad = 0.7;
+        public static final double kRestoreGcFraction = 0.02;
+
+        // with VERBOSE_LOGS shed, verbose log and telemetry channels get every nth
+        // tick, critical ones still get every tick
+        public static final int kShedLogDecimation = 5;
+
+        public static final int kChangeHistory = 20;
+    }
+
+    public static final class CharacterizationConstants {
+        public static final double kQuasistaticRampRate = 0.5; // V/s
+        public static final double kDynamicStepVoltage = 3.0; // V
+        public static final double kMaxTestTime = 10.0; // s per test
+        public static final double kRestTime = 1.5; // s at 0 V before each test
+        // fraction of the travel to stay away from either end
+        public static final double kLimitMargin = 0.05;
+    }
+
     public static final class SwerveConstants {
         public static final boolean invertGyro = false; // Always ensure Gyro is CCW+ CW-
+        public static final double kGyroUpdateFrequency = 250.0; // hz yaw and yaw rate are sent at
+        public static final double kGyroWaitTimeout = 0.1; // s the sampler waits for a frame
+        public static final double kGyroStaleTime = 0.1; // s before the newest sample is too old to extrapolate
+        public static final double kGyroMaxExtrapolation = 0.04; // s a sample is carried forward at most
 
         /* Drivetrain Constants */
         public static final double trackWidth = Units.inchesToMeters(20.25);
@@ -279,7 +344,9 @@ public class Constants {
     public static final class SnapConstants {
         public static final double kP = 6.0;
         public static final double kI = 0.5;
-        public static final double kD = 0.2;
+        public static final double kD = 0.2; // on the gyro's rate error, rad/s
+        public static final double kTargetRateFeedforward = 1.0; // of a moving target's turn rate
+        public static final double kMaxTrackingStep = Math.toRadians(10.0); // per loop, more is a new target
         public static final double snapTimeout = 0.25;
         public static final double snapEpsilon = 1.0;
 
@@ -294,6 +361,7 @@ public class Constants {
         public static final double kDYController = 0.0;
 
         public static final double kPThetaController = 2.75; // was 2, changed to 4 -- faster it turns = more wheels slip
+        public static final double kDThetaController = 0.1; // on the profile's rate minus the gyro's
 
         // Constraint for the motion profilied robot angle controller (Radians)
         public static final double kMaxAngularSpeed = 2.0 * Math.PI;
@@ -302,15 +370,51 @@ public class Constants {
         public static final TrapezoidProfile.Constraints kThetaControllerConstraints = new TrapezoidProfile.Constraints(
                 kMaxAngularSpeed, kMaxAngularAccel);
 
+        public static final double kMaxCentripetalAccel = 10.0;
+
         // Static factory for creating trajectory configs
         public static TrajectoryConfig createConfig(double maxSpeed, double maxAccel, double startSpeed,
                 double endSpeed) {
             TrajectoryConfig config = new TrajectoryConfig(maxSpeed, maxAccel);
             config.setStartVelocity(startSpeed);
             config.setEndVelocity(endSpeed);
-            config.addConstraint(new CentripetalAccelerationConstraint(10.0));
+            config.addConstraint(new CentripetalAccelerationConstraint(kMaxCentripetalAccel));
             return config;
         }
+
+        /* Per module limits the trajectory optimizer times paths against */
+        public static final double kMaxSteeringRate = 4.0 * Math.PI; // rad/s, what the angle loop keeps up with
+        public static final double kMaxTractionAccel = 9.0; // m/s^2, about 0.9 g before the wheels slip
+        public static final double kNominalBatteryVoltage = 11.5; // volts under load in auto
+
+        public static SwerveLimits createSwerveLimits(double batteryVoltage) {
+            // the drive characterization values are stored as fractions of 12 volts
+            return new SwerveLimits(SwerveConstants.swerveModuleLocations, SwerveConstants.maxSpeed,
+                    kMaxAngularSpeed, kMaxSteeringRate, kMaxCentripetalAccel, kMaxTractionAccel,
+                    SwerveConstants.driveKS * 12.0, SwerveConstants.driveKV * 12.0, SwerveConstants.driveKA * 12.0,
+                    batteryVoltage);
+        }
+    }
+
+    public static final class ReplanConstants {
+        // robot center to bumper corner, the robot can turn anywhere
+        public static final double kClearance = Units.inchesToMeters(33.0) / Math.sqrt(2.0);
+        public static final double kNodeMargin = 0.15; // m past the clearance for the graph corners
+
+        public static final double kMaxSpeed = 3.0; // m/s
+        public static final double kMaxAccel = 2.5; // m/s^2
+        public static final double kMinTangentSpeed = 0.3; // m/s, below this leave toward the first corner
+
+        public static final double kSpliceLead = 0.04; // s the start state is projected ahead
+        public static final double kPlanBudget = 0.02; // s of planning before the plan is stale
+        public static final double kHandoffBudget = 0.1; // s to wait for a plan before keeping the old path
+        public static final double kCheckStep = 0.05; // s between samples checked against the obstacles
+        public static final int kMaxDensify = 2;
+
+        // off the path by this much with this long left, plan a new way there
+        public static final double kReplanDeviation = 0.5; // m
+        public static final double kMinRemainingTime = 0.75; // s
+        public static final int kMaxReplans = 2;
     }
 
     public static final class VisionAlignConstants {
@@ -359,6 +463,80 @@ public class Constants {
 
     }
 
+    public static final class VisionConstants {
+        /*
+         * Every camera on the robot. Add a camera here and it gets its own
+         * thread, nothing else has to change. Mounts are x forward, y left, z
+         * up from the center of the robot, measure them on the real thing.
+         */
+        public static final CameraConfig[] kCameras = new CameraConfig[] {
+                new CameraConfig("limelight-crepe", CameraConfig.Role.APRILTAG,
+                        Units.inchesToMeters(-10.0), 0.0, Units.inchesToMeters(22.0), 0.0, 25.0, 180.0, 1.0),
+                // new CameraConfig("limelight-vision", CameraConfig.Role.APRILTAG,
+                //         Units.inchesToMeters(10.0), 0.0, Units.inchesToMeters(22.0), 0.0, 25.0, 0.0, 1.5),
+                new CameraConfig("limelight-note", CameraConfig.Role.NOTE,
+                        Units.inchesToMeters(12.0), 0.0, Units.inchesToMeters(20.0), 0.0, -20.0, 0.0, 1.0)
+        };
+        // send the mounts above to the Limelights, leave off until they're
+        // measured so the cameras keep what's set in their web UI
+        public static final boolean kPushExtrinsics = false;
+
+        public static final int kRingCapacity = 16; // frames, a few loops' worth at 90 fps
+        public static final int kStatsWindow = 100; // frames the latency stats are over
+        public static final double kWaitTimeout = 0.1; // s a camera thread sleeps without a frame
+        public static final double kCameraTimeout = 0.5; // s without a frame before a camera is dropped
+
+        public static final double kMaxMeasurementAge = 0.25; // s, older frames aren't a current pose
+        public static final double kFusionWindow = 0.1; // s between frames that are fused together
+
+        // measurement validation
+        public static final double kFieldMargin = 0.5; // m outside the field a pose can be
+        public static final double kMaxAmbiguity = 0.3; // single tag pose ambiguity
+        public static final double kMaxSingleTagDistance = 4.0; // m
+        public static final double kMaxMultiTagDistance = 7.0; // m
+        public static final double kMaxDistanceMismatch = 0.3; // m, pose to tag against measured, plus
+        public static final double kMaxDistanceMismatchFraction = 0.15; // of the measured distance
+        public static final double kMaxCaptureSpeed = 4.0; // m/s
+        public static final double kMaxCaptureOmega = Math.PI; // rad/s
+        public static final double kOdometryGate = 9.21; // squared Mahalanobis distance, 99% for 2 dof
+        public static final double kOdometryDriftRate = 0.05; // m^2/s odometry variance grows by
+        public static final double kReferenceMaxAge = 1.0; // s since the last fused pose to check against it
+        public static final int kMaxOdometryRejects = 5; // in a row before the last fused pose is dropped
+
+        // measurement standard deviation at 1 m from one tag, grows with distance squared
+        public static final double kXYStdDev = 0.05; // m
+        public static final double kYawStdDevDeg = 3.0;
+        public static final double kSingleTagYawScale = 10.0; // one tag barely constrains yaw
+        public static final double kMinDistance = 0.5; // m, closer than this doesn't get more accurate
+        public static final double kAmbiguityStdDevGain = 5.0; // per unit of ambiguity
+        public static final double kSpeedStdDevGain = 0.5; // per m/s
+        public static final double kOmegaStdDevGain = 0.5; // per rad/s
+    }
+
+    public static final class NoteTrackerConstants {
+        public static final double kHalfFovDeg = 31.0; // Limelight 3 horizontal
+        public static final double kNoteHeight = Units.inchesToMeters(1.0); // center of a note on the floor
+        public static final double kMinRange = 0.4; // m, closer than this is under the bumper
+        public static final double kMaxRange = 5.0; // m, further out ty is too coarse to trust
+
+        public static final double kRangeStdDevFraction = 0.08;
+        public static final double kBearingStdDevDeg = 1.5;
+        public static final double kMinStdDev = 0.03; // m
+
+        public static final int kMaxTracks = 8;
+        public static final int kMaxDetections = 8;
+        public static final double kProcessNoise = 0.02; // m^2/s, notes get pushed around
+        public static final double kGate = 9.21; // 99% for 2 degrees of freedom
+        public static final int kConfirmHits = 3;
+        public static final int kMaxMisses = 5;
+        public static final double kMaxAge = 10.0; // s
+        public static final double kWrapWindow = 0.02; // s either side of a frame checked for heading wrap
+
+        public static final double kInterceptMaxSpeed = 3.0; // m/s
+        public static final double kInterceptMaxAccel = 3.0; // m/s^2
+        public static final double kSwitchMargin = 0.3; // s quicker another note has to be to switch
+    }
+
     public static final class MacAddressConstants {
         public static final byte[] COMP_ADDRESS = new byte[] {
                 // values are for comp -> 00:80:2f:35:b8:ca
@@ -515,6 +693,7 @@ public class Constants {
         public static final double kStowAngle = 155;
         public static final double kAmpScoreAngle = 164; // was 169
         public static final double kloadShooterAngle = 118;// 118.8;
+        public static final double kGroundIntakeAngle = 359; // last entry of the ground intake table
 
         public static final double kShootAngle = 118; // cancoder should rest at 118.8, so that when shooting the wrist
                                                       // is pulled down against elevator
@@ -741,6 +920,51 @@ public class Constants {
         };
     }
 
+    public static final class SuperstructureConstants {
+        /* Motion planner joint limits {elevator meters, pivot degrees, wrist degrees} */
+        public static final double[] kPlannerMin = { ElevatorConstants.kMinHeight, 0, 0 };
+        public static final double[] kPlannerMax = { ElevatorConstants.kMaxHeight, 110, 370 };
+        public static final double[] kPlannerResolution = { 0.01, 1, 2 };
+        public static final double[] kPlannerClearance = { Conversions.inchesToMeters(0.5), 2, 4 };
+
+        // planner profiles run slightly under the fast motion magic limits so the
+        // motors can keep up with the streamed setpoints
+        public static final double kPlannerDerating = 0.9;
+
+        public static final double[] kPlannerMaxVelocity = {
+                Conversions.RPSToMPS(ElevatorConstants.elevatorFastMotorConfig().MotionMagic.MotionMagicCruiseVelocity,
+                        ElevatorConstants.kWheelCircumference, ElevatorConstants.kGearRatio) * kPlannerDerating,
+                Conversions.rotationsToDegrees(PivotConstants.pivotFastMotorConfig().MotionMagic.MotionMagicCruiseVelocity,
+                        PivotConstants.PivotGearRatio) * kPlannerDerating,
+                Conversions.rotationsToDegrees(WristConstants.wristMotorConfig().MotionMagic.MotionMagicCruiseVelocity,
+                        WristConstants.kGearRatio) * kPlannerDerating
+        };
+
+        public static final double[] kPlannerMaxAccel = {
+                Conversions.RPSToMPS(ElevatorConstants.elevatorFastMotorConfig().MotionMagic.MotionMagicAcceleration,
+                        ElevatorConstants.kWheelCircumference, ElevatorConstants.kGearRatio) * kPlannerDerating,
+                Conversions.rotationsToDegrees(PivotConstants.pivotFastMotorConfig().MotionMagic.MotionMagicAcceleration,
+                        PivotConstants.PivotGearRatio) * kPlannerDerating,
+                Conversions.rotationsToDegrees(WristConstants.wristMotorConfig().MotionMagic.MotionMagicAcceleration,
+                        WristConstants.kGearRatio) * kPlannerDerating
+        };
+
+        public static final double[][] kKeepOutRegions = {
+                // @0,1 --> elevator min, max (in meters)
+                // @2,3 --> pivot min, max (in degrees)
+                // @4,5 --> wrist min, max (in degrees)
+                // wrist facing the amp with the pivot down can't extend the elevator
+                // (used to be the "pivot > 25" check in score amp)
+                { ElevatorConstants.kStowHeight + Conversions.inchesToMeters(1.25), ElevatorConstants.kMaxHeight,
+                        0, 25, 140, 200 }
+        };
+
+        // with the pivot below this and the wrist past this, the wrist has to follow
+        // the ground intake extension table
+        public static final double kGroundExtensionMaxPivot = 12;
+        public static final double kGroundExtensionMinWrist = 260;
+    }
+
     public static final class EndEffectorConstants {
         // SHOOTING RPM's
         public static final double kSubwooferRPM = 5050; // 5000 //tunes to 5080
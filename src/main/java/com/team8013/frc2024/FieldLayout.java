@@ -1,5 +1,8 @@
 package com.team8013.frc2024;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import edu.wpi.first.math.util.Units;
 
 public class FieldLayout {
@@ -12,4 +15,52 @@ public class FieldLayout {
         public static final double kFieldLength = Units.inchesToMeters(651.25);
         public static final double kFieldWidth = Units.inchesToMeters(315.5);
         public static final double kTapeWidth = Units.inchesToMeters(2.0);
+
+        /*
+         * Things on the blue half of the field a path can't go through, from the
+         * 2024 field drawings. The red half is the mirror image across x. The
+         * robot fits under the stage, so only its legs are in the way.
+         */
+        public static final double kStageLegSize = Units.inchesToMeters(12.0);
+        public static final double[][] kBlueStageLegs = {
+                        { 3.34, 4.11 },
+                        { 5.61, 5.42 },
+                        { 5.61, 2.80 }
+        };
+        // x, y pairs around the base, counterclockwise
+        public static final double[] kBlueSubwoofer = {
+                        0.0, 4.50,
+                        0.92, 5.02,
+                        0.92, 6.08,
+                        0.0, 6.60
+        };
+
+        /**
+         * @return every obstacle on the field as a convex polygon of x, y pairs
+         */
+        public static List<double[]> getObstacles() {
+                List<double[]> obstacles = new ArrayList<>();
+                double half = kStageLegSize / 2.0;
+                for (double[] leg : kBlueStageLegs) {
+                        double[] square = {
+                                        leg[0] - half, leg[1] - half,
+                                        leg[0] + half, leg[1] - half,
+                                        leg[0] + half, leg[1] + half,
+                                        leg[0] - half, leg[1] + half
+                        };
+                        obstacles.add(square);
+                        obstacles.add(mirror(square));
+                }
+                obstacles.add(kBlueSubwoofer.clone());
+                obstacles.add(mirror(kBlueSubwoofer));
+                return obstacles;
+        }
+
+        private static double[] mirror(double[] polygon) {
+                double[] mirrored = polygon.clone();
+                for (int i = 0; i < mirrored.length; i += 2) {
+                        mirrored[i] = kFieldLength - mirrored[i];
+                }
+                return mirrored;
+        }
 }
\ No newline at end of file
@@ -0,0 +1,234 @@
+package com.team8013.frc2024;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.team8013.frc2024.Constants.LoadGovernorConstants;
+import com.team8013.lib.logger.Log;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Turns optional work off when the robot is running out of time and back on
+ * once it isn't. Watches how much of each enabled loop period the loop uses,
+ * how often a period is overrun, the process CPU load and time spent in GC.
+ * <p>
+ * Work is shed one tier at a time in the order of {@link Work}, so the first
+ * to go is the least useful. A tier is shed after the robot has been
+ * overloaded for kShedDelay and restored after it has been healthy for
+ * kRestoreDelay. Every change is printed with the numbers that caused it and
+ * kept for the dashboard, and the shed tiers and those numbers are critical
+ * log channels so the change shows up in the log too.
+ */
+public class LoadGovernor {
+
+    private static LoadGovernor mInstance;
+
+    public static synchronized LoadGovernor getInstance() {
+        if (mInstance == null) {
+            mInstance = new LoadGovernor();
+        }
+        return mInstance;
+    }
+
+    /**
+     * Optional work, in the order it gets shed.
+     */
+    public enum Work {
+        DASHBOARD_TABS,
+        FIELD_VIEW,
+        VERBOSE_LOGS,
+        SUBSYSTEM_TELEMETRY
+    }
+
+    // how many tiers of Work are shed, 0 runs everything
+    private volatile int mShed = 0;
+
+    // loop stats for the current window, written by the loop thread
+    private double mBusySum = 0.0;
+    private int mLoopCount = 0;
+    private int mOverrunCount = 0;
+    private double mLastLoopTimestamp = Double.NaN;
+
+    private double mWindowStart = Double.NaN;
+    private long mLastGcMillis = -1;
+    private double mOverloadedSince = Double.NaN;
+    private double mHealthySince = Double.NaN;
+
+    // read by the logger on the loop thread
+    private volatile double mLoopLoad = 0.0;
+    private volatile double mOverrunFraction = 0.0;
+    private volatile double mCpuLoad = Double.NaN;
+    private volatile double mGcFraction = 0.0;
+
+    private final List<String> mChanges = new ArrayList<>();
+    // rebuilt only when a tier changes, so the dashboard doesn't copy the list every cycle
+    private String[] mChangesArray = new String[0];
+
+    private LoadGovernor() {
+    }
+
+    /**
+     * @return true if the work should run this cycle
+     */
+    public boolean allows(Work work) {
+        return !LoadGovernorConstants.kEnabled || work.ordinal() >= mShed;
+    }
+
+    @Log(critical = true)
+    public int getShedTiers() {
+        return mShed;
+    }
+
+    @Log(critical = true)
+    public double getLoopLoad() {
+        return mLoopLoad;
+    }
+
+    @Log(critical = true)
+    public double getOverrunFraction() {
+        return mOverrunFraction;
+    }
+
+    @Log(critical = true)
+    public double getCpuLoad() {
+        return mCpuLoad;
+    }
+
+    @Log(critical = true)
+    public double getGcFraction() {
+        return mGcFraction;
+    }
+
+    /**
+     * Called by the enabled loop at the end of every tick.
+     *
+     * @param timestamp start of the tick
+     * @param busy      seconds the tick took
+     */
+    public synchronized void recordLoop(double timestamp, double busy) {
+        if (!Double.isNaN(mLastLoopTimestamp)
+                && timestamp - mLastLoopTimestamp > Constants.kLooperDt * LoadGovernorConstants.kOverrunFactor) {
+            mOverrunCount++;
+        }
+        mLastLoopTimestamp = timestamp;
+        mBusySum += busy;
+        mLoopCount++;
+    }
+
+    /**
+     * Called from robotPeriodic. Closes a measurement window every kWindow and
+     * sheds or restores a tier if it's time to.
+     */
+    public synchronized void update(double timestamp) {
+        if (Double.isNaN(mWindowStart)) {
+            mWindowStart = timestamp;
+            mLastGcMillis = getGcMillis();
+            return;
+        }
+        double elapsed = timestamp - mWindowStart;
+        if (elapsed < LoadGovernorConstants.kWindow) {
+            return;
+        }
+
+        // nothing recorded means the enabled loop isn't running, which isn't load
+        mLoopLoad = mLoopCount == 0 ? 0.0 : mBusySum / mLoopCount / Constants.kLooperDt;
+        mOverrunFraction = mLoopCount == 0 ? 0.0 : (double) mOverrunCount / mLoopCount;
+        mCpuLoad = readCpuLoad();
+        long gcMillis = getGcMillis();
+        mGcFraction = mLastGcMillis < 0 ? 0.0 : (gcMillis - mLastGcMillis) / 1000.0 / elapsed;
+        mLastGcMillis = gcMillis;
+        mBusySum = 0.0;
+        mLoopCount = 0;
+        mOverrunCount = 0;
+        mWindowStart = timestamp;
+
+        boolean overloaded = mLoopLoad > LoadGovernorConstants.kShedLoopLoad
+                || mOverrunFraction > LoadGovernorConstants.kShedOverrunFraction
+                || mCpuLoad > LoadGovernorConstants.kShedCpuLoad
+                || mGcFraction > LoadGovernorConstants.kShedGcFraction;
+        boolean healthy = mLoopLoad < LoadGovernorConstants.kRestoreLoopLoad
+                && mOverrunFraction == 0.0
+                && !(mCpuLoad >= LoadGovernorConstants.kRestoreCpuLoad)
+                && mGcFraction < LoadGovernorConstants.kRestoreGcFraction;
+
+        if (overloaded) {
+            mHealthySince = Double.NaN;
+            if (Double.isNaN(mOverloadedSince)) {
+                mOverloadedSince = timestamp;
+            }
+            if (timestamp - mOverloadedSince >= LoadGovernorConstants.kShedDelay
+                    && mShed < Work.values().length) {
+                changeTier(timestamp, mShed + 1);
+                mOverloadedSince = timestamp;
+            }
+        } else if (healthy) {
+            mOverloadedSince = Double.NaN;
+            if (Double.isNaN(mHealthySince)) {
+                mHealthySince = timestamp;
+            }
+            if (timestamp - mHealthySince >= LoadGovernorConstants.kRestoreDelay && mShed > 0) {
+                changeTier(timestamp, mShed - 1);
+                mHealthySince = timestamp;
+            }
+        } else {
+            mOverloadedSince = Double.NaN;
+            mHealthySince = Double.NaN;
+        }
+    }
+
+    private void changeTier(double timestamp, int shed) {
+        String change = String.format(Locale.ROOT, "%.2f %s %s (loop %.0f%%, overruns %.0f%%, cpu %.0f%%, gc %.1f%%)",
+                timestamp, shed > mShed ? "shed" : "restored", Work.values()[Math.min(shed, mShed)],
+                mLoopLoad * 100.0, mOverrunFraction * 100.0, mCpuLoad * 100.0, mGcFraction * 100.0);
+        mShed = shed;
+        System.out.println("Load governor: " + change);
+        mChanges.add(change);
+        if (mChanges.size() > LoadGovernorConstants.kChangeHistory) {
+            mChanges.remove(0);
+        }
+        mChangesArray = mChanges.toArray(new String[0]);
+    }
+
+    /**
+     * @return the recorded tier changes, oldest first
+     */
+    public synchronized List<String> getChanges() {
+        return new ArrayList<>(mChanges);
+    }
+
+    public synchronized void outputTelemetry() {
+        SmartDashboard.putNumber("Load Governor Shed Tiers", mShed);
+        SmartDashboard.putString("Load Governor Next To Shed",
+                mShed < Work.values().length ? Work.values()[mShed].toString() : "NONE");
+        SmartDashboard.putNumber("Load Governor Loop Load", mLoopLoad);
+        SmartDashboard.putNumber("Load Governor CPU Load", mCpuLoad);
+        SmartDashboard.putNumber("Load Governor GC Fraction", mGcFraction);
+        SmartDashboard.putStringArray("Load Governor Changes", mChangesArray);
+    }
+
+    /**
+     * @return this process's recent CPU use from 0 to 1, NaN if the JVM doesn't
+     *         report it
+     */
+    private static double readCpuLoad() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            double load = ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuLoad();
+            return load < 0.0 ? Double.NaN : load;
+        }
+        return Double.NaN;
+    }
+
+    private static long getGcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+}
@@ -4,6 +4,7 @@ public class Ports {
 
     public static final String CANBUS_UPPER = "Jonas";
     public static final String CANBUS_LOWER = "Pegasus";
+    public static final String CANBUS_RIO = "rio";
 
     public static final int DRIVER_PORT = 2;
     public static final int OPERATOR_PORT = 1;
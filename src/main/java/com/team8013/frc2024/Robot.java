@@ -4,6 +4,7 @@
 
 package com.team8013.frc2024;
 
+import java.io.File;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,16 +14,22 @@ import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj.livewindow.LiveWindow;
+import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 import com.team254.lib.util.Util;
+import com.team8013.frc2024.auto.ActionTracer;
 import com.team8013.frc2024.auto.AutoModeBase;
 import com.team8013.frc2024.auto.AutoModeExecutor;
 import com.team8013.frc2024.auto.AutoModeSelector;
+import com.team8013.frc2024.auto.GeofenceEngine;
 import com.team8013.frc2024.controlboard.ControlBoard;
 import com.team8013.frc2024.controlboard.CustomXboxController.Button;
 import com.team8013.frc2024.controlboard.CustomXboxController.Side;
 import com.team8013.frc2024.loops.CrashTracker;
 import com.team8013.frc2024.loops.Looper;
+import com.team8013.frc2024.planners.PathReplanner;
+import com.team8013.frc2024.regressions.ShotLog;
 import com.team8013.frc2024.shuffleboard.ShuffleBoardInteractions;
 import com.team8013.frc2024.subsystems.ClimberHook;
 import com.team8013.frc2024.subsystems.Drive;
@@ -33,8 +40,15 @@ import com.team8013.frc2024.subsystems.Pivot;
 import com.team8013.frc2024.subsystems.Shooter;
 import com.team8013.frc2024.subsystems.Superstructure;
 import com.team8013.frc2024.subsystems.Wrist;
+import com.team8013.frc2024.subsystems.Vision;
 import com.team8013.frc2024.subsystems.EndEffectorREV.State;
+import com.team8013.lib.characterization.CharacterizationDevice;
+import com.team8013.lib.characterization.CharacterizationRoutine;
+import com.team8013.lib.drivers.DeviceBringup;
+import com.team8013.lib.logger.LoggingSystem;
+import com.team8013.lib.telemetry.TelemetryStream;
 import com.team8013.lib.swerve.ChassisSpeeds;
+import com.team8013.lib.util.RobotClock;
 
 public class Robot extends TimedRobot {
 
@@ -42,11 +56,12 @@ public class Robot extends TimedRobot {
 	private final SubsystemManager mSubsystemManager = SubsystemManager.getInstance();
 	private final ControlBoard mControlBoard = ControlBoard.getInstance();
 	private final ShuffleBoardInteractions mShuffleboard = ShuffleBoardInteractions.getInstance();
-	// private final LoggingSystem mLogger = LoggingSystem.getInstance();
+	private final LoggingSystem mLogger = LoggingSystem.getInstance();
 
 	// subsystem instances
 	private final Superstructure mSuperstructure = Superstructure.getInstance();
 	private final Drive mDrive = Drive.getInstance();
+	private final Vision mVision = Vision.getInstance();
 	private final Limelight mLimelight = Limelight.getInstance();
 	private final Pivot mPivot = Pivot.getInstance();
 	private final Elevator mElevator = Elevator.getInstance();
@@ -58,7 +73,12 @@ public class Robot extends TimedRobot {
 	// instantiate enabled and disabled loopers
 	private final Looper mEnabledLooper = new Looper();
 	private final Looper mDisabledLooper = new Looper();
-	// private final Looper mLoggingLooper = new Looper(0.002);
+	// writes the logs off the control loop, without advancing the robot clock
+	private final Looper mLoggingLooper = new Looper(0.002, false);
+
+	// test mode runs feedforward characterization on the chosen mechanism
+	private final SendableChooser<CharacterizationDevice> mCharacterizationChooser = new SendableChooser<>();
+	private CharacterizationRoutine mCharacterization = null;
 
 	// auto instances
 	private AutoModeExecutor mAutoModeExecutor;
@@ -89,6 +109,7 @@ public class Robot extends TimedRobot {
 			mSubsystemManager.setSubsystems(
 					mDrive,
 					mSuperstructure,
+					mVision,
 					mLimelight,
 					mPivot,
 					mElevator,
@@ -99,10 +120,34 @@ public class Robot extends TimedRobot {
 
 			);
 
+			mCharacterizationChooser.setDefaultOption("Pivot", mPivot.getCharacterizationDevice());
+			mCharacterizationChooser.addOption("Elevator", mElevator.getCharacterizationDevice());
+			mCharacterizationChooser.addOption("Wrist", mWrist.getCharacterizationDevice());
+			mCharacterizationChooser.addOption("Climber Hook", mClimberHook.getCharacterizationDevice());
+			mCharacterizationChooser.addOption("End Effector Top", mEndEffector.getTopCharacterizationDevice());
+			mCharacterizationChooser.addOption("End Effector Bottom",
+					mEndEffector.getBottomCharacterizationDevice());
+			SmartDashboard.putData("Characterize Mechanism", mCharacterizationChooser);
+
 			mSubsystemManager.registerEnabledLoops(mEnabledLooper);
 			mSubsystemManager.registerDisabledLoops(mDisabledLooper);
 
-			// mLoggingLooper.register(mLogger.Loop());
+			// subsystem constructors queue their device configs, wait for them
+			// here so nothing is enabled half configured
+			DeviceBringup.getInstance().awaitAll(Constants.kDeviceBringupTimeout);
+			System.out.println(DeviceBringup.getInstance().getTimelineReport());
+			DeviceBringup.getInstance().outputTelemetry();
+
+			mAutoModeSelector.buildAllAutoModes();
+			// builds the navigation graph now rather than in the middle of auto
+			PathReplanner.getInstance();
+
+			if (Constants.TelemetryConstants.kEnabled) {
+				TelemetryStream.getInstance().start(isSimulation() ? Constants.TelemetryConstants.kSimHost
+						: Constants.TelemetryConstants.kHost, Constants.TelemetryConstants.kPort);
+			}
+
+			mLoggingLooper.register(mLogger.Loop());
 
 		} catch (Throwable t) {
 			CrashTracker.logThrowableCrash(t);
@@ -112,8 +157,11 @@ public class Robot extends TimedRobot {
 
 	@Override
 	public void robotPeriodic() {
+		LoadGovernor.getInstance().update(RobotClock.getInstance().now());
 		mShuffleboard.update();
+		ShotLog.getInstance().update(RobotClock.getInstance().getTimestamp());
 		mSubsystemManager.outputToSmartDashboard();
+		PathReplanner.getInstance().outputTelemetry();
 		mEnabledLooper.outputToSmartDashboard();
 	}
 
@@ -122,15 +170,18 @@ public class Robot extends TimedRobot {
 
 		try {
 			mDisabledLooper.stop();
-			Optional<AutoModeBase> autoMode = mAutoModeSelector.getAutoMode();
+			// only blocks if the selected mode hasn't finished building yet
+			Optional<AutoModeBase> autoMode = mAutoModeSelector.awaitAutoMode();
 			if (autoMode.isPresent()) {
+				mAutoModeExecutor.setAutoMode(autoMode.get());
 				mDrive.resetOdometry(autoMode.get().getStartingPose());
 				System.out.println("ODOMETRY RESET FOR AUTO");
 			}
 
 			mEnabledLooper.start();
+			ActionTracer.getInstance().setDirectory(getLogDirectory("autotraces"));
 			mAutoModeExecutor.start();
-			// mLoggingLooper.start();
+			mLoggingLooper.start();
 			mControlBoard.setAutoSnapToTarget(false);
 
 			mDrive.setNeutralBrake(true);
@@ -165,7 +216,7 @@ public class Robot extends TimedRobot {
 			}
 			mDisabledLooper.stop();
 			mEnabledLooper.start();
-			// mLoggingLooper.start();
+			mLoggingLooper.start();
 			mSuperstructure.stop();
 
 			mDrive.setAutoSpinFast(false);
@@ -207,6 +258,7 @@ public class Robot extends TimedRobot {
 						Rotation2d.fromDegrees(-45),
 						Rotation2d.fromDegrees(45)));
 			} else {
+				mDrive.markTeleopInput();
 				mDrive.feedTeleopSetpoint(ChassisSpeeds.fromFieldRelativeSpeeds(
 						mControlBoard.getSwerveTranslation().x(),
 						mControlBoard.getSwerveTranslation().y(),
@@ -396,7 +448,7 @@ public class Robot extends TimedRobot {
 
 			CrashTracker.logDisabledInit();
 			mEnabledLooper.stop();
-			// mLoggingLooper.stop();
+			mLoggingLooper.stop();
 			mDisabledLooper.start();
 			mClimberHook.setWantNeutralBrake(false);
 
@@ -408,6 +460,7 @@ public class Robot extends TimedRobot {
 		if (mAutoModeExecutor != null) {
 			mAutoModeExecutor.stop();
 		}
+		GeofenceEngine.getInstance().clear();
 
 		// Reset all auto mode state.
 		mAutoModeSelector.reset();
@@ -457,6 +510,7 @@ public class Robot extends TimedRobot {
 
 			// SmartDashboard.putBoolean("is_red_alliance", is_red_alliance);
 			mAutoModeSelector.updateModeCreator(alliance_changed);
+			mAutoModeSelector.outputToSmartDashboard();
 			Optional<AutoModeBase> autoMode = mAutoModeSelector.getAutoMode();
 			mLimelight.isRedAlliance(is_red_alliance);
 			if (autoMode.isPresent()) {
@@ -474,6 +528,16 @@ public class Robot extends TimedRobot {
 		try {
 			mDisabledLooper.stop();
 			mEnabledLooper.stop();
+
+			// the loops are stopped so nothing else writes to the mechanism
+			mCharacterization = new CharacterizationRoutine(mCharacterizationChooser.getSelected(),
+					Constants.CharacterizationConstants.kQuasistaticRampRate,
+					Constants.CharacterizationConstants.kDynamicStepVoltage,
+					Constants.CharacterizationConstants.kMaxTestTime,
+					Constants.CharacterizationConstants.kRestTime,
+					Constants.CharacterizationConstants.kLimitMargin,
+					getLogDirectory("characterization"));
+			mCharacterization.start();
 		} catch (Throwable t) {
 			CrashTracker.logThrowableCrash(t);
 			throw t;
@@ -482,6 +546,33 @@ public class Robot extends TimedRobot {
 
 	@Override
 	public void testPeriodic() {
+		if (mCharacterization != null) {
+			mCharacterization.outputTelemetry();
+		}
+	}
+
+	@Override
+	public void testExit() {
+		if (mCharacterization != null) {
+			mCharacterization.stop();
+		}
+	}
+
+	/**
+	 * @return a directory under the logs on the first drive plugged in, null if
+	 *         there isn't one
+	 */
+	private File getLogDirectory(String name) {
+		if (isSimulation()) {
+			return new File("./Output Logs/" + name);
+		}
+		LoggingSystem logger = LoggingSystem.getInstance();
+		for (String root : logger.kDriveRoot) {
+			if (new File(root).isDirectory()) {
+				return new File(root + logger.kLogDirectory + name);
+			}
+		}
+		return null;
 	}
 
 	@Override
@@ -2,13 +2,28 @@ package com.team8013.frc2024;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
+import com.team8013.frc2024.LoadGovernor.Work;
 import com.team8013.frc2024.loops.ILooper;
 import com.team8013.frc2024.loops.Loop;
 import com.team8013.frc2024.loops.Looper;
 import com.team8013.frc2024.subsystems.Subsystem;
 import com.team8013.lib.logger.LoggingSystem;
+import com.team8013.lib.telemetry.LatencyTracer;
+import com.team8013.lib.telemetry.TelemetryStream;
+import com.team8013.lib.util.RobotClock;
+import com.team8013.lib.util.RobotClock.Phase;
+import com.team8013.lib.util.RobotStateHistory;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 /**
  * Used to reset, start, stop, and update all subsystems at once
@@ -20,6 +35,30 @@ public class SubsystemManager implements ILooper {
     private List<Loop> mLoops = new ArrayList<>();
 
     private LoggingSystem ls = LoggingSystem.getInstance();
+    private TelemetryStream mTelemetry = TelemetryStream.getInstance();
+    private RobotClock mClock = RobotClock.getInstance();
+    private RobotStateHistory mHistory = RobotStateHistory.getInstance();
+    private LoadGovernor mGovernor = LoadGovernor.getInstance();
+    private LatencyTracer mTracer = LatencyTracer.getInstance();
+    private int mTickCount = 0;
+
+    // subsystems grouped so every dependency is in an earlier level, reads
+    // within a level are split up by CAN bus. Built once so a tick's reads
+    // don't allocate
+    private ReadLevel[] mReadLevels = new ReadLevel[0];
+    private Subsystem[] mSequentialReadOrder = new Subsystem[0];
+    // one thread per bus so reads on a bus stay in order
+    private final Map<String, ExecutorService> mBusReaders = new HashMap<>();
+    private final Semaphore mBusReadsDone = new Semaphore(0);
+    private volatile Throwable mBusReadFailure = null;
+    private boolean mParallelReads = Constants.kParallelSubsystemReads;
+    // see readPeriodicInputs
+    private int mParallelReadFailures = 0;
+    private int mConsecutiveReadFailures = 0;
+    private int mSequentialTicksLeft = 0;
+
+    private double mLastReadMs = 0.0;
+    private double mMaxReadMs = 0.0;
 
     private SubsystemManager() {
     }
@@ -33,7 +72,18 @@ public class SubsystemManager implements ILooper {
     }
 
     public void outputToSmartDashboard() {
-        if (Constants.disableExtraTelemetry) {
+        SmartDashboard.putNumber("Read Phase Ms", mLastReadMs);
+        SmartDashboard.putNumber("Read Phase Max Ms", mMaxReadMs);
+        SmartDashboard.putBoolean("Parallel Reads", mParallelReads && mSequentialTicksLeft == 0);
+        SmartDashboard.putNumber("Parallel Read Failures", mParallelReadFailures);
+        SmartDashboard.putNumber("Loops Phase Ms", mClock.getPhaseDuration(Phase.LOOPS) * 1000.0);
+        SmartDashboard.putNumber("Write Phase Ms", mClock.getPhaseDuration(Phase.WRITE) * 1000.0);
+        SmartDashboard.putNumber("State History Seconds",
+                mHistory.getNewestTimestamp() - mHistory.getOldestTimestamp());
+        mGovernor.outputTelemetry();
+        mTracer.outputTelemetry();
+        ls.outputTelemetry();
+        if (Constants.disableExtraTelemetry || !mGovernor.allows(Work.SUBSYSTEM_TELEMETRY)) {
             return;
         }
         mAllSubsystems.forEach(Subsystem::outputTelemetry);
@@ -60,6 +110,184 @@ public class SubsystemManager implements ILooper {
     public void setSubsystems(Subsystem... allSubsystems) {
         mAllSubsystems = Arrays.asList(allSubsystems);
         mAllSubsystems.forEach((s) -> ls.registerObject(s.getClass(), s));
+        mAllSubsystems.forEach((s) -> mTelemetry.registerObject(s.getClass(), s, s.getClass().getSimpleName()));
+        mTelemetry.addDouble("SubsystemManager/readPhaseMs", () -> mLastReadMs);
+        mTelemetry.addDouble("SubsystemManager/loopsPhaseMs", () -> mClock.getPhaseDuration(Phase.LOOPS) * 1000.0);
+        mTelemetry.addDouble("SubsystemManager/writePhaseMs", () -> mClock.getPhaseDuration(Phase.WRITE) * 1000.0);
+        // the governor's numbers are critical channels, so every tier change is in
+        // the log and the stream along with what caused it
+        ls.registerObject(LoadGovernor.class, mGovernor);
+        mTelemetry.registerObject(LoadGovernor.class, mGovernor, "LoadGovernor");
+        buildReadSchedule();
+    }
+
+    // One dependency level: the subsystems read on the loop thread, and a read
+    // of each bus's group to hand to that bus's reader
+    private static class ReadLevel {
+        final Subsystem[] local;
+        final ExecutorService[] readers;
+        final Runnable[] busReads;
+
+        ReadLevel(Subsystem[] local, ExecutorService[] readers, Runnable[] busReads) {
+            this.local = local;
+            this.readers = readers;
+            this.busReads = busReads;
+        }
+    }
+
+    private void buildReadSchedule() {
+        Map<Subsystem, Integer> levels = new HashMap<>();
+        for (Subsystem s : mAllSubsystems) {
+            getReadLevel(s, levels, new ArrayList<>());
+        }
+
+        List<List<Subsystem>> byLevel = new ArrayList<>();
+        for (Subsystem s : mAllSubsystems) {
+            int level = levels.get(s);
+            while (byLevel.size() <= level) {
+                byLevel.add(new ArrayList<>());
+            }
+            byLevel.get(level).add(s);
+
+            String bus = s.getCanBus();
+            if (bus != null && !mBusReaders.containsKey(bus)) {
+                mBusReaders.put(bus, Executors.newSingleThreadExecutor((r) -> {
+                    Thread thread = new Thread(r, "SubsystemRead-" + bus);
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MAX_PRIORITY);
+                    return thread;
+                }));
+            }
+        }
+
+        mReadLevels = new ReadLevel[byLevel.size()];
+        List<Subsystem> sequential = new ArrayList<>();
+        for (int i = 0; i < mReadLevels.length; i++) {
+            Map<String, List<Subsystem>> byBus = new LinkedHashMap<>();
+            List<Subsystem> local = new ArrayList<>();
+            for (Subsystem s : byLevel.get(i)) {
+                if (s.getCanBus() == null) {
+                    local.add(s);
+                } else {
+                    byBus.computeIfAbsent(s.getCanBus(), (b) -> new ArrayList<>()).add(s);
+                }
+            }
+
+            ExecutorService[] readers = new ExecutorService[byBus.size()];
+            Runnable[] busReads = new Runnable[byBus.size()];
+            int j = 0;
+            for (Map.Entry<String, List<Subsystem>> group : byBus.entrySet()) {
+                readers[j] = mBusReaders.get(group.getKey());
+                busReads[j] = busRead(group.getValue().toArray(new Subsystem[0]));
+                j++;
+            }
+            mReadLevels[i] = new ReadLevel(local.toArray(new Subsystem[0]), readers, busReads);
+            sequential.addAll(byLevel.get(i));
+        }
+        mSequentialReadOrder = sequential.toArray(new Subsystem[0]);
+    }
+
+    // reads the group in order on its bus's reader, then counts itself done
+    // whether or not it threw
+    private Runnable busRead(Subsystem[] group) {
+        return () -> {
+            try {
+                for (Subsystem s : group) {
+                    s.readPeriodicInputs();
+                }
+            } catch (Throwable t) {
+                mBusReadFailure = t;
+            } finally {
+                mBusReadsDone.release();
+            }
+        };
+    }
+
+    private int getReadLevel(Subsystem s, Map<Subsystem, Integer> levels, List<Subsystem> visiting) {
+        if (levels.containsKey(s)) {
+            return levels.get(s);
+        }
+        if (visiting.contains(s)) {
+            throw new IllegalStateException("Read dependency cycle through " + s.getClass().getSimpleName());
+        }
+        visiting.add(s);
+        int level = 0;
+        for (Subsystem dependency : s.getReadDependencies()) {
+            if (mAllSubsystems.contains(dependency)) {
+                level = Math.max(level, getReadLevel(dependency, levels, visiting) + 1);
+            }
+        }
+        visiting.remove(s);
+        levels.put(s, level);
+        return level;
+    }
+
+    /**
+     * Reads every subsystem's inputs, overlapping the blocking CAN reads on
+     * different buses. A parallel read that fails is redone one subsystem at a
+     * time in dependency order. After kMaxParallelReadFailures failures in a
+     * row the reads stay sequential for kParallelReadRetryTicks, then parallel
+     * reads are tried again.
+     */
+    private void readPeriodicInputs() {
+        long start = System.nanoTime();
+        if (mParallelReads && mSequentialTicksLeft == 0) {
+            try {
+                readParallel();
+                mConsecutiveReadFailures = 0;
+            } catch (ExecutionException e) {
+                mParallelReadFailures++;
+                if (++mConsecutiveReadFailures >= Constants.kMaxParallelReadFailures) {
+                    System.err.println("Parallel subsystem reads failed " + mConsecutiveReadFailures
+                            + " times in a row, reading sequentially for "
+                            + Constants.kParallelReadRetryTicks + " ticks: " + e.getCause());
+                    mConsecutiveReadFailures = 0;
+                    mSequentialTicksLeft = Constants.kParallelReadRetryTicks;
+                } else {
+                    System.err.println("Parallel subsystem reads failed, reading sequentially: " + e.getCause());
+                }
+                readSequential();
+            }
+        } else {
+            if (mSequentialTicksLeft > 0) {
+                mSequentialTicksLeft--;
+            }
+            readSequential();
+        }
+        mLastReadMs = (System.nanoTime() - start) / 1.0e6;
+        mMaxReadMs = Math.max(mMaxReadMs, mLastReadMs);
+    }
+
+    private void readSequential() {
+        for (Subsystem s : mSequentialReadOrder) {
+            s.readPeriodicInputs();
+        }
+    }
+
+    private void readParallel() throws ExecutionException {
+        for (ReadLevel level : mReadLevels) {
+            int started = 0;
+            try {
+                for (int i = 0; i < level.busReads.length; i++) {
+                    level.readers[i].execute(level.busReads[i]);
+                    started++;
+                }
+                for (Subsystem s : level.local) {
+                    s.readPeriodicInputs();
+                }
+            } catch (RuntimeException e) {
+                throw new ExecutionException(e);
+            } finally {
+                // join before the next level so dependencies have been read,
+                // and so no read is left running into the next tick
+                mBusReadsDone.acquireUninterruptibly(started);
+            }
+            Throwable failure = mBusReadFailure;
+            if (failure != null) {
+                mBusReadFailure = null;
+                throw new ExecutionException(failure);
+            }
+        }
     }
 
     private class EnabledLoop implements Loop {
@@ -70,12 +298,24 @@ public class SubsystemManager implements ILooper {
 
         @Override
         public void onLoop(double timestamp) {
-            mAllSubsystems.forEach(Subsystem::readPeriodicInputs);
+            readPeriodicInputs();
+            mHistory.record(timestamp);
+            mClock.stampPhase(Phase.READ);
             mLoops.forEach(l -> l.onLoop(timestamp));
+            mClock.stampPhase(Phase.LOOPS);
             mAllSubsystems.forEach(Subsystem::writePeriodicOutputs);
+            mTracer.mark(LatencyTracer.kOutputsWritten);
+            mClock.stampPhase(Phase.WRITE);
+            // critical channels go out every tick, verbose ones only every few
+            // while verbose logging is shed
+            boolean verbose = mGovernor.allows(Work.VERBOSE_LOGS)
+                    || mTickCount % Constants.LoadGovernorConstants.kShedLogDecimation == 0;
+            mTelemetry.sample(timestamp, verbose);
             if (!LoggingSystem.disableLogger) {
-                ls.queueLogs();
+                ls.queueLogs(verbose);
             }
+            mTickCount++;
+            mGovernor.recordLoop(timestamp, mClock.now() - timestamp);
         }
 
         @Override
@@ -91,7 +331,8 @@ public class SubsystemManager implements ILooper {
 
         @Override
         public void onLoop(double timestamp) {
-            mAllSubsystems.forEach(Subsystem::readPeriodicInputs);
+            readPeriodicInputs();
+            mHistory.record(timestamp);
         }
 
         @Override
@@ -0,0 +1,189 @@
+package com.team8013.frc2024.auto;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The tree of actions one run of an auto mode executed, with when each one
+ * started and finished. Series and parallel actions are the inner nodes, so
+ * the tree is also the run's dependency graph: each child of a series waits on
+ * the one before it, and a parallel action waits on all of its children.
+ * <p>
+ * ActionTracer writes one of these per run on the robot and in simulation,
+ * and CriticalPathAnalyzer reads them back.
+ */
+public class ActionTrace {
+
+    public static final String kFilePrefix = "autotrace_";
+    public static final String kHeader = "id,parent,kind,wait,start,end,label";
+
+    public enum Kind {
+        ROUTINE, // the mode's routine, runs its actions in series
+        SERIES,
+        PARALLEL,
+        ACTION
+    }
+
+    public static class Node {
+        public final int id;
+        public final Node parent;
+        public final Kind kind;
+        public final String label;
+        // child indexes from the routine down, the same action in every run of
+        // the mode as long as the routine takes the same branches
+        public final String path;
+        public final double wait; // s for a fixed wait, NaN for anything else
+        public final double start; // s from the start of the routine
+        public double end = Double.NaN; // NaN if the run ended first
+        public final List<Node> children = new ArrayList<>();
+
+        Node(int id, Node parent, Kind kind, String label, double wait, double start) {
+            this.id = id;
+            this.parent = parent;
+            this.kind = kind;
+            this.label = label;
+            this.wait = wait;
+            this.start = start;
+            path = parent == null ? "0" : parent.path + "." + parent.children.size();
+            if (parent != null) {
+                parent.children.add(this);
+            }
+        }
+
+        public boolean isFixedWait() {
+            return !Double.isNaN(wait);
+        }
+
+        public double getDuration() {
+            return end - start;
+        }
+    }
+
+    private final String mMode;
+    private final List<Node> mNodes = new ArrayList<>();
+    private boolean mCompleted = false;
+
+    public ActionTrace(String mode) {
+        mMode = mode;
+        mNodes.add(new Node(0, null, Kind.ROUTINE, mode, Double.NaN, 0.0));
+    }
+
+    public Node getRoot() {
+        return mNodes.get(0);
+    }
+
+    /**
+     * @param wait s if the action is a fixed wait, otherwise NaN
+     */
+    public Node add(Node parent, Kind kind, String label, double wait, double start) {
+        Node node = new Node(mNodes.size(), parent, kind, label, wait, start);
+        mNodes.add(node);
+        return node;
+    }
+
+    public List<Node> getNodes() {
+        return mNodes;
+    }
+
+    public String getMode() {
+        return mMode;
+    }
+
+    /**
+     * @return true if the routine ran to the end rather than auto ending first
+     */
+    public boolean isCompleted() {
+        return mCompleted;
+    }
+
+    public void setCompleted(boolean completed) {
+        mCompleted = completed;
+    }
+
+    public void write(File file) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write("# mode " + mMode + "\n");
+            writer.write("# completed " + mCompleted + "\n");
+            writer.write(kHeader + "\n");
+            for (Node node : mNodes) {
+                writer.write(String.format(Locale.ROOT, "%d,%d,%s,%s,%.4f,%s,%s%n", node.id,
+                        node.parent == null ? -1 : node.parent.id, node.kind, format(node.wait), node.start,
+                        format(node.end), node.label));
+            }
+        }
+    }
+
+    public static ActionTrace read(Path file) throws IOException {
+        ActionTrace trace = null;
+        boolean completed = false;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file.toFile()))) {
+            String line = reader.readLine();
+            while (line != null) {
+                if (line.startsWith("# ")) {
+                    String[] split = line.substring(2).split(" ", 2);
+                    if (split[0].equals("mode")) {
+                        trace = new ActionTrace(split[1]);
+                    } else if (split[0].equals("completed")) {
+                        completed = Boolean.parseBoolean(split[1]);
+                    }
+                } else if (!line.isEmpty() && !line.equals(kHeader)) {
+                    if (trace == null) {
+                        throw new IOException(file + " has no mode");
+                    }
+                    // the label is last so it can have commas in it
+                    String[] split = line.split(",", 7);
+                    int parent = Integer.parseInt(split[1]);
+                    Node node;
+                    if (parent < 0) {
+                        node = trace.getRoot();
+                    } else {
+                        node = trace.add(trace.mNodes.get(parent), Kind.valueOf(split[2]), split[6],
+                                parse(split[3]), Double.parseDouble(split[4]));
+                    }
+                    node.end = parse(split[5]);
+                }
+                line = reader.readLine();
+            }
+        }
+        if (trace == null) {
+            throw new IOException(file + " has no mode");
+        }
+        trace.setCompleted(completed);
+        return trace;
+    }
+
+    /**
+     * @param paths trace files or directories to search for them
+     */
+    public static List<Path> find(List<Path> paths) throws IOException {
+        List<Path> traces = new ArrayList<>();
+        for (Path path : paths) {
+            try (Stream<Path> files = Files.walk(path)) {
+                traces.addAll(files.filter(Files::isRegularFile)
+                        .filter((f) -> f.getFileName().toString().startsWith(kFilePrefix))
+                        .sorted()
+                        .collect(Collectors.toList()));
+            }
+        }
+        return traces;
+    }
+
+    private static String format(double value) {
+        return Double.isNaN(value) ? "" : String.format(Locale.ROOT, "%.4f", value);
+    }
+
+    private static double parse(String value) {
+        return value.isEmpty() ? Double.NaN : Double.parseDouble(value);
+    }
+}
@@ -0,0 +1,138 @@
+package com.team8013.frc2024.auto;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.IdentityHashMap;
+
+import com.team8013.frc2024.auto.ActionTrace.Kind;
+import com.team8013.frc2024.auto.ActionTrace.Node;
+import com.team8013.frc2024.auto.actions.Action;
+import com.team8013.frc2024.auto.actions.ParallelAction;
+import com.team8013.frc2024.auto.actions.SeriesAction;
+import com.team8013.frc2024.auto.actions.WaitAction;
+import com.team8013.lib.util.RobotClock;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Records when every action in an auto run starts and finishes. runAction,
+ * SeriesAction and ParallelAction report their children as they start them
+ * and see them finish, so no action has to know it's being traced. At the end
+ * of the run the trace is written out and its critical path printed.
+ * <p>
+ * Calls outside of a run are ignored.
+ */
+public class ActionTracer {
+
+    private static ActionTracer mInstance;
+
+    public static ActionTracer getInstance() {
+        if (mInstance == null) {
+            mInstance = new ActionTracer();
+        }
+        return mInstance;
+    }
+
+    private final IdentityHashMap<Action, Node> mRunning = new IdentityHashMap<>();
+    private ActionTrace mTrace = null;
+    private double mStartTime = 0.0;
+    private File mDirectory = null;
+
+    private ActionTracer() {
+    }
+
+    /**
+     * @param directory where to write traces, null to not write them
+     */
+    public synchronized void setDirectory(File directory) {
+        mDirectory = directory;
+    }
+
+    public synchronized void begin(String mode) {
+        mRunning.clear();
+        mTrace = new ActionTrace(mode);
+        mStartTime = RobotClock.getInstance().now();
+    }
+
+    /**
+     * @param parent the series or parallel action starting it, null for
+     *               runAction
+     */
+    public synchronized void started(Action parent, Action action) {
+        if (mTrace == null) {
+            return;
+        }
+        Node parentNode = parent == null ? null : mRunning.get(parent);
+        if (parentNode == null) {
+            parentNode = mTrace.getRoot();
+        }
+        Kind kind = action instanceof SeriesAction ? Kind.SERIES
+                : action instanceof ParallelAction ? Kind.PARALLEL : Kind.ACTION;
+        double wait = action instanceof WaitAction ? ((WaitAction) action).getTimeToWait() : Double.NaN;
+        mRunning.put(action, mTrace.add(parentNode, kind, getLabel(action), wait, getTime()));
+    }
+
+    /**
+     * Safe to call every time the action is seen finished, only the first
+     * counts.
+     */
+    public synchronized void finished(Action action) {
+        if (mTrace == null) {
+            return;
+        }
+        Node node = mRunning.remove(action);
+        if (node != null) {
+            node.end = getTime();
+        }
+    }
+
+    /**
+     * @param completed false if auto ended before the routine did
+     */
+    public synchronized ActionTrace end(boolean completed) {
+        ActionTrace trace = mTrace;
+        if (trace == null) {
+            return null;
+        }
+        mTrace = null;
+        mRunning.clear();
+        trace.getRoot().end = RobotClock.getInstance().now() - mStartTime;
+        trace.setCompleted(completed);
+
+        if (mDirectory != null) {
+            try {
+                mDirectory.mkdirs();
+                File file = new File(mDirectory, ActionTrace.kFilePrefix + trace.getMode() + "_"
+                        + new SimpleDateFormat("yyyy_MM_dd_HH_mm_ss").format(new Date()) + ".csv");
+                trace.write(file);
+                System.out.println("Wrote auto trace " + file);
+            } catch (IOException e) {
+                System.err.println("Unable to write auto trace: " + e.getMessage());
+            }
+        }
+
+        SmartDashboard.putNumber("Auto Duration", trace.getRoot().end);
+        if (completed) {
+            CriticalPathAnalyzer.Analysis analysis = CriticalPathAnalyzer.analyze(trace);
+            SmartDashboard.putString("Auto Critical Path", analysis.getCriticalPathString());
+            System.out.println(analysis.getSummary());
+        } else {
+            SmartDashboard.putString("Auto Critical Path", "ended early");
+        }
+        return trace;
+    }
+
+    private double getTime() {
+        return RobotClock.getInstance().now() - mStartTime;
+    }
+
+    private static String getLabel(Action action) {
+        if (action instanceof WaitAction) {
+            return "WaitAction(" + ((WaitAction) action).getTimeToWait() + ")";
+        }
+        String name = action.getClass().getSimpleName();
+        return name.isEmpty() ? action.getClass().getName() : name;
+    }
+}
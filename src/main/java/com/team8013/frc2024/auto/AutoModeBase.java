@@ -1,9 +1,13 @@
 package com.team8013.frc2024.auto;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.team8013.frc2024.auto.actions.Action;
+import com.team8013.lib.util.RobotClock;
 
 import edu.wpi.first.math.geometry.Pose2d;
-import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.math.trajectory.Trajectory;
 
 /**
  * An abstract class that is the basis of the robot's autonomous routines. This
@@ -16,20 +20,28 @@ public abstract class AutoModeBase {
 
     protected double startTime = 0.0;
 
+    private boolean m_has_run = false;
+    private final List<Trajectory> m_trajectories = new ArrayList<>();
+
     protected double currentTime() {
-        return Timer.getFPGATimestamp() - startTime;
+        return RobotClock.getInstance().now() - startTime;
     }
 
     protected abstract void routine() throws AutoModeEndedException;
 
     public void run() {
         m_active = true;
+        m_has_run = true;
+        ActionTracer tracer = ActionTracer.getInstance();
+        tracer.begin(getClass().getSimpleName());
         try {
             routine();
         } catch (AutoModeEndedException e) {
+            tracer.end(false);
             System.out.println("Auto mode done, ended early");
             return;
         }
+        tracer.end(true);
 
         done();
         System.out.println("Auto mode done");
@@ -42,6 +54,29 @@ public abstract class AutoModeBase {
         m_active = false;
     }
 
+    /**
+     * @return true once this mode has been run, auto modes hold on to their
+     *         actions so a mode that has run needs to be built again
+     */
+    public boolean hasRun() {
+        return m_has_run;
+    }
+
+    /**
+     * Adds a trajectory to show on the field view when this mode is selected.
+     * Modes are built in the background, so they shouldn't push to the
+     * dashboard themselves.
+     */
+    protected void registerTrajectory(Trajectory trajectory) {
+        if (trajectory != null) {
+            m_trajectories.add(trajectory);
+        }
+    }
+
+    public List<Trajectory> getTrajectories() {
+        return m_trajectories;
+    }
+
     public boolean isActive() {
         return m_active;
     }
@@ -56,6 +91,8 @@ public abstract class AutoModeBase {
 
     public void runAction(Action action) throws AutoModeEndedException {
         isActiveWithThrow();
+        ActionTracer tracer = ActionTracer.getInstance();
+        tracer.started(null, action);
         action.start();
 
         while (isActiveWithThrow() && !action.isFinished()) {
@@ -69,8 +106,18 @@ public abstract class AutoModeBase {
             }
         }
 
+        tracer.finished(action);
         action.done();
     }
 
+    /**
+     * Runs each action in turn, e.g. the ones AutoPlanActions built.
+     */
+    public void runActions(List<Action> actions) throws AutoModeEndedException {
+        for (Action action : actions) {
+            runAction(action);
+        }
+    }
+
     public abstract Pose2d getStartingPose();
 }
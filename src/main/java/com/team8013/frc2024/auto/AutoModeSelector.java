@@ -3,9 +3,18 @@ package com.team8013.frc2024.auto;
 import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+import com.team8013.frc2024.Robot;
 import com.team8013.frc2024.auto.modes.*;
+import com.team8013.frc2024.shuffleboard.ShuffleBoardInteractions;
 
 public class AutoModeSelector {
     public enum DesiredMode {
@@ -22,16 +31,72 @@ public class AutoModeSelector {
         MID_START_3_PIECE,
         MID_START_3_PIECE_AMP_SIDE,
         FAST_CHAOS,
-        STAGE_SIDE_STRAIGHT_TO_MIDDLE
+        STAGE_SIDE_STRAIGHT_TO_MIDDLE;
+
+        /**
+         * @return the paths the mode follows, for TrajectoryOptimizer. Doesn't
+         *         build the mode, so it's safe off the robot.
+         */
+        public List<AutoPath> getPaths() {
+            switch (this) {
+                case ONE_NOTE:
+                    return OneNote.kPaths;
+                case TWO_AMP_SIDE:
+                    return TwoAmpSide.kPaths;
+                case TWO_STAGE_SIDE:
+                    return TwoStageSide.kPaths;
+                case TWO_MIDDLE:
+                    return TwoMiddle.kPaths;
+                case CAUSE_CHAOS_STAGE_SIDE:
+                    return CauseChaosStageSide.kPaths;
+                case MIDDLE_AROUND:
+                    return TwoAround.kPaths;
+                case FOUR_PIECE:
+                    return FourPieceMiddleStart.kPaths;
+                case MID_START_3_PIECE:
+                    return ThreePieceMiddleStart.kPaths;
+                case MID_START_3_PIECE_AMP_SIDE:
+                    return ThreePieceMiddleStartAmpSide.kPaths;
+                case FAST_CHAOS:
+                    return FastChaos.kPaths;
+                case STAGE_SIDE_STRAIGHT_TO_MIDDLE:
+                    return StageStraightToMiddle.kPaths;
+                default:
+                    return List.of();
+            }
+        }
     }
 
+    private static final int kBuilderThreads = 2;
+
     private DesiredMode mCachedDesiredMode = DesiredMode.DO_NOTHING;
+    private boolean mCachedFlip = false;
+
+    // swapped in whole once the selected mode has finished building
+    private final AtomicReference<Optional<AutoModeBase>> mAutoMode = new AtomicReference<>(Optional.empty());
 
-    private Optional<AutoModeBase> mAutoMode = Optional.empty();
+    // every mode gets built for both alliances in the background, keyed by
+    // mode name and flip
+    private final ConcurrentHashMap<String, CompletableFuture<Optional<AutoModeBase>>> mBuiltModes = new ConcurrentHashMap<>();
+    private final ExecutorService mBuilderPool;
+
+    private String mPendingKey = null;
+    private long mSelectionStartNanos = 0;
+    private double mLastSelectionLatencyMs = 0.0;
+    private double mTotalBuildMs = 0.0;
+    private boolean mPushTrajectories = false;
 
     private static SendableChooser<DesiredMode> mModeChooser = new SendableChooser<>();
 
     public AutoModeSelector() {
+        AtomicInteger threadCount = new AtomicInteger();
+        mBuilderPool = Executors.newFixedThreadPool(kBuilderThreads, (r) -> {
+            Thread thread = new Thread(r, "AutoModeBuilder-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+
         mModeChooser.setDefaultOption("Do Nothing", DesiredMode.DO_NOTHING);
         mModeChooser.setDefaultOption("One Note", DesiredMode.ONE_NOTE);
         //mModeChooser.setDefaultOption("Test Auto Note Pickup", DesiredMode.TEST_AUTO_NOTE_PICKUP);
@@ -48,16 +113,104 @@ public class AutoModeSelector {
         SmartDashboard.putData("Auto Mode", mModeChooser);
     }
 
+    /**
+     * Starts building every auto mode for both alliances on the builder threads.
+     * Called once from robotInit so that picking a mode while disabled is just a
+     * lookup.
+     */
+    public void buildAllAutoModes() {
+        long start = System.nanoTime();
+        CompletableFuture<?>[] builds = new CompletableFuture<?>[DesiredMode.values().length * 2];
+        int i = 0;
+        for (DesiredMode mode : DesiredMode.values()) {
+            builds[i++] = getOrBuild(mode, false);
+            builds[i++] = getOrBuild(mode, true);
+        }
+        CompletableFuture.allOf(builds).whenComplete((v, t) -> {
+            mTotalBuildMs = (System.nanoTime() - start) / 1.0e6;
+            System.out.println("Built all auto modes in " + mTotalBuildMs + " ms");
+        });
+    }
+
+    /**
+     * Picks up the mode selected on the dashboard for the current alliance. The
+     * alliance is part of the cache key so a changed alliance only swaps to the
+     * other prebuilt copy, force_regen is kept for callers that want the current
+     * selection looked up again.
+     */
     public void updateModeCreator(boolean force_regen) {
         DesiredMode desiredMode = mModeChooser.getSelected();
         if (desiredMode == null) {
             desiredMode = DesiredMode.DO_NOTHING;
         }
-        if (mCachedDesiredMode != desiredMode || force_regen) {
-            System.out.println("Auto selection changed, updating creator: desiredMode->" + desiredMode.name());
-            mAutoMode = getAutoModeForParams(desiredMode);
+        boolean flip = Robot.flip_trajectories;
+        String key = getKey(desiredMode, flip);
+        if (mCachedDesiredMode != desiredMode || mCachedFlip != flip || (force_regen && mPendingKey == null
+                && !mAutoMode.get().isPresent())) {
+            System.out.println("Auto selection changed, updating creator: desiredMode->" + desiredMode.name()
+                    + " flip->" + flip);
+            mPendingKey = key;
+            mSelectionStartNanos = System.nanoTime();
+            getOrBuild(desiredMode, flip);
         }
         mCachedDesiredMode = desiredMode;
+        mCachedFlip = flip;
+
+        if (mPendingKey != null) {
+            CompletableFuture<Optional<AutoModeBase>> build = mBuiltModes.get(mPendingKey);
+            if (build != null && build.isDone()) {
+                swapIn(build.join());
+            }
+        }
+    }
+
+    /**
+     * Blocks until the selected mode is built, only waits if auto starts before
+     * the background build has caught up.
+     */
+    public Optional<AutoModeBase> awaitAutoMode() {
+        if (mPendingKey != null) {
+            CompletableFuture<Optional<AutoModeBase>> build = mBuiltModes.get(mPendingKey);
+            if (build != null) {
+                swapIn(build.join());
+            }
+        }
+        return getAutoMode();
+    }
+
+    private void swapIn(Optional<AutoModeBase> autoMode) {
+        mAutoMode.set(autoMode);
+        mPendingKey = null;
+        mLastSelectionLatencyMs = (System.nanoTime() - mSelectionStartNanos) / 1.0e6;
+        mPushTrajectories = true;
+    }
+
+    private CompletableFuture<Optional<AutoModeBase>> getOrBuild(DesiredMode mode, boolean flip) {
+        return mBuiltModes.computeIfAbsent(getKey(mode, flip), (k) -> submitBuild(mode, flip));
+    }
+
+    private CompletableFuture<Optional<AutoModeBase>> submitBuild(DesiredMode mode, boolean flip) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            Optional<AutoModeBase> autoMode;
+            AutoTrajectoryReader.setFlipOverride(flip);
+            try {
+                autoMode = getAutoModeForParams(mode);
+            } catch (Exception e) {
+                System.err.println("Failed to build auto mode " + mode + ": " + e.getMessage());
+                autoMode = Optional.empty();
+            } finally {
+                AutoTrajectoryReader.setFlipOverride(null);
+            }
+            double buildMs = (System.nanoTime() - start) / 1.0e6;
+            SmartDashboard.putNumber("Auto Build Ms/" + getKey(mode, flip), buildMs);
+            System.out.println("Built auto mode " + getKey(mode, flip) + " in " + buildMs + " ms");
+            return autoMode;
+        }, mBuilderPool);
+    }
+
+    private static String getKey(DesiredMode mode, boolean flip) {
+        return mode.name() + ":" + flip;
     }
 
     private Optional<AutoModeBase> getAutoModeForParams(DesiredMode mode) {
@@ -108,20 +261,43 @@ public class AutoModeSelector {
         return mCachedDesiredMode;
     }
 
+    /**
+     * Clears the selection and rebuilds any cached mode that has already been run,
+     * since a mode holds on to its actions and can't be run twice.
+     */
     public void reset() {
-        mAutoMode = Optional.empty();
+        mAutoMode.set(Optional.empty());
         mCachedDesiredMode = null;
+        mPendingKey = null;
+        for (DesiredMode mode : DesiredMode.values()) {
+            for (boolean flip : new boolean[] { false, true }) {
+                String key = getKey(mode, flip);
+                CompletableFuture<Optional<AutoModeBase>> build = mBuiltModes.get(key);
+                if (build != null && build.isDone() && build.join().map(AutoModeBase::hasRun).orElse(false)) {
+                    mBuiltModes.put(key, submitBuild(mode, flip));
+                }
+            }
+        }
     }
 
     public void outputToSmartDashboard() {
-        SmartDashboard.putString("AutoModeSelected", mCachedDesiredMode.name());
+        if (mCachedDesiredMode != null) {
+            SmartDashboard.putString("AutoModeSelected", mCachedDesiredMode.name());
+        }
+        SmartDashboard.putBoolean("Auto Mode Ready", mPendingKey == null && mAutoMode.get().isPresent());
+        SmartDashboard.putNumber("Auto Selection Latency Ms", mLastSelectionLatencyMs);
+        SmartDashboard.putNumber("Auto Total Build Ms", mTotalBuildMs);
+
+        // dashboard calls stay on the main thread
+        if (mPushTrajectories) {
+            mPushTrajectories = false;
+            mAutoMode.get().ifPresent((autoMode) -> ShuffleBoardInteractions.getInstance().mFieldView
+                    .addTrajectories("Traj", autoMode.getTrajectories()));
+        }
     }
 
     public Optional<AutoModeBase> getAutoMode() {
-        if (!mAutoMode.isPresent()) {
-            return Optional.empty();
-        }
-        return mAutoMode;
+        return mAutoMode.get();
     }
 
     public boolean isDriveByCamera() {
@@ -0,0 +1,47 @@
+package com.team8013.frc2024.auto;
+
+import java.nio.file.Path;
+
+import com.team8013.frc2024.Constants;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.trajectory.TrajectoryConfig;
+
+/**
+ * A PathWeaver path as an auto mode follows it: the speed and acceleration
+ * it's generated with, the robot's heading when it starts and the heading the
+ * trajectory action asks for. Modes load their trajectories from these and
+ * TrajectoryOptimizer optimizes the same ones, see DesiredMode.getPaths.
+ */
+public class AutoPath {
+    public final String path;
+    public final double maxSpeed;
+    public final double maxAccel;
+    public final double startSpeed;
+    public final double endSpeed;
+    public final double startHeading; // degrees, the robot's heading when the path starts
+    public final double endHeading; // degrees, the heading the trajectory action asks for
+
+    public AutoPath(String path, double maxSpeed, double maxAccel, double startSpeed, double endSpeed,
+            double startHeading, double endHeading) {
+        this.path = path;
+        this.maxSpeed = maxSpeed;
+        this.maxAccel = maxAccel;
+        this.startSpeed = startSpeed;
+        this.endSpeed = endSpeed;
+        this.startHeading = startHeading;
+        this.endHeading = endHeading;
+    }
+
+    public TrajectoryConfig createConfig() {
+        return Constants.AutoConstants.createConfig(maxSpeed, maxAccel, startSpeed, endSpeed);
+    }
+
+    public Rotation2d getEndRotation() {
+        return Rotation2d.fromDegrees(endHeading);
+    }
+
+    public String getName() {
+        return Path.of(path).getFileName().toString().replace(".path", "");
+    }
+}
@@ -0,0 +1,74 @@
+package com.team8013.frc2024.auto;
+
+import java.util.function.Consumer;
+
+/**
+ * The steps of an auto routine after the odometry reset, written once by the
+ * mode. On the robot AutoPlanActions turns them into actions, and the
+ * simulator turns them into an AutoScript, so the two can't drift apart.
+ */
+public interface AutoPlan {
+
+    /**
+     * autoShot, wait, disableAutoShot
+     */
+    AutoPlan shoot(double seconds);
+
+    /**
+     * autoShot and wait, leaving it on
+     */
+    AutoPlan keepShooting(double seconds);
+
+    /**
+     * autoShot left on until the end of auto
+     */
+    AutoPlan shootUntilEnd();
+
+    AutoPlan waitFor(double seconds);
+
+    /**
+     * setSuperstuctureIntakingGround
+     */
+    AutoPlan intake();
+
+    /**
+     * setSuperstuctureStow
+     */
+    AutoPlan stow();
+
+    /**
+     * setSuperstuctureTransferToShooter
+     */
+    AutoPlan transfer();
+
+    /**
+     * setAutoSnapToTarget(true)
+     */
+    AutoPlan snapToTarget();
+
+    /**
+     * setAutoHeading, in degrees
+     */
+    AutoPlan heading(double degrees);
+
+    /**
+     * Waits for the robot to cross x, given on the red side
+     */
+    AutoPlan waitToPassX(double x);
+
+    /**
+     * Follows the path with SwerveTrajectoryAction while the steps alongside run
+     * in series.
+     */
+    AutoPlan follow(AutoPath path, Consumer<AutoPlan> alongside);
+
+    /**
+     * Follows the path with ReplanningTrajectoryAction, for picking up notes.
+     */
+    AutoPlan followReplanning(AutoPath path, Consumer<AutoPlan> alongside);
+
+    default AutoPlan follow(AutoPath path) {
+        return follow(path, alongside -> {
+        });
+    }
+}
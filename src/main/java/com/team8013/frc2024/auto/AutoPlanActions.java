@@ -0,0 +1,131 @@
+package com.team8013.frc2024.auto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.team8013.frc2024.auto.actions.Action;
+import com.team8013.frc2024.auto.actions.LambdaAction;
+import com.team8013.frc2024.auto.actions.ParallelAction;
+import com.team8013.frc2024.auto.actions.ReplanningTrajectoryAction;
+import com.team8013.frc2024.auto.actions.SeriesAction;
+import com.team8013.frc2024.auto.actions.SwerveTrajectoryAction;
+import com.team8013.frc2024.auto.actions.WaitAction;
+import com.team8013.frc2024.auto.actions.WaitToPassXCoordinateAction;
+import com.team8013.frc2024.controlboard.ControlBoard;
+import com.team8013.frc2024.subsystems.Drive;
+import com.team8013.frc2024.subsystems.Superstructure;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+
+/**
+ * Turns an AutoPlan into the actions the mode runs one after another, a path
+ * with steps alongside it becoming a ParallelAction of the trajectory action
+ * and a SeriesAction of the steps.
+ */
+public class AutoPlanActions implements AutoPlan {
+
+    private final Superstructure mSuperstructure = Superstructure.getInstance();
+
+    private final Map<AutoPath, Trajectory> mTrajectories;
+    private final List<Action> mActions = new ArrayList<>();
+
+    /**
+     * @param trajectories the mode's loaded trajectories for the paths it
+     *                     follows
+     */
+    public AutoPlanActions(Map<AutoPath, Trajectory> trajectories) {
+        mTrajectories = trajectories;
+    }
+
+    public List<Action> getActions() {
+        return Collections.unmodifiableList(mActions);
+    }
+
+    @Override
+    public AutoPlan shoot(double seconds) {
+        add(new LambdaAction(() -> mSuperstructure.autoShot()));
+        add(new WaitAction(seconds));
+        return add(new LambdaAction(() -> mSuperstructure.disableAutoShot()));
+    }
+
+    @Override
+    public AutoPlan keepShooting(double seconds) {
+        add(new LambdaAction(() -> mSuperstructure.autoShot()));
+        return add(new WaitAction(seconds));
+    }
+
+    @Override
+    public AutoPlan shootUntilEnd() {
+        return add(new LambdaAction(() -> mSuperstructure.autoShot()));
+    }
+
+    @Override
+    public AutoPlan waitFor(double seconds) {
+        return add(new WaitAction(seconds));
+    }
+
+    @Override
+    public AutoPlan intake() {
+        return add(new LambdaAction(() -> mSuperstructure.setSuperstuctureIntakingGround()));
+    }
+
+    @Override
+    public AutoPlan stow() {
+        return add(new LambdaAction(() -> mSuperstructure.setSuperstuctureStow()));
+    }
+
+    @Override
+    public AutoPlan transfer() {
+        return add(new LambdaAction(() -> mSuperstructure.setSuperstuctureTransferToShooter()));
+    }
+
+    @Override
+    public AutoPlan snapToTarget() {
+        return add(new LambdaAction(() -> ControlBoard.getInstance().setAutoSnapToTarget(true)));
+    }
+
+    @Override
+    public AutoPlan heading(double degrees) {
+        return add(new LambdaAction(() -> Drive.getInstance().setAutoHeading(Rotation2d.fromDegrees(degrees))));
+    }
+
+    @Override
+    public AutoPlan waitToPassX(double x) {
+        return add(new WaitToPassXCoordinateAction(x));
+    }
+
+    @Override
+    public AutoPlan follow(AutoPath path, Consumer<AutoPlan> alongside) {
+        return follow(new SwerveTrajectoryAction(getTrajectory(path), path.getEndRotation()), alongside);
+    }
+
+    @Override
+    public AutoPlan followReplanning(AutoPath path, Consumer<AutoPlan> alongside) {
+        return follow(new ReplanningTrajectoryAction(getTrajectory(path), path.getEndRotation()), alongside);
+    }
+
+    private AutoPlan follow(Action trajectoryAction, Consumer<AutoPlan> alongside) {
+        AutoPlanActions steps = new AutoPlanActions(mTrajectories);
+        alongside.accept(steps);
+        if (steps.mActions.isEmpty()) {
+            return add(trajectoryAction);
+        }
+        return add(new ParallelAction(List.of(trajectoryAction, new SeriesAction(steps.mActions))));
+    }
+
+    private Trajectory getTrajectory(AutoPath path) {
+        if (!mTrajectories.containsKey(path)) {
+            throw new IllegalArgumentException(path.getName() + " wasn't loaded by the mode");
+        }
+        return mTrajectories.get(path);
+    }
+
+    private AutoPlan add(Action action) {
+        mActions.add(action);
+        return this;
+    }
+}
@@ -1,8 +1,11 @@
 package com.team8013.frc2024.auto;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
+import com.team8013.frc2024.Robot;
+
 import edu.wpi.first.math.trajectory.Trajectory;
 import edu.wpi.first.math.trajectory.TrajectoryConfig;
 import edu.wpi.first.math.trajectory.TrajectoryGenerator;
@@ -11,10 +14,28 @@ import edu.wpi.first.wpilibj.Filesystem;
 
 public class AutoTrajectoryReader {
 
+    // lets auto modes be built for either alliance from a background thread
+    // without touching Robot.flip_trajectories
+    private static final ThreadLocal<Boolean> kFlipOverride = new ThreadLocal<>();
+
+    public static void setFlipOverride(Boolean flip) {
+        if (flip == null) {
+            kFlipOverride.remove();
+        } else {
+            kFlipOverride.set(flip);
+        }
+    }
+
+    private static boolean shouldFlip() {
+        Boolean flip = kFlipOverride.get();
+        return flip != null ? flip : Robot.flip_trajectories;
+    }
+
     public static Trajectory generateTrajectoryFromFile(String file_path, TrajectoryConfig config) {
         try {
             Path traj_path = Filesystem.getDeployDirectory().toPath().resolve(file_path);
-            TrajectoryGenerator.ControlVectorList control_vectors = WaypointReader.getControlVectors(traj_path);
+            TrajectoryGenerator.ControlVectorList control_vectors = WaypointReader.getControlVectors(traj_path,
+                    shouldFlip());
 
             return TrajectoryGenerator.generateTrajectory(control_vectors, config);
         } catch (IOException ex) {
@@ -24,4 +45,26 @@ public class AutoTrajectoryReader {
 
     }
 
+    /**
+     * Loads the version of a path TrajectoryOptimizer timed against the swerve
+     * module limits if one has been deployed, otherwise generates it from the
+     * PathWeaver file with the path's speed and acceleration like
+     * generateTrajectoryFromFile. An optimized trajectory also carries a
+     * heading profile the drive follows until a setAutoHeading call overrides
+     * it.
+     */
+    public static Trajectory loadTrajectory(AutoPath path) {
+        Path optimized_path = Filesystem.getDeployDirectory().toPath()
+                .resolve(TimedTrajectoryFile.getOptimizedPath(path));
+        if (Files.exists(optimized_path)) {
+            try {
+                return TimedTrajectoryFile.read(optimized_path, shouldFlip());
+            } catch (IOException | RuntimeException ex) {
+                DriverStation.reportError("Unable to read optimized trajectory: " + optimized_path + ", generating "
+                        + path.path + " instead", ex.getStackTrace());
+            }
+        }
+        return generateTrajectoryFromFile(path.path, path.createConfig());
+    }
+
 }
@@ -0,0 +1,299 @@
+package com.team8013.frc2024.auto;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.team8013.frc2024.auto.ActionTrace.Kind;
+import com.team8013.frc2024.auto.ActionTrace.Node;
+import com.team8013.lib.stats.RunningStats;
+
+/**
+ * Finds which actions bound how long an auto routine takes, from the traces
+ * ActionTracer wrote on the robot or AutoSimulator made.
+ * <p>
+ * A trace is a series-parallel graph, so its critical path falls out of one
+ * pass down the tree. An action's slack is how much longer it could have
+ * taken without the routine finishing later: a series passes its slack on to
+ * each of its children, and a parallel action adds how much sooner each child
+ * finished than the last one. Everything with no slack is on the critical
+ * path. Taking time out of a critical action only helps until another branch
+ * of a parallel it's in becomes the last to finish, so each action's saving is
+ * the smallest of those margins on the way down, capped at its own duration.
+ * <p>
+ * Across runs it reports, for every fixed wait, how often it was critical and
+ * how much the runs would have saved with it shortened to zero. That's an
+ * upper bound: a wait may be covering for a mechanism the trace can't see. It
+ * also reports the time spent between actions on the critical path, which is
+ * mostly the loop tick every SeriesAction child costs before the next starts.
+ *
+ * <pre>
+ * ./gradlew analyzeAutoTiming --args="path/to/robotlogs/autotraces"
+ * </pre>
+ */
+public class CriticalPathAnalyzer {
+
+    // branches finishing within a tick of each other are both critical
+    private static final double kTolerance = 0.005;
+    // shorter critical actions are left out of the one line path
+    private static final double kMinListedDuration = 0.1;
+    private static final int kSummaryWaits = 3;
+
+    public static class Analysis {
+        public final ActionTrace trace;
+        public final double duration;
+        public final double[] slack; // by node id
+        public final double[] saving; // by node id
+        public double overhead = 0.0; // s between actions on the critical path
+
+        Analysis(ActionTrace trace) {
+            this.trace = trace;
+            duration = trace.getRoot().getDuration();
+            slack = new double[trace.getNodes().size()];
+            saving = new double[trace.getNodes().size()];
+        }
+
+        public boolean isCritical(Node node) {
+            return slack[node.id] <= kTolerance;
+        }
+
+        /**
+         * @return the actions on the critical path, in the order they ran
+         */
+        public List<Node> getCriticalActions() {
+            List<Node> actions = new ArrayList<>();
+            for (Node node : trace.getNodes()) {
+                if (node.kind == Kind.ACTION && isCritical(node)) {
+                    actions.add(node);
+                }
+            }
+            actions.sort((a, b) -> Double.compare(a.start, b.start));
+            return actions;
+        }
+
+        public String getCriticalPathString() {
+            StringBuilder path = new StringBuilder();
+            for (Node node : getCriticalActions()) {
+                if (node.getDuration() < kMinListedDuration) {
+                    continue;
+                }
+                if (path.length() > 0) {
+                    path.append(" -> ");
+                }
+                path.append(String.format(Locale.ROOT, "%s %.2f", node.label, node.getDuration()));
+            }
+            return path.toString();
+        }
+
+        public String getSummary() {
+            StringBuilder summary = new StringBuilder(String.format(Locale.ROOT,
+                    "Auto %s took %.2f s, %.2f s of it between actions%n  critical path: %s", trace.getMode(),
+                    duration, overhead, getCriticalPathString()));
+            List<Node> waits = new ArrayList<>();
+            for (Node node : trace.getNodes()) {
+                if (node.isFixedWait() && saving[node.id] > kTolerance) {
+                    waits.add(node);
+                }
+            }
+            waits.sort((a, b) -> Double.compare(saving[b.id], saving[a.id]));
+            for (int i = 0; i < Math.min(kSummaryWaits, waits.size()); i++) {
+                Node wait = waits.get(i);
+                summary.append(String.format(Locale.ROOT, "%n  %s at %s could save up to %.2f s", wait.label,
+                        wait.path, saving[wait.id]));
+            }
+            return summary.toString();
+        }
+    }
+
+    /**
+     * @param trace a completed run
+     */
+    public static Analysis analyze(ActionTrace trace) {
+        Analysis analysis = new Analysis(trace);
+        visit(trace.getRoot(), 0.0, Double.POSITIVE_INFINITY, analysis);
+        return analysis;
+    }
+
+    /**
+     * @param slack  how much later this node could finish without the routine
+     *               finishing later
+     * @param margin how much shorter this node could get before another branch
+     *               becomes critical
+     */
+    private static void visit(Node node, double slack, double margin, Analysis analysis) {
+        double duration = getEnd(node) - node.start;
+        analysis.slack[node.id] = slack;
+        analysis.saving[node.id] = slack <= kTolerance ? Math.max(0.0, Math.min(duration, margin)) : 0.0;
+
+        if (node.kind == Kind.PARALLEL) {
+            for (Node child : node.children) {
+                double othersEnd = Double.NEGATIVE_INFINITY;
+                for (Node other : node.children) {
+                    if (other != child) {
+                        othersEnd = Math.max(othersEnd, getEnd(other));
+                    }
+                }
+                double end = getEnd(child);
+                double lastEnd = Math.max(end, othersEnd);
+                visit(child, slack + lastEnd - end, Math.min(margin, Math.max(0.0, end - othersEnd)), analysis);
+            }
+        } else {
+            double busy = 0.0;
+            for (Node child : node.children) {
+                busy += getEnd(child) - child.start;
+                visit(child, slack, margin, analysis);
+            }
+            if (!node.children.isEmpty() && slack <= kTolerance) {
+                analysis.overhead += Math.max(0.0, duration - busy);
+            }
+        }
+    }
+
+    // a child that never saw itself finish ended with its parent
+    private static double getEnd(Node node) {
+        if (!Double.isNaN(node.end)) {
+            return node.end;
+        }
+        return node.parent == null ? node.start : getEnd(node.parent);
+    }
+
+    private static class NodeStats {
+        final Node first;
+        final RunningStats duration = new RunningStats();
+        final RunningStats slack = new RunningStats();
+        final RunningStats saving = new RunningStats();
+        int critical = 0;
+
+        NodeStats(Node first) {
+            this.first = first;
+        }
+
+        double getCriticalFraction() {
+            return (double) critical / duration.getCount();
+        }
+    }
+
+    /**
+     * Prints a report for every mode in the traces. Runs that auto ended before
+     * they finished are left out, they don't have a critical path.
+     */
+    public static void report(List<ActionTrace> traces) {
+        Map<String, List<ActionTrace>> modes = new LinkedHashMap<>();
+        for (ActionTrace trace : traces) {
+            modes.computeIfAbsent(trace.getMode(), k -> new ArrayList<>()).add(trace);
+        }
+        for (Map.Entry<String, List<ActionTrace>> mode : modes.entrySet()) {
+            report(mode.getKey(), mode.getValue());
+            System.out.println();
+        }
+    }
+
+    private static void report(String mode, List<ActionTrace> traces) {
+        RunningStats duration = new RunningStats();
+        RunningStats overhead = new RunningStats();
+        // keyed by where the action is in the routine and what it is, so a
+        // branch the routine didn't always take is only counted when it did
+        Map<String, NodeStats> nodes = new LinkedHashMap<>();
+        int skipped = 0;
+        for (ActionTrace trace : traces) {
+            if (!trace.isCompleted()) {
+                skipped++;
+                continue;
+            }
+            Analysis analysis = analyze(trace);
+            duration.add(analysis.duration);
+            overhead.add(analysis.overhead);
+            for (Node node : trace.getNodes()) {
+                if (node.kind != Kind.ACTION) {
+                    continue;
+                }
+                NodeStats stats = nodes.computeIfAbsent(node.path + " " + node.label, k -> new NodeStats(node));
+                stats.duration.add(getEnd(node) - node.start);
+                stats.slack.add(analysis.slack[node.id]);
+                stats.saving.add(analysis.saving[node.id]);
+                stats.critical += analysis.isCritical(node) ? 1 : 0;
+            }
+        }
+
+        System.out.println(String.format(Locale.ROOT, "%s: %d runs, %d ended early and left out", mode,
+                duration.getCount(), skipped));
+        if (duration.getCount() == 0) {
+            return;
+        }
+        System.out.println(String.format(Locale.ROOT, "Duration: mean %.2f s  min %.2f  max %.2f",
+                duration.getMean(), duration.getMin(), duration.getMax()));
+        System.out.println(String.format(Locale.ROOT, "Between actions on the critical path: mean %.2f s",
+                overhead.getMean()));
+
+        List<NodeStats> criticalWaits = new ArrayList<>();
+        List<NodeStats> bounding = new ArrayList<>();
+        int slackWaits = 0;
+        for (NodeStats stats : nodes.values()) {
+            if (stats.first.isFixedWait()) {
+                if (stats.critical > 0) {
+                    criticalWaits.add(stats);
+                } else {
+                    slackWaits++;
+                }
+            } else if (stats.getCriticalFraction() >= 0.5 && stats.duration.getMean() >= kMinListedDuration) {
+                bounding.add(stats);
+            }
+        }
+
+        System.out.println();
+        System.out.println("Fixed waits on the critical path, and how much shorter the runs would have been with"
+                + " each at zero:");
+        System.out.println(String.format("%-12s %-24s %6s %6s %7s %8s %8s", "path", "action", "wait", "crit%",
+                "slack", "save min", "save avg"));
+        criticalWaits.sort((a, b) -> Double.compare(b.saving.getMean(), a.saving.getMean()));
+        for (NodeStats stats : criticalWaits) {
+            System.out.println(String.format(Locale.ROOT, "%-12s %-24s %6.2f %6.0f %7.3f %8.3f %8.3f",
+                    stats.first.path, stats.first.label, stats.first.wait, 100.0 * stats.getCriticalFraction(),
+                    stats.slack.getMean(), stats.saving.getMin(), stats.saving.getMean()));
+        }
+        if (slackWaits > 0) {
+            System.out.println(slackWaits + " other fixed waits were off the critical path in every run, shortening"
+                    + " them won't help");
+        }
+
+        System.out.println();
+        System.out.println("Critical in at least half the runs:");
+        System.out.println(String.format("%-12s %-24s %6s %6s %8s", "path", "action", "mean", "crit%", "save avg"));
+        bounding.sort((a, b) -> Double.compare(b.saving.getMean(), a.saving.getMean()));
+        for (NodeStats stats : bounding) {
+            System.out.println(String.format(Locale.ROOT, "%-12s %-24s %6.2f %6.0f %8.3f", stats.first.path,
+                    stats.first.label, stats.duration.getMean(), 100.0 * stats.getCriticalFraction(),
+                    stats.saving.getMean()));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        for (String arg : args) {
+            paths.add(Path.of(arg));
+        }
+        if (paths.isEmpty()) {
+            System.err.println("Usage: CriticalPathAnalyzer <trace dirs or files>");
+            System.exit(1);
+        }
+
+        List<Path> files = ActionTrace.find(paths);
+        if (files.isEmpty()) {
+            System.out.println("No auto traces found");
+            return;
+        }
+        List<ActionTrace> traces = new ArrayList<>();
+        for (Path file : files) {
+            try {
+                traces.add(ActionTrace.read(file));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Skipping " + file + ": " + e.getMessage());
+            }
+        }
+        report(traces);
+    }
+}
@@ -0,0 +1,494 @@
+package com.team8013.frc2024.auto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.team8013.frc2024.FieldLayout;
+import com.team8013.frc2024.Robot;
+import com.team8013.lib.geometry.MutablePose2d;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Fires callbacks when the robot enters, leaves or stays in regions of the
+ * field. Regions are given the way paths are drawn, on the red side, and are
+ * flipped across the field when they're registered if
+ * Robot.flip_trajectories is set.
+ * <p>
+ * Drive hands over one pose per loop. Bounded regions are filed in a uniform
+ * grid over the field by their bounding boxes, so a pose is only tested
+ * against the regions whose boxes cover its cell, however many are
+ * registered. Regions without bounds (axis crossings) are tested every time.
+ * <p>
+ * Callbacks run on the loop thread after the engine's lock is released, so
+ * they may register and unregister regions but have to be quick.
+ */
+public class GeofenceEngine {
+
+    private static final double kCellSize = 0.5; // m
+    private static final int kColumns = (int) Math.ceil(FieldLayout.kFieldLength / kCellSize);
+    private static final int kRows = (int) Math.ceil(FieldLayout.kFieldWidth / kCellSize);
+
+    private static GeofenceEngine mInstance;
+
+    public static GeofenceEngine getInstance() {
+        if (mInstance == null) {
+            mInstance = new GeofenceEngine();
+        }
+        return mInstance;
+    }
+
+    private enum Event {
+        ENTER, EXIT, DWELL
+    }
+
+    private final List<Region>[] mCells;
+    private final List<Region> mUnbounded = new ArrayList<>();
+    private final List<Region> mInside = new ArrayList<>();
+    private int mRegionCount = 0;
+
+    private final MutablePose2d mPose = new MutablePose2d();
+    private boolean mHasPose = false;
+    private double mTimestamp = 0.0;
+    private int mTick = 0;
+
+    // events are collected under the lock and fired after it's released
+    private final List<Region> mPendingRegions = new ArrayList<>();
+    private final List<Event> mPendingEvents = new ArrayList<>();
+
+    private double mLastUpdateMs = 0.0;
+    private int mLastTested = 0;
+
+    @SuppressWarnings("unchecked")
+    private GeofenceEngine() {
+        mCells = new List[kColumns * kRows];
+        for (int i = 0; i < mCells.length; i++) {
+            mCells[i] = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Places the region on the field for the current alliance and starts
+     * testing it on the next update. Registering a region twice does nothing.
+     */
+    public synchronized void register(Region region) {
+        if (region.mRegistered) {
+            return;
+        }
+        region.place(Robot.flip_trajectories);
+        region.mRegistered = true;
+        region.mStarted = false;
+        region.mInside = false;
+        region.mDwellFired = false;
+        region.mSeen = mTick;
+        if (mHasPose) {
+            region.begin(mPose.getX(), mPose.getY());
+        }
+
+        if (region.isBounded()) {
+            forEachCell(region, (cell) -> cell.add(region));
+        } else {
+            mUnbounded.add(region);
+        }
+        mRegionCount++;
+    }
+
+    /**
+     * Stops testing the region. Its exit callback is not fired.
+     */
+    public synchronized void unregister(Region region) {
+        if (!region.mRegistered) {
+            return;
+        }
+        region.mRegistered = false;
+        if (region.isBounded()) {
+            forEachCell(region, (cell) -> cell.remove(region));
+        } else {
+            mUnbounded.remove(region);
+        }
+        if (region.mInside) {
+            mInside.remove(region);
+            region.mInside = false;
+        }
+        mRegionCount--;
+    }
+
+    /**
+     * Drops every region, between autonomous routines.
+     */
+    public synchronized void clear() {
+        for (List<Region> cell : mCells) {
+            for (int i = 0; i < cell.size(); i++) {
+                cell.get(i).mRegistered = false;
+            }
+            cell.clear();
+        }
+        for (int i = 0; i < mUnbounded.size(); i++) {
+            mUnbounded.get(i).mRegistered = false;
+        }
+        mUnbounded.clear();
+        mInside.clear();
+        mRegionCount = 0;
+    }
+
+    /**
+     * Tests the pose against the registered regions and fires whatever
+     * callbacks it sets off. Called once a loop with the odometry pose.
+     */
+    public void update(double timestamp, MutablePose2d pose) {
+        long start = System.nanoTime();
+        synchronized (this) {
+            mPose.set(pose);
+            mHasPose = true;
+            mTimestamp = timestamp;
+            mTick++;
+            double x = pose.getX();
+            double y = pose.getY();
+            int tested = 0;
+
+            int cell = getCell(x, y);
+            if (cell >= 0) {
+                List<Region> candidates = mCells[cell];
+                for (int i = 0; i < candidates.size(); i++) {
+                    test(candidates.get(i), x, y, timestamp);
+                }
+                tested += candidates.size();
+            }
+            for (int i = 0; i < mUnbounded.size(); i++) {
+                test(mUnbounded.get(i), x, y, timestamp);
+            }
+            tested += mUnbounded.size();
+
+            // regions that weren't candidates this time are ones whose box
+            // the robot has left, so it's outside them
+            for (int i = mInside.size() - 1; i >= 0; i--) {
+                Region region = mInside.get(i);
+                if (region.mSeen != mTick) {
+                    region.mInside = false;
+                    mInside.remove(i);
+                    queue(region, Event.EXIT);
+                } else if (!region.mDwellFired && region.mOnDwell != null
+                        && timestamp - region.mEnteredAt >= region.mDwellTime) {
+                    region.mDwellFired = true;
+                    queue(region, Event.DWELL);
+                }
+            }
+            mLastTested = tested;
+        }
+        firePending();
+        mLastUpdateMs = (System.nanoTime() - start) / 1.0e6;
+    }
+
+    private void test(Region region, double x, double y, double timestamp) {
+        region.mSeen = mTick;
+        if (!region.mStarted) {
+            region.begin(x, y);
+        }
+        boolean inside = region.contains(x, y);
+        if (inside == region.mInside) {
+            return;
+        }
+        region.mInside = inside;
+        if (inside) {
+            region.mEnteredAt = timestamp;
+            region.mDwellFired = false;
+            mInside.add(region);
+            queue(region, Event.ENTER);
+        } else {
+            mInside.remove(region);
+            queue(region, Event.EXIT);
+        }
+    }
+
+    private void queue(Region region, Event event) {
+        mPendingRegions.add(region);
+        mPendingEvents.add(event);
+    }
+
+    private void firePending() {
+        while (true) {
+            Region region;
+            Event event;
+            synchronized (this) {
+                if (mPendingRegions.isEmpty()) {
+                    return;
+                }
+                region = mPendingRegions.remove(0);
+                event = mPendingEvents.remove(0);
+                // an earlier callback may have unregistered it
+                if (!region.mRegistered) {
+                    continue;
+                }
+            }
+            Runnable callback = event == Event.ENTER ? region.mOnEnter
+                    : event == Event.EXIT ? region.mOnExit : region.mOnDwell;
+            if (callback != null) {
+                callback.run();
+            }
+        }
+    }
+
+    public synchronized boolean hasPose() {
+        return mHasPose;
+    }
+
+    /**
+     * @return the last pose update was called with, copied into out
+     */
+    public synchronized MutablePose2d getPose(MutablePose2d out) {
+        return out.set(mPose);
+    }
+
+    public synchronized double getTimestamp() {
+        return mTimestamp;
+    }
+
+    public synchronized int getRegionCount() {
+        return mRegionCount;
+    }
+
+    public void outputTelemetry() {
+        SmartDashboard.putNumber("Geofences", getRegionCount());
+        SmartDashboard.putNumber("Geofences Tested", mLastTested);
+        SmartDashboard.putNumber("Geofence Update Ms", mLastUpdateMs);
+    }
+
+    private static int getCell(double x, double y) {
+        int column = (int) Math.floor(x / kCellSize);
+        int row = (int) Math.floor(y / kCellSize);
+        if (column < 0 || column >= kColumns || row < 0 || row >= kRows) {
+            return -1;
+        }
+        return row * kColumns + column;
+    }
+
+    private interface CellVisitor {
+        void visit(List<Region> cell);
+    }
+
+    private void forEachCell(Region region, CellVisitor visitor) {
+        int minColumn = Math.max(0, (int) Math.floor(region.mMinX / kCellSize));
+        int maxColumn = Math.min(kColumns - 1, (int) Math.floor(region.mMaxX / kCellSize));
+        int minRow = Math.max(0, (int) Math.floor(region.mMinY / kCellSize));
+        int maxRow = Math.min(kRows - 1, (int) Math.floor(region.mMaxY / kCellSize));
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                visitor.visit(mCells[row * kColumns + column]);
+            }
+        }
+    }
+
+    /**
+     * An area of the field with its callbacks. Coordinates are meters in the
+     * red-side frame the paths are drawn in.
+     */
+    public static abstract class Region {
+        private final String mName;
+        private Runnable mOnEnter;
+        private Runnable mOnExit;
+        private Runnable mOnDwell;
+        private double mDwellTime = 0.0;
+
+        // bounding box on the field once placed
+        double mMinX, mMaxX, mMinY, mMaxY;
+
+        // engine bookkeeping, guarded by the engine
+        private boolean mRegistered = false;
+        private boolean mStarted = false;
+        private boolean mInside = false;
+        private boolean mDwellFired = false;
+        private double mEnteredAt = 0.0;
+        private int mSeen = 0;
+
+        protected Region(String name) {
+            mName = name;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public Region onEnter(Runnable callback) {
+            mOnEnter = callback;
+            return this;
+        }
+
+        public Region onExit(Runnable callback) {
+            mOnExit = callback;
+            return this;
+        }
+
+        /**
+         * @param seconds how long the robot has to stay inside before the
+         *                callback fires, once per visit
+         */
+        public Region onDwell(double seconds, Runnable callback) {
+            mDwellTime = seconds;
+            mOnDwell = callback;
+            return this;
+        }
+
+        /**
+         * Sets the field coordinates and bounding box, flipped across the
+         * field if flip.
+         */
+        abstract void place(boolean flip);
+
+        abstract boolean contains(double x, double y);
+
+        boolean isBounded() {
+            return true;
+        }
+
+        /**
+         * Called with the first pose the region is tested against.
+         */
+        void begin(double x, double y) {
+            mStarted = true;
+        }
+
+        static double flipX(double x, boolean flip) {
+            return flip ? FieldLayout.kFieldLength - x : x;
+        }
+    }
+
+    public static class Circle extends Region {
+        private final double mCenterX;
+        private final double mCenterY;
+        private final double mRadius;
+        private double mFieldX;
+
+        public Circle(String name, double x, double y, double radius) {
+            super(name);
+            mCenterX = x;
+            mCenterY = y;
+            mRadius = radius;
+        }
+
+        @Override
+        void place(boolean flip) {
+            mFieldX = flipX(mCenterX, flip);
+            mMinX = mFieldX - mRadius;
+            mMaxX = mFieldX + mRadius;
+            mMinY = mCenterY - mRadius;
+            mMaxY = mCenterY + mRadius;
+        }
+
+        @Override
+        boolean contains(double x, double y) {
+            double dx = x - mFieldX;
+            double dy = y - mCenterY;
+            return dx * dx + dy * dy <= mRadius * mRadius;
+        }
+    }
+
+    /**
+     * A simple polygon, vertices in either winding order.
+     */
+    public static class Polygon extends Region {
+        private final double[] mXs;
+        private final double[] mYs;
+        private final double[] mFieldXs;
+
+        /**
+         * @param vertices x0, y0, x1, y1, ...
+         */
+        public Polygon(String name, double... vertices) {
+            super(name);
+            if (vertices.length < 6 || vertices.length % 2 != 0) {
+                throw new IllegalArgumentException("Polygon " + name + " needs at least three x, y pairs");
+            }
+            int n = vertices.length / 2;
+            mXs = new double[n];
+            mYs = new double[n];
+            mFieldXs = new double[n];
+            for (int i = 0; i < n; i++) {
+                mXs[i] = vertices[2 * i];
+                mYs[i] = vertices[2 * i + 1];
+            }
+        }
+
+        public static Polygon rectangle(String name, double minX, double minY, double maxX, double maxY) {
+            return new Polygon(name, minX, minY, maxX, minY, maxX, maxY, minX, maxY);
+        }
+
+        @Override
+        void place(boolean flip) {
+            mMinX = Double.POSITIVE_INFINITY;
+            mMaxX = Double.NEGATIVE_INFINITY;
+            mMinY = Double.POSITIVE_INFINITY;
+            mMaxY = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < mXs.length; i++) {
+                mFieldXs[i] = flipX(mXs[i], flip);
+                mMinX = Math.min(mMinX, mFieldXs[i]);
+                mMaxX = Math.max(mMaxX, mFieldXs[i]);
+                mMinY = Math.min(mMinY, mYs[i]);
+                mMaxY = Math.max(mMaxY, mYs[i]);
+            }
+        }
+
+        @Override
+        boolean contains(double x, double y) {
+            if (x < mMinX || x > mMaxX || y < mMinY || y > mMaxY) {
+                return false;
+            }
+            // even-odd ray cast
+            boolean inside = false;
+            for (int i = 0, j = mXs.length - 1; i < mXs.length; j = i++) {
+                if ((mYs[i] > y) != (mYs[j] > y)
+                        && x < (mFieldXs[j] - mFieldXs[i]) * (y - mYs[i]) / (mYs[j] - mYs[i]) + mFieldXs[i]) {
+                    inside = !inside;
+                }
+            }
+            return inside;
+        }
+    }
+
+    /**
+     * Everything past a line across the field from where the robot was when
+     * the region was registered, so it's entered when the robot crosses the
+     * line. Reaching the line exactly counts as crossing it.
+     */
+    public static class Crossing extends Region {
+        public enum Axis {
+            X, Y
+        }
+
+        private final Axis mAxis;
+        private final double mValue;
+        private double mFieldValue;
+        private double mStartSide;
+
+        public Crossing(String name, Axis axis, double value) {
+            super(name);
+            mAxis = axis;
+            mValue = value;
+        }
+
+        @Override
+        void place(boolean flip) {
+            // flipping only mirrors x
+            mFieldValue = mAxis == Axis.X ? flipX(mValue, flip) : mValue;
+        }
+
+        @Override
+        boolean isBounded() {
+            return false;
+        }
+
+        @Override
+        void begin(double x, double y) {
+            super.begin(x, y);
+            mStartSide = Math.signum(coordinate(x, y) - mFieldValue);
+        }
+
+        @Override
+        boolean contains(double x, double y) {
+            return Math.signum(coordinate(x, y) - mFieldValue) != mStartSide;
+        }
+
+        private double coordinate(double x, double y) {
+            return mAxis == Axis.X ? x : y;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.team8013.frc2024.auto;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.team8013.frc2024.FieldLayout;
+import com.team8013.lib.trajectory.SwerveTimeParameterizer;
+import com.team8013.lib.trajectory.SwerveTimedTrajectory;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+
+/**
+ * Pre-timed trajectories written by TrajectoryOptimizer, one state per line:
+ * time, x, y, direction of travel, curvature, velocity, acceleration and
+ * robot heading. Coordinates are on the field, drawn on the red side like the
+ * PathWeaver files, and flipped on load the same way.
+ */
+public class TimedTrajectoryFile {
+
+    public static final String kExtension = ".traj";
+    private static final String kHeader = "time,x,y,tangent,curvature,velocity,acceleration,heading";
+
+    /**
+     * @return where the optimized version of the path lives, relative to the
+     *         deploy directory. Modes follow the same path with different
+     *         headings, so those are part of the name, e.g.
+     *         paths/optimized/TwoMiddleSmooth_180_180.traj
+     */
+    public static String getOptimizedPath(AutoPath path) {
+        return String.format(Locale.ROOT, "paths/optimized/%s_%.0f_%.0f%s", path.getName(), path.startHeading,
+                path.endHeading, kExtension);
+    }
+
+    public static SwerveTimedTrajectory read(Path path, boolean flip) throws IOException {
+        List<Trajectory.State> states = new ArrayList<>();
+        List<Double> headings = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(path.toFile()))) {
+            String line = reader.readLine();
+            while (line != null) {
+                if (line.isEmpty() || !Character.isDigit(line.charAt(0))) {
+                    line = reader.readLine();
+                    continue;
+                }
+                String[] split = line.split(",");
+                double time = Double.parseDouble(split[0]);
+                double x = Double.parseDouble(split[1]);
+                double y = Double.parseDouble(split[2]);
+                double tangent = Double.parseDouble(split[3]);
+                double curvature = Double.parseDouble(split[4]);
+                double heading = Double.parseDouble(split[7]);
+
+                if (flip) {
+                    x = FieldLayout.kFieldLength - x;
+                    tangent = Math.PI - tangent;
+                    curvature = -curvature;
+                    heading = Math.PI - heading;
+                }
+                states.add(new Trajectory.State(time, Double.parseDouble(split[5]), Double.parseDouble(split[6]),
+                        new Pose2d(x, y, new Rotation2d(tangent)), curvature));
+                headings.add(heading);
+
+                line = reader.readLine();
+            }
+        }
+        if (states.isEmpty()) {
+            throw new IOException("No trajectory states in " + path);
+        }
+
+        double[] headingArray = new double[headings.size()];
+        for (int i = 0; i < headingArray.length; i++) {
+            headingArray[i] = headings.get(i);
+        }
+        return new SwerveTimedTrajectory(states, headingArray);
+    }
+
+    /**
+     * @param comments written above the header, one per line
+     */
+    public static void write(Path path, SwerveTimeParameterizer.TimedPath timed, List<String> comments)
+            throws IOException {
+        Files.createDirectories(path.getParent());
+        double[] headings = timed.getHeadings();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(path.toFile()))) {
+            for (String comment : comments) {
+                writer.write("# " + comment);
+                writer.newLine();
+            }
+            writer.write(kHeader);
+            writer.newLine();
+            for (int i = 0; i < timed.time.length; i++) {
+                writer.write(String.format(Locale.ROOT, "%.4f,%.4f,%.4f,%.5f,%.5f,%.4f,%.4f,%.5f", timed.time[i],
+                        timed.path.x[i], timed.path.y[i], timed.path.tangent[i], timed.path.curvature[i],
+                        timed.velocity[i], timed.acceleration[i], headings[i]));
+                writer.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.team8013.frc2024.auto;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.team8013.frc2024.Constants;
+import com.team8013.lib.trajectory.HeadingProfile;
+import com.team8013.lib.trajectory.SampledPath;
+import com.team8013.lib.trajectory.SwerveLimits;
+import com.team8013.lib.trajectory.SwerveTimeParameterizer;
+import com.team8013.lib.trajectory.SwerveTimeParameterizer.Limit;
+import com.team8013.lib.trajectory.SwerveTimeParameterizer.TimedPath;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.spline.PoseWithCurvature;
+import edu.wpi.first.math.spline.Spline;
+import edu.wpi.first.math.spline.SplineHelper;
+import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+import edu.wpi.first.math.util.Units;
+
+/**
+ * Re-times the auto paths as fast as the swerve modules allow instead of at
+ * the hand-tuned max speed and acceleration each mode uses. For every path it
+ * tries a range of heading profiles (when along the path the robot turns to
+ * its new heading), times each one with SwerveTimeParameterizer and keeps the
+ * fastest. Paths, and the heading profiles within a path, are spread across a
+ * fork/join pool.
+ * <p>
+ * Run on the desktop from the project directory:
+ *
+ * <pre>
+ * ./gradlew optimizeTrajectories --args="--battery 11.0 --write"
+ * </pre>
+ *
+ * The paths, and the speed, acceleration and headings each is followed with,
+ * come from the modes' AutoPath constants through DesiredMode.getPaths. With
+ * --write the results go to deploy/paths/optimized, where the modes pick them
+ * up through AutoTrajectoryReader.loadTrajectory. The mid-path setAutoHeading
+ * calls some modes make aren't modeled, so check a mode still does what it
+ * should before deploying its paths.
+ */
+public class TrajectoryOptimizer {
+
+    private static final double kSampleStep = 0.02; // meters
+
+    // when the turn starts and how long it takes, as fractions of the path
+    private static final double[] kTurnStarts = { 0.0, 0.1, 0.2, 0.3, 0.4, 0.5, 0.6 };
+    private static final double[] kTurnLengths = { 0.1, 0.2, 0.3, 0.4, 0.6, 0.8, 1.0 };
+
+    // fewer heading profiles than this are timed on one thread
+    private static final int kCandidatesPerTask = 4;
+
+    /**
+     * @return every path the auto modes follow, once per set of headings
+     */
+    public static List<AutoPath> getModePaths() {
+        Map<String, AutoPath> paths = new LinkedHashMap<>();
+        for (AutoModeSelector.DesiredMode mode : AutoModeSelector.DesiredMode.values()) {
+            for (AutoPath path : mode.getPaths()) {
+                paths.putIfAbsent(TimedTrajectoryFile.getOptimizedPath(path), path);
+            }
+        }
+        return new ArrayList<>(paths.values());
+    }
+
+    public static class Result {
+        public final AutoPath job;
+        public final double currentTime;
+        public final TimedPath best;
+        public final int candidates;
+
+        Result(AutoPath job, double currentTime, TimedPath best, int candidates) {
+            this.job = job;
+            this.currentTime = currentTime;
+            this.best = best;
+            this.candidates = candidates;
+        }
+
+        public double getTimeSaved() {
+            return currentTime - best.getTotalTime();
+        }
+    }
+
+    private final Path mDeployDirectory;
+    private final SwerveLimits mLimits;
+
+    public TrajectoryOptimizer(Path deployDirectory, SwerveLimits limits) {
+        mDeployDirectory = deployDirectory;
+        mLimits = limits;
+    }
+
+    public List<Result> optimize(List<AutoPath> jobs, int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<PathTask> tasks = new ArrayList<>();
+            for (AutoPath job : jobs) {
+                tasks.add(new PathTask(job));
+            }
+            return pool.invoke(new RecursiveTask<List<Result>>() {
+                @Override
+                protected List<Result> compute() {
+                    invokeAll(tasks);
+                    List<Result> results = new ArrayList<>();
+                    for (PathTask task : tasks) {
+                        results.add(task.join());
+                    }
+                    return results;
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private class PathTask extends RecursiveTask<Result> {
+        private final AutoPath mJob;
+
+        PathTask(AutoPath job) {
+            mJob = job;
+        }
+
+        @Override
+        protected Result compute() {
+            // paths are drawn on the red side and optimized there, flipped on load
+            TrajectoryGenerator.ControlVectorList controlVectors;
+            try {
+                controlVectors = WaypointReader.getControlVectors(mDeployDirectory.resolve(mJob.path), false);
+            } catch (IOException ex) {
+                throw new RuntimeException("Unable to open path " + mJob.path, ex);
+            }
+            double currentTime = TrajectoryGenerator.generateTrajectory(controlVectors, mJob.createConfig())
+                    .getTotalTimeSeconds();
+
+            List<PoseWithCurvature> points = TrajectoryGenerator.splinePointsFromSplines(
+                    SplineHelper.getQuinticSplinesFromControlVectors(
+                            controlVectors.toArray(new Spline.ControlVector[0])));
+            SampledPath path = new SampledPath(points, kSampleStep);
+
+            List<HeadingProfile> candidates = getHeadingProfiles(path.getLength());
+            TimedPath best = new CandidateTask(mJob, path, candidates, 0, candidates.size()).invoke();
+            return new Result(mJob, currentTime, best, candidates.size());
+        }
+
+        private List<HeadingProfile> getHeadingProfiles(double length) {
+            double start = Units.degreesToRadians(mJob.startHeading);
+            double end = Units.degreesToRadians(mJob.endHeading);
+            List<HeadingProfile> profiles = new ArrayList<>();
+            if (Math.abs(MathUtil.angleModulus(end - start)) < 1e-6) {
+                profiles.add(new HeadingProfile(start, end, 0.0, 1.0, length));
+                return profiles;
+            }
+            for (double turnStart : kTurnStarts) {
+                for (double turnLength : kTurnLengths) {
+                    if (turnStart + turnLength <= 1.0 + 1e-9) {
+                        profiles.add(new HeadingProfile(start, end, turnStart, turnStart + turnLength, length));
+                    }
+                }
+            }
+            return profiles;
+        }
+    }
+
+    /**
+     * Times a range of heading profiles, splitting the range in half until it
+     * is small enough to do on one thread, and returns the fastest.
+     */
+    private class CandidateTask extends RecursiveTask<TimedPath> {
+        private final AutoPath mJob;
+        private final SampledPath mPath;
+        private final List<HeadingProfile> mProfiles;
+        private final int mFrom;
+        private final int mTo;
+
+        CandidateTask(AutoPath job, SampledPath path, List<HeadingProfile> profiles, int from, int to) {
+            mJob = job;
+            mPath = path;
+            mProfiles = profiles;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected TimedPath compute() {
+            if (mTo - mFrom <= kCandidatesPerTask) {
+                TimedPath best = null;
+                for (int i = mFrom; i < mTo; i++) {
+                    TimedPath timed = SwerveTimeParameterizer.parameterize(mPath, mProfiles.get(i), mLimits,
+                            mJob.startSpeed, mJob.endSpeed);
+                    if (best == null || timed.getTotalTime() < best.getTotalTime()) {
+                        best = timed;
+                    }
+                }
+                return best;
+            }
+            int middle = (mFrom + mTo) >>> 1;
+            CandidateTask left = new CandidateTask(mJob, mPath, mProfiles, mFrom, middle);
+            CandidateTask right = new CandidateTask(mJob, mPath, mProfiles, middle, mTo);
+            left.fork();
+            TimedPath rightBest = right.compute();
+            TimedPath leftBest = left.join();
+            return leftBest.getTotalTime() <= rightBest.getTotalTime() ? leftBest : rightBest;
+        }
+    }
+
+    public void write(Result result) throws IOException {
+        Path file = mDeployDirectory.resolve(TimedTrajectoryFile.getOptimizedPath(result.job));
+        List<String> comments = List.of(
+                "generated by TrajectoryOptimizer from " + result.job.path,
+                String.format(Locale.ROOT, "battery %.1f V, heading %.0f to %.0f deg over %.2f to %.2f m",
+                        mLimits.getBatteryVoltage(), result.job.startHeading, result.job.endHeading,
+                        result.best.heading.getWindowStart(), result.best.heading.getWindowEnd()),
+                String.format(Locale.ROOT, "%.2f s, was %.2f s at %.1f m/s and %.1f m/s^2",
+                        result.best.getTotalTime(), result.currentTime, result.job.maxSpeed, result.job.maxAccel));
+        TimedTrajectoryFile.write(file, result.best, comments);
+    }
+
+    public static void report(List<Result> results) {
+        System.out.println(String.format("%-44s %8s %8s %8s %6s  %-15s %s", "path", "current", "optimal", "saved",
+                "", "turn (m)", "held back by"));
+        double totalSaved = 0.0;
+        for (Result result : results) {
+            double[] shares = result.best.getTimeShares();
+            StringBuilder limits = new StringBuilder();
+            for (Limit limit : Limit.values()) {
+                if (shares[limit.ordinal()] >= 0.05) {
+                    limits.append(String.format("%s %.0f%%  ", limit.name().toLowerCase(),
+                            100.0 * shares[limit.ordinal()]));
+                }
+            }
+            String turn = result.candidates > 1
+                    ? String.format("%.2f-%.2f", result.best.heading.getWindowStart(),
+                            result.best.heading.getWindowEnd())
+                    : "none";
+            String path = String.format("%s (%.0f to %.0f deg)", result.job.getName(), result.job.startHeading,
+                    result.job.endHeading);
+            System.out.println(String.format("%-44s %7.2fs %7.2fs %7.2fs %5.0f%%  %-15s %s", path, result.currentTime,
+                    result.best.getTotalTime(), result.getTimeSaved(), 100.0 * result.getTimeSaved() / result.currentTime,
+                    turn, limits.toString().trim()));
+            totalSaved += result.getTimeSaved();
+        }
+        System.out.println(String.format("%d paths, %.2f s saved in total", results.size(), totalSaved));
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path deploy = Path.of("src/main/deploy");
+        double battery = Constants.AutoConstants.kNominalBatteryVoltage;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean write = false;
+        List<String> only = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--deploy":
+                    deploy = Path.of(args[++i]);
+                    break;
+                case "--battery":
+                    battery = Double.parseDouble(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--write":
+                    write = true;
+                    break;
+                default:
+                    only.add(args[i]);
+                    break;
+            }
+        }
+
+        List<AutoPath> jobs = new ArrayList<>();
+        for (AutoPath job : getModePaths()) {
+            if (only.isEmpty() || only.contains(job.getName())) {
+                jobs.add(job);
+            }
+        }
+        if (jobs.isEmpty()) {
+            System.err.println("No paths match " + only);
+            System.exit(1);
+        }
+
+        SwerveLimits limits = Constants.AutoConstants.createSwerveLimits(battery);
+        TrajectoryOptimizer optimizer = new TrajectoryOptimizer(deploy, limits);
+        long start = System.nanoTime();
+        List<Result> results = optimizer.optimize(jobs, threads);
+        System.out.println(String.format("Optimized %d paths at %.1f V in %.1f s on %d threads", jobs.size(),
+                battery, (System.nanoTime() - start) / 1e9, threads));
+        report(results);
+
+        if (write) {
+            for (Result result : results) {
+                optimizer.write(result);
+            }
+            System.out.println("Wrote " + results.size() + " trajectories to " + deploy.resolve("paths/optimized"));
+        }
+    }
+}
@@ -22,6 +22,15 @@ public class WaypointReader {
      * @return control vectors from file
      */
     public static TrajectoryGenerator.ControlVectorList getControlVectors(Path path) throws IOException {
+        return getControlVectors(path, Robot.flip_trajectories);
+    }
+
+    /**
+     * Get control vector list from path file
+     * @param flip mirror the path to the other side of the field
+     * @return control vectors from file
+     */
+    public static TrajectoryGenerator.ControlVectorList getControlVectors(Path path, boolean flip) throws IOException {
 
         TrajectoryGenerator.ControlVectorList controlVectors = new TrajectoryGenerator.ControlVectorList();
 
@@ -38,7 +47,7 @@ public class WaypointReader {
                 double x = Double.parseDouble(split[0]);
                 double x_tan = Double.parseDouble(split[2]);
 
-                if (Robot.flip_trajectories) {
+                if (flip) {
                     x = FieldLayout.kFieldLength - x;
                     x_tan = - x_tan;
                 }
@@ -3,6 +3,8 @@ package com.team8013.frc2024.auto.actions;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.team8013.frc2024.auto.ActionTracer;
+
 /**
  * Composite action, running all sub-actions at the same time All actions are started then updated until all actions
  * report being done.
@@ -18,12 +20,16 @@ public class ParallelAction implements Action {
 
     @Override
     public boolean isFinished() {
+        // checks every action so the tracer sees each one finish when it does
+        boolean finished = true;
         for (Action action : mActions) {
-            if (!action.isFinished()) {
-                return false;
+            if (action.isFinished()) {
+                ActionTracer.getInstance().finished(action);
+            } else {
+                finished = false;
             }
         }
-        return true;
+        return finished;
     }
 
     @Override
@@ -43,6 +49,7 @@ public class ParallelAction implements Action {
     @Override
     public void start() {
         for (Action action : mActions) {
+            ActionTracer.getInstance().started(this, action);
             action.start();
         }
     }
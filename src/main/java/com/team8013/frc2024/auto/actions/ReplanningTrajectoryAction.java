@@ -0,0 +1,103 @@
+package com.team8013.frc2024.auto.actions;
+
+import java.util.List;
+
+import com.team8013.frc2024.Constants.ReplanConstants;
+import com.team8013.frc2024.planners.PathReplanner;
+import com.team8013.frc2024.subsystems.Drive;
+import com.team8013.lib.util.RobotClock;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+
+/**
+ * Follows a trajectory like SwerveTrajectoryAction, but if the robot ends up
+ * well off it (bumped, or pushed around a note) while there's still a good
+ * part of it left, plans a new way to its end and splices that in. The robot
+ * keeps following the old trajectory until the new one is ready, and for good
+ * if it can't be planned in time. The spliced trajectory turns to the
+ * action's heading rather than following an optimized heading profile.
+ */
+public class ReplanningTrajectoryAction implements Action {
+
+    private final Drive mDrive = Drive.getInstance();
+    private final PathReplanner mReplanner = PathReplanner.getInstance();
+    private final RobotClock mClock = RobotClock.getInstance();
+
+    private final Trajectory mTrajectory;
+    private final Rotation2d mHeading;
+
+    private Trajectory mFollowing = null;
+    private double mFollowStart = 0.0;
+    private PathReplanner.Request mRequest = null;
+    private int mReplans = 0;
+
+    public ReplanningTrajectoryAction(Trajectory trajectory, Rotation2d heading) {
+        mTrajectory = trajectory;
+        mHeading = heading;
+    }
+
+    @Override
+    public void start() {
+        if (mDrive.readyForAuto()) {
+            System.out.println("Starting trajectory! (length=" + mTrajectory.getTotalTimeSeconds() + " seconds)");
+            follow(mTrajectory);
+        } else {
+            System.out.println("Odometry reset failed!!! Not starting trajectory!!!");
+        }
+    }
+
+    private void follow(Trajectory trajectory) {
+        mDrive.setTrajectory(trajectory, mHeading);
+        mFollowing = trajectory;
+        mFollowStart = mClock.getTimestamp();
+    }
+
+    @Override
+    public void update() {
+        if (mFollowing == null) {
+            return;
+        }
+        double now = mClock.getTimestamp();
+        if (mRequest != null) {
+            PathReplanner.Status status = mRequest.getStatus(now);
+            if (status == PathReplanner.Status.READY) {
+                System.out.println("Spliced in replanned trajectory (planned in " + mRequest.getPlanMs() + " ms)");
+                follow(mRequest.getTrajectory());
+                mRequest = null;
+            } else if (status != PathReplanner.Status.PENDING) {
+                System.out.println("Replanning failed (" + status + "), keeping the original trajectory");
+                mRequest = null;
+            }
+            return;
+        }
+
+        if (mReplans >= ReplanConstants.kMaxReplans
+                || mFollowing.getTotalTimeSeconds() - (now - mFollowStart) < ReplanConstants.kMinRemainingTime) {
+            return;
+        }
+        double error = Math.hypot(mDrive.getXTrajectoryError(), mDrive.getYTrajectoryError());
+        if (error > ReplanConstants.kReplanDeviation) {
+            List<Trajectory.State> states = mTrajectory.getStates();
+            Trajectory.State end = states.get(states.size() - 1);
+            System.out.println("Off the trajectory by " + error + " m, replanning");
+            mRequest = mReplanner.request(end.poseMeters.getTranslation(), end.velocityMetersPerSecond);
+            mReplans++;
+        }
+    }
+
+    @Override
+    public boolean isFinished() {
+        if (mDrive.isDoneWithTrajectory()) {
+            mDrive.stopModules();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void done() {
+        // a plan still coming in is dropped
+        mRequest = null;
+    }
+}
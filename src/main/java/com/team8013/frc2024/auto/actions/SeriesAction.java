@@ -4,6 +4,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import com.team8013.frc2024.auto.ActionTracer;
+
 /**
  * Executes one action at a time. Useful as a member of {@link ParallelAction}
  */
@@ -32,12 +34,14 @@ public class SeriesAction implements Action {
             }
 
             mCurrentAction = mRemainingActions.remove(0);
+            ActionTracer.getInstance().started(this, mCurrentAction);
             mCurrentAction.start();
         }
 
         mCurrentAction.update();
 
         if (mCurrentAction.isFinished()) {
+            ActionTracer.getInstance().finished(mCurrentAction);
             mCurrentAction.done();
             mCurrentAction = null;
         }
@@ -1,6 +1,6 @@
 package com.team8013.frc2024.auto.actions;
 
-import edu.wpi.first.wpilibj.Timer;
+import com.team8013.lib.util.RobotClock;
 
 /**
  * Action to wait for a given amount of time To use this Action, call runAction(new WaitAction(your_time))
@@ -14,9 +14,13 @@ public class WaitAction implements Action {
         mTimeToWait = timeToWait;
     }
 
+    public double getTimeToWait() {
+        return mTimeToWait;
+    }
+
     @Override
     public boolean isFinished() {
-        return Timer.getFPGATimestamp() - mStartTime >= mTimeToWait;
+        return RobotClock.getInstance().now() - mStartTime >= mTimeToWait;
     }
 
     @Override
@@ -31,6 +35,6 @@ public class WaitAction implements Action {
 
     @Override
     public void start() {
-        mStartTime = Timer.getFPGATimestamp();
+        mStartTime = RobotClock.getInstance().now();
     }
 }
@@ -0,0 +1,37 @@
+package com.team8013.frc2024.auto.actions;
+
+import com.team8013.frc2024.auto.GeofenceEngine;
+
+/**
+ * Waits for the robot to enter a region, which is only registered with the
+ * GeofenceEngine while the action runs.
+ */
+public class WaitForGeofenceAction implements Action {
+    private final GeofenceEngine.Region mRegion;
+    private volatile boolean mEntered = false;
+
+    public WaitForGeofenceAction(GeofenceEngine.Region region) {
+        mRegion = region;
+        mRegion.onEnter(() -> mEntered = true);
+    }
+
+    @Override
+    public boolean isFinished() {
+        return mEntered;
+    }
+
+    @Override
+    public void start() {
+        mEntered = false;
+        GeofenceEngine.getInstance().register(mRegion);
+    }
+
+    @Override
+    public void update() {
+    }
+
+    @Override
+    public void done() {
+        GeofenceEngine.getInstance().unregister(mRegion);
+    }
+}
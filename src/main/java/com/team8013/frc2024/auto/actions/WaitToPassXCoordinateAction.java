@@ -1,42 +1,13 @@
 package com.team8013.frc2024.auto.actions;
 
-import com.team8013.frc2024.FieldLayout;
-import com.team8013.frc2024.Robot;
-import com.team8013.frc2024.subsystems.Drive;
+import com.team8013.frc2024.auto.GeofenceEngine.Crossing;
 
-public class WaitToPassXCoordinateAction implements Action{
-	double startingXCoordinate;
-	double targetXCoordinate;
-	Drive drive;
-	
-	public WaitToPassXCoordinateAction(double x){
-		if (Robot.flip_trajectories) {
-			targetXCoordinate = FieldLayout.kFieldLength - x;
-		} else {
-			targetXCoordinate = x;
-		}
-		drive = Drive.getInstance();
-	}
-	
-	@Override
-	public boolean isFinished() {
-		return Math.signum(startingXCoordinate - targetXCoordinate) !=
-				Math.signum(drive.getPose().getTranslation().getX() - targetXCoordinate);
-	}
-
-	@Override
-	public void start() {
-		startingXCoordinate = drive.getPose().getTranslation().getX();
-	}
+/**
+ * Waits for the robot to cross x, given on the red side and flipped for blue.
+ */
+public class WaitToPassXCoordinateAction extends WaitForGeofenceAction {
 
-	@Override
-	public void update() {
-		
+	public WaitToPassXCoordinateAction(double x) {
+		super(new Crossing("Pass x " + x, Crossing.Axis.X, x));
 	}
-
-	@Override
-	public void done() {
-		
-	}
-
 }
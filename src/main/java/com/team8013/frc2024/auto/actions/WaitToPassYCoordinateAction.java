@@ -1,36 +1,13 @@
 package com.team8013.frc2024.auto.actions;
 
-import com.team8013.frc2024.subsystems.Drive;
+import com.team8013.frc2024.auto.GeofenceEngine.Crossing;
 
-public class WaitToPassYCoordinateAction implements Action {
-	double startingXCoordinate;
-	double targetXCoordinate;
-	Drive drive;
+/**
+ * Waits for the robot to cross y.
+ */
+public class WaitToPassYCoordinateAction extends WaitForGeofenceAction {
 
 	public WaitToPassYCoordinateAction(double y) {
-		targetXCoordinate = y;
-		drive = Drive.getInstance();
+		super(new Crossing("Pass y " + y, Crossing.Axis.Y, y));
 	}
-
-	@Override
-	public boolean isFinished() {
-		return Math.signum(startingXCoordinate - targetXCoordinate) != Math
-				.signum(drive.getPose().getTranslation().getY() - targetXCoordinate);
-	}
-
-	@Override
-	public void start() {
-		startingXCoordinate = drive.getPose().getTranslation().getY();
-	}
-
-	@Override
-	public void update() {
-
-	}
-
-	@Override
-	public void done() {
-
-	}
-
 }
@@ -2,17 +2,16 @@ package com.team8013.frc2024.auto.modes;
 
 import java.util.List;
 
-import com.team8013.frc2024.Constants;
 import com.team8013.frc2024.Robot;
 import com.team8013.frc2024.auto.AutoModeBase;
 import com.team8013.frc2024.auto.AutoModeEndedException;
+import com.team8013.frc2024.auto.AutoPath;
 import com.team8013.frc2024.auto.AutoTrajectoryReader;
 import com.team8013.frc2024.auto.actions.LambdaAction;
 import com.team8013.frc2024.auto.actions.ParallelAction;
 import com.team8013.frc2024.auto.actions.SeriesAction;
 import com.team8013.frc2024.auto.actions.SwerveTrajectoryAction;
 import com.team8013.frc2024.auto.actions.WaitAction;
-import com.team8013.frc2024.shuffleboard.ShuffleBoardInteractions;
 import com.team8013.frc2024.subsystems.Drive;
 import com.team8013.frc2024.subsystems.Superstructure;
 
@@ -24,8 +23,11 @@ public class CauseChaosStageSide extends AutoModeBase {
 
     private Superstructure mSuperstructure;
 
-    // required PathWeaver trajectory paths
-    String path = "paths/2024Paths/Cause_Chaos_StageSide.path";
+    // required PathWeaver trajectory paths, as the routine follows them
+    public static final AutoPath kPath = new AutoPath("paths/2024Paths/Cause_Chaos_StageSide.path",
+            4.5, 2.5, 0.0, 0.0, 240.0, 240.0);
+
+    public static final List<AutoPath> kPaths = List.of(kPath);
 
     // trajectories
     SwerveTrajectoryAction driveToFirstNote;
@@ -35,10 +37,9 @@ public class CauseChaosStageSide extends AutoModeBase {
         mSuperstructure = Superstructure.getInstance();
 
         // read trajectories from PathWeaver and generate trajectory actions
-        drive_to_first_note_path = AutoTrajectoryReader.generateTrajectoryFromFile(path,
-                Constants.AutoConstants.createConfig(4.5, 2.5, 0.0, 0.0));
-        driveToFirstNote = new SwerveTrajectoryAction(drive_to_first_note_path, Rotation2d.fromDegrees(240.0));
-        ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drive_to_first_note_path);
+        drive_to_first_note_path = AutoTrajectoryReader.loadTrajectory(kPath);
+        driveToFirstNote = new SwerveTrajectoryAction(drive_to_first_note_path, kPath.getEndRotation());
+        registerTrajectory(drive_to_first_note_path);
     }
 
     @Override
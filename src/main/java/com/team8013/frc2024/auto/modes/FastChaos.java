@@ -1,20 +1,18 @@
 package com.team8013.frc2024.auto.modes;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import com.team8013.frc2024.Constants;
 import com.team8013.frc2024.Robot;
 import com.team8013.frc2024.auto.AutoModeBase;
 import com.team8013.frc2024.auto.AutoModeEndedException;
+import com.team8013.frc2024.auto.AutoPath;
+import com.team8013.frc2024.auto.AutoPlan;
+import com.team8013.frc2024.auto.AutoPlanActions;
 import com.team8013.frc2024.auto.AutoTrajectoryReader;
 import com.team8013.frc2024.auto.actions.LambdaAction;
-import com.team8013.frc2024.auto.actions.ParallelAction;
-import com.team8013.frc2024.auto.actions.SeriesAction;
-import com.team8013.frc2024.auto.actions.SwerveTrajectoryAction;
-import com.team8013.frc2024.auto.actions.WaitAction;
-import com.team8013.frc2024.shuffleboard.ShuffleBoardInteractions;
 import com.team8013.frc2024.subsystems.Drive;
-import com.team8013.frc2024.subsystems.Superstructure;
 
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
@@ -22,23 +20,45 @@ import edu.wpi.first.math.trajectory.Trajectory;
 
 public class FastChaos extends AutoModeBase {
 
-    private Superstructure mSuperstructure;
+    // required PathWeaver trajectory paths, as the routine follows them
+    public static final AutoPath kPath = new AutoPath("paths/2024Paths/FastChaos_0.path",
+            6.0, 3.0, 0.0, 0.0, 240.0, 240.0);
 
-    // required PathWeaver trajectory paths
-    String path = "paths/2024Paths/FastChaos_0.path";
+    public static final List<AutoPath> kPaths = List.of(kPath);
 
     // trajectories
-    SwerveTrajectoryAction driveToFirstNote;
     final Trajectory drive_to_first_note_path;
+    private final Map<AutoPath, Trajectory> mTrajectories = new HashMap<>();
 
     public FastChaos() {
-        mSuperstructure = Superstructure.getInstance();
+        // read trajectories from PathWeaver
+        drive_to_first_note_path = AutoTrajectoryReader.loadTrajectory(kPath);
+        registerTrajectory(drive_to_first_note_path);
+        mTrajectories.put(kPath, drive_to_first_note_path);
+    }
 
-        // read trajectories from PathWeaver and generate trajectory actions
-        drive_to_first_note_path = AutoTrajectoryReader.generateTrajectoryFromFile(path,
-                Constants.AutoConstants.createConfig(6, 3, 0.0, 0.0));
-        driveToFirstNote = new SwerveTrajectoryAction(drive_to_first_note_path, Rotation2d.fromDegrees(240.0));
-        ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drive_to_first_note_path);
+    /**
+     * The routine after the odometry reset, run on the robot and by
+     * AutoSimulator.
+     */
+    public static void plan(AutoPlan plan, boolean red) {
+        plan.shoot(1.3)
+                .stow()
+                .follow(kPath, alongside -> alongside
+                        .waitFor(3)
+                        .heading(140)
+                        .waitFor(0.75)
+                        .heading(30)
+                        .waitFor(0.75)
+                        .heading(230)
+                        .waitFor(0.75)
+                        .heading(70)
+                        .waitFor(0.75)
+                        .heading(270)
+                        .waitFor(0.75)
+                        .heading(110)
+                        .waitFor(0.75)
+                        .heading(310));
     }
 
     @Override
@@ -46,37 +66,9 @@ public class FastChaos extends AutoModeBase {
         runAction(new LambdaAction(() -> Drive.getInstance().resetOdometry(getStartingPose())));
 
         System.out.println("Running FAST chaos auto");
-        mSuperstructure.autoShot();
-        runAction(new WaitAction(1.3));
-        mSuperstructure.disableAutoShot();
-        mSuperstructure.setSuperstuctureStow();
-
-        runAction(new ParallelAction(List.of(
-                driveToFirstNote,
-                new SeriesAction(List.of(
-                        new WaitAction(3),
-                        new LambdaAction(() -> Drive.getInstance()
-                                .setAutoHeading(Rotation2d.fromDegrees(140))),
-                        new WaitAction(0.75),
-                        new LambdaAction(() -> Drive.getInstance()
-                                .setAutoHeading(Rotation2d.fromDegrees(30))),
-                                new WaitAction(0.75),
-                        new LambdaAction(() -> Drive.getInstance()
-                                .setAutoHeading(Rotation2d.fromDegrees(230))),
-                                new WaitAction(0.75),
-                        new LambdaAction(() -> Drive.getInstance()
-                                .setAutoHeading(Rotation2d.fromDegrees(70))),
-                                new WaitAction(0.75),
-                        new LambdaAction(() -> Drive.getInstance()
-                                .setAutoHeading(Rotation2d.fromDegrees(270))),
-                                new WaitAction(0.75),
-                        new LambdaAction(() -> Drive.getInstance()
-                                .setAutoHeading(Rotation2d.fromDegrees(110))),
-                        new WaitAction(0.75),
-                        new LambdaAction(() -> Drive.getInstance()
-                                .setAutoHeading(Rotation2d.fromDegrees(310)))
-                                )))));
-
+        AutoPlanActions actions = new AutoPlanActions(mTrajectories);
+        plan(actions, Robot.is_red_alliance);
+        runActions(actions.getActions());
     }
 
     @Override
@@ -2,17 +2,16 @@ package com.team8013.frc2024.auto.modes;
 
 import java.util.List;
 
-import com.team8013.frc2024.Constants;
 import com.team8013.frc2024.Robot;
 import com.team8013.frc2024.auto.AutoModeBase;
 import com.team8013.frc2024.auto.AutoModeEndedException;
+import com.team8013.frc2024.auto.AutoPath;
 import com.team8013.frc2024.auto.AutoTrajectoryReader;
 import com.team8013.frc2024.auto.actions.LambdaAction;
 import com.team8013.frc2024.auto.actions.ParallelAction;
+import com.team8013.frc2024.auto.actions.ReplanningTrajectoryAction;
 import com.team8013.frc2024.auto.actions.SeriesAction;
-import com.team8013.frc2024.auto.actions.SwerveTrajectoryAction;
 import com.team8013.frc2024.auto.actions.WaitAction;
-import com.team8013.frc2024.shuffleboard.ShuffleBoardInteractions;
 import com.team8013.frc2024.subsystems.Drive;
 import com.team8013.frc2024.subsystems.Superstructure;
 
@@ -24,39 +23,41 @@ public class FourPieceMiddleStart extends AutoModeBase {
 
         private Superstructure mSuperstructure;
 
-        // required PathWeaver trajectory paths
-        String path_A = "paths/2024Paths/TwoMiddleSmooth.path";
-        String path_B = "paths/2024Paths/AmpSideSmooth.path";
-        String path_C = "paths/2024Paths/StageSideSmooth.path";
+        // required PathWeaver trajectory paths, as the routine follows them
+        public static final AutoPath kPathA = new AutoPath("paths/2024Paths/TwoMiddleSmooth.path",
+                        1.2, 1.3, 0.0, 0.0, 180.0, 180.0);
+        public static final AutoPath kPathB = new AutoPath("paths/2024Paths/AmpSideSmooth.path",
+                        3.2, 2.0, 0.0, 0.0, 180.0, 180.0);
+        public static final AutoPath kPathC = new AutoPath("paths/2024Paths/StageSideSmooth.path",
+                        1.5, 1.45, 0.0, 0.0, 180.0, 180.0);
+
+        public static final List<AutoPath> kPaths = List.of(kPathA, kPathB, kPathC);
 
         // trajectories
-        SwerveTrajectoryAction pathA;
+        ReplanningTrajectoryAction pathA;
         final Trajectory drivePath_A;
 
-        SwerveTrajectoryAction pathB;
+        ReplanningTrajectoryAction pathB;
         final Trajectory drivePath_B;
 
-        SwerveTrajectoryAction pathC;
+        ReplanningTrajectoryAction pathC;
         final Trajectory drivePath_C;
 
         public FourPieceMiddleStart() {
                 mSuperstructure = Superstructure.getInstance();
 
                 // read trajectories from PathWeaver and generate trajectory actions
-                drivePath_A = AutoTrajectoryReader.generateTrajectoryFromFile(path_A,
-                                Constants.AutoConstants.createConfig(1.2, 1.3, 0.0, 0));
-                pathA = new SwerveTrajectoryAction(drivePath_A, Rotation2d.fromDegrees(180));
-                ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drivePath_A);
-
-                drivePath_B = AutoTrajectoryReader.generateTrajectoryFromFile(path_B,
-                                Constants.AutoConstants.createConfig(3.2, 2, 0.0, 0));
-                pathB = new SwerveTrajectoryAction(drivePath_B, Rotation2d.fromDegrees(180));
-                ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drivePath_B);
-
-                drivePath_C = AutoTrajectoryReader.generateTrajectoryFromFile(path_C,
-                                Constants.AutoConstants.createConfig(1.5, 1.45, 0.0, 0));
-                pathC = new SwerveTrajectoryAction(drivePath_C, Rotation2d.fromDegrees(180));
-                ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drivePath_C);
+                drivePath_A = AutoTrajectoryReader.loadTrajectory(kPathA);
+                pathA = new ReplanningTrajectoryAction(drivePath_A, kPathA.getEndRotation());
+                registerTrajectory(drivePath_A);
+
+                drivePath_B = AutoTrajectoryReader.loadTrajectory(kPathB);
+                pathB = new ReplanningTrajectoryAction(drivePath_B, kPathB.getEndRotation());
+                registerTrajectory(drivePath_B);
+
+                drivePath_C = AutoTrajectoryReader.loadTrajectory(kPathC);
+                pathC = new ReplanningTrajectoryAction(drivePath_C, kPathC.getEndRotation());
+                registerTrajectory(drivePath_C);
         }
 
         @Override
@@ -1,16 +1,18 @@
 package com.team8013.frc2024.auto.modes;
 
-import com.team8013.frc2024.Constants;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import com.team8013.frc2024.Robot;
 import com.team8013.frc2024.auto.AutoModeBase;
 import com.team8013.frc2024.auto.AutoModeEndedException;
+import com.team8013.frc2024.auto.AutoPath;
+import com.team8013.frc2024.auto.AutoPlan;
+import com.team8013.frc2024.auto.AutoPlanActions;
 import com.team8013.frc2024.auto.AutoTrajectoryReader;
 import com.team8013.frc2024.auto.actions.LambdaAction;
-import com.team8013.frc2024.auto.actions.SwerveTrajectoryAction;
-import com.team8013.frc2024.auto.actions.WaitAction;
-import com.team8013.frc2024.shuffleboard.ShuffleBoardInteractions;
 import com.team8013.frc2024.subsystems.Drive;
-import com.team8013.frc2024.subsystems.Superstructure;
 
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
@@ -18,23 +20,30 @@ import edu.wpi.first.math.trajectory.Trajectory;
 
 public class OneNote extends AutoModeBase {
 
-    private Superstructure mSuperstructure;
+    // required PathWeaver trajectory paths, as the routine follows them
+    public static final AutoPath kPath = new AutoPath("paths/2024Paths/driveToFirstNote.path",
+            1.5, 4.0, 0.0, 0.0, 180.0, 170.0);
 
-    // required PathWeaver trajectory paths
-    String path = "paths/2024Paths/driveToFirstNote.path";
+    public static final List<AutoPath> kPaths = List.of(kPath);
 
     // trajectories
-    SwerveTrajectoryAction driveToFirstNote;
     final Trajectory drive_to_first_note_path;
+    private final Map<AutoPath, Trajectory> mTrajectories = new HashMap<>();
 
     public OneNote() {
-        mSuperstructure = Superstructure.getInstance();
+        // read trajectories from PathWeaver
+        drive_to_first_note_path = AutoTrajectoryReader.loadTrajectory(kPath);
+        registerTrajectory(drive_to_first_note_path);
+        mTrajectories.put(kPath, drive_to_first_note_path);
+    }
 
-        // read trajectories from PathWeaver and generate trajectory actions
-        drive_to_first_note_path = AutoTrajectoryReader.generateTrajectoryFromFile(path,
-                Constants.AutoConstants.createConfig(1.5, 4.0, 0.0, 0.0));
-        driveToFirstNote = new SwerveTrajectoryAction(drive_to_first_note_path, Rotation2d.fromDegrees(170.0));
-        ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drive_to_first_note_path);
+    /**
+     * The routine after the odometry reset, run on the robot and by
+     * AutoSimulator.
+     */
+    public static void plan(AutoPlan plan, boolean red) {
+        plan.keepShooting(1.5)
+                .follow(kPath);
     }
 
     @Override
@@ -42,9 +51,9 @@ public class OneNote extends AutoModeBase {
         runAction(new LambdaAction(() -> Drive.getInstance().resetOdometry(getStartingPose())));
 
         System.out.println("Running 1 note auto");
-        mSuperstructure.autoShot();
-        runAction(new WaitAction(1.5));
-        runAction(driveToFirstNote);
+        AutoPlanActions actions = new AutoPlanActions(mTrajectories);
+        plan(actions, Robot.is_red_alliance);
+        runActions(actions.getActions());
     }
 
     @Override
@@ -2,18 +2,18 @@ package com.team8013.frc2024.auto.modes;
 
 import java.util.List;
 
-import com.team8013.frc2024.Constants;
 import com.team8013.frc2024.Robot;
 import com.team8013.frc2024.auto.AutoModeBase;
 import com.team8013.frc2024.auto.AutoModeEndedException;
+import com.team8013.frc2024.auto.AutoPath;
 import com.team8013.frc2024.auto.AutoTrajectoryReader;
 import com.team8013.frc2024.auto.actions.LambdaAction;
 import com.team8013.frc2024.auto.actions.ParallelAction;
+import com.team8013.frc2024.auto.actions.ReplanningTrajectoryAction;
 import com.team8013.frc2024.auto.actions.SeriesAction;
 import com.team8013.frc2024.auto.actions.SwerveTrajectoryAction;
 import com.team8013.frc2024.auto.actions.WaitAction;
 import com.team8013.frc2024.auto.actions.WaitToPassXCoordinateAction;
-import com.team8013.frc2024.shuffleboard.ShuffleBoardInteractions;
 import com.team8013.frc2024.subsystems.Drive;
 import com.team8013.frc2024.subsystems.EndEffectorREV;
 import com.team8013.frc2024.subsystems.Limelight;
@@ -30,19 +30,24 @@ public class StageStraightToMiddle extends AutoModeBase {
         private Limelight mLimelight;
         private EndEffectorREV mEffector;
 
-        // required PathWeaver trajectory paths
-        String path_C1 = "paths/2024Paths/StageSideStraightToMiddle_A.path";
-        String path_C2 = "paths/2024Paths/StageSideStraightToMiddle_B.path";
-        String path_C3 = "paths/2024Paths/StageSideStraightToMiddle_C.path";
+        // required PathWeaver trajectory paths, as the routine follows them
+        public static final AutoPath kPathC1 = new AutoPath("paths/2024Paths/StageSideStraightToMiddle_A.path",
+                        5.0, 2.5, 0.0, 0.0, 240.0, 240.0);
+        public static final AutoPath kPathC2 = new AutoPath("paths/2024Paths/StageSideStraightToMiddle_B.path",
+                        4.5, 3.0, 0.0, 0.0, 180.0, 180.0);
+        public static final AutoPath kPathC3 = new AutoPath("paths/2024Paths/StageSideStraightToMiddle_C.path",
+                        3.0, 2.0, 0.0, 0.0, 240.0, 180.0);
+
+        public static final List<AutoPath> kPaths = List.of(kPathC1, kPathC2, kPathC3);
 
         // trajectories
-        SwerveTrajectoryAction driveToThirdNote1;
+        ReplanningTrajectoryAction driveToThirdNote1;
         final Trajectory drivePath_C1;
 
         SwerveTrajectoryAction driveToThirdNote2;
         final Trajectory drivePath_C2;
 
-        SwerveTrajectoryAction driveToThirdNote3;
+        ReplanningTrajectoryAction driveToThirdNote3;
         final Trajectory drivePath_C3;
 
         public StageStraightToMiddle() {
@@ -51,20 +56,17 @@ public class StageStraightToMiddle extends AutoModeBase {
                 mLimelight = Limelight.getInstance();
                 mEffector = EndEffectorREV.getInstance();
 
-                drivePath_C1 = AutoTrajectoryReader.generateTrajectoryFromFile(path_C1,
-                                Constants.AutoConstants.createConfig(5, 2.5, 0.0, 0));
-                driveToThirdNote1 = new SwerveTrajectoryAction(drivePath_C1, Rotation2d.fromDegrees(240));
-                ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drivePath_C1);
+                drivePath_C1 = AutoTrajectoryReader.loadTrajectory(kPathC1);
+                driveToThirdNote1 = new ReplanningTrajectoryAction(drivePath_C1, kPathC1.getEndRotation());
+                registerTrajectory(drivePath_C1);
 
-                drivePath_C2 = AutoTrajectoryReader.generateTrajectoryFromFile(path_C2,
-                                Constants.AutoConstants.createConfig(4.5, 3, 0, 0));
-                driveToThirdNote2 = new SwerveTrajectoryAction(drivePath_C2, Rotation2d.fromDegrees(180));
-                ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drivePath_C2);
+                drivePath_C2 = AutoTrajectoryReader.loadTrajectory(kPathC2);
+                driveToThirdNote2 = new SwerveTrajectoryAction(drivePath_C2, kPathC2.getEndRotation());
+                registerTrajectory(drivePath_C2);
 
-                drivePath_C3 = AutoTrajectoryReader.generateTrajectoryFromFile(path_C3,
-                                Constants.AutoConstants.createConfig(3, 2, 0, 0));
-                driveToThirdNote3 = new SwerveTrajectoryAction(drivePath_C3, Rotation2d.fromDegrees(180));
-                ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drivePath_C3);
+                drivePath_C3 = AutoTrajectoryReader.loadTrajectory(kPathC3);
+                driveToThirdNote3 = new ReplanningTrajectoryAction(drivePath_C3, kPathC3.getEndRotation());
+                registerTrajectory(drivePath_C3);
 
         }
 
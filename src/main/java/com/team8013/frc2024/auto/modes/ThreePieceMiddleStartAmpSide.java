@@ -2,19 +2,19 @@ package com.team8013.frc2024.auto.modes;
 
 import java.util.List;
 
-import com.team8013.frc2024.Constants;
 import com.team8013.frc2024.Robot;
 import com.team8013.frc2024.auto.AutoModeBase;
 import com.team8013.frc2024.auto.AutoModeEndedException;
+import com.team8013.frc2024.auto.AutoPath;
 import com.team8013.frc2024.auto.AutoTrajectoryReader;
 import com.team8013.frc2024.auto.actions.LambdaAction;
 import com.team8013.frc2024.auto.actions.WaitAction;
 import com.team8013.frc2024.auto.actions.ParallelAction;
+import com.team8013.frc2024.auto.actions.ReplanningTrajectoryAction;
 import com.team8013.frc2024.auto.actions.SeriesAction;
 import com.team8013.frc2024.auto.actions.SwerveTrajectoryAction;
 import com.team8013.frc2024.auto.actions.WaitToPassXCoordinateAction;
 import com.team8013.frc2024.controlboard.ControlBoard;
-import com.team8013.frc2024.shuffleboard.ShuffleBoardInteractions;
 import com.team8013.frc2024.subsystems.Drive;
 import com.team8013.frc2024.subsystems.Superstructure;
 
@@ -28,27 +28,34 @@ public class ThreePieceMiddleStartAmpSide extends AutoModeBase {
         private ControlBoard mControlBoard;
         private double degreesToSpin = 2;
 
-        // required PathWeaver trajectory paths
-        String path_A = "paths/2024Paths/TwoMiddleSmooth.path";
-        String path_B = "paths/2024Paths/TwoMiddle_B.path";
-        String path_C = "paths/2024Paths/3PieceMiddleStartAmpSide_C.path";
-        String path_D = "paths/2024Paths/3PieceMiddleStartAmpSide_D.path";
-        String path_E = "paths/2024Paths/3PieceMiddleStartAmpSide_E.path";
+        // required PathWeaver trajectory paths, as the routine follows them
+        public static final AutoPath kPathA = new AutoPath("paths/2024Paths/TwoMiddleSmooth.path",
+                        0.7, 1.2, 0.0, 0.0, 180.0, 180.0);
+        public static final AutoPath kPathB = new AutoPath("paths/2024Paths/TwoMiddle_B.path",
+                        1.0, 1.3, 0.0, 0.0, 0.0, 0.0); // not used
+        public static final AutoPath kPathC = new AutoPath("paths/2024Paths/3PieceMiddleStartAmpSide_C.path",
+                        1.4, 1.3, 0.0, 0.0, 180.0, 180.0);
+        public static final AutoPath kPathD = new AutoPath("paths/2024Paths/3PieceMiddleStartAmpSide_D.path",
+                        1.6, 1.5, 0.0, 0.0, 270.0, 270.0);
+        public static final AutoPath kPathE = new AutoPath("paths/2024Paths/3PieceMiddleStartAmpSide_E.path",
+                        5.0, 3.0, 0.0, 0.0, 180.0, 180.0);
+
+        public static final List<AutoPath> kPaths = List.of(kPathA, kPathC, kPathD, kPathE);
 
         // trajectories
-        SwerveTrajectoryAction driveToFirstNote;
+        ReplanningTrajectoryAction driveToFirstNote;
         final Trajectory drivePath_A;
 
         SwerveTrajectoryAction driveToShootFirstNote;
         final Trajectory drivePath_B;
 
-        SwerveTrajectoryAction driveToPickupSecondNote;
+        ReplanningTrajectoryAction driveToPickupSecondNote;
         final Trajectory drivePath_C;
 
         SwerveTrajectoryAction driveToShootSecondNote;
         final Trajectory drivePath_D;
 
-        SwerveTrajectoryAction driveOut;
+        ReplanningTrajectoryAction driveOut;
         final Trajectory drivePath_E;
 
         public ThreePieceMiddleStartAmpSide() {
@@ -56,30 +63,25 @@ public class ThreePieceMiddleStartAmpSide extends AutoModeBase {
                 mControlBoard = ControlBoard.getInstance();
 
                 // read trajectories from PathWeaver and generate trajectory actions
-                drivePath_A = AutoTrajectoryReader.generateTrajectoryFromFile(path_A,
-                                Constants.AutoConstants.createConfig(0.7, 1.2, 0.0, 0));
-                driveToFirstNote = new SwerveTrajectoryAction(drivePath_A, Rotation2d.fromDegrees(180));
-                ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drivePath_A);
-
-                drivePath_B = AutoTrajectoryReader.generateTrajectoryFromFile(path_B, // not used
-                                Constants.AutoConstants.createConfig(1, 1.3, 0.0, 0));
-                driveToShootFirstNote = new SwerveTrajectoryAction(drivePath_B, Rotation2d.fromDegrees(0));
-                ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drivePath_B);
-
-                drivePath_C = AutoTrajectoryReader.generateTrajectoryFromFile(path_C,
-                                Constants.AutoConstants.createConfig(1.4, 1.3, 0.0, 0));
-                driveToPickupSecondNote = new SwerveTrajectoryAction(drivePath_C, Rotation2d.fromDegrees(180));
-                ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drivePath_C);
-
-                drivePath_D = AutoTrajectoryReader.generateTrajectoryFromFile(path_D,
-                                Constants.AutoConstants.createConfig(1.6, 1.5, 0.0, 0));
-                driveToShootSecondNote = new SwerveTrajectoryAction(drivePath_D, Rotation2d.fromDegrees(270));
-                ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drivePath_D);
-
-                drivePath_E = AutoTrajectoryReader.generateTrajectoryFromFile(path_E,
-                                Constants.AutoConstants.createConfig(5, 3, 0.0, 0));
-                driveOut = new SwerveTrajectoryAction(drivePath_E, Rotation2d.fromDegrees(180));
-                ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drivePath_E);
+                drivePath_A = AutoTrajectoryReader.loadTrajectory(kPathA);
+                driveToFirstNote = new ReplanningTrajectoryAction(drivePath_A, kPathA.getEndRotation());
+                registerTrajectory(drivePath_A);
+
+                drivePath_B = AutoTrajectoryReader.loadTrajectory(kPathB);
+                driveToShootFirstNote = new SwerveTrajectoryAction(drivePath_B, kPathB.getEndRotation());
+                registerTrajectory(drivePath_B);
+
+                drivePath_C = AutoTrajectoryReader.loadTrajectory(kPathC);
+                driveToPickupSecondNote = new ReplanningTrajectoryAction(drivePath_C, kPathC.getEndRotation());
+                registerTrajectory(drivePath_C);
+
+                drivePath_D = AutoTrajectoryReader.loadTrajectory(kPathD);
+                driveToShootSecondNote = new SwerveTrajectoryAction(drivePath_D, kPathD.getEndRotation());
+                registerTrajectory(drivePath_D);
+
+                drivePath_E = AutoTrajectoryReader.loadTrajectory(kPathE);
+                driveOut = new ReplanningTrajectoryAction(drivePath_E, kPathE.getEndRotation());
+                registerTrajectory(drivePath_E);
         }
 
         @Override
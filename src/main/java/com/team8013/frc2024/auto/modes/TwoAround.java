@@ -2,18 +2,17 @@ package com.team8013.frc2024.auto.modes;
 
 import java.util.List;
 
-import com.team8013.frc2024.Constants;
 import com.team8013.frc2024.Robot;
 import com.team8013.frc2024.auto.AutoModeBase;
 import com.team8013.frc2024.auto.AutoModeEndedException;
+import com.team8013.frc2024.auto.AutoPath;
 import com.team8013.frc2024.auto.AutoTrajectoryReader;
 import com.team8013.frc2024.auto.actions.LambdaAction;
 import com.team8013.frc2024.auto.actions.ParallelAction;
+import com.team8013.frc2024.auto.actions.ReplanningTrajectoryAction;
 import com.team8013.frc2024.auto.actions.SeriesAction;
-import com.team8013.frc2024.auto.actions.SwerveTrajectoryAction;
 import com.team8013.frc2024.auto.actions.WaitAction;
 import com.team8013.frc2024.auto.actions.WaitToPassXCoordinateAction;
-import com.team8013.frc2024.shuffleboard.ShuffleBoardInteractions;
 import com.team8013.frc2024.subsystems.Drive;
 import com.team8013.frc2024.subsystems.Superstructure;
 
@@ -25,13 +24,16 @@ public class TwoAround extends AutoModeBase {
 
     private Superstructure mSuperstructure;
 
-    // required PathWeaver trajectory paths
-    String path_A = "paths/2024Paths/DriveAroundMiddle.path";
+    // required PathWeaver trajectory paths, as the routine follows them
+    public static final AutoPath kPathA = new AutoPath("paths/2024Paths/DriveAroundMiddle.path",
+            1.2, 1.5, 0.0, 0.0, 180.0, 180.0);
+
+    public static final List<AutoPath> kPaths = List.of(kPathA);
     String path_B = "paths/2024Paths/DriveToStageNote_B.path";
     String path_C = "paths/2024Paths/DriveToStageNote_C.path";
 
     // trajectories
-    SwerveTrajectoryAction driveToFirstNote_A;
+    ReplanningTrajectoryAction driveToFirstNote_A;
     final Trajectory drive_to_first_note_path_A;
 
 
@@ -39,10 +41,9 @@ public class TwoAround extends AutoModeBase {
         mSuperstructure = Superstructure.getInstance();
 
         // read trajectories from PathWeaver and generate trajectory actions
-        drive_to_first_note_path_A = AutoTrajectoryReader.generateTrajectoryFromFile(path_A,
-                Constants.AutoConstants.createConfig(1.2, 1.5, 0.0, 0));
-        driveToFirstNote_A = new SwerveTrajectoryAction(drive_to_first_note_path_A, Rotation2d.fromDegrees(180));
-        ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drive_to_first_note_path_A);
+        drive_to_first_note_path_A = AutoTrajectoryReader.loadTrajectory(kPathA);
+        driveToFirstNote_A = new ReplanningTrajectoryAction(drive_to_first_note_path_A, kPathA.getEndRotation());
+        registerTrajectory(drive_to_first_note_path_A);
 
     }
 
@@ -2,18 +2,18 @@ package com.team8013.frc2024.auto.modes;
 
 import java.util.List;
 
-import com.team8013.frc2024.Constants;
 import com.team8013.frc2024.Robot;
 import com.team8013.frc2024.auto.AutoModeBase;
 import com.team8013.frc2024.auto.AutoModeEndedException;
+import com.team8013.frc2024.auto.AutoPath;
 import com.team8013.frc2024.auto.AutoTrajectoryReader;
 import com.team8013.frc2024.auto.actions.LambdaAction;
 import com.team8013.frc2024.auto.actions.ParallelAction;
+import com.team8013.frc2024.auto.actions.ReplanningTrajectoryAction;
 import com.team8013.frc2024.auto.actions.SeriesAction;
 import com.team8013.frc2024.auto.actions.SwerveTrajectoryAction;
 import com.team8013.frc2024.auto.actions.WaitAction;
 import com.team8013.frc2024.auto.actions.WaitToPassXCoordinateAction;
-import com.team8013.frc2024.shuffleboard.ShuffleBoardInteractions;
 import com.team8013.frc2024.subsystems.Drive;
 import com.team8013.frc2024.subsystems.Limelight;
 import com.team8013.frc2024.subsystems.Superstructure;
@@ -28,20 +28,24 @@ public class TwoMiddle extends AutoModeBase {
         // private ControlBoard mControlBoard;
         private Limelight mLimelight;
 
-        // required PathWeaver trajectory paths
+        // required PathWeaver trajectory paths, as the routine follows them
         // String path_A = "paths/2024Paths/TwoMiddle_A.path";
         // String path_B = "paths/2024Paths/TwoMiddle_B.path";
-        String path_A = "paths/2024Paths/TwoMiddleSmooth.path";
-        String path_C = "paths/2024Paths/TwoMiddle_C.path";
+        public static final AutoPath kPathA = new AutoPath("paths/2024Paths/TwoMiddleSmooth.path",
+                        0.7, 1.2, 0.0, 0.0, 180.0, 180.0);
+        public static final AutoPath kPathC = new AutoPath("paths/2024Paths/TwoMiddle_C.path",
+                        4.8, 2.25, 0.0, 0.0, 180.0, 180.0);
+
+        public static final List<AutoPath> kPaths = List.of(kPathA, kPathC);
 
         // trajectories
-        SwerveTrajectoryAction driveToFirstNote;
+        ReplanningTrajectoryAction driveToFirstNote;
         final Trajectory drivePath_A;
 
         // SwerveTrajectoryAction driveToFirstNote_B;
         // final Trajectory drive_to_first_note_path_B;
 
-        SwerveTrajectoryAction driveToFirstNote_C;
+        ReplanningTrajectoryAction driveToFirstNote_C;
         final Trajectory drive_to_first_note_path_C;
 
         public TwoMiddle() {
@@ -51,27 +55,25 @@ public class TwoMiddle extends AutoModeBase {
 
                 // read trajectories from PathWeaver and generate trajectory actions
 
-                drivePath_A = AutoTrajectoryReader.generateTrajectoryFromFile(path_A,
-                                Constants.AutoConstants.createConfig(0.7, 1.2, 0.0, 0));
-                driveToFirstNote = new SwerveTrajectoryAction(drivePath_A, Rotation2d.fromDegrees(180));
-                ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drivePath_A);
+                drivePath_A = AutoTrajectoryReader.loadTrajectory(kPathA);
+                driveToFirstNote = new ReplanningTrajectoryAction(drivePath_A, kPathA.getEndRotation());
+                registerTrajectory(drivePath_A);
 
                 // drive_to_first_note_path_A = AutoTrajectoryReader.generateTrajectoryFromFile(path_A,
                 //                 Constants.AutoConstants.createConfig(0.4, 1.2, 0.0, 0));
                 // driveToFirstNote_A = new SwerveTrajectoryAction(drive_to_first_note_path_A,
                 //                 Rotation2d.fromDegrees(180));
-                // ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drive_to_first_note_path_A);
+                // registerTrajectory(drive_to_first_note_path_A);
 
                 // drive_to_first_note_path_B = AutoTrajectoryReader.generateTrajectoryFromFile(path_B,
                 //                 Constants.AutoConstants.createConfig(0.6, 1.2, 0.0, 0));
                 // driveToFirstNote_B = new SwerveTrajectoryAction(drive_to_first_note_path_B, Rotation2d.fromDegrees(0));
-                // ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drive_to_first_note_path_B);
+                // registerTrajectory(drive_to_first_note_path_B);
 
-                drive_to_first_note_path_C = AutoTrajectoryReader.generateTrajectoryFromFile(path_C,
-                                Constants.AutoConstants.createConfig(4.8, 2.25, 0.0, 0));
-                driveToFirstNote_C = new SwerveTrajectoryAction(drive_to_first_note_path_C,
-                                Rotation2d.fromDegrees(180));
-                ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drive_to_first_note_path_C);
+                drive_to_first_note_path_C = AutoTrajectoryReader.loadTrajectory(kPathC);
+                driveToFirstNote_C = new ReplanningTrajectoryAction(drive_to_first_note_path_C,
+                                kPathC.getEndRotation());
+                registerTrajectory(drive_to_first_note_path_C);
 
         }
 
@@ -2,18 +2,18 @@ package com.team8013.frc2024.auto.modes;
 
 import java.util.List;
 
-import com.team8013.frc2024.Constants;
 import com.team8013.frc2024.Robot;
 import com.team8013.frc2024.auto.AutoModeBase;
 import com.team8013.frc2024.auto.AutoModeEndedException;
+import com.team8013.frc2024.auto.AutoPath;
 import com.team8013.frc2024.auto.AutoTrajectoryReader;
 import com.team8013.frc2024.auto.actions.LambdaAction;
 import com.team8013.frc2024.auto.actions.ParallelAction;
+import com.team8013.frc2024.auto.actions.ReplanningTrajectoryAction;
 import com.team8013.frc2024.auto.actions.SeriesAction;
 import com.team8013.frc2024.auto.actions.SwerveTrajectoryAction;
 import com.team8013.frc2024.auto.actions.WaitAction;
 import com.team8013.frc2024.auto.actions.WaitToPassXCoordinateAction;
-import com.team8013.frc2024.shuffleboard.ShuffleBoardInteractions;
 import com.team8013.frc2024.subsystems.Drive;
 import com.team8013.frc2024.subsystems.EndEffectorREV;
 import com.team8013.frc2024.subsystems.Limelight;
@@ -30,16 +30,24 @@ public class TwoStageSide extends AutoModeBase {
         private Limelight mLimelight;
         private EndEffectorREV mEffector;
 
-        // required PathWeaver trajectory paths
-        String path_A = "paths/2024Paths/LeftRed_A.path";
-        String path_B = "paths/2024Paths/LeftRed_B.path";
-        String path_C = "paths/2024Paths/LeftRed_C.path";
-        String path_C1 = "paths/2024Paths/LeftRed_C_Part1.path";
-        String path_C2 = "paths/2024Paths/LeftRed_C_Part2.path";
-        String path_C3 = "paths/2024Paths/LeftRed_C_Part3.path";
+        // required PathWeaver trajectory paths, as the routine follows them
+        public static final AutoPath kPathA = new AutoPath("paths/2024Paths/LeftRed_A.path",
+                        1.2, 1.5, 0.0, 0.0, 240.0, 240.0); // 0.95 also works
+        public static final AutoPath kPathB = new AutoPath("paths/2024Paths/LeftRed_B.path",
+                        1.2, 1.5, 0.0, 0.0, 0.0, 240.0); // 0.95 also works
+        public static final AutoPath kPathC = new AutoPath("paths/2024Paths/LeftRed_C.path",
+                        4.5, 2.0, 0.0, 0.0, 240.0, 240.0);
+        public static final AutoPath kPathC1 = new AutoPath("paths/2024Paths/LeftRed_C_Part1.path",
+                        5.0, 2.5, 0.0, 0.0, 230.0, 240.0);
+        public static final AutoPath kPathC2 = new AutoPath("paths/2024Paths/LeftRed_C_Part2.path",
+                        4.5, 3.0, 0.0, 0.0, 180.0, 180.0);
+        public static final AutoPath kPathC3 = new AutoPath("paths/2024Paths/LeftRed_C_Part3.path",
+                        3.0, 2.0, 0.0, 0.0, 204.0, 180.0);
+
+        public static final List<AutoPath> kPaths = List.of(kPathA, kPathB, kPathC1, kPathC2, kPathC3);
 
         // trajectories
-        SwerveTrajectoryAction driveToFirstNote;
+        ReplanningTrajectoryAction driveToFirstNote;
         final Trajectory drivePath_A;
 
         SwerveTrajectoryAction driveToShootFirstNote;
@@ -48,13 +56,13 @@ public class TwoStageSide extends AutoModeBase {
         SwerveTrajectoryAction driveToThirdNote;
         final Trajectory drivePath_C;
 
-        SwerveTrajectoryAction driveToThirdNote1;
+        ReplanningTrajectoryAction driveToThirdNote1;
         final Trajectory drivePath_C1;
 
         SwerveTrajectoryAction driveToThirdNote2;
         final Trajectory drivePath_C2;
 
-        SwerveTrajectoryAction driveToThirdNote3;
+        ReplanningTrajectoryAction driveToThirdNote3;
         final Trajectory drivePath_C3;
 
         public TwoStageSide() {
@@ -64,35 +72,29 @@ public class TwoStageSide extends AutoModeBase {
                 mEffector = EndEffectorREV.getInstance();
 
                 // read trajectories from PathWeaver and generate trajectory actions
-                drivePath_A = AutoTrajectoryReader.generateTrajectoryFromFile(path_A,
-                                Constants.AutoConstants.createConfig(1.2, 1.5, 0.0, 0)); // 0.95 also works
-                driveToFirstNote = new SwerveTrajectoryAction(drivePath_A, Rotation2d.fromDegrees(240));
-                ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drivePath_A);
-
-                drivePath_B = AutoTrajectoryReader.generateTrajectoryFromFile(path_B,
-                                Constants.AutoConstants.createConfig(1.2, 1.5, 0.0, 0)); // 0.95 also works
-                driveToShootFirstNote = new SwerveTrajectoryAction(drivePath_B, Rotation2d.fromDegrees(240));
-                ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drivePath_B);
-
-                drivePath_C = AutoTrajectoryReader.generateTrajectoryFromFile(path_C,
-                                Constants.AutoConstants.createConfig(4.5, 2, 0.0, 0));
-                driveToThirdNote = new SwerveTrajectoryAction(drivePath_C, Rotation2d.fromDegrees(240));
-                ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drivePath_C);
-
-                drivePath_C1 = AutoTrajectoryReader.generateTrajectoryFromFile(path_C1,
-                                Constants.AutoConstants.createConfig(5, 2.5, 0.0, 0));
-                driveToThirdNote1 = new SwerveTrajectoryAction(drivePath_C1, Rotation2d.fromDegrees(240));
-                ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drivePath_C1);
-
-                drivePath_C2 = AutoTrajectoryReader.generateTrajectoryFromFile(path_C2,
-                                Constants.AutoConstants.createConfig(4.5, 3, 0, 0));
-                driveToThirdNote2 = new SwerveTrajectoryAction(drivePath_C2, Rotation2d.fromDegrees(180));
-                ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drivePath_C2);
-
-                drivePath_C3 = AutoTrajectoryReader.generateTrajectoryFromFile(path_C3,
-                                Constants.AutoConstants.createConfig(3, 2, 0, 0));
-                driveToThirdNote3 = new SwerveTrajectoryAction(drivePath_C3, Rotation2d.fromDegrees(180));
-                ShuffleBoardInteractions.getInstance().mFieldView.addTrajectory("Traj", drivePath_C3);
+                drivePath_A = AutoTrajectoryReader.loadTrajectory(kPathA);
+                driveToFirstNote = new ReplanningTrajectoryAction(drivePath_A, kPathA.getEndRotation());
+                registerTrajectory(drivePath_A);
+
+                drivePath_B = AutoTrajectoryReader.loadTrajectory(kPathB);
+                driveToShootFirstNote = new SwerveTrajectoryAction(drivePath_B, kPathB.getEndRotation());
+                registerTrajectory(drivePath_B);
+
+                drivePath_C = AutoTrajectoryReader.loadTrajectory(kPathC);
+                driveToThirdNote = new SwerveTrajectoryAction(drivePath_C, kPathC.getEndRotation());
+                registerTrajectory(drivePath_C);
+
+                drivePath_C1 = AutoTrajectoryReader.loadTrajectory(kPathC1);
+                driveToThirdNote1 = new ReplanningTrajectoryAction(drivePath_C1, kPathC1.getEndRotation());
+                registerTrajectory(drivePath_C1);
+
+                drivePath_C2 = AutoTrajectoryReader.loadTrajectory(kPathC2);
+                driveToThirdNote2 = new SwerveTrajectoryAction(drivePath_C2, kPathC2.getEndRotation());
+                registerTrajectory(drivePath_C2);
+
+                drivePath_C3 = AutoTrajectoryReader.loadTrajectory(kPathC3);
+                driveToThirdNote3 = new ReplanningTrajectoryAction(drivePath_C3, kPathC3.getEndRotation());
+                registerTrajectory(drivePath_C3);
 
         }
 
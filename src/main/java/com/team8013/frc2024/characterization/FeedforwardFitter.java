@@ -0,0 +1,204 @@
+package com.team8013.frc2024.characterization;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.team8013.lib.characterization.CharacterizationDevice.Gravity;
+import com.team8013.lib.characterization.CharacterizationRoutine;
+import com.team8013.lib.characterization.FeedforwardFit;
+
+/**
+ * Fits kS, kV, kA and kG to the captures CharacterizationRoutine wrote in test
+ * mode and prints them in the mechanism's units and as motor controller gains,
+ * ready to paste into Constants.
+ * <p>
+ * Run on the desktop from the project directory, with the captures copied off
+ * the robot's drive:
+ *
+ * <pre>
+ * ./gradlew fitFeedforward --args="path/to/robotlogs/characterization"
+ * </pre>
+ */
+public class FeedforwardFitter {
+
+    // fraction of the fastest sample below which samples are left out
+    private static final double kDefaultMinVelocityFraction = 0.02;
+    private static final double kDefaultAccelWindow = 0.01; // s on either side
+
+    public static class Capture {
+        public final Path file;
+        public String mechanism = "";
+        public String units = "";
+        public Gravity gravity = Gravity.NONE;
+        public double rotorScale = 1.0;
+        public double sampleRate = 1000.0;
+        public double[] timestamps;
+        public double[] volts;
+        public double[] positions;
+        public double[] velocities;
+        public int[] segments;
+
+        Capture(Path file) {
+            this.file = file;
+        }
+    }
+
+    public static Capture readCapture(Path file) throws IOException {
+        Capture capture = new Capture(file);
+        List<double[]> rows = new ArrayList<>();
+        List<Integer> segments = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file.toFile()))) {
+            String line = reader.readLine();
+            while (line != null) {
+                if (line.startsWith("# ")) {
+                    String[] split = line.substring(2).split(" ", 2);
+                    switch (split[0]) {
+                        case "mechanism":
+                            capture.mechanism = split[1];
+                            break;
+                        case "units":
+                            capture.units = split[1];
+                            break;
+                        case "gravity":
+                            capture.gravity = Gravity.valueOf(split[1]);
+                            break;
+                        case "rotorScale":
+                            capture.rotorScale = Double.parseDouble(split[1]);
+                            break;
+                        case "sampleRate":
+                            capture.sampleRate = Double.parseDouble(split[1]);
+                            break;
+                        default:
+                            break;
+                    }
+                } else if (!line.isEmpty() && !line.equals(CharacterizationRoutine.kHeader)) {
+                    String[] split = line.split(",");
+                    segments.add(CharacterizationRoutine.Phase.valueOf(split[0]).ordinal());
+                    rows.add(new double[] { Double.parseDouble(split[1]), Double.parseDouble(split[3]),
+                            Double.parseDouble(split[4]), Double.parseDouble(split[5]) });
+                }
+                line = reader.readLine();
+            }
+        }
+
+        int n = rows.size();
+        capture.timestamps = new double[n];
+        capture.volts = new double[n];
+        capture.positions = new double[n];
+        capture.velocities = new double[n];
+        capture.segments = new int[n];
+        for (int i = 0; i < n; i++) {
+            capture.timestamps[i] = rows.get(i)[0];
+            capture.volts[i] = rows.get(i)[1];
+            capture.positions[i] = rows.get(i)[2];
+            capture.velocities[i] = rows.get(i)[3];
+            capture.segments[i] = segments.get(i);
+        }
+        return capture;
+    }
+
+    /**
+     * @param paths capture files or directories to search for them
+     */
+    public static List<Path> findCaptures(List<Path> paths) throws IOException {
+        List<Path> captures = new ArrayList<>();
+        for (Path path : paths) {
+            try (Stream<Path> files = Files.walk(path)) {
+                captures.addAll(files.filter(Files::isRegularFile)
+                        .filter((f) -> f.getFileName().toString().startsWith(CharacterizationRoutine.kFilePrefix))
+                        .sorted()
+                        .collect(Collectors.toList()));
+            }
+        }
+        return captures;
+    }
+
+    public static FeedforwardFit fit(Capture capture, double minVelocityFraction, double accelWindow) {
+        double maxVelocity = 0.0;
+        for (double velocity : capture.velocities) {
+            maxVelocity = Math.max(maxVelocity, Math.abs(velocity));
+        }
+        int window = Math.max(1, (int) Math.round(accelWindow * capture.sampleRate));
+        return FeedforwardFit.fit(capture.gravity, capture.timestamps, capture.volts, capture.positions,
+                capture.velocities, capture.segments, maxVelocity * minVelocityFraction, window);
+    }
+
+    private static void print(Capture capture, FeedforwardFit fit) {
+        System.out.println(String.format("%s (%s): %d of %d samples, r^2 %.4f, rms %.3f V", capture.mechanism,
+                capture.file.getFileName(), fit.samples, capture.timestamps.length, fit.rSquared, fit.rmse));
+        String u = capture.units;
+        System.out.println(String.format(Locale.ROOT,
+                "  per %s:  kS %.4f V  kV %.6f V/(%s/s)  kA %.6f V/(%s/s^2)", u, fit.kS, fit.kV, u, fit.kA, u));
+        if (capture.gravity == Gravity.CONSTANT) {
+            System.out.println(String.format(Locale.ROOT, "  kG %.4f V", fit.kG));
+        } else if (capture.gravity == Gravity.COSINE) {
+            System.out.println(String.format(Locale.ROOT, "  kG %.4f V, level at %.2f %s", fit.kG,
+                    fit.gravityOffset, u));
+        }
+
+        // mechanism velocity = rotorScale * motor rotations per second
+        double kV = fit.kV * capture.rotorScale;
+        double kA = fit.kA * capture.rotorScale;
+        System.out.println("  voltage control, motor rotations:");
+        System.out.println(String.format(Locale.ROOT,
+                "    config.Slot0.kS = %.4f;%n    config.Slot0.kV = %.6f;%n    config.Slot0.kA = %.6f;%n"
+                        + "    config.Slot0.kG = %.4f;",
+                fit.kS, kV, kA, fit.kG));
+        System.out.println("  duty cycle control, motor rotations:");
+        System.out.println(String.format(Locale.ROOT,
+                "    config.Slot0.kS = %.5f;%n    config.Slot0.kV = %.7f;%n    config.Slot0.kA = %.7f;%n"
+                        + "    config.Slot0.kG = %.5f;",
+                fit.kS / 12.0, kV / 12.0, kA / 12.0, fit.kG / 12.0));
+        System.out.println(String.format(Locale.ROOT, "  Spark velocity kFF (duty cycle per rpm): %.8f",
+                kV / 12.0 / 60.0));
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        double minVelocityFraction = kDefaultMinVelocityFraction;
+        double accelWindow = kDefaultAccelWindow;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--min-velocity":
+                    minVelocityFraction = Double.parseDouble(args[++i]);
+                    break;
+                case "--accel-window":
+                    accelWindow = Double.parseDouble(args[++i]);
+                    break;
+                default:
+                    paths.add(Path.of(args[i]));
+                    break;
+            }
+        }
+        if (paths.isEmpty()) {
+            System.err.println("Usage: FeedforwardFitter <capture dirs or files> [--min-velocity fraction]"
+                    + " [--accel-window s]");
+            System.exit(1);
+        }
+
+        List<Path> files = findCaptures(paths);
+        if (files.isEmpty()) {
+            System.out.println("No captures found");
+            return;
+        }
+        for (Path file : files) {
+            Capture capture = readCapture(file);
+            FeedforwardFit fit = fit(capture, minVelocityFraction, accelWindow);
+            if (fit == null) {
+                System.out.println(capture.mechanism + " (" + file.getFileName() + "): not enough moving samples"
+                        + " to fit");
+                continue;
+            }
+            print(capture, fit);
+        }
+    }
+}
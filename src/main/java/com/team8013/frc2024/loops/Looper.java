@@ -4,9 +4,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.team8013.frc2024.Constants;
+import com.team8013.lib.util.RobotClock;
 
 import edu.wpi.first.wpilibj.Notifier;
-import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 /**
@@ -19,6 +19,8 @@ public class Looper implements ILooper {
     private boolean running_;
 
     private final Notifier notifier_;
+    // only the control loopers advance the shared clock, others just read it
+    private final boolean ticksClock_;
     private final List<Loop> loops_;
     private final Object taskRunningLock_ = new Object();
     private double timestamp_ = 0;
@@ -30,7 +32,8 @@ public class Looper implements ILooper {
         public void runCrashTracked() {
             synchronized (taskRunningLock_) {
                 if (running_) {
-                    double now = Timer.getFPGATimestamp();
+                    // the one clock read for this tick, everything in the loops reads it back
+                    double now = readClock();
 
                     for (Loop loop : loops_) {
                         loop.onLoop(now);
@@ -43,11 +46,16 @@ public class Looper implements ILooper {
         }
     };
 
-    public Looper(double loop_time) {
+    public Looper(double loop_time, boolean ticks_clock) {
         notifier_ = new Notifier(runnable_);
         running_ = false;
         loops_ = new ArrayList<>();
         kPeriod = loop_time;
+        ticksClock_ = ticks_clock;
+    }
+
+    public Looper(double loop_time) {
+        this(loop_time, true);
     }
 
     public Looper() {
@@ -65,7 +73,7 @@ public class Looper implements ILooper {
         if (!running_) {
             System.out.println("Starting loops");
             synchronized (taskRunningLock_) {
-                timestamp_ = Timer.getFPGATimestamp();
+                timestamp_ = readClock();
                 for (Loop loop : loops_) {
                     loop.onStart(timestamp_);
                 }
@@ -75,13 +83,17 @@ public class Looper implements ILooper {
         }
     }
 
+    private double readClock() {
+        return ticksClock_ ? RobotClock.getInstance().tick() : RobotClock.getInstance().now();
+    }
+
     public synchronized void stop() {
         if (running_) {
             System.out.println("Stopping loops");
             notifier_.stop();
             synchronized (taskRunningLock_) {
                 running_ = false;
-                timestamp_ = Timer.getFPGATimestamp();
+                timestamp_ = readClock();
                 for (Loop loop : loops_) {
                     System.out.println("Stopping " + loop);
                     loop.onStop(timestamp_);
@@ -0,0 +1,321 @@
+package com.team8013.frc2024.planners;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Visibility graph around convex obstacles for finding drive paths across the
+ * field. The robot is treated as a circle of the clearance radius, so a
+ * straight move is clear if it stays that far from every obstacle and inside
+ * the field walls.
+ * <p>
+ * Nodes sit just off each obstacle corner, pushed out along the corner's
+ * bisector far enough to clear both edges by the clearance plus a margin. The
+ * edges between them are found once when the graph is built; a query only
+ * links the start and goal into the graph and runs A*, which on a field's
+ * worth of obstacles is well under a millisecond.
+ */
+public class NavigationGraph {
+
+    private final List<double[]> mObstacles;
+    private final double mClearance;
+    private final double mMinX, mMinY, mMaxX, mMaxY;
+
+    private final double[] mNodeX;
+    private final double[] mNodeY;
+    // distance between nodes that can see each other, NaN otherwise
+    private final double[][] mEdges;
+
+    /**
+     * @param obstacles convex polygons as x, y pairs, either winding
+     * @param clearance how far the robot's center has to stay from obstacles
+     *                  and walls
+     * @param margin    extra distance to put the corner nodes out, so a
+     *                  spline through them has some room
+     */
+    public NavigationGraph(List<double[]> obstacles, double clearance, double margin, double minX, double minY,
+            double maxX, double maxY) {
+        mObstacles = new ArrayList<>(obstacles);
+        mClearance = clearance;
+        mMinX = minX + clearance;
+        mMinY = minY + clearance;
+        mMaxX = maxX - clearance;
+        mMaxY = maxY - clearance;
+
+        List<double[]> nodes = new ArrayList<>();
+        for (double[] polygon : mObstacles) {
+            int n = polygon.length / 2;
+            for (int i = 0; i < n; i++) {
+                double x = polygon[2 * i];
+                double y = polygon[2 * i + 1];
+                int prev = (i + n - 1) % n;
+                int next = (i + 1) % n;
+                double ax = x - polygon[2 * prev];
+                double ay = y - polygon[2 * prev + 1];
+                double bx = x - polygon[2 * next];
+                double by = y - polygon[2 * next + 1];
+                double aLength = Math.hypot(ax, ay);
+                double bLength = Math.hypot(bx, by);
+                // points away from the inside of a convex corner
+                double dx = ax / aLength + bx / bLength;
+                double dy = ay / aLength + by / bLength;
+                double dLength = Math.hypot(dx, dy);
+                if (dLength < 1e-9) {
+                    continue; // straight through, not a corner
+                }
+                double interior = Math.acos(Math.max(-1.0, Math.min(1.0,
+                        (ax * bx + ay * by) / (aLength * bLength))));
+                double distance = (clearance + margin) / Math.sin(interior / 2.0);
+                double nodeX = x + dx / dLength * distance;
+                double nodeY = y + dy / dLength * distance;
+                if (isFree(nodeX, nodeY)) {
+                    nodes.add(new double[] { nodeX, nodeY });
+                }
+            }
+        }
+
+        int count = nodes.size();
+        mNodeX = new double[count];
+        mNodeY = new double[count];
+        for (int i = 0; i < count; i++) {
+            mNodeX[i] = nodes.get(i)[0];
+            mNodeY[i] = nodes.get(i)[1];
+        }
+        mEdges = new double[count][count];
+        for (int i = 0; i < count; i++) {
+            mEdges[i][i] = Double.NaN;
+            for (int j = i + 1; j < count; j++) {
+                double distance = isClear(mNodeX[i], mNodeY[i], mNodeX[j], mNodeY[j])
+                        ? Math.hypot(mNodeX[j] - mNodeX[i], mNodeY[j] - mNodeY[i])
+                        : Double.NaN;
+                mEdges[i][j] = distance;
+                mEdges[j][i] = distance;
+            }
+        }
+    }
+
+    public int getNodeCount() {
+        return mNodeX.length;
+    }
+
+    public double getClearance() {
+        return mClearance;
+    }
+
+    /**
+     * @return whether the robot fits at the point
+     */
+    public boolean isFree(double x, double y) {
+        if (x < mMinX || x > mMaxX || y < mMinY || y > mMaxY) {
+            return false;
+        }
+        for (double[] polygon : mObstacles) {
+            if (distanceToPolygon(polygon, x, y, x, y) < mClearance) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the robot can drive straight between the points
+     */
+    public boolean isClear(double x0, double y0, double x1, double y1) {
+        // the field is convex, so both ends inside means the whole move is
+        if (x0 < mMinX || x0 > mMaxX || y0 < mMinY || y0 > mMaxY
+                || x1 < mMinX || x1 > mMaxX || y1 < mMinY || y1 > mMaxY) {
+            return false;
+        }
+        for (double[] polygon : mObstacles) {
+            if (distanceToPolygon(polygon, x0, y0, x1, y1) < mClearance) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Shortest path through the graph.
+     *
+     * @return x, y pairs from start to goal, both included, or null if the
+     *         goal can't be reached or either end is blocked
+     */
+    public double[] findPath(double startX, double startY, double goalX, double goalY) {
+        if (!isFree(goalX, goalY)) {
+            return null;
+        }
+        // a start just inside a buffer (bumped into a leg) still gets out, it
+        // only has to be moving away from the obstacle
+        if (isClearFrom(startX, startY, goalX, goalY)) {
+            return new double[] { startX, startY, goalX, goalY };
+        }
+
+        int nodes = mNodeX.length;
+        int start = nodes;
+        int goal = nodes + 1;
+        double[] startEdges = new double[nodes];
+        double[] goalEdges = new double[nodes];
+        for (int i = 0; i < nodes; i++) {
+            startEdges[i] = isClearFrom(startX, startY, mNodeX[i], mNodeY[i])
+                    ? Math.hypot(mNodeX[i] - startX, mNodeY[i] - startY)
+                    : Double.NaN;
+            goalEdges[i] = isClear(mNodeX[i], mNodeY[i], goalX, goalY)
+                    ? Math.hypot(goalX - mNodeX[i], goalY - mNodeY[i])
+                    : Double.NaN;
+        }
+
+        double[] cost = new double[nodes + 2];
+        int[] parent = new int[nodes + 2];
+        boolean[] closed = new boolean[nodes + 2];
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        Arrays.fill(parent, -1);
+        cost[start] = 0.0;
+
+        // few enough nodes that a linear scan beats a heap
+        while (true) {
+            int current = -1;
+            double best = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < nodes + 2; i++) {
+                if (closed[i] || Double.isInfinite(cost[i])) {
+                    continue;
+                }
+                double estimate = cost[i] + Math.hypot(goalX - getX(i, startX, goalX), goalY - getY(i, startY, goalY));
+                if (estimate < best) {
+                    best = estimate;
+                    current = i;
+                }
+            }
+            if (current < 0) {
+                return null;
+            }
+            if (current == goal) {
+                break;
+            }
+            closed[current] = true;
+
+            for (int next = 0; next < nodes + 2; next++) {
+                if (closed[next] || next == start) {
+                    continue;
+                }
+                double edge;
+                if (current == start) {
+                    edge = next == goal ? Double.NaN : startEdges[next];
+                } else if (next == goal) {
+                    edge = goalEdges[current];
+                } else {
+                    edge = mEdges[current][next];
+                }
+                if (Double.isNaN(edge)) {
+                    continue;
+                }
+                if (cost[current] + edge < cost[next]) {
+                    cost[next] = cost[current] + edge;
+                    parent[next] = current;
+                }
+            }
+        }
+
+        int length = 0;
+        for (int i = goal; i >= 0; i = parent[i]) {
+            length++;
+        }
+        double[] path = new double[2 * length];
+        int index = length - 1;
+        for (int i = goal; i >= 0; i = parent[i]) {
+            path[2 * index] = getX(i, startX, goalX);
+            path[2 * index + 1] = getY(i, startY, goalY);
+            index--;
+        }
+        return path;
+    }
+
+    private double getX(int node, double startX, double goalX) {
+        return node < mNodeX.length ? mNodeX[node] : node == mNodeX.length ? startX : goalX;
+    }
+
+    private double getY(int node, double startY, double goalY) {
+        return node < mNodeY.length ? mNodeY[node] : node == mNodeY.length ? startY : goalY;
+    }
+
+    /**
+     * Like isClear, but a start inside an obstacle's buffer only has to move
+     * away from it.
+     */
+    private boolean isClearFrom(double x0, double y0, double x1, double y1) {
+        if (x1 < mMinX || x1 > mMaxX || y1 < mMinY || y1 > mMaxY) {
+            return false;
+        }
+        for (double[] polygon : mObstacles) {
+            double distance = distanceToPolygon(polygon, x0, y0, x1, y1);
+            if (distance < mClearance && distance < distanceToPolygon(polygon, x0, y0, x0, y0) - 1e-9) {
+                return false;
+            }
+            if (distance <= 0.0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return distance from the segment to the convex polygon, 0 if they touch
+     */
+    private static double distanceToPolygon(double[] polygon, double x0, double y0, double x1, double y1) {
+        if (contains(polygon, x0, y0) || contains(polygon, x1, y1)) {
+            return 0.0;
+        }
+        int n = polygon.length / 2;
+        double distance = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            int j = (i + 1) % n;
+            distance = Math.min(distance, segmentDistance(x0, y0, x1, y1, polygon[2 * i], polygon[2 * i + 1],
+                    polygon[2 * j], polygon[2 * j + 1]));
+        }
+        return distance;
+    }
+
+    private static boolean contains(double[] polygon, double x, double y) {
+        int n = polygon.length / 2;
+        boolean inside = false;
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            double xi = polygon[2 * i], yi = polygon[2 * i + 1];
+            double xj = polygon[2 * j], yj = polygon[2 * j + 1];
+            if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    private static double segmentDistance(double ax, double ay, double bx, double by, double cx, double cy,
+            double dx, double dy) {
+        if (segmentsCross(ax, ay, bx, by, cx, cy, dx, dy)) {
+            return 0.0;
+        }
+        return Math.min(Math.min(pointDistance(ax, ay, cx, cy, dx, dy), pointDistance(bx, by, cx, cy, dx, dy)),
+                Math.min(pointDistance(cx, cy, ax, ay, bx, by), pointDistance(dx, dy, ax, ay, bx, by)));
+    }
+
+    private static boolean segmentsCross(double ax, double ay, double bx, double by, double cx, double cy,
+            double dx, double dy) {
+        double d1 = cross(cx, cy, dx, dy, ax, ay);
+        double d2 = cross(cx, cy, dx, dy, bx, by);
+        double d3 = cross(ax, ay, bx, by, cx, cy);
+        double d4 = cross(ax, ay, bx, by, dx, dy);
+        return ((d1 > 0.0) != (d2 > 0.0)) && ((d3 > 0.0) != (d4 > 0.0));
+    }
+
+    private static double cross(double ax, double ay, double bx, double by, double px, double py) {
+        return (bx - ax) * (py - ay) - (by - ay) * (px - ax);
+    }
+
+    private static double pointDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double vx = bx - ax;
+        double vy = by - ay;
+        double lengthSquared = vx * vx + vy * vy;
+        double t = lengthSquared > 0.0 ? ((px - ax) * vx + (py - ay) * vy) / lengthSquared : 0.0;
+        t = Math.max(0.0, Math.min(1.0, t));
+        return Math.hypot(px - (ax + t * vx), py - (ay + t * vy));
+    }
+}
@@ -0,0 +1,275 @@
+package com.team8013.frc2024.planners;
+
+import com.team8013.frc2024.Constants.NoteTrackerConstants;
+import com.team8013.lib.tracking.TargetTracker;
+import com.team8013.lib.util.RobotStateHistory;
+import com.team8013.lib.vision.CameraConfig;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Notes on the field from the note cameras' detections, and which one to go
+ * for.
+ * <p>
+ * Each frame's detections are turned into field positions using where the
+ * robot was when the frame was taken (from RobotStateHistory, the frame is
+ * always a few loops old) and handed to a TargetTracker. A detection's
+ * uncertainty grows with range, mostly along the line of sight where a pixel
+ * of ty is a lot of ground.
+ * <p>
+ * The target is the confirmed note the robot can reach soonest from where it
+ * is going now, and it's only swapped for another that is quicker by the
+ * switch margin so the chase doesn't flip between two notes.
+ */
+public class NoteTracker {
+
+    // layout of each detection in the Limelight's rawdetections array
+    public static final int kRawDetectionStride = 12;
+    private static final int kRawTx = 1;
+    private static final int kRawTy = 2;
+
+    private final TargetTracker mTracker = new TargetTracker(NoteTrackerConstants.kMaxTracks,
+            NoteTrackerConstants.kMaxDetections, NoteTrackerConstants.kProcessNoise, NoteTrackerConstants.kGate,
+            NoteTrackerConstants.kConfirmHits, NoteTrackerConstants.kMaxMisses, NoteTrackerConstants.kMaxAge);
+    private final RobotStateHistory mHistory = RobotStateHistory.getInstance();
+    private int mPoseXChannel = -1;
+    private int mPoseYChannel = -1;
+    private int mHeadingChannel = -1;
+
+    // one frame's detections in field coordinates
+    private final double[] mXs = new double[NoteTrackerConstants.kMaxDetections];
+    private final double[] mYs = new double[NoteTrackerConstants.kMaxDetections];
+    private final double[] mRxx = new double[NoteTrackerConstants.kMaxDetections];
+    private final double[] mRxy = new double[NoteTrackerConstants.kMaxDetections];
+    private final double[] mRyy = new double[NoteTrackerConstants.kMaxDetections];
+    private final CameraView mView = new CameraView();
+
+    private int mTargetId = -1;
+    private boolean mLostTarget = false;
+    private double mTargetX = 0.0;
+    private double mTargetY = 0.0;
+    private double mTargetTime = Double.NaN;
+    private volatile int mFrames = 0;
+    private volatile double mLastFrameUs = 0.0;
+
+    /**
+     * What the camera could see when a frame was taken, so notes out of view
+     * aren't counted as missing.
+     */
+    private static class CameraView implements TargetTracker.Visibility {
+        double x, y, cos, sin;
+
+        @Override
+        public boolean canSee(double noteX, double noteY) {
+            double dx = noteX - x;
+            double dy = noteY - y;
+            double forward = dx * cos + dy * sin;
+            double left = -dx * sin + dy * cos;
+            return forward > NoteTrackerConstants.kMinRange && forward < NoteTrackerConstants.kMaxRange
+                    && Math.abs(left) < forward * Math.tan(Math.toRadians(NoteTrackerConstants.kHalfFovDeg));
+        }
+    }
+
+    /**
+     * Runs one camera frame through the tracker. Called from the cameras'
+     * threads.
+     *
+     * @param camera    the camera the frame is from, for where it's mounted
+     * @param timestamp when the frame was taken
+     * @param raw       the Limelight's rawdetections for the frame
+     */
+    public synchronized void addFrame(CameraConfig camera, double timestamp, double[] raw) {
+        long start = System.nanoTime();
+        if (mPoseXChannel < 0) {
+            mPoseXChannel = mHistory.getChannel("Drive/poseX");
+            mPoseYChannel = mHistory.getChannel("Drive/poseY");
+            mHeadingChannel = mHistory.getChannel("Drive/thetaDegrees");
+            if (mPoseXChannel < 0 || mPoseYChannel < 0 || mHeadingChannel < 0) {
+                return; // not recording yet
+            }
+        }
+
+        // a heading that wrapped past 180 right around the frame interpolates
+        // to nonsense, skip the frame
+        if (Math.abs(mHistory.get(mHeadingChannel, timestamp - NoteTrackerConstants.kWrapWindow)
+                - mHistory.get(mHeadingChannel, timestamp + NoteTrackerConstants.kWrapWindow)) > 180.0) {
+            return;
+        }
+        double robotX = mHistory.get(mPoseXChannel, timestamp);
+        double robotY = mHistory.get(mPoseYChannel, timestamp);
+        double heading = Math.toRadians(mHistory.get(mHeadingChannel, timestamp));
+        double cos = Math.cos(heading);
+        double sin = Math.sin(heading);
+
+        double cameraYaw = heading + Math.toRadians(camera.getYawDeg());
+        mView.x = robotX + camera.getX() * cos - camera.getY() * sin;
+        mView.y = robotY + camera.getX() * sin + camera.getY() * cos;
+        mView.cos = Math.cos(cameraYaw);
+        mView.sin = Math.sin(cameraYaw);
+
+        int count = 0;
+        for (int i = 0; i + kRawDetectionStride <= raw.length && count < mXs.length; i += kRawDetectionStride) {
+            // degrees below the horizon to the note
+            double below = -(camera.getPitchDeg() + raw[i + kRawTy]);
+            if (below <= 1.0) {
+                continue; // at or above the horizon, not a note on the floor
+            }
+            double range = (camera.getZ() - NoteTrackerConstants.kNoteHeight)
+                    / Math.tan(Math.toRadians(below));
+            if (range > NoteTrackerConstants.kMaxRange) {
+                continue;
+            }
+            // tx is positive to the right
+            double bearing = -Math.toRadians(raw[i + kRawTx]);
+            double bearingCos = Math.cos(bearing);
+            double bearingSin = Math.sin(bearing);
+            double forward = range * bearingCos;
+            double left = range * bearingSin;
+            mXs[count] = mView.x + forward * mView.cos - left * mView.sin;
+            mYs[count] = mView.y + forward * mView.sin + left * mView.cos;
+
+            // uncertainty along and across the line of sight, rotated into the field
+            double along = NoteTrackerConstants.kRangeStdDevFraction * range + NoteTrackerConstants.kMinStdDev;
+            double across = Math.toRadians(NoteTrackerConstants.kBearingStdDevDeg) * range
+                    + NoteTrackerConstants.kMinStdDev;
+            double c = mView.cos * bearingCos - mView.sin * bearingSin;
+            double s = mView.sin * bearingCos + mView.cos * bearingSin;
+            double a2 = along * along;
+            double c2 = across * across;
+            mRxx[count] = a2 * c * c + c2 * s * s;
+            mRxy[count] = (a2 - c2) * c * s;
+            mRyy[count] = a2 * s * s + c2 * c * c;
+            count++;
+        }
+
+        mTracker.update(timestamp, mXs, mYs, mRxx, mRxy, mRyy, count, mView);
+        mFrames++;
+        mLastFrameUs = (System.nanoTime() - start) / 1.0e3;
+    }
+
+    /**
+     * Picks the note to go for from the robot's pose and field relative
+     * velocity.
+     *
+     * @return whether there's a target
+     */
+    public boolean updateTarget(double robotX, double robotY, double vx, double vy) {
+        synchronized (mTracker) {
+            int current = mTargetId < 0 ? -1 : mTracker.indexOf(mTargetId);
+            if (mTargetId >= 0 && current < 0) {
+                mLostTarget = true;
+            }
+            int best = -1;
+            double bestTime = Double.POSITIVE_INFINITY;
+            double currentTime = Double.POSITIVE_INFINITY;
+            for (int t = 0; t < mTracker.getCount(); t++) {
+                if (!mTracker.isConfirmed(t)) {
+                    continue;
+                }
+                double time = getInterceptTime(robotX, robotY, vx, vy, mTracker.getX(t), mTracker.getY(t));
+                if (t == current) {
+                    currentTime = time;
+                }
+                if (time < bestTime) {
+                    bestTime = time;
+                    best = t;
+                }
+            }
+            if (current >= 0 && currentTime < bestTime + NoteTrackerConstants.kSwitchMargin) {
+                best = current;
+                bestTime = currentTime;
+            }
+            if (best < 0) {
+                mTargetId = -1;
+                mTargetTime = Double.NaN;
+                return false;
+            }
+            mTargetId = mTracker.getId(best);
+            mTargetX = mTracker.getX(best);
+            mTargetY = mTracker.getY(best);
+            mTargetTime = bestTime;
+            return true;
+        }
+    }
+
+    /**
+     * Rough time for the drive to reach a point: the velocity toward it is
+     * brought up to top speed (or first turned around), and the velocity across
+     * it has to be taken out on top of that.
+     */
+    public static double getInterceptTime(double robotX, double robotY, double vx, double vy, double targetX,
+            double targetY) {
+        double maxSpeed = NoteTrackerConstants.kInterceptMaxSpeed;
+        double maxAccel = NoteTrackerConstants.kInterceptMaxAccel;
+        double dx = targetX - robotX;
+        double dy = targetY - robotY;
+        double distance = Math.hypot(dx, dy);
+        if (distance < 1e-6) {
+            return 0.0;
+        }
+        double toward = (vx * dx + vy * dy) / distance;
+        double across = Math.abs(-vx * dy + vy * dx) / distance;
+
+        double time = across / maxAccel;
+        if (toward < 0.0) {
+            // stop first, the distance covered going the wrong way comes back
+            time += -toward / maxAccel;
+            distance += toward * toward / (2.0 * maxAccel);
+            toward = 0.0;
+        }
+        toward = Math.min(toward, maxSpeed);
+        double accelDistance = (maxSpeed * maxSpeed - toward * toward) / (2.0 * maxAccel);
+        if (distance <= accelDistance) {
+            time += (-toward + Math.sqrt(toward * toward + 2.0 * maxAccel * distance)) / maxAccel;
+        } else {
+            time += (maxSpeed - toward) / maxAccel + (distance - accelDistance) / maxSpeed;
+        }
+        return time;
+    }
+
+    /**
+     * Forgets the target, e.g. when a new chase starts.
+     */
+    public void resetTarget() {
+        mTargetId = -1;
+        mLostTarget = false;
+        mTargetTime = Double.NaN;
+    }
+
+    public void clear() {
+        mTracker.clear();
+        resetTarget();
+    }
+
+    public boolean hasTarget() {
+        return mTargetId >= 0;
+    }
+
+    /**
+     * @return whether a note being chased dropped out of the tracker, picked
+     *         up or never really there, since the last reset
+     */
+    public boolean lostTarget() {
+        return mLostTarget;
+    }
+
+    public double getTargetX() {
+        return mTargetX;
+    }
+
+    public double getTargetY() {
+        return mTargetY;
+    }
+
+    public double getTargetInterceptTime() {
+        return mTargetTime;
+    }
+
+    public void outputTelemetry() {
+        SmartDashboard.putNumber("Note Tracks", mTracker.getCount());
+        SmartDashboard.putNumber("Note Frames", mFrames);
+        SmartDashboard.putNumber("Note Frame Us", mLastFrameUs);
+        SmartDashboard.putNumber("Note Target Id", mTargetId);
+        SmartDashboard.putNumber("Note Target Intercept Time", mTargetTime);
+    }
+}
@@ -0,0 +1,246 @@
+package com.team8013.frc2024.planners;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.team8013.frc2024.Constants;
+import com.team8013.frc2024.Constants.ReplanConstants;
+import com.team8013.frc2024.FieldLayout;
+import com.team8013.frc2024.subsystems.Drive;
+import com.team8013.lib.geometry.MutablePose2d;
+import com.team8013.lib.util.RobotClock;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.math.trajectory.TrajectoryConfig;
+import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Plans new drive trajectories during autonomous, around the stage legs and
+ * subwoofers, from wherever the robot is to a goal on the field.
+ * <p>
+ * A request snapshots the robot's pose and field relative velocity and
+ * projects them ahead by the splice lead, about how long planning and handing
+ * over take, so the new trajectory starts where the robot will be, moving the
+ * way it will be moving. Planning runs on its own thread: A* through the
+ * NavigationGraph, a spline through the corners, and a check of the spline
+ * against the obstacles (with extra points along the way if the first one cuts
+ * a corner). A plan that takes longer than the planning budget is thrown away,
+ * and the caller gives up waiting after the handoff budget, in both cases
+ * keeping whatever path it had.
+ */
+public class PathReplanner {
+
+    public enum Status {
+        PENDING, // still planning
+        READY, // trajectory can be followed
+        NO_PATH, // goal blocked or unreachable
+        UNSAFE, // no spline through the path stayed clear of the obstacles
+        OVER_BUDGET, // took too long, the start state is stale
+        FAILED // the spline couldn't be generated
+    }
+
+    public static class Request {
+        private final double mRequestTime;
+        private volatile Status mStatus = Status.PENDING;
+        private volatile Trajectory mTrajectory = null;
+        private volatile double mPlanMs = 0.0;
+
+        private Request(double requestTime) {
+            mRequestTime = requestTime;
+        }
+
+        /**
+         * @return where the request stands, OVER_BUDGET if it's still planning
+         *         past the handoff budget
+         */
+        public Status getStatus(double now) {
+            Status status = mStatus;
+            if (status == Status.PENDING && now - mRequestTime > ReplanConstants.kHandoffBudget) {
+                return Status.OVER_BUDGET;
+            }
+            return status;
+        }
+
+        /**
+         * @return the new trajectory, only once the status is READY
+         */
+        public Trajectory getTrajectory() {
+            return mTrajectory;
+        }
+
+        public double getPlanMs() {
+            return mPlanMs;
+        }
+    }
+
+    private static PathReplanner mInstance;
+
+    public static PathReplanner getInstance() {
+        if (mInstance == null) {
+            mInstance = new PathReplanner();
+        }
+        return mInstance;
+    }
+
+    private final NavigationGraph mGraph;
+    private final ExecutorService mPlanner;
+    private final Drive mDrive = Drive.getInstance();
+    private final MutablePose2d mPose = new MutablePose2d();
+
+    private volatile Status mLastStatus = null;
+    private volatile double mLastPlanMs = 0.0;
+    private volatile double mMaxPlanMs = 0.0;
+    private volatile int mPlans = 0;
+
+    private PathReplanner() {
+        mGraph = new NavigationGraph(FieldLayout.getObstacles(), ReplanConstants.kClearance,
+                ReplanConstants.kNodeMargin, 0.0, 0.0, FieldLayout.kFieldLength, FieldLayout.kFieldWidth);
+        mPlanner = Executors.newSingleThreadExecutor((r) -> {
+            Thread thread = new Thread(r, "PathReplanner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        System.out.println("Navigation graph has " + mGraph.getNodeCount() + " nodes");
+    }
+
+    /**
+     * Starts planning from the robot's current state.
+     *
+     * @param goal     where to end up, field coordinates (already flipped for
+     *                 the alliance)
+     * @param endSpeed m/s at the goal
+     */
+    public synchronized Request request(Translation2d goal, double endSpeed) {
+        double now = RobotClock.getInstance().getTimestamp();
+        mDrive.getPose(mPose);
+        double cos = mPose.getRotation().getCos();
+        double sin = mPose.getRotation().getSin();
+        double vx = mDrive.getMeasuredXVelocity();
+        double vy = mDrive.getMeasuredYVelocity();
+        double fieldVx = vx * cos - vy * sin;
+        double fieldVy = vx * sin + vy * cos;
+        double startX = mPose.getX() + fieldVx * ReplanConstants.kSpliceLead;
+        double startY = mPose.getY() + fieldVy * ReplanConstants.kSpliceLead;
+
+        Request request = new Request(now);
+        mPlanner.submit(() -> plan(request, startX, startY, fieldVx, fieldVy, goal.getX(), goal.getY(), endSpeed));
+        return request;
+    }
+
+    private void plan(Request request, double startX, double startY, double vx, double vy, double goalX,
+            double goalY, double endSpeed) {
+        long start = System.nanoTime();
+        Status status;
+        Trajectory trajectory = null;
+        try {
+            double[] path = mGraph.findPath(startX, startY, goalX, goalY);
+            if (path == null) {
+                status = Status.NO_PATH;
+            } else {
+                status = Status.UNSAFE;
+                for (int attempt = 0; attempt <= ReplanConstants.kMaxDensify; attempt++) {
+                    trajectory = generate(path, vx, vy, endSpeed);
+                    if (isSafe(trajectory)) {
+                        status = Status.READY;
+                        break;
+                    }
+                    path = densify(path);
+                }
+            }
+        } catch (RuntimeException e) {
+            // a spline the generator can't fit, e.g. points on top of each other
+            System.err.println("Replanning failed: " + e.getMessage());
+            status = Status.FAILED;
+        }
+
+        double planMs = (System.nanoTime() - start) / 1.0e6;
+        if (status == Status.READY && planMs > ReplanConstants.kPlanBudget * 1000.0) {
+            status = Status.OVER_BUDGET;
+        }
+        request.mPlanMs = planMs;
+        if (status == Status.READY) {
+            request.mTrajectory = trajectory;
+        }
+        request.mStatus = status;
+
+        mLastStatus = status;
+        mLastPlanMs = planMs;
+        mMaxPlanMs = Math.max(mMaxPlanMs, planMs);
+        mPlans++;
+    }
+
+    private Trajectory generate(double[] path, double vx, double vy, double endSpeed) {
+        int points = path.length / 2;
+        double speed = Math.min(Math.hypot(vx, vy), ReplanConstants.kMaxSpeed);
+        // leave in the direction the robot is already going so the splice
+        // doesn't kink, unless it's barely moving
+        Rotation2d startTangent = speed > ReplanConstants.kMinTangentSpeed
+                ? new Rotation2d(vx, vy)
+                : new Rotation2d(path[2] - path[0], path[3] - path[1]);
+        Rotation2d endTangent = new Rotation2d(path[2 * points - 2] - path[2 * points - 4],
+                path[2 * points - 1] - path[2 * points - 3]);
+
+        List<Translation2d> interior = new ArrayList<>();
+        for (int i = 1; i < points - 1; i++) {
+            interior.add(new Translation2d(path[2 * i], path[2 * i + 1]));
+        }
+        TrajectoryConfig config = Constants.AutoConstants.createConfig(ReplanConstants.kMaxSpeed,
+                ReplanConstants.kMaxAccel, speed, endSpeed);
+        return TrajectoryGenerator.generateTrajectory(new Pose2d(path[0], path[1], startTangent), interior,
+                new Pose2d(path[2 * points - 2], path[2 * points - 1], endTangent), config);
+    }
+
+    private boolean isSafe(Trajectory trajectory) {
+        double previousX = Double.NaN;
+        double previousY = Double.NaN;
+        // a robot bumped into an obstacle's buffer starts out inside it, that's
+        // what the replan is getting it out of, so only check once it's clear
+        boolean clear = false;
+        for (double t = 0.0; t <= trajectory.getTotalTimeSeconds(); t += ReplanConstants.kCheckStep) {
+            Pose2d pose = trajectory.sample(t).poseMeters;
+            if (clear && !mGraph.isClear(previousX, previousY, pose.getX(), pose.getY())) {
+                return false;
+            }
+            clear |= mGraph.isFree(pose.getX(), pose.getY());
+            previousX = pose.getX();
+            previousY = pose.getY();
+        }
+        return clear;
+    }
+
+    /**
+     * @return the path with a point added halfway along each segment, which
+     *         holds a spline closer to the straight lines
+     */
+    private static double[] densify(double[] path) {
+        int points = path.length / 2;
+        double[] dense = new double[2 * (2 * points - 1)];
+        for (int i = 0; i < points; i++) {
+            dense[4 * i] = path[2 * i];
+            dense[4 * i + 1] = path[2 * i + 1];
+            if (i < points - 1) {
+                dense[4 * i + 2] = (path[2 * i] + path[2 * i + 2]) / 2.0;
+                dense[4 * i + 3] = (path[2 * i + 1] + path[2 * i + 3]) / 2.0;
+            }
+        }
+        return dense;
+    }
+
+    public NavigationGraph getGraph() {
+        return mGraph;
+    }
+
+    public void outputTelemetry() {
+        Status status = mLastStatus;
+        SmartDashboard.putString("Replan Status", status == null ? "NONE" : status.toString());
+        SmartDashboard.putNumber("Replan Ms", mLastPlanMs);
+        SmartDashboard.putNumber("Replan Max Ms", mMaxPlanMs);
+        SmartDashboard.putNumber("Replans", mPlans);
+    }
+}
@@ -0,0 +1,193 @@
+package com.team8013.frc2024.planners;
+
+/**
+ * Precomputed lookup of which (elevator, pivot, wrist) positions are legal for
+ * the superstructure. The space is discretized into a grid at robot init and
+ * stored as a bitset, so every query at runtime is a couple of multiplies and
+ * an array read.
+ * <p>
+ * A position is illegal if it is outside the joint limits, inside one of the
+ * keep-out regions, or breaks the ground intake extension limit (with the pivot
+ * down and the wrist on the floor side, the wrist may only come as far down as
+ * the elevator extension allows).
+ */
+public class SuperstructureFeasibilityMap {
+
+    public static final int kElevator = 0;
+    public static final int kPivot = 1;
+    public static final int kWrist = 2;
+    public static final int kNumJoints = 3;
+
+    private final double[] mMin = new double[kNumJoints];
+    private final double[] mMax = new double[kNumJoints];
+    private final double[] mResolution = new double[kNumJoints];
+    private final int[] mCells = new int[kNumJoints];
+
+    private final double[][] mKeepOutRegions;
+    private final double mExtensionMaxPivot;
+    private final double mExtensionMinWrist;
+
+    // max wrist angle for each elevator cell while the extension limit is active
+    private final double[] mExtensionWristLimit;
+    // pivot angle from the extension table for each elevator cell
+    private final double[] mExtensionPivot;
+    // bit set means the cell is feasible
+    private final long[] mFeasible;
+
+    /**
+     * @param min              lower limit of each joint {meters, degrees, degrees}
+     * @param max              upper limit of each joint
+     * @param resolution       grid spacing of each joint
+     * @param keepOutRegions   rows of {elevatorMin, elevatorMax, pivotMin,
+     *                         pivotMax, wristMin, wristMax} that are illegal
+     * @param extensionTable   rows of {elevator, wrist, pivot} sorted by
+     *                         elevator, giving the furthest down the wrist can go
+     *                         at that extension and the pivot angle to hold
+     *                         there
+     * @param extensionMaxPivot extension limit only applies with the pivot below
+     *                         this angle
+     * @param extensionMinWrist extension limit only applies with the wrist past
+     *                         this angle
+     */
+    public SuperstructureFeasibilityMap(double[] min, double[] max, double[] resolution, double[][] keepOutRegions,
+            double[][] extensionTable, double extensionMaxPivot, double extensionMinWrist) {
+        for (int i = 0; i < kNumJoints; i++) {
+            mMin[i] = min[i];
+            mMax[i] = max[i];
+            mResolution[i] = resolution[i];
+            mCells[i] = (int) Math.ceil((max[i] - min[i]) / resolution[i]) + 1;
+        }
+        mKeepOutRegions = keepOutRegions;
+        mExtensionMaxPivot = extensionMaxPivot;
+        mExtensionMinWrist = extensionMinWrist;
+
+        mExtensionWristLimit = new double[mCells[kElevator]];
+        mExtensionPivot = new double[mCells[kElevator]];
+        for (int i = 0; i < mCells[kElevator]; i++) {
+            mExtensionWristLimit[i] = interpolateTable(extensionTable, cellCenter(kElevator, i), 1);
+            mExtensionPivot[i] = interpolateTable(extensionTable, cellCenter(kElevator, i), 2);
+        }
+
+        long totalCells = (long) mCells[kElevator] * mCells[kPivot] * mCells[kWrist];
+        mFeasible = new long[(int) ((totalCells + 63) / 64)];
+
+        for (int e = 0; e < mCells[kElevator]; e++) {
+            for (int p = 0; p < mCells[kPivot]; p++) {
+                for (int w = 0; w < mCells[kWrist]; w++) {
+                    if (evaluate(e, cellCenter(kElevator, e), cellCenter(kPivot, p), cellCenter(kWrist, w))) {
+                        int bit = flatten(e, p, w);
+                        mFeasible[bit >> 6] |= 1L << (bit & 63);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the superstructure is allowed to be at this position
+     */
+    public boolean isFeasible(double elevator, double pivot, double wrist) {
+        int e = cellIndex(kElevator, elevator);
+        int p = cellIndex(kPivot, pivot);
+        int w = cellIndex(kWrist, wrist);
+        if (e < 0 || p < 0 || w < 0) {
+            return false;
+        }
+        int bit = flatten(e, p, w);
+        return (mFeasible[bit >> 6] & (1L << (bit & 63))) != 0;
+    }
+
+    /**
+     * @return the furthest down the wrist can go at this elevator extension while
+     *         the pivot is down
+     */
+    public double getExtensionWristLimit(double elevator) {
+        return mExtensionWristLimit[clampedElevatorCell(elevator)];
+    }
+
+    /**
+     * @return the pivot angle the extension table gives for this elevator
+     *         extension
+     */
+    public double getExtensionPivot(double elevator) {
+        return mExtensionPivot[clampedElevatorCell(elevator)];
+    }
+
+    public double getMin(int joint) {
+        return mMin[joint];
+    }
+
+    public double getMax(int joint) {
+        return mMax[joint];
+    }
+
+    public double getResolution(int joint) {
+        return mResolution[joint];
+    }
+
+    public double getExtensionMaxPivot() {
+        return mExtensionMaxPivot;
+    }
+
+    public double getExtensionMinWrist() {
+        return mExtensionMinWrist;
+    }
+
+    public double[][] getKeepOutRegions() {
+        return mKeepOutRegions;
+    }
+
+    private boolean evaluate(int elevatorCell, double elevator, double pivot, double wrist) {
+        for (double[] region : mKeepOutRegions) {
+            if (elevator >= region[0] && elevator <= region[1]
+                    && pivot >= region[2] && pivot <= region[3]
+                    && wrist >= region[4] && wrist <= region[5]) {
+                return false;
+            }
+        }
+        // cells are evaluated at their center, give the limit half a cell so a goal
+        // sitting right on the limit doesn't round into the wrong side of it
+        if (pivot < mExtensionMaxPivot && wrist > mExtensionMinWrist
+                && wrist - 0.5 * mResolution[kWrist] > mExtensionWristLimit[elevatorCell]) {
+            return false;
+        }
+        return true;
+    }
+
+    private int clampedElevatorCell(double elevator) {
+        int e = cellIndex(kElevator, elevator);
+        if (e < 0) {
+            e = elevator < mMin[kElevator] ? 0 : mCells[kElevator] - 1;
+        }
+        return e;
+    }
+
+    private int cellIndex(int joint, double value) {
+        if (value < mMin[joint] || value > mMax[joint]) {
+            return -1;
+        }
+        int index = (int) ((value - mMin[joint]) / mResolution[joint] + 0.5);
+        return Math.min(index, mCells[joint] - 1);
+    }
+
+    private double cellCenter(int joint, int index) {
+        return Math.min(mMin[joint] + index * mResolution[joint], mMax[joint]);
+    }
+
+    private int flatten(int e, int p, int w) {
+        return (e * mCells[kPivot] + p) * mCells[kWrist] + w;
+    }
+
+    private static double interpolateTable(double[][] table, double x, int column) {
+        if (x <= table[0][0]) {
+            return table[0][column];
+        }
+        for (int i = 1; i < table.length; i++) {
+            if (x <= table[i][0]) {
+                double t = (x - table[i - 1][0]) / (table[i][0] - table[i - 1][0]);
+                return table[i - 1][column] + (table[i][column] - table[i - 1][column]) * t;
+            }
+        }
+        return table[table.length - 1][column];
+    }
+}
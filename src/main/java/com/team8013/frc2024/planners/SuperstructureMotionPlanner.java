@@ -0,0 +1,506 @@
+package com.team8013.frc2024.planners;
+
+import static com.team8013.frc2024.planners.SuperstructureFeasibilityMap.kElevator;
+import static com.team8013.frc2024.planners.SuperstructureFeasibilityMap.kNumJoints;
+import static com.team8013.frc2024.planners.SuperstructureFeasibilityMap.kPivot;
+import static com.team8013.frc2024.planners.SuperstructureFeasibilityMap.kWrist;
+
+/**
+ * Plans elevator, pivot and wrist moves so that all three joints move at once
+ * instead of waiting on each other one at a time.
+ * <p>
+ * Every joint runs its own full speed trapezoidal profile to the goal. When
+ * moving everything at t = 0 would pass through an illegal position (checked
+ * against the {@link SuperstructureFeasibilityMap}), the planner searches for
+ * the smallest start delays that keep the whole move legal, e.g. the elevator
+ * starts extending the moment the pivot clears the keep-out region instead of
+ * after the pivot has finished moving. Planning only happens when the goal
+ * changes; sampling the plan each loop is constant time and allocation free.
+ * <p>
+ * Planning runs on the loop thread, so the search is cut off after
+ * kPlanBudgetNanos. The fastest legal plan found by then is used. If there
+ * isn't one yet, the joints move one at a time, each waiting for the ones
+ * before it to finish. A goal that is illegal itself, or that can't be reached
+ * legally even one joint at a time, is refused and the joints hold where they
+ * are. The plan never drives through a keep-out region.
+ */
+public class SuperstructureMotionPlanner {
+
+    private static final double kGoalEpsilon = 1e-6;
+    private static final double kSampleDt = 0.005; // seconds between feasibility checks
+    private static final double kMaxPlanTime = 4.0; // seconds
+    private static final int kMaxCandidates = 32;
+    private static final int kRefineIterations = 6;
+    private static final long kPlanBudgetNanos = 2_000_000; // 2 ms of a 10 ms loop
+
+    // orders to try for the one joint at a time fallback
+    private static final int[][] kGatedOrders = {
+            { kPivot, kWrist, kElevator },
+            { kPivot, kElevator, kWrist },
+            { kWrist, kPivot, kElevator },
+            { kWrist, kElevator, kPivot },
+            { kElevator, kPivot, kWrist },
+            { kElevator, kWrist, kPivot }
+    };
+
+    private final SuperstructureFeasibilityMap mMap;
+    private final JointProfile[] mProfiles = new JointProfile[kNumJoints];
+    private final double[] mClearanceMargin = new double[kNumJoints];
+
+    // scratch space for planning, reused so replanning doesn't allocate
+    private final double[][] mClearanceValues = new double[kNumJoints][kMaxCandidates];
+    private final int[] mNumClearanceValues = new int[kNumJoints];
+    private final double[][] mDelayCandidates = new double[kNumJoints][kMaxCandidates];
+    private final int[] mNumDelayCandidates = new int[kNumJoints];
+    private final double[] mBestDelays = new double[kNumJoints];
+    private final double[] mTrialDelays = new double[kNumJoints];
+
+    private final double[] mGoal = new double[kNumJoints];
+    private final double[] mSetpoint = new double[kNumJoints];
+    private double mPlanStartTime = 0.0;
+    private double mPlanDuration = 0.0;
+    private boolean mHasPlan = false;
+    private boolean mPlanFeasible = true;
+    private boolean mPlanTruncated = false;
+    private long mPlanDeadline = 0;
+
+    /**
+     * @param map          feasible region of the superstructure
+     * @param maxVelocity  max velocity of each joint {m/s, deg/s, deg/s}
+     * @param maxAccel     max acceleration of each joint {m/s^2, deg/s^2, deg/s^2}
+     * @param clearance    distance to stay away from the edge of a keep-out
+     *                     region when planning around it
+     */
+    public SuperstructureMotionPlanner(SuperstructureFeasibilityMap map, double[] maxVelocity, double[] maxAccel,
+            double[] clearance) {
+        mMap = map;
+        for (int i = 0; i < kNumJoints; i++) {
+            mProfiles[i] = new JointProfile(maxVelocity[i], maxAccel[i]);
+            mClearanceMargin[i] = clearance[i];
+        }
+    }
+
+    /**
+     * Moves toward a new goal, replanning from the current position only if the
+     * goal has changed. Safe to call every loop.
+     */
+    public void setGoal(double timestamp, double elevator, double pivot, double wrist, double currentElevator,
+            double currentPivot, double currentWrist) {
+        if (mHasPlan && Math.abs(mGoal[kElevator] - elevator) < kGoalEpsilon
+                && Math.abs(mGoal[kPivot] - pivot) < kGoalEpsilon
+                && Math.abs(mGoal[kWrist] - wrist) < kGoalEpsilon) {
+            return;
+        }
+        mGoal[kElevator] = elevator;
+        mGoal[kPivot] = pivot;
+        mGoal[kWrist] = wrist;
+        mProfiles[kElevator].setEndpoints(currentElevator, elevator);
+        mProfiles[kPivot].setEndpoints(currentPivot, pivot);
+        mProfiles[kWrist].setEndpoints(currentWrist, wrist);
+        plan();
+        mPlanStartTime = timestamp;
+        mHasPlan = true;
+    }
+
+    /**
+     * Forgets the current plan so the next goal is planned from wherever the
+     * mechanisms are. Call when another piece of code commands the joints
+     * directly.
+     */
+    public void reset() {
+        mHasPlan = false;
+    }
+
+    /**
+     * Samples the plan at the given time. Read the result with the setpoint
+     * getters.
+     */
+    public void update(double timestamp) {
+        double t = timestamp - mPlanStartTime;
+        for (int i = 0; i < kNumJoints; i++) {
+            mSetpoint[i] = mProfiles[i].position(t - mBestDelays[i]);
+        }
+    }
+
+    public boolean hasPlan() {
+        return mHasPlan;
+    }
+
+    public double getElevatorSetpoint() {
+        return mSetpoint[kElevator];
+    }
+
+    public double getPivotSetpoint() {
+        return mSetpoint[kPivot];
+    }
+
+    public double getWristSetpoint() {
+        return mSetpoint[kWrist];
+    }
+
+    /**
+     * Pivot setpoint for following the ground intake extension table: once the
+     * plan has the pivot down and the wrist on the floor side, the pivot tracks
+     * the table's pivot column at the planned elevator extension. Falls back to
+     * the planned pivot setpoint anywhere else, or if the table position isn't
+     * legal.
+     */
+    public double getExtensionPivotSetpoint() {
+        double elevator = mSetpoint[kElevator];
+        double wrist = mSetpoint[kWrist];
+        if (mSetpoint[kPivot] >= mMap.getExtensionMaxPivot() || wrist <= mMap.getExtensionMinWrist()) {
+            return mSetpoint[kPivot];
+        }
+        double pivot = mMap.getExtensionPivot(elevator);
+        if (pivot >= mMap.getExtensionMaxPivot() || !mMap.isFeasible(elevator, pivot, wrist)) {
+            return mSetpoint[kPivot];
+        }
+        return pivot;
+    }
+
+    public double getPlanDuration() {
+        return mPlanDuration;
+    }
+
+    /**
+     * @return false if the goal was refused because there is no legal way to
+     *         it, in which case the joints hold where they were
+     */
+    public boolean isPlanFeasible() {
+        return mPlanFeasible;
+    }
+
+    /**
+     * @return true if the last search ran out of time, so the plan may be slower
+     *         than it could have been
+     */
+    public boolean isPlanTruncated() {
+        return mPlanTruncated;
+    }
+
+    public double getDelay(int joint) {
+        return mBestDelays[joint];
+    }
+
+    private void plan() {
+        mPlanDeadline = System.nanoTime() + kPlanBudgetNanos;
+        mPlanTruncated = false;
+        for (int i = 0; i < kNumJoints; i++) {
+            mBestDelays[i] = 0.0;
+        }
+
+        // never head for an illegal goal
+        if (!mMap.isFeasible(mGoal[kElevator], mGoal[kPivot], mGoal[kWrist])) {
+            hold();
+            return;
+        }
+
+        // everything moving at once is the fastest plan, try it first
+        if (isLegal(mBestDelays)) {
+            mPlanFeasible = true;
+            mPlanDuration = totalTime(mBestDelays);
+            return;
+        }
+
+        buildClearanceValues();
+        buildDelayCandidates();
+
+        double bestTime = Double.POSITIVE_INFINITY;
+        int n0 = mNumDelayCandidates[0];
+        int n1 = mNumDelayCandidates[1];
+        int n2 = mNumDelayCandidates[2];
+        search: for (int a = 0; a < n0; a++) {
+            for (int b = 0; b < n1; b++) {
+                for (int c = 0; c < n2; c++) {
+                    mTrialDelays[0] = mDelayCandidates[0][a];
+                    mTrialDelays[1] = mDelayCandidates[1][b];
+                    mTrialDelays[2] = mDelayCandidates[2][c];
+                    // some joint always starts right away, otherwise we're just waiting around
+                    if (mTrialDelays[0] > 0.0 && mTrialDelays[1] > 0.0 && mTrialDelays[2] > 0.0) {
+                        continue;
+                    }
+                    double time = totalTime(mTrialDelays);
+                    if (time >= bestTime || time > kMaxPlanTime) {
+                        continue;
+                    }
+                    if (System.nanoTime() > mPlanDeadline) {
+                        mPlanTruncated = true;
+                        break search;
+                    }
+                    if (isLegal(mTrialDelays)) {
+                        bestTime = time;
+                        System.arraycopy(mTrialDelays, 0, mBestDelays, 0, kNumJoints);
+                    }
+                }
+            }
+        }
+
+        if (bestTime == Double.POSITIVE_INFINITY) {
+            // checked regardless of the budget, there are only a handful of orders
+            if (planGated()) {
+                mPlanFeasible = true;
+                mPlanDuration = totalTime(mBestDelays);
+            } else {
+                hold();
+            }
+        } else {
+            refineDelays();
+            mPlanFeasible = true;
+            mPlanDuration = totalTime(mBestDelays);
+        }
+    }
+
+    /**
+     * Moves one joint at a time, each starting once the joints before it have
+     * finished. Slow, but legal whenever each single joint move is.
+     *
+     * @return false if no order of the joints is legal
+     */
+    private boolean planGated() {
+        for (int[] order : kGatedOrders) {
+            double delay = 0.0;
+            for (int joint : order) {
+                mTrialDelays[joint] = delay;
+                delay += mProfiles[joint].getDuration();
+            }
+            if (isLegal(mTrialDelays)) {
+                System.arraycopy(mTrialDelays, 0, mBestDelays, 0, kNumJoints);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Refuses the goal: every joint stays where the plan started.
+     */
+    private void hold() {
+        for (int i = 0; i < kNumJoints; i++) {
+            mProfiles[i].setEndpoints(mProfiles[i].getStart(), mProfiles[i].getStart());
+            mBestDelays[i] = 0.0;
+        }
+        mPlanFeasible = false;
+        mPlanDuration = 0.0;
+    }
+
+    /**
+     * The candidate delays are only as good as the clearance values, so shrink
+     * each delay as far as it will go while the plan stays legal.
+     */
+    private void refineDelays() {
+        for (int i = 0; i < kNumJoints; i++) {
+            if (mBestDelays[i] <= 0.0 || System.nanoTime() > mPlanDeadline) {
+                continue;
+            }
+            System.arraycopy(mBestDelays, 0, mTrialDelays, 0, kNumJoints);
+            double legal = mBestDelays[i];
+            double illegal = 0.0;
+            mTrialDelays[i] = 0.0;
+            if (isLegal(mTrialDelays)) {
+                legal = 0.0;
+            } else {
+                for (int iteration = 0; iteration < kRefineIterations; iteration++) {
+                    if (System.nanoTime() > mPlanDeadline) {
+                        break;
+                    }
+                    mTrialDelays[i] = 0.5 * (legal + illegal);
+                    if (isLegal(mTrialDelays)) {
+                        legal = mTrialDelays[i];
+                    } else {
+                        illegal = mTrialDelays[i];
+                    }
+                }
+            }
+            mBestDelays[i] = legal;
+        }
+    }
+
+    /**
+     * Collects the joint values just outside the edges of every constraint.
+     * These are the positions a joint has to reach before another joint is free
+     * to move.
+     */
+    private void buildClearanceValues() {
+        for (int i = 0; i < kNumJoints; i++) {
+            mNumClearanceValues[i] = 0;
+        }
+        for (double[] region : mMap.getKeepOutRegions()) {
+            for (int i = 0; i < kNumJoints; i++) {
+                addClearanceValue(i, region[2 * i] - mClearanceMargin[i]);
+                addClearanceValue(i, region[2 * i + 1] + mClearanceMargin[i]);
+            }
+        }
+        addClearanceValue(kPivot, mMap.getExtensionMaxPivot() + mClearanceMargin[kPivot]);
+        addClearanceValue(kWrist, mMap.getExtensionMinWrist() - mClearanceMargin[kWrist]);
+    }
+
+    private void addClearanceValue(int joint, double value) {
+        // only values the joint actually passes through are useful
+        if (!mProfiles[joint].passesThrough(value) || mNumClearanceValues[joint] >= kMaxCandidates) {
+            return;
+        }
+        mClearanceValues[joint][mNumClearanceValues[joint]++] = value;
+    }
+
+    /**
+     * Candidate delays for each joint: start right away, start when another joint
+     * finishes, start when another joint clears a constraint, or start so that
+     * this joint reaches a clearance value right as another joint clears one.
+     */
+    private void buildDelayCandidates() {
+        for (int j = 0; j < kNumJoints; j++) {
+            mNumDelayCandidates[j] = 0;
+            addDelayCandidate(j, 0.0);
+            for (int k = 0; k < kNumJoints; k++) {
+                if (k == j) {
+                    continue;
+                }
+                addDelayCandidate(j, mProfiles[k].getDuration());
+                for (int v = 0; v < mNumClearanceValues[k]; v++) {
+                    double otherCrossing = mProfiles[k].timeToReach(mClearanceValues[k][v]);
+                    addDelayCandidate(j, otherCrossing);
+                    for (int u = 0; u < mNumClearanceValues[j]; u++) {
+                        addDelayCandidate(j, otherCrossing - mProfiles[j].timeToReach(mClearanceValues[j][u]));
+                    }
+                }
+            }
+        }
+    }
+
+    private void addDelayCandidate(int joint, double delay) {
+        if (delay < 0.0 || mNumDelayCandidates[joint] >= kMaxCandidates) {
+            return;
+        }
+        for (int i = 0; i < mNumDelayCandidates[joint]; i++) {
+            if (Math.abs(mDelayCandidates[joint][i] - delay) < 1e-4) {
+                return;
+            }
+        }
+        mDelayCandidates[joint][mNumDelayCandidates[joint]++] = delay;
+    }
+
+    private double totalTime(double[] delays) {
+        double time = 0.0;
+        for (int i = 0; i < kNumJoints; i++) {
+            time = Math.max(time, delays[i] + mProfiles[i].getDuration());
+        }
+        return time;
+    }
+
+    /**
+     * Walks the plan in time and checks every sample against the feasibility map.
+     * If the move starts from an illegal position (e.g. after manual control) it
+     * is allowed to leave that region, but not to come back.
+     */
+    private boolean isLegal(double[] delays) {
+        double duration = totalTime(delays);
+        boolean wasFeasible = false;
+        for (double t = 0.0;; t += kSampleDt) {
+            double sampleTime = Math.min(t, duration);
+            boolean feasible = mMap.isFeasible(
+                    mProfiles[kElevator].position(sampleTime - delays[kElevator]),
+                    mProfiles[kPivot].position(sampleTime - delays[kPivot]),
+                    mProfiles[kWrist].position(sampleTime - delays[kWrist]));
+            if (feasible) {
+                wasFeasible = true;
+            } else if (wasFeasible) {
+                return false;
+            }
+            if (sampleTime >= duration) {
+                return feasible;
+            }
+        }
+    }
+
+    /**
+     * Trapezoidal (or triangular) profile for one joint, starting and ending at
+     * rest.
+     */
+    private static class JointProfile {
+        private final double mMaxVelocity;
+        private final double mMaxAccel;
+
+        private double mStart;
+        private double mDistance;
+        private double mDirection;
+        private double mAccelTime;
+        private double mCruiseTime;
+        private double mPeakVelocity;
+        private double mDuration;
+
+        JointProfile(double maxVelocity, double maxAccel) {
+            mMaxVelocity = maxVelocity;
+            mMaxAccel = maxAccel;
+        }
+
+        void setEndpoints(double start, double goal) {
+            mStart = start;
+            mDistance = Math.abs(goal - start);
+            mDirection = Math.signum(goal - start);
+
+            double accelDistance = mMaxVelocity * mMaxVelocity / mMaxAccel;
+            if (accelDistance >= mDistance) {
+                // never reaches cruise velocity
+                mAccelTime = Math.sqrt(mDistance / mMaxAccel);
+                mPeakVelocity = mMaxAccel * mAccelTime;
+                mCruiseTime = 0.0;
+            } else {
+                mAccelTime = mMaxVelocity / mMaxAccel;
+                mPeakVelocity = mMaxVelocity;
+                mCruiseTime = (mDistance - accelDistance) / mMaxVelocity;
+            }
+            mDuration = 2.0 * mAccelTime + mCruiseTime;
+        }
+
+        double getDuration() {
+            return mDuration;
+        }
+
+        double getStart() {
+            return mStart;
+        }
+
+        double position(double t) {
+            return mStart + mDirection * distance(t);
+        }
+
+        boolean passesThrough(double value) {
+            double traveled = (value - mStart) * mDirection;
+            return traveled > 0.0 && traveled < mDistance;
+        }
+
+        /**
+         * @return time from the start of this profile until it reaches the value
+         */
+        double timeToReach(double value) {
+            double d = Math.max(0.0, Math.min(mDistance, (value - mStart) * mDirection));
+            double accelDistance = 0.5 * mMaxAccel * mAccelTime * mAccelTime;
+            if (d <= accelDistance) {
+                return Math.sqrt(2.0 * d / mMaxAccel);
+            }
+            double cruiseDistance = mPeakVelocity * mCruiseTime;
+            if (d <= accelDistance + cruiseDistance) {
+                return mAccelTime + (d - accelDistance) / mPeakVelocity;
+            }
+            double remaining = Math.max(0.0, mDistance - d);
+            return mDuration - Math.sqrt(2.0 * remaining / mMaxAccel);
+        }
+
+        private double distance(double t) {
+            if (t <= 0.0) {
+                return 0.0;
+            }
+            if (t >= mDuration) {
+                return mDistance;
+            }
+            if (t < mAccelTime) {
+                return 0.5 * mMaxAccel * t * t;
+            }
+            if (t < mAccelTime + mCruiseTime) {
+                return 0.5 * mMaxAccel * mAccelTime * mAccelTime + mPeakVelocity * (t - mAccelTime);
+            }
+            double remaining = mDuration - t;
+            return mDistance - 0.5 * mMaxAccel * remaining * remaining;
+        }
+    }
+}
@@ -1,68 +1,185 @@
 package com.team8013.frc2024.regressions;
 
-import com.team254.lib.util.InterpolatingDouble;
-import com.team254.lib.util.InterpolatingTreeMap;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
 import com.team254.lib.util.Vector2;
 
+import edu.wpi.first.wpilibj.Filesystem;
+
+/**
+ * Distance to the speaker to pivot angle and end effector rpm. Loads the
+ * newest table ShooterRegressionFitter wrote to deploy/shooter at startup and
+ * falls back to the hand-tuned one below. Either way the table is resampled
+ * onto an even distance grid, so a lookup is one index and one interpolation.
+ */
 public class ShooterRegression {
 
-        private static final InterpolatingTreeMap<InterpolatingDouble, Vector2> SHOOTER_TUNING = new InterpolatingTreeMap<>();
-
-        static {
-
-                /*
-                 * EXAMPLE:
-                 * 
-                 * distance, angle, rpm
-                 * 
-                 * 
-                 * 
-                 */
-                // do this without converting to radians and stuff
-                SHOOTER_TUNING.put(new InterpolatingDouble(1.0),
-                                new Vector2(60, 6000));
-                SHOOTER_TUNING.put(new InterpolatingDouble(1.25),
-                                new Vector2(57.5, 6000));
-                SHOOTER_TUNING.put(new InterpolatingDouble(1.5),
-                                new Vector2(53, 6000));
-                SHOOTER_TUNING.put(new InterpolatingDouble(1.75),
-                                new Vector2(49.5, 6000));
-                SHOOTER_TUNING.put(new InterpolatingDouble(2.0),
-                                new Vector2(45, 6000));
-                SHOOTER_TUNING.put(new InterpolatingDouble(2.22),
-                                new Vector2(43.5, 6000));
-                SHOOTER_TUNING.put(new InterpolatingDouble(2.5),
-                                new Vector2(42.75, 6000));
-                SHOOTER_TUNING.put(new InterpolatingDouble(2.75),
-                                new Vector2(41.25, 6000));
-                SHOOTER_TUNING.put(new InterpolatingDouble(3.0),
-                                new Vector2(40.75, 6000));
-                SHOOTER_TUNING.put(new InterpolatingDouble(3.25),
-                                new Vector2(40.4, 6000));
-                SHOOTER_TUNING.put(new InterpolatingDouble(3.5),
-                                new Vector2(40.3, 6000));
-                SHOOTER_TUNING.put(new InterpolatingDouble(4.0),
-                                new Vector2(40, 6000));
+        public static final String kTableDirectory = "shooter";
+        public static final Pattern kTableName = Pattern.compile("regression_v(\\d+)\\.csv");
 
-        }
+        private static final double kGridStep = 0.01; // meters
+
+        /*
+         * distance, angle, rpm
+         *
+         * do this without converting to radians and stuff
+         */
+        private static final double[][] kHandTunedTable = {
+                        { 1.0, 60, 6000 },
+                        { 1.25, 57.5, 6000 },
+                        { 1.5, 53, 6000 },
+                        { 1.75, 49.5, 6000 },
+                        { 2.0, 45, 6000 },
+                        { 2.22, 43.5, 6000 },
+                        { 2.5, 42.75, 6000 },
+                        { 2.75, 41.25, 6000 },
+                        { 3.0, 40.75, 6000 },
+                        { 3.25, 40.4, 6000 },
+                        { 3.5, 40.3, 6000 },
+                        { 4.0, 40, 6000 }
+        };
+        // the hand-tuned angles are a little high; fitted tables come from
+        // measured angles and need no trim
+        private static final double kHandTunedAngleTrim = -2.5 - 2;
+
+        private final int mVersion;
+        private final double mAngleTrim;
+        private final double mMinDistance;
+        private final double[] mAngles;
+        private final double[] mRPMs;
 
         public ShooterRegression() {
+                this(Filesystem.getDeployDirectory().toPath().resolve(kTableDirectory));
+        }
+
+        public ShooterRegression(Path tableDirectory) {
+                double[][] table = kHandTunedTable;
+                int version = 0;
+                Path newest = findNewestTable(tableDirectory);
+                if (newest != null) {
+                        try {
+                                table = readTable(newest);
+                                version = getVersion(newest);
+                                System.out.println("Loaded shooter regression " + newest);
+                        } catch (IOException | RuntimeException e) {
+                                System.err.println("Unable to read shooter regression " + newest
+                                                + ", using the hand-tuned table");
+                                e.printStackTrace();
+                        }
+                }
+                mVersion = version;
+                mAngleTrim = version == 0 ? kHandTunedAngleTrim : 0.0;
 
+                mMinDistance = table[0][0];
+                int size = (int) Math.round((table[table.length - 1][0] - mMinDistance) / kGridStep) + 1;
+                mAngles = new double[size];
+                mRPMs = new double[size];
+                int knot = 0;
+                for (int i = 0; i < size; i++) {
+                        double distance = mMinDistance + i * kGridStep;
+                        while (knot < table.length - 2 && table[knot + 1][0] < distance) {
+                                knot++;
+                        }
+                        double[] low = table[knot];
+                        double[] high = table[Math.min(knot + 1, table.length - 1)];
+                        double t = high[0] > low[0] ? (distance - low[0]) / (high[0] - low[0]) : 0.0;
+                        t = Math.max(0.0, Math.min(1.0, t));
+                        mAngles[i] = low[1] + (high[1] - low[1]) * t;
+                        mRPMs[i] = low[2] + (high[2] - low[2]) * t;
+                }
         }
 
         public Vector2 getAngleAndRPM(double distance) {
-                Vector2 angleAndSpeed = SHOOTER_TUNING.getInterpolated(new InterpolatingDouble(distance));
-                return angleAndSpeed;
+                return new Vector2(lookup(mAngles, distance), lookup(mRPMs, distance));
         }
 
         public double getAngle(double distance) {
-                Vector2 angleAndSpeed = SHOOTER_TUNING.getInterpolated(new InterpolatingDouble(distance));
-                return angleAndSpeed.x - 2.5 - 2;
+                return lookup(mAngles, distance) + mAngleTrim;
         }
 
         public double getRPM(double distance) {
-                Vector2 angleAndSpeed = SHOOTER_TUNING.getInterpolated(new InterpolatingDouble(distance));
-                return angleAndSpeed.y;
+                return lookup(mRPMs, distance);
+        }
+
+        /**
+         * @return version of the fitted table in use, 0 for the hand-tuned one
+         */
+        public int getVersion() {
+                return mVersion;
+        }
+
+        private double lookup(double[] grid, double distance) {
+                double index = (distance - mMinDistance) / kGridStep;
+                if (!(index > 0.0)) {
+                        return grid[0];
+                }
+                if (index >= grid.length - 1) {
+                        return grid[grid.length - 1];
+                }
+                int low = (int) index;
+                double t = index - low;
+                return grid[low] + (grid[low + 1] - grid[low]) * t;
+        }
+
+        /**
+         * @return the table with the highest version in the directory, null if
+         *         there are none
+         */
+        public static Path findNewestTable(Path tableDirectory) {
+                if (!Files.isDirectory(tableDirectory)) {
+                        return null;
+                }
+                Path newest = null;
+                try (Stream<Path> files = Files.list(tableDirectory)) {
+                        for (Path file : (Iterable<Path>) files::iterator) {
+                                if (getVersion(file) > 0 && (newest == null || getVersion(file) > getVersion(newest))) {
+                                        newest = file;
+                                }
+                        }
+                } catch (IOException e) {
+                        e.printStackTrace();
+                }
+                return newest;
+        }
+
+        /**
+         * @return version from a table's file name, 0 if it isn't one
+         */
+        public static int getVersion(Path file) {
+                Matcher matcher = kTableName.matcher(file.getFileName().toString());
+                return matcher.matches() ? Integer.parseInt(matcher.group(1)) : 0;
+        }
+
+        /**
+         * Reads the distance, angle and rpm columns of a fitted table, skipping
+         * comments, the header and the confidence columns.
+         */
+        public static double[][] readTable(Path file) throws IOException {
+                List<double[]> rows = new ArrayList<>();
+                try (BufferedReader reader = new BufferedReader(new FileReader(file.toFile()))) {
+                        String line = reader.readLine();
+                        while (line != null) {
+                                if (!line.isEmpty() && Character.isDigit(line.charAt(0))) {
+                                        String[] split = line.split(",");
+                                        rows.add(new double[] { Double.parseDouble(split[0]),
+                                                        Double.parseDouble(split[1]), Double.parseDouble(split[4]) });
+                                }
+                                line = reader.readLine();
+                        }
+                }
+                if (rows.size() < 2) {
+                        throw new IOException("Need at least two rows in " + file);
+                }
+                return rows.toArray(new double[0][]);
         }
 
 }
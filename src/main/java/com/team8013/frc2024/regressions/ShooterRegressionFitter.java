@@ -0,0 +1,404 @@
+package com.team8013.frc2024.regressions;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.team8013.lib.stats.IsotonicRegression;
+
+/**
+ * Fits the shooter table from the shots ShotLog recorded, across every match
+ * log it is pointed at, and writes it to the deploy directory as the next
+ * version for ShooterRegression to load.
+ * <p>
+ * Only shots that left the robot, were taken with the speaker tag in view and
+ * with the robot close to still are used, and by default only the ones the
+ * operator marked made. The fit is a kernel-weighted average of angle and rpm
+ * at each table distance, made monotone (angle down with distance, rpm up),
+ * and the confidence band comes from refitting bootstrap resamples of the
+ * shots. Log files are parsed, and bootstrap fits run, in parallel.
+ * <p>
+ * Run on the desktop from the project directory, with the logs copied off the
+ * robot's drive:
+ *
+ * <pre>
+ * ./gradlew fitShooterRegression --args="path/to/robotlogs --write"
+ * </pre>
+ */
+public class ShooterRegressionFitter {
+
+    private static final double kDefaultStep = 0.25; // meters between table rows, like the hand-tuned table
+    private static final double kDefaultMaxSpeed = 0.3; // m/s, faster shots are moving shots
+    private static final int kDefaultBootstrap = 200;
+    private static final double kMinWeight = 1.0; // kernel weight a row needs to be written
+    private static final double kBandLow = 0.05;
+    private static final double kBandHigh = 0.95;
+
+    public enum Outcome {
+        MADE, MISSED, UNMARKED
+    }
+
+    public static class Shot {
+        public final String file;
+        public final int id;
+        public final double distance;
+        public final boolean seesTarget;
+        public final double pivotAngle;
+        public final double endEffectorVelocity;
+        public final double speed;
+        public boolean left = false;
+        public Outcome outcome = Outcome.UNMARKED;
+
+        Shot(String file, int id, double distance, boolean seesTarget, double pivotAngle,
+                double endEffectorVelocity, double speed) {
+            this.file = file;
+            this.id = id;
+            this.distance = distance;
+            this.seesTarget = seesTarget;
+            this.pivotAngle = pivotAngle;
+            this.endEffectorVelocity = endEffectorVelocity;
+            this.speed = speed;
+        }
+    }
+
+    public static class Fit {
+        public final double[] distance;
+        public final double[] angle;
+        public final double[] rpm;
+        public final double[] weight;
+
+        Fit(double[] distance, double[] angle, double[] rpm, double[] weight) {
+            this.distance = distance;
+            this.angle = angle;
+            this.rpm = rpm;
+            this.weight = weight;
+        }
+    }
+
+    public static List<Shot> readShots(Path file) throws IOException {
+        Map<Integer, Shot> shots = new HashMap<>();
+        List<Shot> ordered = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file.toFile()))) {
+            String line = reader.readLine();
+            while (line != null) {
+                String[] split = line.split(",", -1);
+                if (split.length >= 3 && !split[0].equals("type")) {
+                    int id = Integer.parseInt(split[1]);
+                    switch (split[0]) {
+                        case ShotLog.kShot:
+                            Shot shot = new Shot(file.toString(), id, Double.parseDouble(split[5]),
+                                    Boolean.parseBoolean(split[6]), Double.parseDouble(split[7]),
+                                    Double.parseDouble(split[9]),
+                                    Math.hypot(Double.parseDouble(split[11]), Double.parseDouble(split[12])));
+                            shots.put(id, shot);
+                            ordered.add(shot);
+                            break;
+                        case ShotLog.kLeft:
+                            if (shots.containsKey(id)) {
+                                shots.get(id).left = true;
+                            }
+                            break;
+                        case ShotLog.kMade:
+                        case ShotLog.kMissed:
+                            if (shots.containsKey(id)) {
+                                shots.get(id).outcome = split[0].equals(ShotLog.kMade) ? Outcome.MADE
+                                        : Outcome.MISSED;
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                line = reader.readLine();
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * @param paths log files or directories to search for them
+     */
+    public static List<Path> findLogs(List<Path> paths) throws IOException {
+        List<Path> logs = new ArrayList<>();
+        for (Path path : paths) {
+            try (Stream<Path> files = Files.walk(path)) {
+                logs.addAll(files.filter(Files::isRegularFile)
+                        .filter((f) -> f.getFileName().toString().startsWith(ShotLog.kFilePrefix))
+                        .sorted()
+                        .collect(Collectors.toList()));
+            }
+        }
+        return logs;
+    }
+
+    public static Fit fit(List<Shot> shots, double[] knots, double bandwidth) {
+        double[] angle = new double[knots.length];
+        double[] rpm = new double[knots.length];
+        double[] weight = new double[knots.length];
+        for (int k = 0; k < knots.length; k++) {
+            for (Shot shot : shots) {
+                double z = (shot.distance - knots[k]) / bandwidth;
+                double w = Math.exp(-0.5 * z * z);
+                angle[k] += w * shot.pivotAngle;
+                rpm[k] += w * shot.endEffectorVelocity;
+                weight[k] += w;
+            }
+            if (weight[k] > 0.0) {
+                angle[k] /= weight[k];
+                rpm[k] /= weight[k];
+            }
+        }
+        return new Fit(knots, IsotonicRegression.fit(angle, weight, false), IsotonicRegression.fit(rpm, weight, true),
+                weight);
+    }
+
+    private final ExecutorService mExecutor;
+    private final int mThreads;
+
+    public ShooterRegressionFitter(int threads) {
+        mThreads = threads;
+        mExecutor = Executors.newFixedThreadPool(threads, (r) -> {
+            Thread thread = new Thread(r, "ShooterRegressionFitter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public List<Shot> readAll(List<Path> logs) throws IOException {
+        List<Callable<List<Shot>>> tasks = new ArrayList<>();
+        for (Path log : logs) {
+            tasks.add(() -> readShots(log));
+        }
+        List<Shot> shots = new ArrayList<>();
+        try {
+            for (Future<List<Shot>> future : mExecutor.invokeAll(tasks)) {
+                shots.addAll(future.get());
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IOException("Unable to read shot logs", e);
+        }
+        return shots;
+    }
+
+    /**
+     * @return [knot][0 = angle low, 1 = angle high, 2 = rpm low, 3 = rpm high]
+     */
+    public double[][] bootstrap(List<Shot> shots, double[] knots, double bandwidth, int resamples, long seed) {
+        // one seed per resample, drawn up front, so the band doesn't depend on
+        // the thread count
+        SplittableRandom master = new SplittableRandom(seed);
+        long[] seeds = new long[resamples];
+        for (int i = 0; i < resamples; i++) {
+            seeds[i] = master.nextLong();
+        }
+
+        double[][] angles = new double[knots.length][resamples];
+        double[][] rpms = new double[knots.length][resamples];
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < mThreads; t++) {
+            int first = t;
+            tasks.add(() -> {
+                for (int r = first; r < resamples; r += mThreads) {
+                    SplittableRandom rng = new SplittableRandom(seeds[r]);
+                    List<Shot> resample = new ArrayList<>(shots.size());
+                    for (int i = 0; i < shots.size(); i++) {
+                        resample.add(shots.get(rng.nextInt(shots.size())));
+                    }
+                    Fit fit = fit(resample, knots, bandwidth);
+                    for (int k = 0; k < knots.length; k++) {
+                        angles[k][r] = fit.angle[k];
+                        rpms[k][r] = fit.rpm[k];
+                    }
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : mExecutor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Bootstrap failed", e);
+        }
+
+        double[][] bands = new double[knots.length][4];
+        for (int k = 0; k < knots.length; k++) {
+            Arrays.sort(angles[k]);
+            Arrays.sort(rpms[k]);
+            bands[k][0] = percentile(angles[k], kBandLow);
+            bands[k][1] = percentile(angles[k], kBandHigh);
+            bands[k][2] = percentile(rpms[k], kBandLow);
+            bands[k][3] = percentile(rpms[k], kBandHigh);
+        }
+        return bands;
+    }
+
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+
+    private static double percentile(double[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.max(0, Math.round(p * (sorted.length - 1))))];
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Path> logPaths = new ArrayList<>();
+        Path deploy = Path.of("src/main/deploy");
+        int threads = Runtime.getRuntime().availableProcessors();
+        int resamples = kDefaultBootstrap;
+        double maxSpeed = kDefaultMaxSpeed;
+        double step = kDefaultStep;
+        long seed = 8013;
+        boolean includeUnmarked = false;
+        boolean write = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--deploy":
+                    deploy = Path.of(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--bootstrap":
+                    resamples = Integer.parseInt(args[++i]);
+                    break;
+                case "--max-speed":
+                    maxSpeed = Double.parseDouble(args[++i]);
+                    break;
+                case "--step":
+                    step = Double.parseDouble(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--include-unmarked":
+                    includeUnmarked = true;
+                    break;
+                case "--write":
+                    write = true;
+                    break;
+                default:
+                    logPaths.add(Path.of(args[i]));
+                    break;
+            }
+        }
+        if (logPaths.isEmpty()) {
+            System.err.println("Usage: ShooterRegressionFitter <log dirs or files> [--write] [--include-unmarked]"
+                    + " [--max-speed m/s] [--step m] [--bootstrap n] [--threads n] [--seed n] [--deploy dir]");
+            System.exit(1);
+        }
+
+        ShooterRegressionFitter fitter = new ShooterRegressionFitter(threads);
+        List<Path> logs = findLogs(logPaths);
+        List<Shot> shots = fitter.readAll(logs);
+
+        int[] outcomes = new int[Outcome.values().length];
+        int stuck = 0;
+        int blind = 0;
+        int moving = 0;
+        List<Shot> used = new ArrayList<>();
+        for (Shot shot : shots) {
+            outcomes[shot.outcome.ordinal()]++;
+            if (!shot.left) {
+                stuck++;
+            } else if (!shot.seesTarget) {
+                blind++;
+            } else if (shot.speed > maxSpeed) {
+                moving++;
+            } else if (shot.outcome == Outcome.MADE || (includeUnmarked && shot.outcome == Outcome.UNMARKED)) {
+                used.add(shot);
+            }
+        }
+        System.out.println(String.format("%d shots in %d logs: %d made, %d missed, %d unmarked", shots.size(),
+                logs.size(), outcomes[Outcome.MADE.ordinal()], outcomes[Outcome.MISSED.ordinal()],
+                outcomes[Outcome.UNMARKED.ordinal()]));
+        System.out.println(String.format("Skipped %d that never left, %d without the tag, %d moving over %.2f m/s",
+                stuck, blind, moving, maxSpeed));
+        if (used.size() < 2) {
+            System.out.println("Not enough shots to fit, " + used.size() + " usable");
+            fitter.shutdown();
+            return;
+        }
+
+        double minDistance = used.stream().mapToDouble((s) -> s.distance).min().getAsDouble();
+        double maxDistance = used.stream().mapToDouble((s) -> s.distance).max().getAsDouble();
+        int first = (int) Math.floor(minDistance / step);
+        int last = (int) Math.ceil(maxDistance / step);
+        double[] knots = new double[last - first + 1];
+        for (int k = 0; k < knots.length; k++) {
+            knots[k] = (first + k) * step;
+        }
+
+        Fit fit = fit(used, knots, step);
+        double[][] bands = fitter.bootstrap(used, knots, step, resamples, seed);
+        fitter.shutdown();
+
+        Path tableDirectory = deploy.resolve(ShooterRegression.kTableDirectory);
+        ShooterRegression current = new ShooterRegression(tableDirectory);
+        System.out.println(String.format("Fit from %d shots, compared to table v%d:", used.size(),
+                current.getVersion()));
+        System.out.println(String.format("%8s %20s %8s %22s %8s %6s %6s", "dist", "angle (90%)", "now", "rpm (90%)",
+                "now", "weight", "made"));
+        List<String> rows = new ArrayList<>();
+        for (int k = 0; k < knots.length; k++) {
+            if (fit.weight[k] < kMinWeight) {
+                continue;
+            }
+            int made = 0;
+            int marked = 0;
+            for (Shot shot : shots) {
+                if (shot.left && Math.abs(shot.distance - knots[k]) <= step / 2.0 && shot.outcome != Outcome.UNMARKED) {
+                    marked++;
+                    made += shot.outcome == Outcome.MADE ? 1 : 0;
+                }
+            }
+            System.out.println(String.format("%7.2fm %6.2f [%5.2f,%5.2f] %8.2f %6.0f [%6.0f,%6.0f] %8.0f %6.1f %5s",
+                    knots[k], fit.angle[k], bands[k][0], bands[k][1], current.getAngle(knots[k]), fit.rpm[k],
+                    bands[k][2], bands[k][3], current.getRPM(knots[k]), fit.weight[k],
+                    marked > 0 ? String.format("%.0f%%", 100.0 * made / marked) : "-"));
+            rows.add(String.format(Locale.ROOT, "%.2f,%.2f,%.2f,%.2f,%.0f,%.0f,%.0f,%.1f", knots[k], fit.angle[k],
+                    bands[k][0], bands[k][1], fit.rpm[k], bands[k][2], bands[k][3], fit.weight[k]));
+        }
+
+        if (write) {
+            if (rows.size() < 2) {
+                System.out.println("Not enough table rows with data to write");
+                return;
+            }
+            Path newest = ShooterRegression.findNewestTable(tableDirectory);
+            int version = (newest == null ? 0 : ShooterRegression.getVersion(newest)) + 1;
+            Files.createDirectories(tableDirectory);
+            Path file = tableDirectory.resolve("regression_v" + version + ".csv");
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(file.toFile()))) {
+                writer.write(String.format("# version %d, fitted %s from %d shots in %d logs%n", version,
+                        LocalDate.now(), used.size(), logs.size()));
+                writer.write("distance,angle,angleLow,angleHigh,rpm,rpmLow,rpmHigh,weight\n");
+                for (String row : rows) {
+                    writer.write(row);
+                    writer.write("\n");
+                }
+            }
+            System.out.println("Wrote " + file);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.team8013.frc2024.regressions;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.team8013.frc2024.Robot;
+import com.team8013.lib.logger.LoggingSystem;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * One line per speaker shot, for ShooterRegressionFitter to fit the shooter
+ * table from. A shot is logged when the note is fed, with what the robot saw
+ * and did; a second line follows once the shooter beam break sees the note
+ * leave, and a third if the operator marks the shot made or missed from the
+ * dashboard. Lines are written on a background thread so the loop never waits
+ * on the USB drive.
+ */
+public class ShotLog {
+
+    public static final String kFilePrefix = "SHOTS_";
+    public static final String kHeader = "type,shot,timestamp,event,match,distance,seesTarget,pivotAngle,"
+            + "pivotTarget,endEffectorVelocity,endEffectorTarget,robotVx,robotVy";
+
+    public static final String kShot = "shot";
+    public static final String kLeft = "left";
+    public static final String kMade = "made";
+    public static final String kMissed = "missed";
+
+    private static final String kMadeButton = "Mark Shot Made";
+    private static final String kMissedButton = "Mark Shot Missed";
+
+    private static ShotLog mInstance;
+
+    public static synchronized ShotLog getInstance() {
+        if (mInstance == null) {
+            mInstance = new ShotLog();
+        }
+        return mInstance;
+    }
+
+    private final ExecutorService mWriter = Executors.newSingleThreadExecutor((r) -> {
+        Thread thread = new Thread(r, "ShotLog");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private File mFile = null;
+    private volatile boolean mDisabled = false; // set on the writer thread, read on the loop thread
+    private int mShotCount = 0;
+    private int mLastShot = -1;
+    private boolean mLastShotMarked = true;
+
+    private ShotLog() {
+        SmartDashboard.putBoolean(kMadeButton, false);
+        SmartDashboard.putBoolean(kMissedButton, false);
+    }
+
+    /**
+     * Call when the note is fed into the shooter.
+     */
+    public synchronized void recordShot(double timestamp, double distance, boolean seesTarget, double pivotAngle,
+            double pivotTarget, double endEffectorVelocity, double endEffectorTarget, double robotVx,
+            double robotVy) {
+        mLastShot = mShotCount++;
+        mLastShotMarked = false;
+        String line = String.format(Locale.ROOT, "%s,%d,%.3f,%s,%d,%.4f,%b,%.3f,%.3f,%.1f,%.1f,%.3f,%.3f", kShot,
+                mLastShot, timestamp, DriverStation.getEventName().replace(",", " "), DriverStation.getMatchNumber(),
+                distance, seesTarget, pivotAngle, pivotTarget, endEffectorVelocity, endEffectorTarget, robotVx,
+                robotVy);
+        write(line);
+    }
+
+    /**
+     * Call when the shooter beam break clears after a shot.
+     */
+    public synchronized void noteLeft(double timestamp) {
+        if (mLastShot >= 0) {
+            write(getEventLine(kLeft, timestamp));
+        }
+    }
+
+    /**
+     * Picks up made/missed marks from the dashboard. They apply to the last
+     * shot, once.
+     */
+    public synchronized void update(double timestamp) {
+        boolean made = SmartDashboard.getBoolean(kMadeButton, false);
+        boolean missed = SmartDashboard.getBoolean(kMissedButton, false);
+        if (!made && !missed) {
+            return;
+        }
+        SmartDashboard.putBoolean(kMadeButton, false);
+        SmartDashboard.putBoolean(kMissedButton, false);
+        if (mLastShot < 0 || mLastShotMarked || made == missed) {
+            return;
+        }
+        mLastShotMarked = true;
+        write(getEventLine(made ? kMade : kMissed, timestamp));
+    }
+
+    private String getEventLine(String type, double timestamp) {
+        return String.format(Locale.ROOT, "%s,%d,%.3f,,,,,,,,,,", type, mLastShot, timestamp);
+    }
+
+    private void write(String line) {
+        if (mDisabled) {
+            return;
+        }
+        mWriter.execute(() -> {
+            try {
+                if (mFile == null) {
+                    mFile = createFile();
+                }
+                try (FileWriter writer = new FileWriter(mFile, true)) {
+                    writer.write(line);
+                    writer.write("\n");
+                }
+            } catch (IOException e) {
+                System.out.println("Unable to write shot log, disabling it");
+                e.printStackTrace();
+                mDisabled = true;
+            }
+        });
+    }
+
+    private File createFile() throws IOException {
+        File directory = null;
+        if (Robot.isSimulation()) {
+            directory = new File("./Output Logs/shots");
+        } else {
+            for (String root : LoggingSystem.getInstance().kDriveRoot) {
+                if (new File(root).isDirectory()) {
+                    directory = new File(root + LoggingSystem.getInstance().kLogDirectory + "shots");
+                    break;
+                }
+            }
+        }
+        if (directory == null) {
+            throw new IOException("No drive to write shot logs to");
+        }
+        directory.mkdirs();
+
+        String name = kFilePrefix + new SimpleDateFormat("yyyy_MM_dd_HH_mm_ss").format(new Date()) + ".csv";
+        File file = new File(directory, name);
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(kHeader);
+            writer.write("\n");
+        }
+        System.out.println("Logging shots to " + file);
+        return file;
+    }
+}
@@ -1,54 +1,78 @@
 package com.team8013.frc2024.shuffleboard;
 
+import java.util.List;
 
 import com.team8013.frc2024.Constants;
 import com.team8013.frc2024.subsystems.Drive;
+import com.team8013.lib.geometry.MutablePose2d;
 import com.team8013.lib.swerve.ModuleState;
 
 import edu.wpi.first.math.geometry.Pose2d;
-import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.wpilibj.smartdashboard.Field2d;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 
+/**
+ * Robot and swerve module poses are published straight to the Field2d's
+ * network table from preallocated arrays ({x, y, degrees} per pose, the
+ * layout Field2d uses) so updating the view every loop doesn't allocate.
+ * Trajectories and one-off poses still go through the Field2d.
+ */
 public class FieldView {
+    private static final String kFieldName = "Field";
+
     private Field2d mField2d = new Field2d();
     private Drive mSwerve = Drive.getInstance();
 
-    private Pose2d[] modulePoses = new Pose2d[4];
-    private Pose2d robotPose = new Pose2d();
+    private final MutablePose2d mRobotPose = new MutablePose2d();
+    private final MutablePose2d mModulePose = new MutablePose2d();
+    private final double[] mRobotPoseArray = new double[3];
+    private final double[] mModulePosesArray = new double[3 * 4];
+
+    private final DoubleArrayPublisher mRobotPublisher;
+    private final DoubleArrayPublisher mModulesPublisher;
 
     public FieldView() {
-        SmartDashboard.putData(mField2d);
+        SmartDashboard.putData(kFieldName, mField2d);
+
+        NetworkTable table = NetworkTableInstance.getDefault().getTable("SmartDashboard").getSubTable(kFieldName);
+        mRobotPublisher = table.getDoubleArrayTopic("Robot").publish();
+        mModulesPublisher = table.getDoubleArrayTopic("Swerve Modules").publish();
     }
 
     private void updateSwervePoses() {
-        if (mSwerve.getPose() != null)
-            robotPose = mSwerve.getPose();
-        else
-            robotPose = new Pose2d();
+        mSwerve.getPose(mRobotPose);
+        putPose(mRobotPoseArray, 0, mRobotPose);
 
-        ModuleState[] moduleStates = mSwerve.getModuleStates();
+        ModuleState[] moduleStates = mSwerve.getMeasuredModuleStates();
 
-        for (int i = 0; i < modulePoses.length; i++) {
-            Translation2d updatedPosition = Constants.SwerveConstants.swerveModuleLocations[i]
-                    .rotateBy(robotPose.getRotation()).plus(robotPose.getTranslation());
-            Rotation2d updatedRotation = mSwerve.getModuleStates()[i].angle.plus(robotPose.getRotation());
+        for (int i = 0; i < moduleStates.length; i++) {
+            Translation2d location = Constants.SwerveConstants.swerveModuleLocations[i];
+            mModulePose.set(mRobotPose).transformBy(location.getX(), location.getY(),
+                    moduleStates[i].angle.getCos(), moduleStates[i].angle.getSin());
             if (moduleStates[i].speedMetersPerSecond < 0.0) {
-                updatedRotation = updatedRotation.plus(Rotation2d.fromDegrees(180));
-                ;
+                mModulePose.getRotation().rotateBy(-1.0, 0.0); // flip 180
             }
-            modulePoses[i] = new Pose2d(updatedPosition, updatedRotation);
+            putPose(mModulePosesArray, i, mModulePose);
         }
     }
 
+    private static void putPose(double[] poses, int index, MutablePose2d pose) {
+        poses[index * 3] = pose.getX();
+        poses[index * 3 + 1] = pose.getY();
+        poses[index * 3 + 2] = pose.getRotation().getDegrees();
+    }
+
     public void update() {
         updateSwervePoses();
 
-        mField2d.setRobotPose(robotPose);
-        addPose("Swerve Modules", modulePoses);
+        mRobotPublisher.set(mRobotPoseArray);
+        mModulesPublisher.set(mModulePosesArray);
     }
 
     public void addPose(String name, Pose2d pose) {
@@ -57,15 +81,17 @@ public class FieldView {
         }
     }
 
-    private void addPose(String name, Pose2d... pose) {
-        if (pose != null) {
-            mField2d.getObject(name).setPoses(pose);
-        }
-    }
-
     public void addTrajectory(String name, Trajectory traj) {
         if (traj != null) {
             mField2d.getObject(name).setTrajectory(traj);
         }
     }
+
+    public void addTrajectories(String name, List<Trajectory> trajectories) {
+        Trajectory combined = null;
+        for (Trajectory traj : trajectories) {
+            combined = combined == null ? traj : combined.concatenate(traj);
+        }
+        addTrajectory(name, combined);
+    }
 }
@@ -2,6 +2,8 @@ package com.team8013.frc2024.shuffleboard;
 
 import java.util.ArrayList;
 
+import com.team8013.frc2024.LoadGovernor;
+import com.team8013.frc2024.LoadGovernor.Work;
 import com.team8013.frc2024.shuffleboard.tabs.SubsystemsTab;
 import com.team8013.frc2024.shuffleboard.tabs.SwerveTab;
 import com.team8013.frc2024.shuffleboard.tabs.VisionTab;
@@ -39,10 +41,15 @@ public class ShuffleBoardInteractions {
     }
 
     public void update() {
-        for (ShuffleboardTabBase tab : mTabs) {
-            tab.update();
+        LoadGovernor governor = LoadGovernor.getInstance();
+        if (governor.allows(Work.DASHBOARD_TABS)) {
+            for (ShuffleboardTabBase tab : mTabs) {
+                tab.update();
+            }
+        }
+        if (governor.allows(Work.FIELD_VIEW)) {
+            mFieldView.update();
         }
-        mFieldView.update();
     }
 }
  
\ No newline at end of file
@@ -0,0 +1,247 @@
+package com.team8013.frc2024.sim;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.team8013.frc2024.auto.AutoPath;
+import com.team8013.frc2024.auto.AutoPlan;
+import com.team8013.frc2024.auto.TimedTrajectoryFile;
+import com.team8013.frc2024.auto.WaypointReader;
+import com.team8013.frc2024.auto.modes.FastChaos;
+import com.team8013.frc2024.auto.modes.OneNote;
+import com.team8013.frc2024.auto.modes.ThreePieceMiddleStart;
+
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+
+/**
+ * What an auto mode does, so it can be simulated without the subsystems. The
+ * script is built from the mode's own plan method, the same steps the robot
+ * turns into actions with AutoPlanActions.
+ */
+public class AutoScript {
+
+    public enum Kind {
+        SHOOT, // autoShot, wait, then disableAutoShot unless it's kept on
+        WAIT,
+        FOLLOW, // a trajectory action, with a series of steps running alongside
+        INTAKE, // setSuperstuctureIntakingGround
+        STOW, // setSuperstuctureStow
+        TRANSFER, // setSuperstuctureTransferToShooter
+        SNAP_TO_TARGET, // setAutoSnapToTarget(true)
+        HEADING, // setAutoHeading, the drive model doesn't turn
+        WAIT_TO_PASS_X
+    }
+
+    public static class Step {
+        public final Kind kind;
+        public final double value; // seconds for waits and shots, meters for WAIT_TO_PASS_X, degrees for HEADING
+        public final AutoPath path;
+        public final List<Step> alongside;
+
+        int index;
+        String label;
+        Trajectory trajectory;
+
+        private Step(Kind kind, double value, AutoPath path, List<Step> alongside) {
+            this.kind = kind;
+            this.value = value;
+            this.path = path;
+            this.alongside = alongside;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public Trajectory getTrajectory() {
+            return trajectory;
+        }
+    }
+
+    /**
+     * Records a mode's plan as steps. A shot kept on past its wait is simulated
+     * like any other, only a note fired during the wait counts.
+     */
+    public static class Builder implements AutoPlan {
+        private final List<Step> mSteps = new ArrayList<>();
+
+        @Override
+        public Builder shoot(double seconds) {
+            return add(Kind.SHOOT, seconds);
+        }
+
+        @Override
+        public Builder keepShooting(double seconds) {
+            return add(Kind.SHOOT, seconds);
+        }
+
+        @Override
+        public Builder shootUntilEnd() {
+            return add(Kind.SHOOT, Double.POSITIVE_INFINITY);
+        }
+
+        @Override
+        public Builder waitFor(double seconds) {
+            return add(Kind.WAIT, seconds);
+        }
+
+        @Override
+        public Builder intake() {
+            return add(Kind.INTAKE, 0.0);
+        }
+
+        @Override
+        public Builder stow() {
+            return add(Kind.STOW, 0.0);
+        }
+
+        @Override
+        public Builder transfer() {
+            return add(Kind.TRANSFER, 0.0);
+        }
+
+        @Override
+        public Builder snapToTarget() {
+            return add(Kind.SNAP_TO_TARGET, 0.0);
+        }
+
+        @Override
+        public Builder heading(double degrees) {
+            return add(Kind.HEADING, degrees);
+        }
+
+        @Override
+        public Builder waitToPassX(double x) {
+            return add(Kind.WAIT_TO_PASS_X, x);
+        }
+
+        @Override
+        public Builder follow(AutoPath path, Consumer<AutoPlan> alongside) {
+            Builder steps = new Builder();
+            alongside.accept(steps);
+            mSteps.add(new Step(Kind.FOLLOW, 0.0, path, Collections.unmodifiableList(steps.mSteps)));
+            return this;
+        }
+
+        // the simulated drive follows the trajectory either way
+        @Override
+        public Builder followReplanning(AutoPath path, Consumer<AutoPlan> alongside) {
+            return follow(path, alongside);
+        }
+
+        private Builder add(Kind kind, double value) {
+            mSteps.add(new Step(kind, value, null, List.of()));
+            return this;
+        }
+    }
+
+    private final String mName;
+    private final List<Step> mSteps;
+    private final List<Step> mAllSteps = new ArrayList<>();
+
+    public AutoScript(String name, Builder builder) {
+        mName = name;
+        mSteps = Collections.unmodifiableList(builder.mSteps);
+        number(mSteps, "");
+    }
+
+    private void number(List<Step> steps, String prefix) {
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            String number = prefix + (i + 1);
+            step.index = mAllSteps.size();
+            step.label = number + " " + describe(step);
+            mAllSteps.add(step);
+            number(step.alongside, number + ".");
+        }
+    }
+
+    private static String describe(Step step) {
+        switch (step.kind) {
+            case SHOOT:
+                return Double.isInfinite(step.value) ? "shoot" : String.format("shoot(%.2f)", step.value);
+            case WAIT:
+                return String.format("wait(%.2f)", step.value);
+            case FOLLOW:
+                return "follow " + step.path.getName();
+            case HEADING:
+                return String.format("heading(%.0f)", step.value);
+            case WAIT_TO_PASS_X:
+                return String.format("waitToPassX(%.1f)", step.value);
+            default:
+                return step.kind.name().toLowerCase();
+        }
+    }
+
+    /**
+     * Loads every trajectory the script follows the same way
+     * AutoTrajectoryReader.loadTrajectory does on the robot: the optimized
+     * version if there is one, otherwise generated from the PathWeaver file.
+     */
+    public void loadTrajectories(Path deployDirectory, boolean flip) throws IOException {
+        for (Step step : mAllSteps) {
+            if (step.kind != Kind.FOLLOW) {
+                continue;
+            }
+            Path optimized = deployDirectory.resolve(TimedTrajectoryFile.getOptimizedPath(step.path));
+            if (Files.exists(optimized)) {
+                step.trajectory = TimedTrajectoryFile.read(optimized, flip);
+                continue;
+            }
+            TrajectoryGenerator.ControlVectorList controlVectors = WaypointReader
+                    .getControlVectors(deployDirectory.resolve(step.path.path), flip);
+            step.trajectory = TrajectoryGenerator.generateTrajectory(controlVectors, step.path.createConfig());
+        }
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public List<Step> getSteps() {
+        return mSteps;
+    }
+
+    /**
+     * @return every step including the ones running alongside paths, ordered by
+     *         index
+     */
+    public List<Step> getAllSteps() {
+        return Collections.unmodifiableList(mAllSteps);
+    }
+
+    public static List<String> getModeNames() {
+        return List.of("ThreePieceMiddleStart", "FastChaos", "OneNote");
+    }
+
+    /**
+     * @param red the alliance, some modes turn the other way on red
+     */
+    public static AutoScript forMode(String name, boolean red) {
+        Builder script = new Builder();
+        switch (name) {
+            case "ThreePieceMiddleStart":
+                ThreePieceMiddleStart.plan(script, red);
+                break;
+            case "FastChaos":
+                FastChaos.plan(script, red);
+                break;
+            case "OneNote":
+                OneNote.plan(script, red);
+                break;
+            default:
+                throw new IllegalArgumentException("No script for auto mode " + name + ", have " + getModeNames());
+        }
+        return new AutoScript(name, script);
+    }
+}
@@ -0,0 +1,417 @@
+package com.team8013.frc2024.sim;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.team8013.frc2024.auto.ActionTrace;
+import com.team8013.frc2024.auto.ActionTrace.Node;
+import com.team8013.frc2024.auto.CriticalPathAnalyzer;
+import com.team8013.frc2024.sim.AutoScript.Step;
+import com.team8013.lib.stats.RunningStats;
+
+/**
+ * Runs an auto mode thousands of times against randomized conditions (wheel
+ * slip, tracking error, note placement, beam break and vision latency,
+ * mechanism speed) and reports how often it works, how much slack each step
+ * has and what the failures have in common.
+ * <p>
+ * Headless and needs nothing but wpimath on the classpath:
+ *
+ * <pre>
+ * ./gradlew simulateAuto --args="ThreePieceMiddleStart --runs 5000"
+ * </pre>
+ *
+ * Options: --runs N, --seed S, --threads T, --noise SCALE, --red, --reach M,
+ * --deploy DIR, --csv FILE, --critical-path. The same seed gives the same
+ * results on any number of threads.
+ */
+public class AutoSimulator {
+
+    private static final int kDefaultRuns = 2000;
+    private static final long kDefaultSeed = 8013;
+    private static final int kMaxClusters = 8;
+
+    private final AutoScript mScript;
+    private final boolean mRed;
+    private final double mNoiseScale;
+    private final double mIntakeReach;
+
+    public AutoSimulator(AutoScript script, boolean red, double noiseScale, double intakeReach) {
+        mScript = script;
+        mRed = red;
+        mNoiseScale = noiseScale;
+        mIntakeReach = intakeReach;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("usage: AutoSimulator <mode> [--runs N] [--seed S] [--threads T] [--noise SCALE]"
+                    + " [--red] [--reach M] [--deploy DIR] [--csv FILE] [--critical-path]");
+            System.out.println("modes: " + AutoScript.getModeNames());
+            return;
+        }
+
+        String mode = args[0];
+        int runs = kDefaultRuns;
+        long seed = kDefaultSeed;
+        int threads = Runtime.getRuntime().availableProcessors();
+        double noise = 1.0;
+        boolean red = false;
+        double reach = SimRun.kDefaultIntakeReach;
+        Path deploy = Paths.get("src", "main", "deploy");
+        Path csv = null;
+        boolean criticalPath = false;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--runs":
+                    runs = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--noise":
+                    noise = Double.parseDouble(args[++i]);
+                    break;
+                case "--red":
+                    red = true;
+                    break;
+                case "--reach":
+                    reach = Double.parseDouble(args[++i]);
+                    break;
+                case "--deploy":
+                    deploy = Paths.get(args[++i]);
+                    break;
+                case "--csv":
+                    csv = Paths.get(args[++i]);
+                    break;
+                case "--critical-path":
+                    criticalPath = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        AutoScript script = AutoScript.forMode(mode, red);
+        // paths are drawn on the red side and flipped for blue
+        script.loadTrajectories(deploy, !red);
+        AutoSimulator simulator = new AutoSimulator(script, red, noise, reach);
+
+        long start = System.nanoTime();
+        SimRun.Result[] results = simulator.run(runs, seed, threads);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(String.format("%s (%s), %d runs, seed %d, noise x%.2f, %d threads, %.2f s", mode,
+                red ? "red" : "blue", runs, seed, noise, threads, elapsed));
+        simulator.report(results);
+        if (criticalPath) {
+            List<ActionTrace> traces = new ArrayList<>(runs);
+            for (SimRun.Result result : results) {
+                traces.add(simulator.toTrace(result));
+            }
+            System.out.println();
+            CriticalPathAnalyzer.report(traces);
+        }
+        if (csv != null) {
+            simulator.writeCsv(results, csv);
+            System.out.println("Wrote " + csv);
+        }
+    }
+
+    /**
+     * Runs the script runs times across threads. Each run gets its own RNG seeded
+     * from the master seed by run number, so results don't depend on which
+     * thread ran what.
+     */
+    public SimRun.Result[] run(int runs, long seed, int threads) throws Exception {
+        long[] seeds = new long[runs];
+        SplittableRandom master = new SplittableRandom(seed);
+        for (int i = 0; i < runs; i++) {
+            seeds[i] = master.nextLong();
+        }
+
+        SimRun.Result[] results = new SimRun.Result[runs];
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "AutoSimulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                workers.add(executor.submit(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < runs) {
+                        SplittableRandom rng = new SplittableRandom(seeds[i]);
+                        SimNoise noise = SimNoise.sample(rng, mNoiseScale);
+                        results[i] = new SimRun(mScript, i, noise, rng, mRed, mIntakeReach).run();
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    public void report(SimRun.Result[] results) {
+        int runs = results.length;
+        List<Step> steps = mScript.getAllSteps();
+
+        double[] scores = new double[runs];
+        int maxNotes = 0;
+        int finished = 0;
+        int failures = 0;
+        for (int i = 0; i < runs; i++) {
+            scores[i] = results[i].getScore();
+            maxNotes = Math.max(maxNotes, results[i].notesScored);
+            finished += Double.isNaN(results[i].finishTime) ? 0 : 1;
+            failures += results[i].isFailure() ? 1 : 0;
+        }
+        Arrays.sort(scores);
+        System.out.println(String.format("Score: mean %.1f  p5 %.0f  p50 %.0f  p95 %.0f", mean(scores),
+                percentile(scores, 0.05), percentile(scores, 0.5), percentile(scores, 0.95)));
+
+        int[] noteCounts = new int[maxNotes + 1];
+        for (SimRun.Result result : results) {
+            noteCounts[result.notesScored]++;
+        }
+        StringBuilder notes = new StringBuilder("Notes scored:");
+        for (int n = 0; n < noteCounts.length; n++) {
+            notes.append(String.format("  %d: %.1f%%", n, 100.0 * noteCounts[n] / runs));
+        }
+        System.out.println(notes);
+        System.out.println(String.format("Routine finished in time: %.1f%%, clean runs: %.1f%%",
+                100.0 * finished / runs, 100.0 * (runs - failures) / runs));
+
+        System.out.println();
+        System.out.println(String.format("%-36s %6s %5s %8s %8s %8s %6s", "step", "start", "unit", "mean", "p5",
+                "min", "fail%"));
+        for (Step step : steps) {
+            int index = step.getIndex();
+            RunningStats startTimes = new RunningStats();
+            double[] margins = new double[runs];
+            int count = 0;
+            int failed = 0;
+            for (SimRun.Result result : results) {
+                if (!Double.isNaN(result.startTimes[index])) {
+                    startTimes.add(result.startTimes[index]);
+                }
+                if (!Double.isNaN(result.margins[index])) {
+                    margins[count++] = result.margins[index];
+                }
+                failed += result.failed[index] ? 1 : 0;
+            }
+            margins = Arrays.copyOf(margins, count);
+            Arrays.sort(margins);
+            String unit = getMarginUnit(step);
+            System.out.println(String.format("%-36s %6s %5s %8s %8s %8s %6.1f", step.getLabel(),
+                    startTimes.getCount() > 0 ? String.format("%.2f", startTimes.getMean()) : "-", unit,
+                    format(count > 0 ? mean(margins) : Double.NaN), format(percentile(margins, 0.05)),
+                    format(count > 0 ? margins[0] : Double.NaN), 100.0 * failed / runs));
+        }
+
+        reportClusters(results);
+    }
+
+    private static String getMarginUnit(Step step) {
+        switch (step.kind) {
+            case SHOOT:
+            case INTAKE:
+                return "slack";
+            case FOLLOW:
+                return "m err";
+            case WAIT_TO_PASS_X:
+                return "s";
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * Groups failed runs by where and why they first went wrong, and for each
+     * group shows which randomized conditions stand out from the rest of the
+     * runs.
+     */
+    private void reportClusters(SimRun.Result[] results) {
+        Map<String, List<SimRun.Result>> clusters = new LinkedHashMap<>();
+        for (SimRun.Result result : results) {
+            if (!result.isFailure()) {
+                continue;
+            }
+            String key = mScript.getAllSteps().get(result.firstFailureStep).getLabel() + ": "
+                    + result.firstFailureReason;
+            clusters.computeIfAbsent(key, k -> new ArrayList<>()).add(result);
+        }
+        if (clusters.isEmpty()) {
+            return;
+        }
+
+        int parameters = SimNoise.kNames.length;
+        RunningStats[] overall = new RunningStats[parameters];
+        for (int p = 0; p < parameters; p++) {
+            overall[p] = new RunningStats();
+        }
+        for (SimRun.Result result : results) {
+            double[] values = result.noise.toArray();
+            for (int p = 0; p < parameters; p++) {
+                overall[p].add(values[p]);
+            }
+        }
+
+        List<Map.Entry<String, List<SimRun.Result>>> sorted = new ArrayList<>(clusters.entrySet());
+        sorted.sort((a, b) -> Integer.compare(b.getValue().size(), a.getValue().size()));
+
+        System.out.println();
+        System.out.println("Failure clusters (first failure in the run):");
+        for (int c = 0; c < Math.min(kMaxClusters, sorted.size()); c++) {
+            List<SimRun.Result> members = sorted.get(c).getValue();
+            double[] means = new double[parameters];
+            for (SimRun.Result result : members) {
+                double[] values = result.noise.toArray();
+                for (int p = 0; p < parameters; p++) {
+                    means[p] += values[p] / members.size();
+                }
+            }
+
+            // the two parameters furthest from the overall mean, in standard deviations
+            Integer[] order = new Integer[parameters];
+            double[] shift = new double[parameters];
+            for (int p = 0; p < parameters; p++) {
+                order[p] = p;
+                double sigma = overall[p].getStandardDeviation();
+                shift[p] = sigma > 0.0 ? (means[p] - overall[p].getMean()) / sigma : 0.0;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(Math.abs(shift[b]), Math.abs(shift[a])));
+
+            StringBuilder line = new StringBuilder(String.format("  %5.1f%%  %s", 100.0 * members.size() / results.length,
+                    sorted.get(c).getKey()));
+            RunningStats missDistance = new RunningStats();
+            for (SimRun.Result result : members) {
+                double distance = result.missDistances[result.firstFailureStep];
+                if (!Double.isNaN(distance) && !Double.isInfinite(distance)) {
+                    missDistance.add(distance);
+                }
+            }
+            if (missDistance.getCount() > 0) {
+                line.append(String.format("  [closest note %.2f m]", missDistance.getMean()));
+            }
+            for (int k = 0; k < Math.min(2, parameters); k++) {
+                int p = order[k];
+                line.append(String.format("  [%s %.3f vs %.3f, %+.1f sd]", SimNoise.kNames[p], means[p],
+                        overall[p].getMean(), shift[p]));
+            }
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * Builds the trace the real actions would have recorded for a run: a follow
+     * step is a ParallelAction of the path and a SeriesAction of the steps
+     * alongside it.
+     */
+    public ActionTrace toTrace(SimRun.Result result) {
+        ActionTrace trace = new ActionTrace(mScript.getName());
+        trace.setCompleted(!Double.isNaN(result.finishTime));
+        trace.getRoot().end = trace.isCompleted() ? result.finishTime : SimRun.kAutoLength;
+        for (Step step : mScript.getSteps()) {
+            addToTrace(trace, trace.getRoot(), step, result);
+        }
+        return trace;
+    }
+
+    private static void addToTrace(ActionTrace trace, Node parent, Step step, SimRun.Result result) {
+        double start = result.startTimes[step.index];
+        if (Double.isNaN(start)) {
+            return; // auto ended before it started
+        }
+        if (step.kind != AutoScript.Kind.FOLLOW) {
+            boolean fixed = step.kind == AutoScript.Kind.WAIT
+                    || (step.kind == AutoScript.Kind.SHOOT && !Double.isInfinite(step.value));
+            trace.add(parent, ActionTrace.Kind.ACTION, step.getLabel(), fixed ? step.value : Double.NaN,
+                    start).end = result.endTimes[step.index];
+            return;
+        }
+
+        Node parallel = trace.add(parent, ActionTrace.Kind.PARALLEL, step.getLabel(), Double.NaN, start);
+        parallel.end = result.endTimes[step.index];
+        trace.add(parallel, ActionTrace.Kind.ACTION, step.getLabel() + " path", Double.NaN, start).end =
+                result.pathEndTimes[step.index];
+        if (!step.alongside.isEmpty()) {
+            Node series = trace.add(parallel, ActionTrace.Kind.SERIES, step.getLabel() + " alongside", Double.NaN,
+                    start);
+            for (Step alongside : step.alongside) {
+                addToTrace(trace, series, alongside, result);
+            }
+            series.end = result.endTimes[step.alongside.get(step.alongside.size() - 1).index];
+        }
+    }
+
+    public void writeCsv(SimRun.Result[] results, Path file) throws IOException {
+        List<Step> steps = mScript.getAllSteps();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file.toFile()))) {
+            writer.write("run,score,notes,left,finish_time,first_failure,reason");
+            for (String name : SimNoise.kNames) {
+                writer.write("," + name);
+            }
+            for (Step step : steps) {
+                writer.write(",\"" + step.getLabel() + "\"");
+            }
+            writer.newLine();
+
+            for (SimRun.Result result : results) {
+                writer.write(result.run + "," + result.getScore() + "," + result.notesScored + ","
+                        + (result.left ? 1 : 0) + "," + format(result.finishTime) + ",");
+                writer.write(result.isFailure() ? "\"" + steps.get(result.firstFailureStep).getLabel() + "\"" : "");
+                writer.write("," + (result.isFailure() ? result.firstFailureReason : ""));
+                for (double value : result.noise.toArray()) {
+                    writer.write("," + value);
+                }
+                for (double margin : result.margins) {
+                    writer.write("," + format(margin));
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    private static String format(double value) {
+        return Double.isNaN(value) ? "" : String.format("%.3f", value);
+    }
+
+    private static double mean(double[] values) {
+        RunningStats stats = new RunningStats();
+        for (double value : values) {
+            stats.add(value);
+        }
+        return stats.getMean();
+    }
+
+    // values must be sorted
+    private static double percentile(double[] values, double percentile) {
+        if (values.length == 0) {
+            return Double.NaN;
+        }
+        return values[(int) Math.floor(percentile * (values.length - 1))];
+    }
+}
@@ -0,0 +1,77 @@
+package com.team8013.frc2024.sim;
+
+import java.util.SplittableRandom;
+
+/**
+ * The randomized conditions for one simulated auto run. Each value is drawn
+ * once per run so a run behaves like one match: a robot with a bit more wheel
+ * slip, or a slow beam break, is that way for the whole auto.
+ */
+public class SimNoise {
+
+    // spread of each parameter (1 sigma) at a noise scale of 1
+    public static final double kOdometrySlipSigma = 0.04; // fraction of distance lost to wheel slip
+    public static final double kTrackingErrorSigma = 0.04; // meters
+    public static final double kNotePositionSigma = 0.06; // meters
+    public static final double kBeamBreakLatencyMean = 0.04; // seconds
+    public static final double kBeamBreakLatencySigma = 0.03;
+    public static final double kVisionLatencyMean = 0.06; // seconds
+    public static final double kVisionLatencySigma = 0.04;
+    public static final double kMechanismSpeedSigma = 0.10; // fraction of nominal speed
+
+    public static final String[] kNames = {
+            "odometrySlip",
+            "trackingError",
+            "beamBreakLatency",
+            "visionLatency",
+            "intakeTimeScale",
+            "shooterTimeScale"
+    };
+
+    public final double odometrySlip;
+    public final double trackingError;
+    public final double beamBreakLatency;
+    public final double visionLatency;
+    public final double intakeTimeScale; // >1 is a slower intake/transfer
+    public final double shooterTimeScale; // >1 is a slower spin up
+    public final double notePositionSigma;
+
+    private SimNoise(double odometrySlip, double trackingError, double beamBreakLatency, double visionLatency,
+            double intakeTimeScale, double shooterTimeScale, double notePositionSigma) {
+        this.odometrySlip = odometrySlip;
+        this.trackingError = trackingError;
+        this.beamBreakLatency = beamBreakLatency;
+        this.visionLatency = visionLatency;
+        this.intakeTimeScale = intakeTimeScale;
+        this.shooterTimeScale = shooterTimeScale;
+        this.notePositionSigma = notePositionSigma;
+    }
+
+    /**
+     * @param scale multiplies every spread, 0 gives the nominal robot
+     */
+    public static SimNoise sample(SplittableRandom rng, double scale) {
+        return new SimNoise(
+                Math.abs(rng.nextGaussian() * kOdometrySlipSigma * scale),
+                Math.abs(rng.nextGaussian() * kTrackingErrorSigma * scale),
+                Math.max(0.0, kBeamBreakLatencyMean + rng.nextGaussian() * kBeamBreakLatencySigma * scale),
+                Math.max(0.0, kVisionLatencyMean + rng.nextGaussian() * kVisionLatencySigma * scale),
+                Math.max(0.5, 1.0 + rng.nextGaussian() * kMechanismSpeedSigma * scale),
+                Math.max(0.5, 1.0 + rng.nextGaussian() * kMechanismSpeedSigma * scale),
+                kNotePositionSigma * scale);
+    }
+
+    /**
+     * @return the parameters in the same order as kNames
+     */
+    public double[] toArray() {
+        return new double[] {
+                odometrySlip,
+                trackingError,
+                beamBreakLatency,
+                visionLatency,
+                intakeTimeScale,
+                shooterTimeScale
+        };
+    }
+}
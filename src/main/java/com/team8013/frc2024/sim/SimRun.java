@@ -0,0 +1,589 @@
+package com.team8013.frc2024.sim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import com.team8013.frc2024.FieldLayout;
+import com.team8013.frc2024.sim.AutoScript.Kind;
+import com.team8013.frc2024.sim.AutoScript.Step;
+
+import edu.wpi.first.math.trajectory.Trajectory;
+
+/**
+ * One simulated run of an auto script. The script's steps run with the same
+ * start/update/isFinished/done semantics as the real actions (runAction,
+ * SeriesAction, ParallelAction) on a 20ms tick, against a simple model of the
+ * robot:
+ * <ul>
+ * <li>The drive follows each trajectory exactly as far as odometry can tell.
+ * Wheel slip makes odometry over-count, so the real robot falls short by the
+ * slip fraction of the distance driven, plus a correlated tracking error.</li>
+ * <li>The intake picks up any note within reach once it has deployed. The note
+ * only counts once the beam break sees it, so stowing early drops it.</li>
+ * <li>A shot fires once the shooter is at speed (it starts spinning up when
+ * the transfer is asked for), the note has been transferred and, if snap to target was asked for, vision has settled the aim. Otherwise
+ * the shot window closes without a note scored.</li>
+ * </ul>
+ * Not thread safe, but runs don't share anything except the script's
+ * (read-only) trajectories, so they can be spread across threads.
+ */
+public class SimRun {
+
+    public static final double kDt = 0.02;
+    public static final double kAutoLength = 15.0;
+
+    // nominal mechanism timing, seconds
+    private static final double kIntakeDeployTime = 0.25;
+    private static final double kTransferTime = 0.35;
+    private static final double kShooterSpinUpTime = 0.6;
+    private static final double kFeedTime = 0.1;
+    private static final double kAimSettleTime = 0.2;
+
+    // meters from robot center to the center of a note the intake can grab
+    public static final double kDefaultIntakeReach = 0.6;
+    private static final double kTrackingErrorCorrelation = 0.9;
+    private static final double kStartingZoneDepth = 1.93 + 0.45; // line plus half a robot
+
+    private static final double kSpeakerNotePoints = 5.0;
+    private static final double kLeavePoints = 2.0;
+
+    // blue wing, center line and red wing notes, meters in the blue origin
+    private static final double[][] kNotePositions = {
+            { 2.896, 4.105 }, { 2.896, 5.553 }, { 2.896, 7.001 },
+            { 8.271, 0.753 }, { 8.271, 2.429 }, { 8.271, 4.105 }, { 8.271, 5.781 }, { 8.271, 7.457 },
+            { 13.645, 4.105 }, { 13.645, 5.553 }, { 13.645, 7.001 }
+    };
+
+    public static class Result {
+        public final int run;
+        public final SimNoise noise;
+        public int notesScored = 0;
+        public boolean left = false;
+        public double finishTime = Double.NaN; // when the routine finished, NaN if auto ended first
+
+        // indexed by step
+        public final double[] margins;
+        public final double[] startTimes;
+        public final double[] endTimes; // when the step was seen finished, NaN if it never was
+        public final double[] pathEndTimes; // when a follow step's trajectory ran out
+        public final boolean[] failed;
+        public final double[] missDistances; // closest approach to a note for intakes that missed
+
+        public int firstFailureStep = -1;
+        public String firstFailureReason = null;
+
+        Result(int run, SimNoise noise, int steps) {
+            this.run = run;
+            this.noise = noise;
+            margins = new double[steps];
+            startTimes = new double[steps];
+            endTimes = new double[steps];
+            pathEndTimes = new double[steps];
+            failed = new boolean[steps];
+            missDistances = new double[steps];
+            Arrays.fill(margins, Double.NaN);
+            Arrays.fill(missDistances, Double.NaN);
+            Arrays.fill(startTimes, Double.NaN);
+            Arrays.fill(endTimes, Double.NaN);
+            Arrays.fill(pathEndTimes, Double.NaN);
+        }
+
+        public double getScore() {
+            return notesScored * kSpeakerNotePoints + (left ? kLeavePoints : 0.0);
+        }
+
+        public boolean isFailure() {
+            return firstFailureStep >= 0;
+        }
+    }
+
+    private final AutoScript mScript;
+    private final SimNoise mNoise;
+    private final SplittableRandom mRng;
+    private final boolean mRed;
+    private final double mIntakeReach;
+    private final Result mResult;
+
+    private final double[] mNoteX;
+    private final double[] mNoteY;
+    private final boolean[] mNoteTaken;
+
+    private double mTime = 0.0;
+
+    // drive, odometry is what the robot (and the path follower) thinks
+    private double mOdomX;
+    private double mOdomY;
+    private double mSlipX = 0.0; // odometry minus actual from wheel slip
+    private double mSlipY = 0.0;
+    private double mTrackX = 0.0;
+    private double mTrackY = 0.0;
+    private Trajectory mTrajectory = null;
+    private double mTrajectoryStart = 0.0;
+
+    // mechanisms, starting with the preload ready to shoot
+    private boolean mHasNote = true;
+    private double mIntakeDownAt = Double.NaN;
+    private Step mIntakeStep = null;
+    private double mClosestNote = Double.POSITIVE_INFINITY;
+    private double mBeamBreakAt = Double.NaN;
+    private boolean mTransferRequested = false;
+    private double mTransferDoneAt = 0.0;
+    private double mSpinUpFrom = 0.0; // transfer to shooter spins the shooter up too
+    private double mAimRequestedAt = Double.NaN;
+    private ShootAction mActiveShot = null;
+
+    /**
+     * @param red         which alliance the run is for. Paths are drawn on the red
+     *                    side, so the script's trajectories have to have been
+     *                    loaded flipped for blue.
+     * @param intakeReach see kDefaultIntakeReach
+     */
+    public SimRun(AutoScript script, int run, SimNoise noise, SplittableRandom rng, boolean red,
+            double intakeReach) {
+        mScript = script;
+        mNoise = noise;
+        mRng = rng;
+        mRed = red;
+        mIntakeReach = intakeReach;
+        mResult = new Result(run, noise, script.getAllSteps().size());
+
+        mNoteX = new double[kNotePositions.length];
+        mNoteY = new double[kNotePositions.length];
+        mNoteTaken = new boolean[kNotePositions.length];
+        for (int i = 0; i < kNotePositions.length; i++) {
+            mNoteX[i] = kNotePositions[i][0] + mRng.nextGaussian() * mNoise.notePositionSigma;
+            mNoteY[i] = kNotePositions[i][1] + mRng.nextGaussian() * mNoise.notePositionSigma;
+        }
+
+        // resetOdometry(getStartingPose()) puts the robot at the start of the
+        // first path
+        for (Step step : script.getSteps()) {
+            if (step.kind == Kind.FOLLOW) {
+                mOdomX = step.getTrajectory().getInitialPose().getX();
+                mOdomY = step.getTrajectory().getInitialPose().getY();
+                break;
+            }
+        }
+    }
+
+    public Result run() {
+        for (Step step : mScript.getSteps()) {
+            SimAction action = create(step);
+            action.start();
+            while (!action.isFinished()) {
+                if (mTime >= kAutoLength) {
+                    endOfAuto(action);
+                    return mResult;
+                }
+                action.update();
+                tick();
+            }
+            mResult.endTimes[step.index] = mTime;
+            action.done();
+        }
+        mResult.finishTime = mTime;
+
+        // the robot keeps going until auto ends (a shot still spinning up, a
+        // note still on its way to the beam break)
+        while (mTime < kAutoLength) {
+            tick();
+        }
+        endOfAuto(null);
+        return mResult;
+    }
+
+    private void endOfAuto(SimAction running) {
+        if (running != null) {
+            running.endOfAuto();
+        }
+        if (mActiveShot != null && running != mActiveShot) {
+            mActiveShot.endOfAuto();
+        }
+        if (!Double.isNaN(mIntakeDownAt)) {
+            resolveIntake();
+        }
+    }
+
+    private void tick() {
+        mTime += kDt;
+        updateDrive();
+        updateMechanisms();
+    }
+
+    private void updateDrive() {
+        if (mTrajectory != null) {
+            Trajectory.State state = mTrajectory.sample(mTime - mTrajectoryStart);
+            double x = state.poseMeters.getX();
+            double y = state.poseMeters.getY();
+            mSlipX += mNoise.odometrySlip * (x - mOdomX);
+            mSlipY += mNoise.odometrySlip * (y - mOdomY);
+            mOdomX = x;
+            mOdomY = y;
+        }
+
+        double innovation = mNoise.trackingError * Math.sqrt(1.0 - kTrackingErrorCorrelation * kTrackingErrorCorrelation);
+        mTrackX = kTrackingErrorCorrelation * mTrackX + mRng.nextGaussian() * innovation;
+        mTrackY = kTrackingErrorCorrelation * mTrackY + mRng.nextGaussian() * innovation;
+
+        double wallX = mRed ? FieldLayout.kFieldLength : 0.0;
+        if (Math.abs(getActualX() - wallX) > kStartingZoneDepth) {
+            mResult.left = true;
+        }
+    }
+
+    private double getActualX() {
+        return mOdomX - mSlipX + mTrackX;
+    }
+
+    private double getActualY() {
+        return mOdomY - mSlipY + mTrackY;
+    }
+
+    private void updateMechanisms() {
+        boolean intakeDeployed = !Double.isNaN(mIntakeDownAt)
+                && mTime - mIntakeDownAt >= kIntakeDeployTime * mNoise.intakeTimeScale;
+        if (intakeDeployed && !mHasNote && Double.isNaN(mBeamBreakAt)) {
+            for (int i = 0; i < mNoteX.length; i++) {
+                if (mNoteTaken[i]) {
+                    continue;
+                }
+                double distance = Math.hypot(mNoteX[i] - getActualX(), mNoteY[i] - getActualY());
+                mClosestNote = Math.min(mClosestNote, distance);
+                if (distance < mIntakeReach) {
+                    mNoteTaken[i] = true;
+                    mBeamBreakAt = mTime + mNoise.beamBreakLatency;
+                    break;
+                }
+            }
+        }
+        if (!Double.isNaN(mIntakeDownAt) && !mHasNote && !Double.isNaN(mBeamBreakAt) && mTime >= mBeamBreakAt) {
+            mHasNote = true;
+        }
+
+        if (mTransferRequested && mHasNote && Double.isNaN(mTransferDoneAt)) {
+            mTransferDoneAt = mTime + kTransferTime * mNoise.intakeTimeScale;
+        }
+
+        if (mActiveShot != null) {
+            mActiveShot.tryFire();
+        }
+    }
+
+    private void resolveIntake() {
+        Step step = mIntakeStep;
+        if (mHasNote && !Double.isNaN(mBeamBreakAt)) {
+            mResult.margins[step.index] = mTime - mBeamBreakAt;
+        } else if (!Double.isNaN(mBeamBreakAt)) {
+            mResult.margins[step.index] = mTime - mBeamBreakAt;
+            mBeamBreakAt = Double.NaN;
+            fail(step, "stowed before beam break");
+        } else if (!mHasNote) {
+            mResult.missDistances[step.index] = mClosestNote;
+            fail(step, "missed note");
+        }
+        mIntakeDownAt = Double.NaN;
+        mIntakeStep = null;
+        mClosestNote = Double.POSITIVE_INFINITY;
+    }
+
+    private void fail(Step step, String reason) {
+        mResult.failed[step.index] = true;
+        if (mResult.firstFailureStep < 0) {
+            mResult.firstFailureStep = step.index;
+            mResult.firstFailureReason = reason;
+        }
+    }
+
+    private SimAction create(Step step) {
+        switch (step.kind) {
+            case SHOOT:
+                return new ShootAction(step);
+            case WAIT:
+                return new WaitAction(step);
+            case FOLLOW:
+                return new FollowAction(step);
+            case WAIT_TO_PASS_X:
+                return new WaitToPassXAction(step);
+            default:
+                return new InstantAction(step);
+        }
+    }
+
+    private abstract class SimAction {
+        protected final Step mStep;
+
+        SimAction(Step step) {
+            mStep = step;
+        }
+
+        void start() {
+            mResult.startTimes[mStep.index] = mTime;
+        }
+
+        void update() {
+        }
+
+        abstract boolean isFinished();
+
+        void done() {
+        }
+
+        void endOfAuto() {
+            fail(mStep, "auto ended");
+        }
+    }
+
+    private class InstantAction extends SimAction {
+        InstantAction(Step step) {
+            super(step);
+        }
+
+        @Override
+        void start() {
+            super.start();
+            switch (mStep.kind) {
+                case INTAKE:
+                    if (Double.isNaN(mIntakeDownAt)) {
+                        mIntakeDownAt = mTime;
+                        mIntakeStep = mStep;
+                        if (!mHasNote) {
+                            mBeamBreakAt = Double.NaN;
+                        }
+                    }
+                    break;
+                case STOW:
+                    if (!Double.isNaN(mIntakeDownAt)) {
+                        resolveIntake();
+                    }
+                    break;
+                case TRANSFER:
+                    mTransferRequested = true;
+                    if (Double.isNaN(mSpinUpFrom)) {
+                        mSpinUpFrom = mTime;
+                    }
+                    break;
+                case SNAP_TO_TARGET:
+                    if (Double.isNaN(mAimRequestedAt)) {
+                        mAimRequestedAt = mTime;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        boolean isFinished() {
+            return true;
+        }
+    }
+
+    private class WaitAction extends SimAction {
+        private double mEnd;
+
+        WaitAction(Step step) {
+            super(step);
+        }
+
+        @Override
+        void start() {
+            super.start();
+            mEnd = mTime + mStep.value;
+        }
+
+        @Override
+        boolean isFinished() {
+            return mTime >= mEnd;
+        }
+    }
+
+    private class ShootAction extends SimAction {
+        private double mReadyAt;
+        private double mEnd;
+        private boolean mFired = false;
+
+        ShootAction(Step step) {
+            super(step);
+        }
+
+        @Override
+        void start() {
+            super.start();
+            // autoShot requests the transfer itself if nothing has yet
+            if (Double.isNaN(mSpinUpFrom)) {
+                mSpinUpFrom = mTime;
+                mTransferRequested = true;
+            }
+            mReadyAt = mSpinUpFrom + kShooterSpinUpTime * mNoise.shooterTimeScale;
+            mEnd = Math.min(mTime + mStep.value, kAutoLength);
+            mActiveShot = this;
+        }
+
+        private double getFireTime() {
+            double fireAt = Math.max(mReadyAt, mTransferDoneAt);
+            if (!Double.isNaN(mAimRequestedAt)) {
+                fireAt = Math.max(fireAt, mAimRequestedAt + mNoise.visionLatency + kAimSettleTime);
+            }
+            return fireAt + kFeedTime;
+        }
+
+        void tryFire() {
+            if (mFired || !mHasNote || Double.isNaN(mTransferDoneAt) || mTime > mEnd) {
+                return;
+            }
+            double fireAt = getFireTime();
+            if (mTime >= fireAt) {
+                mFired = true;
+                mResult.notesScored++;
+                mResult.margins[mStep.index] = mEnd - fireAt;
+                mHasNote = false;
+                mBeamBreakAt = Double.NaN;
+                mTransferRequested = false;
+                mTransferDoneAt = Double.NaN;
+                mSpinUpFrom = Double.NaN;
+                mActiveShot = null;
+            }
+        }
+
+        @Override
+        boolean isFinished() {
+            return mTime >= mEnd;
+        }
+
+        @Override
+        void done() {
+            if (mActiveShot == this) {
+                mActiveShot = null;
+            }
+            if (mFired) {
+                return;
+            }
+            if (!mHasNote) {
+                fail(mStep, "no note");
+            } else if (Double.isNaN(mTransferDoneAt)) {
+                fail(mStep, "note not transferred");
+            } else {
+                mResult.margins[mStep.index] = mEnd - getFireTime();
+                if (mTransferDoneAt + kFeedTime > mEnd) {
+                    fail(mStep, "transfer too slow");
+                } else if (mReadyAt + kFeedTime > mEnd) {
+                    fail(mStep, "shooter not at speed");
+                } else {
+                    fail(mStep, "aim not settled");
+                }
+            }
+        }
+
+        @Override
+        void endOfAuto() {
+            done();
+        }
+    }
+
+    private class FollowAction extends SimAction {
+        private final List<SimAction> mAlongside = new ArrayList<>();
+        private SimAction mCurrent = null;
+
+        FollowAction(Step step) {
+            super(step);
+            for (Step alongside : step.alongside) {
+                mAlongside.add(create(alongside));
+            }
+        }
+
+        @Override
+        void start() {
+            super.start();
+            mTrajectory = mStep.getTrajectory();
+            mTrajectoryStart = mTime;
+        }
+
+        private boolean isTrajectoryDone() {
+            return mTrajectory == null || mTime - mTrajectoryStart >= mTrajectory.getTotalTimeSeconds();
+        }
+
+        // the drive stops once the trajectory's time is up, record how far the
+        // robot really is from where the path ends
+        private void finishTrajectory() {
+            if (mTrajectory != null && isTrajectoryDone()) {
+                mResult.pathEndTimes[mStep.index] = mTime;
+                Trajectory.State end = mTrajectory.sample(mTrajectory.getTotalTimeSeconds());
+                mResult.margins[mStep.index] = Math.hypot(end.poseMeters.getX() - getActualX(),
+                        end.poseMeters.getY() - getActualY());
+                mTrajectory = null;
+            }
+        }
+
+        @Override
+        void update() {
+            finishTrajectory();
+
+            // SeriesAction
+            if (mCurrent == null) {
+                if (mAlongside.isEmpty()) {
+                    return;
+                }
+                mCurrent = mAlongside.remove(0);
+                mCurrent.start();
+            }
+            mCurrent.update();
+            if (mCurrent.isFinished()) {
+                mResult.endTimes[mCurrent.mStep.index] = mTime;
+                mCurrent.done();
+                mCurrent = null;
+            }
+        }
+
+        @Override
+        boolean isFinished() {
+            return isTrajectoryDone() && mCurrent == null && mAlongside.isEmpty();
+        }
+
+        @Override
+        void done() {
+            finishTrajectory();
+        }
+
+        @Override
+        void endOfAuto() {
+            if (mCurrent != null) {
+                mCurrent.endOfAuto();
+            } else {
+                super.endOfAuto();
+            }
+        }
+    }
+
+    private class WaitToPassXAction extends SimAction {
+        private double mTarget;
+        private double mStartX;
+
+        WaitToPassXAction(Step step) {
+            super(step);
+        }
+
+        @Override
+        void start() {
+            super.start();
+            mTarget = !mRed ? FieldLayout.kFieldLength - mStep.value : mStep.value; // flip_trajectories
+            mStartX = mOdomX;
+        }
+
+        @Override
+        boolean isFinished() {
+            return Math.signum(mStartX - mTarget) != Math.signum(mOdomX - mTarget);
+        }
+
+        @Override
+        void done() {
+            mResult.margins[mStep.index] = mTime - mResult.startTimes[mStep.index];
+        }
+
+        @Override
+        void endOfAuto() {
+            fail(mStep, "never passed x");
+        }
+    }
+}
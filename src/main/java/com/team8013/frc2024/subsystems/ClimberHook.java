@@ -1,10 +1,15 @@
 package com.team8013.frc2024.subsystems;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.team8013.frc2024.Constants;
 import com.team8013.frc2024.Ports;
 import com.team8013.frc2024.loops.ILooper;
 import com.team8013.frc2024.loops.Loop;
 import com.team8013.lib.Conversions;
+import com.team8013.lib.characterization.CharacterizationDevice;
+import com.team8013.lib.characterization.TalonFXCharacterizationDevice;
+import com.team8013.lib.drivers.DeviceBringup;
 import com.ctre.phoenix6.controls.DutyCycleOut;
 import com.ctre.phoenix6.controls.MotionMagicDutyCycle;
 import com.ctre.phoenix6.hardware.TalonFX;
@@ -28,21 +33,39 @@ public class ClimberHook extends Subsystem {
     private ClimberHook() {
         mMotor = new TalonFX(Ports.CLIMBER_HOOK, Ports.CANBUS_LOWER);
         // configs from constants
-        mMotor.getConfigurator().apply(Constants.ClimberHookConstants.climberHookMotorConfig());
-
-        setWantNeutralBrake(true);
-        mMotor.setPosition(0);
+        DeviceBringup bringup = DeviceBringup.getInstance();
+        CompletableFuture<Boolean> motor = bringup.configure(mMotor,
+                Constants.ClimberHookConstants.climberHookMotorConfig(), "Climber Hook", Ports.CANBUS_LOWER);
+        bringup.afterConfigured("Climber Hook Setup", Ports.CANBUS_LOWER, () -> {
+            setWantNeutralBrake(true);
+            mMotor.setPosition(0);
+        }, motor);
     }
 
     public void resetToAbsolute() {
         // mMotor.setPosition(0);
     }
 
+    /**
+     * For test mode characterization.
+     */
+    public CharacterizationDevice getCharacterizationDevice() {
+        return new TalonFXCharacterizationDevice(mMotor, "Climber Hook", "deg",
+                CharacterizationDevice.Gravity.COSINE,
+                Conversions.rotationsToDegrees(1.0, Constants.ClimberHookConstants.kGearRatio),
+                Constants.ClimberHookConstants.kMinAngle, Constants.ClimberHookConstants.kMaxAngle);
+    }
+
     public void setWantNeutralBrake(boolean brake) {
         NeutralModeValue mode = brake ? NeutralModeValue.Brake : NeutralModeValue.Coast;
         mMotor.setNeutralMode(mode);
     }
 
+    @Override
+    public String getCanBus() {
+        return Ports.CANBUS_LOWER;
+    }
+
     @Override
     public void registerEnabledLoops(ILooper mEnabledLooper) {
         mEnabledLooper.register(new Loop() {
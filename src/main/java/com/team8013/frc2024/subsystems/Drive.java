@@ -3,12 +3,16 @@ package com.team8013.frc2024.subsystems;
 import com.team8013.lib.drivers.Pigeon;
 import com.team8013.lib.swerve.SwerveModule;
 import com.team8013.frc2024.Constants;
+import com.team8013.frc2024.Ports;
 import com.team8013.frc2024.Robot;
 import com.team8013.frc2024.Constants.SwerveConstants;
 import com.team8013.frc2024.Constants.SwerveConstants.*;
+import com.team8013.frc2024.auto.GeofenceEngine;
 import com.team8013.frc2024.loops.ILooper;
 import com.team8013.frc2024.loops.Loop;
 import com.team8013.lib.Util;
+import com.team8013.lib.geometry.MutablePose2d;
+import com.team8013.lib.geometry.MutableTwist2d;
 import com.team8013.lib.logger.Log;
 
 import com.team8013.lib.logger.LoggingSystem;
@@ -18,15 +22,16 @@ import com.team8013.lib.swerve.ChassisSpeeds;
 import com.team8013.lib.swerve.DriveMotionPlanner;
 import com.team8013.lib.swerve.ModuleState;
 import com.team8013.lib.swerve.SwerveDriveOdometry;
+import com.team8013.lib.stats.WindowedStats;
+import com.team8013.lib.telemetry.LatencyTracer;
 import com.team8013.lib.util.DelayedBoolean;
-import com.team254.lib.util.MovingAverage;
+import com.team8013.lib.util.RobotClock;
+import com.team8013.lib.util.RobotStateHistory;
 
 import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.math.geometry.Twist2d;
 import edu.wpi.first.math.trajectory.Trajectory;
-import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 import java.util.ArrayList;
@@ -51,7 +56,20 @@ public class Drive extends Subsystem {
 
     private final SwerveDriveOdometry mOdometry;
     private boolean odometryReset = false;
+
+    // scratch for updateSetpoint so it doesn't allocate geometry every loop
+    private final MutablePose2d mSetpointDelta = new MutablePose2d();
+    private final MutableTwist2d mSetpointTwist = new MutableTwist2d();
     private final DriveMotionPlanner mMotionPlanner;
+    // odometry snapshot handed to the geofences once a loop
+    private final MutablePose2d mGeofencePose = new MutablePose2d();
+    // odometry snapshot for the state history channels
+    private final MutablePose2d mHistoryPose = new MutablePose2d();
+    private final GeofenceEngine mGeofences = GeofenceEngine.getInstance();
+
+    // stick sample to module outputs, see markTeleopInput
+    private final LatencyTracer.Trace mTeleopTrace = LatencyTracer.getInstance().create("Drive Teleop", "input",
+            "fed", "setpoint", LatencyTracer.kOutputsWritten);
 
     private KinematicLimits mKinematicLimits = SwerveConstants.kUncappedLimits;
 
@@ -83,6 +101,14 @@ public class Drive extends Subsystem {
         LoggingSystem.getInstance().registerObject(SwerveModule.class, mModules[1], "MOD_1");
         LoggingSystem.getInstance().registerObject(SwerveModule.class, mModules[2], "MOD_2");
         LoggingSystem.getInstance().registerObject(SwerveModule.class, mModules[3], "MOD_3");
+
+        RobotStateHistory history = RobotStateHistory.getInstance();
+        history.addChannel("Drive/poseX", () -> mPeriodicIO.pose_x);
+        history.addChannel("Drive/poseY", () -> mPeriodicIO.pose_y);
+        history.addChannel("Drive/thetaDegrees", () -> mPeriodicIO.pose_theta_degrees);
+        history.addChannel("Drive/measuredXVelocity", () -> mPeriodicIO.meas_chassis_speeds.vxMetersPerSecond);
+        history.addChannel("Drive/measuredYVelocity", () -> mPeriodicIO.meas_chassis_speeds.vyMetersPerSecond);
+        history.addChannel("Drive/measuredOmega", () -> mPeriodicIO.meas_chassis_speeds.omegaRadiansPerSecond);
     }
 
     public void setKinematicLimits(KinematicLimits newLimits) {
@@ -101,17 +127,28 @@ public class Drive extends Subsystem {
                 double x = speeds.vxMetersPerSecond;
                 double y = speeds.vyMetersPerSecond;
                 double omega = mMotionPlanner.calculateRotationalAdjustment(mPeriodicIO.heading_setpoint.getRadians(),
-                        mPeriodicIO.heading.getRadians()); // I put a neg sign here fyi
+                        mPeriodicIO.heading.getRadians(), mPeriodicIO.yaw_rate); // I put a neg sign here fyi
                 mPeriodicIO.des_chassis_speeds = new ChassisSpeeds(x, y, omega);
+                mTeleopTrace.mark(1);
                 return;
             }
         }
         mPeriodicIO.des_chassis_speeds = speeds;
+        mTeleopTrace.mark(1);
+    }
+
+    /**
+     * Call right before reading the sticks for feedTeleopSetpoint to trace how
+     * long the sample takes to reach the modules.
+     */
+    public void markTeleopInput() {
+        mTeleopTrace.begin();
     }
 
     public void setHeadingControlTarget(double target_degrees) {
         if (mControlState != DriveControlState.HEADING_CONTROL) {
             mControlState = DriveControlState.HEADING_CONTROL;
+            mMotionPlanner.resetRotationalAdjustment();
         }
         mPeriodicIO.heading_setpoint = Rotation2d.fromDegrees(target_degrees);
     }
@@ -159,6 +196,11 @@ public class Drive extends Subsystem {
         }
     }
 
+    @Override
+    public String getCanBus() {
+        return Ports.CANBUS_LOWER;
+    }
+
     @Override
     public void registerEnabledLoops(ILooper enabledLooper) {
         enabledLooper.register(new Loop() {
@@ -187,8 +229,12 @@ public class Drive extends Subsystem {
                             break;
                     }
                     updateSetpoint();
+                    mTeleopTrace.mark(2);
                     mOdometry.update(mPeriodicIO.heading, getModuleStates());
+                    mOdometry.getPoseMeters(mGeofencePose);
                 }
+                // outside the lock, the callbacks may command the drive
+                mGeofences.update(timestamp, mGeofencePose);
             }
 
             @Override
@@ -207,21 +253,32 @@ public class Drive extends Subsystem {
             swerveModule.readPeriodicInputs();
         }
 
-        mPeriodicIO.timestamp = Timer.getFPGATimestamp();
+        mPeriodicIO.timestamp = RobotClock.getInstance().getTimestamp();
         mPeriodicIO.meas_module_states = getModuleStates();
         mPeriodicIO.meas_chassis_speeds = SwerveConstants.kKinematics.toChassisSpeeds(mPeriodicIO.meas_module_states);
-        mPeriodicIO.heading = mPigeon.getYaw();
+        // the gyro is sampled on its own thread, carried forward to this loop
+        mPeriodicIO.heading = Rotation2d.fromDegrees(mPigeon.getYawDegrees(mPeriodicIO.timestamp));
+        mPeriodicIO.yaw_rate = Math.toRadians(mPigeon.getYawRateDegreesPerSecond());
         mPeriodicIO.pitch = mPigeon.getPitch();
-
-        smoothed_pitch_velocity.addNumber((mPeriodicIO.pitch.getDegrees() - last_pitch) / Constants.kLooperDt);
+        // odometry as of the last loop, kept as numbers so the state history can
+        // sample them without touching the odometry
+        mOdometry.getPoseMeters(mHistoryPose);
+        mPeriodicIO.pose_x = mHistoryPose.getX();
+        mPeriodicIO.pose_y = mHistoryPose.getY();
+        mPeriodicIO.pose_theta_degrees = mHistoryPose.getRotation().getDegrees();
+
+        smoothed_pitch_velocity.add((mPeriodicIO.pitch.getDegrees() - last_pitch) / Constants.kLooperDt);
         last_pitch = mPeriodicIO.pitch.getDegrees();
     }
 
     private void updatePathFollower() {
         if (mControlState == DriveControlState.PATH_FOLLOWING) {
-            final double now = Timer.getFPGATimestamp();
-            ChassisSpeeds output = mMotionPlanner.update(getPose(), now);
+            final double now = RobotClock.getInstance().getTimestamp();
+            ChassisSpeeds output = mMotionPlanner.update(getPose(), now, mPeriodicIO.yaw_rate);
             mPeriodicIO.des_chassis_speeds = output;
+            mPeriodicIO.path_target_x = mMotionPlanner.getXError(0.0, now);
+            mPeriodicIO.path_target_y = mMotionPlanner.getYError(0.0, now);
+            mPeriodicIO.path_target_theta_degrees = mMotionPlanner.getRotationalTarget();
         }
     }
 
@@ -233,10 +290,10 @@ public class Drive extends Subsystem {
         if (mControlState == DriveControlState.FORCE_ORIENT)
             return;
 
-        Pose2d robot_pose_vel = new Pose2d(mPeriodicIO.des_chassis_speeds.vxMetersPerSecond * Constants.kLooperDt,
+        mSetpointDelta.set(mPeriodicIO.des_chassis_speeds.vxMetersPerSecond * Constants.kLooperDt,
                 mPeriodicIO.des_chassis_speeds.vyMetersPerSecond * Constants.kLooperDt,
-                Rotation2d.fromRadians(mPeriodicIO.des_chassis_speeds.omegaRadiansPerSecond * Constants.kLooperDt));
-        Twist2d twist_vel = new Pose2d().log(robot_pose_vel);
+                mPeriodicIO.des_chassis_speeds.omegaRadiansPerSecond * Constants.kLooperDt);
+        MutableTwist2d twist_vel = mSetpointTwist.setLog(mSetpointDelta);
         ChassisSpeeds wanted_speeds = new ChassisSpeeds(
                 twist_vel.dx / Constants.kLooperDt, twist_vel.dy / Constants.kLooperDt,
                 twist_vel.dtheta / Constants.kLooperDt);
@@ -358,6 +415,7 @@ public class Drive extends Subsystem {
         for (SwerveModule swerveModule : mModules) {
             swerveModule.writePeriodicOutputs();
         }
+        mTeleopTrace.mark(3);
     }
 
     public ModuleState[] getModuleStates() {
@@ -368,10 +426,25 @@ public class Drive extends Subsystem {
         return states;
     }
 
+    /**
+     * @return module states measured at the last read, shared with the caller so
+     *         don't modify them
+     */
+    public ModuleState[] getMeasuredModuleStates() {
+        return mPeriodicIO.meas_module_states;
+    }
+
     public Pose2d getPose() {
         return mOdometry.getPoseMeters();
     }
 
+    /**
+     * Copies the odometry pose into out without allocating.
+     */
+    public MutablePose2d getPose(MutablePose2d out) {
+        return mOdometry.getPoseMeters(out);
+    }
+
     public void resetOdometry(Pose2d pose) {
         odometryReset = true;
         Pose2d wanted_pose = pose;
@@ -418,7 +491,11 @@ public class Drive extends Subsystem {
                 new ModuleState()
         };
         Rotation2d heading = new Rotation2d();
+        double yaw_rate; // rad/s from the gyro
         Rotation2d pitch = new Rotation2d();
+        double pose_x;
+        double pose_y;
+        double pose_theta_degrees;
 
         // Outputs
         ModuleState[] des_module_states = new ModuleState[] {
@@ -428,6 +505,10 @@ public class Drive extends Subsystem {
                 new ModuleState()
         };
         Pose2d path_setpoint = new Pose2d();
+        // where the path follower wanted to be on its last update
+        double path_target_x = Double.NaN;
+        double path_target_y = Double.NaN;
+        double path_target_theta_degrees = Double.NaN;
         Rotation2d heading_setpoint = new Rotation2d();
     }
 
@@ -441,86 +522,88 @@ public class Drive extends Subsystem {
         }
         SmartDashboard.putNumber("Pitch", mPeriodicIO.pitch.getDegrees());
         // SmartDashboard.putNumber("Delta Pitch",
-        // smoothed_pitch_velocity.getAverage());
+        // smoothed_pitch_velocity.getMean());
         SmartDashboard.putString("drive control state", mControlState.toString());
         SmartDashboard.putNumber("Drive X Velocity", getMeasuredXVelocity());
         SmartDashboard.putNumber("ROBOT HEADING", getHeading().getDegrees());
+        mPigeon.outputTelemetry();
+        mGeofences.outputTelemetry();
     }
 
-    @Log
+    @Log(critical = true)
     public double getTimestamp() {
         return mPeriodicIO.timestamp;
     }
 
     @Log
     public double getPitch() {
-        return mPigeon.getPitch().getDegrees();
+        return mPeriodicIO.pitch.getDegrees();
     }
 
     @Log
     public double getSmoothedPitchVelocity() {
-        return smoothed_pitch_velocity.getAverage();
+        return smoothed_pitch_velocity.getMean();
     }
 
     @Log
     public double getXTrajectoryError() {
-        return mMotionPlanner.getXError(getPose().getX(), Timer.getFPGATimestamp());
+        return mPeriodicIO.path_target_x - mPeriodicIO.pose_x;
     }
 
     @Log
     public double getYTrajectoryError() {
-        return mMotionPlanner.getYError(getPose().getY(), Timer.getFPGATimestamp());
+        return mPeriodicIO.path_target_y - mPeriodicIO.pose_y;
     }
 
     @Log
     public double getRotationError() {
-        return mMotionPlanner.getRotationalError(getPose().getRotation().getDegrees());
+        return mPeriodicIO.path_target_theta_degrees - mPeriodicIO.pose_theta_degrees;
     }
 
     @Log
     public double getTrajectoryX() {
-        return mMotionPlanner.getXError(0.0, Timer.getFPGATimestamp());
+        return mPeriodicIO.path_target_x;
     }
 
     @Log
     public double getTrajectoryY() {
-        return mMotionPlanner.getYError(0.0, Timer.getFPGATimestamp());
+        return mPeriodicIO.path_target_y;
     }
 
     @Log
     public double getTrajectoryHeading() {
-        return mMotionPlanner.getRotationalTarget();
+        return mPeriodicIO.path_target_theta_degrees;
     }
 
-    @Log
+    @Log(critical = true)
     public double getMeasuredXVelocity() {
         return mPeriodicIO.meas_chassis_speeds.vxMetersPerSecond;
     }
 
-    @Log
+    @Log(critical = true)
     public double getMeasuredYVelocity() {
         return mPeriodicIO.meas_chassis_speeds.vyMetersPerSecond;
     }
 
-    @Log
+    @Log(critical = true)
     public double getMeasuredOmega() {
         return mPeriodicIO.meas_chassis_speeds.omegaRadiansPerSecond;
     }
 
-    @Log
+    @Log(critical = true)
     public double getPoseX() {
-        return getPose().getX();
+        return mPeriodicIO.pose_x;
     }
 
-    @Log
+    @Log(critical = true)
     public double getPoseY() {
-        return getPose().getY();
+        return mPeriodicIO.pose_y;
 
     }
 
-    @Log
+    @Log(critical = true)
     public double getThetaDegrees() {
-        return getPose().getRotation().getDegrees();
+        return mPeriodicIO.pose_theta_degrees;
 
     }
 
@@ -539,7 +622,7 @@ public class Drive extends Subsystem {
         return mPeriodicIO.des_chassis_speeds.omegaRadiansPerSecond;
     }
 
-    @Log
+    @Log(critical = true)
     public String getControlState() {
         return mControlState.toString();
     }
@@ -573,7 +656,7 @@ public class Drive extends Subsystem {
     double balance_trigger_velocity = 8.0; // Greater than
     int balance_step = 0;
 
-    private MovingAverage smoothed_pitch_velocity = new MovingAverage(10);
+    private WindowedStats smoothed_pitch_velocity = new WindowedStats(10);
 
     public SequentialRequest autoBalanceRequest() {
         return new SequentialRequest(
@@ -601,13 +684,13 @@ public class Drive extends Subsystem {
                     mControlState = DriveControlState.AUTO_BALANCE;
                     mPeriodicIO.des_chassis_speeds = new ChassisSpeeds(-2.1, 0.0, 0.0);
                 }
-                state_enter_timestamp = Timer.getFPGATimestamp();
+                state_enter_timestamp = RobotClock.getInstance().now();
             }
 
             @Override
             public boolean isFinished() {
                 return mPeriodicIO.pitch.getDegrees() < flap_trigger_angle
-                        || Timer.getFPGATimestamp() - state_enter_timestamp > timeout;
+                        || RobotClock.getInstance().now() - state_enter_timestamp > timeout;
             }
 
         };
@@ -619,7 +702,7 @@ public class Drive extends Subsystem {
     private Request driveOntoPlatformRequest() {
         return new Request() {
 
-            private DelayedBoolean on_platform = new DelayedBoolean(Timer.getFPGATimestamp(), 0.4);
+            private DelayedBoolean on_platform = new DelayedBoolean(RobotClock.getInstance().now(), 0.4);
 
             final double timeout = 1.0;
             double state_enter_timestamp = 0.0;
@@ -632,14 +715,14 @@ public class Drive extends Subsystem {
                     mControlState = DriveControlState.AUTO_BALANCE;
                 }
                 mPeriodicIO.des_chassis_speeds = new ChassisSpeeds(-1.15, 0.0, 0.0);
-                state_enter_timestamp = Timer.getFPGATimestamp();
+                state_enter_timestamp = RobotClock.getInstance().now();
             }
 
             @Override
             public boolean isFinished() {
                 boolean maybe_on_platform = Util.epsilonEquals(platform_trigger_angle, getPitch(), 3.0)
-                        && smoothed_pitch_velocity.getAverage() < (balance_trigger_velocity * 0.85);
-                return on_platform.update(Timer.getFPGATimestamp(), maybe_on_platform) || Timer.getFPGATimestamp()
+                        && smoothed_pitch_velocity.getMean() < (balance_trigger_velocity * 0.85);
+                return on_platform.update(RobotClock.getInstance().now(), maybe_on_platform) || RobotClock.getInstance().now()
                         - state_enter_timestamp > timeout;
             }
 
@@ -661,13 +744,13 @@ public class Drive extends Subsystem {
                     mControlState = DriveControlState.AUTO_BALANCE;
                 }
                 mPeriodicIO.des_chassis_speeds = new ChassisSpeeds(-0.85, 0.0, 0.0);
-                state_enter_timestamp = Timer.getFPGATimestamp();
+                state_enter_timestamp = RobotClock.getInstance().now();
             }
 
             @Override
             public boolean isFinished() {
-                if (smoothed_pitch_velocity.getAverage() > balance_trigger_velocity
-                        || Timer.getFPGATimestamp() - state_enter_timestamp > timeout) {
+                if (smoothed_pitch_velocity.getMean() > balance_trigger_velocity
+                        || RobotClock.getInstance().now() - state_enter_timestamp > timeout) {
                     orientModules(List.of(
                             Rotation2d.fromDegrees(45),
                             Rotation2d.fromDegrees(-45),
@@ -689,7 +772,7 @@ public class Drive extends Subsystem {
         return new Request() {
 
             PIDController level_pid = new PIDController(0.02, 0, 0);
-            private DelayedBoolean on_platform = new DelayedBoolean(Timer.getFPGATimestamp(), 0.4);
+            private DelayedBoolean on_platform = new DelayedBoolean(RobotClock.getInstance().now(), 0.4);
 
             @Override
             public void act() {
@@ -720,7 +803,7 @@ public class Drive extends Subsystem {
                             Rotation2d.fromDegrees(45)));
                 }
 
-                if (on_platform.update(Timer.getFPGATimestamp(), level_pid.atSetpoint())) {
+                if (on_platform.update(RobotClock.getInstance().now(), level_pid.atSetpoint())) {
                     return true;
                 }
                 return false;
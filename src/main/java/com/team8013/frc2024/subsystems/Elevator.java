@@ -1,12 +1,19 @@
 package com.team8013.frc2024.subsystems;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.team8013.frc2024.Constants;
 import com.team8013.frc2024.Ports;
 import com.team8013.frc2024.loops.ILooper;
 import com.team8013.frc2024.loops.Loop;
 import com.team8013.lib.Conversions;
+import com.team8013.lib.characterization.CharacterizationDevice;
+import com.team8013.lib.characterization.TalonFXCharacterizationDevice;
+import com.team8013.lib.drivers.DeviceBringup;
 import com.team8013.lib.logger.Log;
 import com.team8013.lib.requests.Request;
+import com.team8013.lib.util.RobotClock;
+import com.team8013.lib.util.RobotStateHistory;
 //import com.team8013.lib.util.DelayedBoolean;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.controls.DutyCycleOut;
@@ -17,7 +24,6 @@ import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.NeutralModeValue;
 import com.team254.lib.util.Util;
 
-import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 public class Elevator extends Subsystem {
@@ -40,11 +46,18 @@ public class Elevator extends Subsystem {
         mMaster = new TalonFX(Ports.ELEVATOR_B, Ports.CANBUS_UPPER);
 
         // Customize these configs from constants in the future
-        mMaster.getConfigurator().apply(Constants.ElevatorConstants.elevatorFastMotorConfig());
-        mSlave.getConfigurator().apply(Constants.ElevatorConstants.elevatorFastMotorConfig());
-
-        mSlave.setControl(new Follower(Ports.ELEVATOR_B, true));
-        setNeutralBrake(false);
+        DeviceBringup bringup = DeviceBringup.getInstance();
+        CompletableFuture<Boolean> master = bringup.configure(mMaster,
+                Constants.ElevatorConstants.elevatorFastMotorConfig(), "Elevator Master", Ports.CANBUS_UPPER);
+        CompletableFuture<Boolean> slave = bringup.configure(mSlave,
+                Constants.ElevatorConstants.elevatorFastMotorConfig(), "Elevator Slave", Ports.CANBUS_UPPER);
+
+        bringup.afterConfigured("Elevator Setup", Ports.CANBUS_UPPER, () -> {
+            mSlave.setControl(new Follower(Ports.ELEVATOR_B, true));
+            setNeutralBrake(false);
+        }, master, slave);
+
+        RobotStateHistory.getInstance().addChannel("Elevator/heightMeters", () -> mPeriodicIO.position);
     }
 
     // Homing refers to moving the elevator into it's "zero" position. Needs to be
@@ -69,6 +82,11 @@ public class Elevator extends Subsystem {
         writePeriodicOutputs();
     }
 
+    @Override
+    public String getCanBus() {
+        return Ports.CANBUS_UPPER;
+    }
+
     @Override
     public void registerEnabledLoops(ILooper mEnabledILooper) {
         mEnabledILooper.register(new Loop() {
@@ -256,7 +274,17 @@ public class Elevator extends Subsystem {
         mMaster.getConfigurator().apply(config);
     }
 
-    @Log
+    /**
+     * For test mode characterization, the slave keeps following.
+     */
+    public CharacterizationDevice getCharacterizationDevice() {
+        return new TalonFXCharacterizationDevice(mMaster, "Elevator", "m", CharacterizationDevice.Gravity.CONSTANT,
+                Conversions.rotationsToMeters(1.0, Constants.ElevatorConstants.kWheelCircumference,
+                        Constants.ElevatorConstants.kGearRatio),
+                Constants.ElevatorConstants.kMinHeight, Constants.ElevatorConstants.kMaxHeight);
+    }
+
+    @Log(critical = true)
     public double getElevatorUnits() {
         return mPeriodicIO.position;
     }
@@ -286,7 +314,7 @@ public class Elevator extends Subsystem {
         return mHoming;
     }
 
-    @Log
+    @Log(critical = true)
     public double getTimestamp() {
         return mPeriodicIO.timestamp;
     }
@@ -326,7 +354,7 @@ public class Elevator extends Subsystem {
 
     @Override
     public void readPeriodicInputs() {
-        mPeriodicIO.timestamp = Timer.getFPGATimestamp();
+        mPeriodicIO.timestamp = RobotClock.getInstance().getTimestamp();
         mPeriodicIO.voltage = mMaster.getMotorVoltage().getValue();
         mPeriodicIO.current = mMaster.getStatorCurrent().getValue();
         mPeriodicIO.position = Conversions.rotationsToMeters(mMaster.getRotorPosition().getValue(),
@@ -5,12 +5,16 @@ import com.team8013.frc2024.Ports;
 import com.team8013.frc2024.loops.ILooper;
 // import revrobotics.RelativeEncoder;
 import com.team8013.frc2024.loops.Loop;
+import com.team8013.lib.characterization.CharacterizationDevice;
+import com.team8013.lib.characterization.SparkCharacterizationDevice;
+import com.team8013.lib.drivers.DeviceBringup;
 
 import com.revrobotics.CANSparkLowLevel.MotorType;
 import com.revrobotics.SparkPIDController;
 import com.revrobotics.CANSparkBase.IdleMode;
 import com.revrobotics.CANSparkFlex;
 import com.revrobotics.RelativeEncoder;
+import com.revrobotics.REVLibError;
 
 import edu.wpi.first.wpilibj.DigitalInput;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
@@ -38,27 +42,19 @@ public class EndEffectorREV extends Subsystem {
         mBottomMotor = new CANSparkFlex(Ports.END_EFFECTOR_B, MotorType.kBrushless); //bottom
         mBeamBreak = new DigitalInput(Ports.END_EFFECTOR_BEAM_BREAK);
 
-        mTopMotor.clearFaults();
-        mBottomMotor.clearFaults();
+        pidTopRoller = mTopMotor.getPIDController();
+        pidBottomRoller = mBottomMotor.getPIDController();
+
+        mEncoderTop = mTopMotor.getEncoder();
+        mEncoderBottom = mBottomMotor.getEncoder();
 
         //doesn't seem to do anything
         // mTopMotor.enableVoltageCompensation(12);
         // mBottomMotor.enableVoltageCompensation(12);
 
-        mBottomMotor.setIdleMode(IdleMode.kCoast);
-        mTopMotor.setIdleMode(IdleMode.kBrake);
-
         // mTopMotor.setInverted(false);
         // mBottomMotor.setInverted(false);
 
-        // Customize these configs from constants in the future
-
-        pidTopRoller = mTopMotor.getPIDController();
-        pidBottomRoller = mBottomMotor.getPIDController();
-
-        mEncoderTop = mTopMotor.getEncoder();
-        mEncoderBottom = mBottomMotor.getEncoder();
-
         /*
          * Slot 1: Subwoofer (4500 RPM)
          * 
@@ -77,26 +73,43 @@ public class EndEffectorREV extends Subsystem {
          * spool up pid values for 5700 rpm for a podium shot
          */
 
+        // Customize these configs from constants in the future
+        configureRoller("End Effector Top", mTopMotor, pidTopRoller, IdleMode.kBrake,
+                Constants.EndEffectorConstants.kFFTopSubwoofer, Constants.EndEffectorConstants.kFFTopFast);
+        configureRoller("End Effector Bottom", mBottomMotor, pidBottomRoller, IdleMode.kCoast,
+                Constants.EndEffectorConstants.kFFBottomSubwoofer, Constants.EndEffectorConstants.kFFBottomFast);
+    }
 
-        // set PID coefficients
-        pidTopRoller.setP(Constants.EndEffectorConstants.kPSubWof,0);
-        pidTopRoller.setP(Constants.EndEffectorConstants.kPFast,1);
-        pidTopRoller.setI(0);
-        pidTopRoller.setD(0);
-        pidTopRoller.setIZone(0);
-        pidTopRoller.setFF(Constants.EndEffectorConstants.kFFTopSubwoofer,0);
-        pidTopRoller.setFF(Constants.EndEffectorConstants.kFFTopFast,1);
-        pidTopRoller.setOutputRange(Constants.EndEffectorConstants.kMinOutput, Constants.EndEffectorConstants.kMaxOutput);
-
-        pidBottomRoller.setP(Constants.EndEffectorConstants.kPSubWof,0);
-        pidTopRoller.setP(Constants.EndEffectorConstants.kPFast,1);
-        pidBottomRoller.setI(0);
-        pidBottomRoller.setD(0);
-        pidBottomRoller.setIZone(0);
-        pidBottomRoller.setFF(Constants.EndEffectorConstants.kFFBottomSubwoofer,0);
-        pidBottomRoller.setFF(Constants.EndEffectorConstants.kFFBottomFast, 1);
-        pidBottomRoller.setOutputRange(Constants.EndEffectorConstants.kMinOutput, Constants.EndEffectorConstants.kMaxOutput);
+    private void configureRoller(String name, CANSparkFlex motor, SparkPIDController pid, IdleMode idleMode,
+            double ffSubwoofer, double ffFast) {
+        DeviceBringup.getInstance().configure(name, Ports.CANBUS_RIO, new DeviceBringup.DeviceConfigurator() {
+            @Override
+            public boolean apply() {
+                boolean ok = motor.clearFaults() == REVLibError.kOk;
+                ok &= motor.setIdleMode(idleMode) == REVLibError.kOk;
+
+                // set PID coefficients
+                ok &= pid.setP(Constants.EndEffectorConstants.kPSubWof, 0) == REVLibError.kOk;
+                ok &= pid.setP(Constants.EndEffectorConstants.kPFast, 1) == REVLibError.kOk;
+                ok &= pid.setI(0) == REVLibError.kOk;
+                ok &= pid.setD(0) == REVLibError.kOk;
+                ok &= pid.setIZone(0) == REVLibError.kOk;
+                ok &= pid.setFF(ffSubwoofer, 0) == REVLibError.kOk;
+                ok &= pid.setFF(ffFast, 1) == REVLibError.kOk;
+                ok &= pid.setOutputRange(Constants.EndEffectorConstants.kMinOutput,
+                        Constants.EndEffectorConstants.kMaxOutput) == REVLibError.kOk;
+                return ok;
+            }
 
+            @Override
+            public boolean verify() {
+                return motor.getIdleMode() == idleMode
+                        && DeviceBringup.valuesMatch(pid.getP(0), Constants.EndEffectorConstants.kPSubWof)
+                        && DeviceBringup.valuesMatch(pid.getP(1), Constants.EndEffectorConstants.kPFast)
+                        && DeviceBringup.valuesMatch(pid.getFF(0), ffSubwoofer)
+                        && DeviceBringup.valuesMatch(pid.getFF(1), ffFast);
+            }
+        }, null);
     }
 
     public static EndEffectorREV getInstance() {
@@ -114,6 +127,18 @@ public class EndEffectorREV extends Subsystem {
         OPEN_LOOP
     }
 
+    /**
+     * For test mode characterization, replaces the FF/P hand tuning described
+     * in the constructor.
+     */
+    public CharacterizationDevice getTopCharacterizationDevice() {
+        return new SparkCharacterizationDevice(mTopMotor, "End Effector Top");
+    }
+
+    public CharacterizationDevice getBottomCharacterizationDevice() {
+        return new SparkCharacterizationDevice(mBottomMotor, "End Effector Bottom");
+    }
+
     public State getState() {
         return mState;
     }
@@ -164,6 +189,11 @@ public class EndEffectorREV extends Subsystem {
         mPeriodicIO.demandSlave = demandSlave;
     }
 
+    @Override
+    public String getCanBus() {
+        return Ports.CANBUS_RIO;
+    }
+
     @Override
     public void registerEnabledLoops(ILooper mEnabledLooper) {
         mEnabledLooper.register(new Loop() {
@@ -1,24 +1,25 @@
 package com.team8013.frc2024.subsystems;
 
-import java.util.ArrayList;
+import java.util.List;
 
 import com.team254.lib.util.Util;
 import com.team8013.frc2024.Constants;
+import com.team8013.frc2024.FieldLayout;
 import com.team8013.frc2024.controlboard.ControlBoard;
 import com.team8013.frc2024.loops.ILooper;
 import com.team8013.frc2024.loops.Loop;
+import com.team8013.frc2024.planners.NoteTracker;
 import com.team8013.lib.swerve.ChassisSpeeds;
 
 import edu.wpi.first.math.controller.ProfiledPIDController;
 import edu.wpi.first.math.geometry.Pose2d;
-import edu.wpi.first.math.geometry.Transform2d;
-//import edu.wpi.first.math.util.Units;
+import edu.wpi.first.math.util.Units;
 import edu.wpi.first.networktables.NetworkTable;
-import edu.wpi.first.networktables.NetworkTableEntry;
 import edu.wpi.first.networktables.NetworkTableInstance;
-import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import com.team8013.frc2024.regressions.ShooterRegression;
+import com.team8013.lib.stats.WindowedStats;
+import com.team8013.lib.util.RobotClock;
 
 /**
  * Subsystem for interacting with the Limelight 3
@@ -37,7 +38,7 @@ public class Limelight extends Subsystem {
     boolean isRedAlliance = true;
     //private boolean shootAgainstSubwooferSide = false;
     private boolean wantNoteChase = false;
-    private boolean gottenNotePose = false;
+    private boolean wasNoteChasing = false;
     private boolean cantFindTargetOnInitialSnap = false;
     private double manualControlPivotShootModePodium = Constants.PivotConstants.kShootAgainstPodiumAngle;
     private double manualControlPivotShootPassMode = Constants.PivotConstants.kPassNoteFromMidAngle;
@@ -45,19 +46,16 @@ public class Limelight extends Subsystem {
     private double pivAngle = Constants.PivotConstants.kShootAgainstSubwooferAngle;
     //private int smoothCounter = 0;
     private double degreesToSnap = 180;
-    private double sumx = 0;
-    private double sumy = 0;
-    private double pastPosex = 0;
-    private ArrayList<Double> smoothXs = new ArrayList<Double>();
-    private ArrayList<Double> smoothYs = new ArrayList<Double>();
-    private Pose2d notePose = new Pose2d(0,0, new edu.wpi.first.math.geometry.Rotation2d(0));
-
-    private int mLatencyCounter = 0;
-
+    private double pastPoseTimestamp = Double.NaN;
+    private WindowedStats smoothXs = new WindowedStats(15);
+    private WindowedStats smoothYs = new WindowedStats(15);
+    // the cameras are read and fused on their own threads
+    private final Vision mVision = Vision.getInstance();
+    private final NoteTracker mNoteTracker = mVision.getNoteTracker();
+
+    // LEDs and pipeline of the shooter side camera
     NetworkTable mNetworkTable = NetworkTableInstance.getDefault().getTable("limelight-crepe");
 
-    //NetworkTable mNetworkTableNoteVision = NetworkTableInstance.getDefault().getTable("limelight_Vision"); //TODO: for 2nd limelight
-
     private PeriodicIO mPeriodicIO = new PeriodicIO();
     private boolean mOutputsHaveChanged = true;
     private boolean shootFromPodium = false;
@@ -66,12 +64,8 @@ public class Limelight extends Subsystem {
     private boolean amp2Piece = false;
     private boolean sideOfSubwoofer = false;
 
-    private final NetworkTableEntry botpose_wpiblue = mNetworkTable.getEntry("botpose_wpiblue");
-    private final NetworkTableEntry botpose_wpired = mNetworkTable.getEntry("botpose_wpired");
-    private final NetworkTableEntry tTargetID = mNetworkTable.getEntry("tid");
-
     private Limelight() {
-        //initializeNoteChase();
+        initializeNoteChase();
         for (int i = 0; i<5;i++){
             smoothXs.add(0.0);
             smoothYs.add(0.0);
@@ -96,13 +90,11 @@ public class Limelight extends Subsystem {
 
             @Override
             public void onLoop(double timestamp) {
-                final double start = Timer.getFPGATimestamp();
-
                 // send log data
                 // SendLog();
 
-                final double end = Timer.getFPGATimestamp();
-                mPeriodicIO.dt = end - start;
+                // time spent in the tick up to here
+                mPeriodicIO.dt = RobotClock.getInstance().now() - timestamp;
             }
 
             @Override
@@ -164,16 +156,16 @@ public class Limelight extends Subsystem {
         public double latencyTimestamp;
     }
 
-    // private void initializeNoteChase() { 
-    //     xController = new ProfiledPIDController(2, 0, 0, Constants.VisionAlignConstants.X_CONSTRAINTS);
-    //     yController = new ProfiledPIDController(2, 0, 0, Constants.VisionAlignConstants.Y_CONSTRAINTS); //3 also works
-    //     omegaController = new ProfiledPIDController(7, 0, 0, Constants.VisionAlignConstants.OMEGA_CONSTRAINTS);
-    //     xController.setTolerance(0.05); //change if having consistency issues was originally 0.2
-    //     yController.setTolerance(0.05);
-    //     omegaController.setTolerance(Units.degreesToRadians(0.2));
-    //     omegaController.enableContinuousInput(-Math.PI, Math.PI);
+    private void initializeNoteChase() { 
+        xController = new ProfiledPIDController(2, 0, 0, Constants.VisionAlignConstants.X_CONSTRAINTS);
+        yController = new ProfiledPIDController(2, 0, 0, Constants.VisionAlignConstants.Y_CONSTRAINTS); //3 also works
+        omegaController = new ProfiledPIDController(7, 0, 0, Constants.VisionAlignConstants.OMEGA_CONSTRAINTS);
+        xController.setTolerance(0.05); //change if having consistency issues was originally 0.2
+        yController.setTolerance(0.05);
+        omegaController.setTolerance(Units.degreesToRadians(0.2));
+        omegaController.enableContinuousInput(-Math.PI, Math.PI);
 
-    // }
+    }
 
     public void wantNoteChase(boolean chase){
         if (wantNoteChase != chase){
@@ -185,40 +177,31 @@ public class Limelight extends Subsystem {
 
         //set robot pose to odometry pose
         robotPose = mSwerve.getPose();
+        double cos = robotPose.getRotation().getCos();
+        double sin = robotPose.getRotation().getSin();
 
-        //do I need to reset pid controllers every cycle even if I am using .calculate?
-        // xController.reset(robotPose.getX());
-        // yController.reset(robotPose.getY());
-        // omegaController.reset(robotPose.getRotation().getRadians());
+        // field relative velocity, for how soon each note can be reached
+        double vx = mSwerve.getMeasuredXVelocity() * cos - mSwerve.getMeasuredYVelocity() * sin;
+        double vy = mSwerve.getMeasuredXVelocity() * sin + mSwerve.getMeasuredYVelocity() * cos;
 
-        // if limelight sees_note, update goal pose by the coordinates plus odometry
-        //note: x positive going forwards and y positive going left
+        // chase the tracked note the robot can get to first, it stays put on
+        // the field when a frame is dropped or the note leaves the view
+        mPeriodicIO.noteInView = mNoteTracker.updateTarget(robotPose.getX(), robotPose.getY(), vx, vy);
         if (mPeriodicIO.noteInView){
-            //Pose2d notePose = new Pose2d(mPeriodicIO.noteX,mPeriodicIO.noteY,new edu.wpi.first.math.geometry.Rotation2d(0));
-            
-
-
-            Pose2d notePose = this.notePose;//new Pose2d(mPeriodicIO.noteX,mPeriodicIO.noteY, new edu.wpi.first.math.geometry.Rotation2d(0));
+            mPeriodicIO.noteX = mNoteTracker.getTargetX();
+            mPeriodicIO.noteY = mNoteTracker.getTargetY();
 
-            Transform2d rotationTransform = new Transform2d(new Pose2d(0,0,new edu.wpi.first.math.geometry.Rotation2d(0)), notePose);
+            // face the note with the intake
+            double goalHeading = Math.atan2(mPeriodicIO.noteY - robotPose.getY(), mPeriodicIO.noteX - robotPose.getX());
 
-            // Transform the tag's pose to set our goal
-            Pose2d goalPose = new Pose2d(robotPose.getX() + notePose.getY(),robotPose.getY() - notePose.getX(), rotationTransform.getRotation());
-
-            SmartDashboard.putNumber("Goal Pose x", goalPose.getX());
-            SmartDashboard.putNumber("Goal Pose y", goalPose.getY());
-            SmartDashboard.putNumber("Goal Pose rotation degrees", goalPose.getRotation().getDegrees());
+            SmartDashboard.putNumber("Goal Pose x", mPeriodicIO.noteX);
+            SmartDashboard.putNumber("Goal Pose y", mPeriodicIO.noteY);
+            SmartDashboard.putNumber("Goal Pose rotation degrees", Math.toDegrees(goalHeading));
 
             // set pid controller goals
-            xController.setGoal(goalPose.getX()); //previously all 0
-            yController.setGoal(goalPose.getY());
-            omegaController.setGoal(goalPose.getRotation().getRadians());// goalPose.getRotation().getRadians()
-
-            // Drive to the target
-            // double newXTarget = robotPose.getX();
-            // if ((newXTarget > -0.2) && (newXTarget < 0.2)) {
-            //     newXTarget = 0.0;
-            // }
+            xController.setGoal(mPeriodicIO.noteX);
+            yController.setGoal(mPeriodicIO.noteY);
+            omegaController.setGoal(goalHeading);
 
             double xSpeed = xController.calculate(robotPose.getX());
             if (xController.atGoal()) {
@@ -239,14 +222,22 @@ public class Limelight extends Subsystem {
             SmartDashboard.putNumber("drive call y", ySpeed);
             SmartDashboard.putNumber("drive call omega", omegaSpeed);
 
-            // mSwerve.drive(new Translation2d(ySpeed,xSpeed), -omegaSpeed, false, false);
-            mSwerve.feedTeleopSetpoint(new ChassisSpeeds(xSpeed, ySpeed, omegaSpeed));
-            // mSwerve.drive(new Translation2d(ySpeed,0), 0, true, false);
+            // the controllers work in field coordinates
+            mSwerve.feedTeleopSetpoint(ChassisSpeeds.fromFieldRelativeSpeeds(xSpeed, ySpeed, omegaSpeed,
+                    robotPose.getRotation()));
         } else {
             // No target has been visible
             mSwerve.feedTeleopSetpoint(new ChassisSpeeds(0, 0, 0));
         }
     }
+
+    private void startNoteChase() {
+        robotPose = mSwerve.getPose();
+        xController.reset(robotPose.getX());
+        yController.reset(robotPose.getY());
+        omegaController.reset(robotPose.getRotation().getRadians());
+        mNoteTracker.resetTarget();
+    }
     
 
     public void isRedAlliance(boolean redAlliance) {
@@ -473,94 +464,70 @@ public class Limelight extends Subsystem {
     }
 
     public boolean isDoneWithNotePickup(){//zero the odometry with 'known' location?
-        return (xController.atGoal() && yController.atGoal()); //add theta?
+        // the chased note dropping out of the tracker while in view means it's
+        // in the intake (or wasn't there)
+        return (mPeriodicIO.noteInView && xController.atGoal() && yController.atGoal())
+                || mNoteTracker.lostTarget(); //add theta?
     }
 
+    public NoteTracker getNoteTracker() {
+        return mNoteTracker;
+    }
+
+
 
+    // the fused pose has to be in before it's used
+    @Override
+    public List<Subsystem> getReadDependencies() {
+        return List.of(mVision);
+    }
 
     @Override
     public synchronized void readPeriodicInputs() {
-        final double latency = mNetworkTable.getEntry("tl").getDouble(0) / 1000.0
-                + (11.0 / 1000.0); // 90fps original latency calculation
-        // final double latencyTimestamp = Timer.getFPGATimestamp() - (mNetworkTable.getEntry("cl").getDouble(0) / 1000.0)
-        //         - (mNetworkTable
-        //                 .getEntry("tl").getDouble(0) / 1000.0);
         mPeriodicIO.givenLedMode = (int) mNetworkTable.getEntry("ledMode").getDouble(1.0);
         mPeriodicIO.givenPipeline = (int) mNetworkTable.getEntry("pipeline").getDouble(0);
 
-        if (latency == mPeriodicIO.latency) {
-            mLatencyCounter++;
-        } else {
-            mLatencyCounter = 0;
-        }
-
-        mPeriodicIO.latency = latency;
-        // mPeriodicIO.latencyTimestamp = latencyTimestamp;
-        mPeriodicIO.has_comms = mLatencyCounter < 10;
-
-        mPeriodicIO.sees_target = mNetworkTable.getEntry("tv").getDouble(0) == 1.0;
-
-        if (isRedAlliance) {
-            double[] robotPose3d = botpose_wpired.getDoubleArray(new double[] { 0.0, 0.0, 0.0, 0.0, 0.0, 0.0 });
-            mPeriodicIO.botPosex = robotPose3d[0];
-            mPeriodicIO.botPosey = robotPose3d[1];
-            mPeriodicIO.botPosez = robotPose3d[2];
-            mPeriodicIO.botPoseRoll = robotPose3d[3];
-            mPeriodicIO.botPosePitch = robotPose3d[4];
-            mPeriodicIO.botPoseYaw = robotPose3d[5];
-        } else {
-            double[] robotPose3d = botpose_wpiblue.getDoubleArray(new double[] { 0.0, 0.0, 0.0, 0.0, 0.0, 0.0 });
-            mPeriodicIO.botPosex = robotPose3d[0];
-            mPeriodicIO.botPosey = robotPose3d[1];
-            mPeriodicIO.botPosez = robotPose3d[2];
-            mPeriodicIO.botPoseRoll = robotPose3d[3];
-            mPeriodicIO.botPosePitch = robotPose3d[4];
-            mPeriodicIO.botPoseYaw = robotPose3d[5];
+        mPeriodicIO.latency = mVision.getPoseLatency();
+        mPeriodicIO.has_comms = mVision.hasComms();
+        mPeriodicIO.sees_target = mVision.hasPose();
+
+        if (mPeriodicIO.sees_target) {
+            if (isRedAlliance) {
+                // the red origin is the blue one turned around the field's center
+                mPeriodicIO.botPosex = FieldLayout.kFieldLength - mVision.getPoseX();
+                mPeriodicIO.botPosey = FieldLayout.kFieldWidth - mVision.getPoseY();
+                mPeriodicIO.botPoseYaw = Math.IEEEremainder(mVision.getPoseYawDegrees() + 180.0, 360.0);
+            } else {
+                mPeriodicIO.botPosex = mVision.getPoseX();
+                mPeriodicIO.botPosey = mVision.getPoseY();
+                mPeriodicIO.botPoseYaw = mVision.getPoseYawDegrees();
+            }
+            mPeriodicIO.tagInView = mVision.getPrimaryTag();
         }
 
-        mPeriodicIO.tagInView = tTargetID.getDouble(0.0);
-
         // if (cantFindTargetOnInitialSnap && mPeriodicIO.sees_target){
         //     mPeriodicIO.botPosexSmooth = mPeriodicIO.botPosex; //don't smooth if searching
         //     mPeriodicIO.botPoseySmooth = mPeriodicIO.botPosey;
         // }
-        if (mPeriodicIO.sees_target && mPeriodicIO.botPosex != pastPosex && mPeriodicIO.botPosex != 0.0){
-            pastPosex = mPeriodicIO.botPosex;
+        // only poses that passed validation are fused, average each new one once
+        if (mPeriodicIO.sees_target && mVision.getPoseTimestamp() != pastPoseTimestamp){
+            pastPoseTimestamp = mVision.getPoseTimestamp();
             smoothXs.add(mPeriodicIO.botPosex);
-            if (smoothXs.size()>15){
-                smoothXs.remove(0);
-            }
             smoothYs.add(mPeriodicIO.botPosey);
-            if (smoothYs.size()>15){
-                smoothYs.remove(0);
-            }
-            
-            for (int i = 0; i<smoothXs.size();i++){
-                sumx += smoothXs.get(i);
-            }
-            for (int i = 0; i<smoothYs.size();i++){
-                sumy += smoothYs.get(i);
-            }
-            mPeriodicIO.botPosexSmooth = sumx/smoothXs.size();
-            mPeriodicIO.botPoseySmooth = sumy/smoothYs.size();
 
-            sumx = 0;
-            sumy = 0;
+            mPeriodicIO.botPosexSmooth = smoothXs.getMean();
+            mPeriodicIO.botPoseySmooth = smoothYs.getMean();
         }
 
-        if (!mControlBoard.snapToTarget() && smoothXs.size()>0){ //could be in a new position so clear the old one to clean up confusion with old values
+        if (!mControlBoard.snapToTarget() && !smoothXs.isEmpty()){ //could be in a new position so clear the old one to clean up confusion with old values
             smoothXs.clear();
             smoothYs.clear();
-            sumx = 0;
-            sumy = 0;
         }
 
 
         // mPeriodicIO.tanLineToSpeaker = Math
         //         .sqrt(mPeriodicIO.botPosex * mPeriodicIO.botPosex + Math.pow(mPeriodicIO.botPosey - 2.61, 2));
         mPeriodicIO.tanLineToSpeaker = doTanLineToSpeakerMath();
-
-        //add note vision updates
     }
 
     @Override
@@ -579,21 +546,16 @@ public class Limelight extends Subsystem {
             mOutputsHaveChanged = false;
         }
 
+        if (wantNoteChase && !wasNoteChasing){
+            startNoteChase();
+        }
+        wasNoteChasing = wantNoteChase;
         if (wantNoteChase){
             noteChasePeriodic();
         }
 
         //if robot is not moving and targets in view, zero the odometry??
 
-        //gets the note pose that is used during the note chase once so that there is no camera delay while chasing
-        if (!gottenNotePose && wantNoteChase){
-            notePose = new Pose2d(mPeriodicIO.noteX,mPeriodicIO.noteY, new edu.wpi.first.math.geometry.Rotation2d(0));
-            gottenNotePose = true;
-        }
-        if (!wantNoteChase){
-            gottenNotePose = false;
-        }
-
     }
 
     @Override
@@ -601,6 +563,7 @@ public class Limelight extends Subsystem {
         SmartDashboard.putBoolean("Limelight Ok (Has Comms)", mPeriodicIO.has_comms);
         SmartDashboard.putNumber("Limelight Pipeline Latency (ms)", mPeriodicIO.latency);
         SmartDashboard.putNumber("Limelight dt", mPeriodicIO.dt);
+        SmartDashboard.putNumber("Shooter Regression Version", mRegression.getVersion());
 
         SmartDashboard.putBoolean("Limelight Has Target", mPeriodicIO.sees_target);
         SmartDashboard.putNumber("Limelight tag ID In view", mPeriodicIO.tagInView);
@@ -615,8 +578,6 @@ public class Limelight extends Subsystem {
         SmartDashboard.putNumber("Limelight Tangent Line to Speaker", mPeriodicIO.tanLineToSpeaker);
 
         // SmartDashboard.putBoolean("WantChaseMode", mPeriodicIO.wantsChaseMode);
-
-        //add note vision updates
     }
 
     @Override
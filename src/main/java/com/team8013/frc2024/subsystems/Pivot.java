@@ -1,12 +1,19 @@
 package com.team8013.frc2024.subsystems;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.team8013.frc2024.Constants;
 import com.team8013.frc2024.Ports;
 import com.team8013.frc2024.loops.ILooper;
 import com.team8013.frc2024.loops.Loop;
 import com.team8013.lib.Conversions;
 import com.team8013.lib.Util;
+import com.team8013.lib.characterization.CharacterizationDevice;
+import com.team8013.lib.characterization.TalonFXCharacterizationDevice;
+import com.team8013.lib.drivers.DeviceBringup;
 import com.team8013.lib.logger.Log;
+import com.team8013.lib.util.RobotClock;
+import com.team8013.lib.util.RobotStateHistory;
 
 import com.ctre.phoenix6.configs.CANcoderConfiguration;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
@@ -42,15 +49,24 @@ public class Pivot extends Subsystem {
         mCANcoder = new CANcoder(Ports.PIVOT_CANCODER, Ports.CANBUS_LOWER);
         CANcoderConfiguration CANCoderConfig = Constants.PivotConstants.pivotCancoderConfig();
 
-        // configs from constants
-        mMaster.getConfigurator().apply(Constants.PivotConstants.pivotFastMotorConfig());
-        mSlave.getConfigurator().apply(Constants.PivotConstants.pivotFastMotorConfig());
+        // configs from constants, applied in the background and verified
+        DeviceBringup bringup = DeviceBringup.getInstance();
+        CompletableFuture<Boolean> master = bringup.configure(mMaster,
+                Constants.PivotConstants.pivotFastMotorConfig(), "Pivot Master", Ports.CANBUS_UPPER);
+        CompletableFuture<Boolean> slave = bringup.configure(mSlave,
+                Constants.PivotConstants.pivotFastMotorConfig(), "Pivot Slave", Ports.CANBUS_UPPER);
+        CompletableFuture<Boolean> cancoder = bringup.configure(mCANcoder, CANCoderConfig, "Pivot CANcoder",
+                Ports.CANBUS_LOWER);
 
-        mCANcoder.getConfigurator().apply(CANCoderConfig);
+        // neutral mode and the absolute seed would be overwritten by a config
+        // landing after them
+        bringup.afterConfigured("Pivot Setup", Ports.CANBUS_UPPER, () -> {
+            mSlave.setControl(new Follower(Ports.PIVOT_B, true));
+            setWantNeutralBrake(true);
+            resetToAbsolute();
+        }, master, slave, cancoder);
 
-        mSlave.setControl(new Follower(Ports.PIVOT_B, true));
-        setWantNeutralBrake(true);
-        resetToAbsolute();
+        RobotStateHistory.getInstance().addChannel("Pivot/angleDegrees", () -> mPeriodicIO.position_degrees);
     }
 
     public void resetToAbsolute() {
@@ -65,6 +81,13 @@ public class Pivot extends Subsystem {
         mSlave.setNeutralMode(mode);
     }
 
+    // the motors are on the upper bus and the CANcoder on the lower, so the
+    // reads go on the loop thread alongside both bus readers
+    @Override
+    public String getCanBus() {
+        return null;
+    }
+
     @Override
     public void registerEnabledLoops(ILooper mEnabledLooper) {
         mEnabledLooper.register(new Loop() {
@@ -133,7 +156,16 @@ public class Pivot extends Subsystem {
         mMaster.getConfigurator().apply(config);
     }
 
-    @Log
+    /**
+     * For test mode characterization, the slave keeps following.
+     */
+    public CharacterizationDevice getCharacterizationDevice() {
+        return new TalonFXCharacterizationDevice(mMaster, "Pivot", "deg", CharacterizationDevice.Gravity.COSINE,
+                Conversions.rotationsToDegrees(1.0, Constants.PivotConstants.PivotGearRatio),
+                Constants.PivotConstants.kMinAngle, Constants.PivotConstants.kMaxAngle);
+    }
+
+    @Log(critical = true)
     public double getPivotAngleDeg() {
         return mPeriodicIO.position_degrees;
     }
@@ -158,14 +190,14 @@ public class Pivot extends Subsystem {
         return mPeriodicIO.current;
     }
 
-    @Log
+    @Log(critical = true)
     public double getTimestamp() {
         return mPeriodicIO.timestamp;
     }
 
     @Log
     public double getMainMotorBusVolts() {
-        return mMaster.getSupplyVoltage().getValueAsDouble();
+        return mPeriodicIO.supply_voltage;
     }
 
     public static class mPeriodicIO {
@@ -177,6 +209,8 @@ public class Pivot extends Subsystem {
 
         public double current = 0.0;
         public double output_voltage = 0.0;
+        public double supply_voltage = 0.0;
+        public double cancoder_degrees = 0.0;
 
         // Outputs
         public double demand = 0;
@@ -190,10 +224,13 @@ public class Pivot extends Subsystem {
 
     @Override
     public synchronized void readPeriodicInputs() {
+        mPeriodicIO.timestamp = RobotClock.getInstance().getTimestamp();
         mPeriodicIO.position_degrees = Conversions.rotationsToDegrees(mMaster.getRotorPosition().getValueAsDouble(),
                 Constants.PivotConstants.PivotGearRatio);
         mPeriodicIO.current = mMaster.getTorqueCurrent().getValueAsDouble();
         mPeriodicIO.output_voltage = mMaster.getMotorVoltage().getValueAsDouble();
+        mPeriodicIO.supply_voltage = mMaster.getSupplyVoltage().getValueAsDouble();
+        mPeriodicIO.cancoder_degrees = getCanCoder();
         mPeriodicIO.velocity_radPerSec = Conversions.rotationsToDegrees(mMaster.getVelocity().getValueAsDouble(),
                 Constants.PivotConstants.PivotGearRatio) * Math.PI / 180;
     }
@@ -201,7 +238,7 @@ public class Pivot extends Subsystem {
     @Override
     public void outputTelemetry() {
         SmartDashboard.putNumber("Pivot Angle (degrees)", mPeriodicIO.position_degrees);
-        SmartDashboard.putNumber("Pivot CANCODER (degrees)", getCanCoder());
+        SmartDashboard.putNumber("Pivot CANCODER (degrees)", mPeriodicIO.cancoder_degrees);
         SmartDashboard.putNumber("Pivot Motor Rotations", mMaster.getRotorPosition().getValueAsDouble());
         SmartDashboard.putNumber("Pivot Demand", mPeriodicIO.demand);
         SmartDashboard.putNumber("Pivot" + " Velocity rad/s", mPeriodicIO.velocity_radPerSec);
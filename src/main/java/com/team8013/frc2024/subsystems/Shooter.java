@@ -1,5 +1,7 @@
 package com.team8013.frc2024.subsystems;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.ctre.phoenix6.controls.DutyCycleOut;
 import com.ctre.phoenix6.controls.Follower;
 import com.ctre.phoenix6.controls.MotionMagicVelocityDutyCycle;
@@ -10,10 +12,12 @@ import com.team8013.frc2024.Constants;
 import com.team8013.frc2024.Ports;
 import com.team8013.frc2024.loops.ILooper;
 import com.team8013.frc2024.loops.Loop;
+import com.team8013.lib.drivers.DeviceBringup;
 import com.team8013.lib.logger.Log;
+import com.team8013.lib.util.RobotClock;
+import com.team8013.lib.util.RobotStateHistory;
 
 import edu.wpi.first.wpilibj.DigitalInput;
-import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 public class Shooter extends Subsystem {
@@ -31,11 +35,19 @@ public class Shooter extends Subsystem {
         mBeamBreak = new DigitalInput(Ports.SHOOTER_BEAM_BREAK);
 
         // Configs from constants
-        mMaster.getConfigurator().apply(Constants.ShooterConstants.shooterMotorConfig());
-        mSlave.getConfigurator().apply(Constants.ShooterConstants.shooterMotorConfig());
+        DeviceBringup bringup = DeviceBringup.getInstance();
+        CompletableFuture<Boolean> master = bringup.configure(mMaster,
+                Constants.ShooterConstants.shooterMotorConfig(), "Shooter Master", Ports.CANBUS_UPPER);
+        CompletableFuture<Boolean> slave = bringup.configure(mSlave,
+                Constants.ShooterConstants.shooterMotorConfig(), "Shooter Slave", Ports.CANBUS_UPPER);
+
+        bringup.afterConfigured("Shooter Setup", Ports.CANBUS_UPPER, () -> {
+            mSlave.setControl(new Follower(Ports.Shooter_A, true));
+            setWantNeutralBrake(true);
+        }, master, slave);
 
-        mSlave.setControl(new Follower(Ports.Shooter_A, true));
-        setWantNeutralBrake(true);
+        // velocity is read in rotations per second
+        RobotStateHistory.getInstance().addChannel("Shooter/velocityRPM", () -> mPeriodicIO.velocity * 60.0);
     }
 
     public static Shooter mInstance;
@@ -63,6 +75,7 @@ public class Shooter extends Subsystem {
         private double timestamp;
         private double voltage;
         private double current;
+        private double supply_voltage;
         // private double position;
         private double velocity;
 
@@ -91,6 +104,11 @@ public class Shooter extends Subsystem {
         mPeriodicIO.demand = rps;
     }
 
+    @Override
+    public String getCanBus() {
+        return Ports.CANBUS_UPPER;
+    }
+
     @Override
     public void registerEnabledLoops(ILooper enabledLooper) {
         enabledLooper.register(new Loop() {
@@ -150,19 +168,19 @@ public class Shooter extends Subsystem {
         return mPeriodicIO.current;
     }
 
-    @Log
+    @Log(critical = true)
     public double getTimestamp() {
         return mPeriodicIO.timestamp;
     }
 
-    @Log
+    @Log(critical = true)
     public double getVelocity() {
         return mPeriodicIO.velocity;
     }
 
     @Log
     public double getMainMotorBusVolts() {
-        return mMaster.getSupplyVoltage().getValue();
+        return mPeriodicIO.supply_voltage;
     }
 
     @Override
@@ -176,9 +194,10 @@ public class Shooter extends Subsystem {
 
     @Override
     public void readPeriodicInputs() {
-        mPeriodicIO.timestamp = Timer.getFPGATimestamp();
+        mPeriodicIO.timestamp = RobotClock.getInstance().getTimestamp();
         mPeriodicIO.voltage = mMaster.getMotorVoltage().getValue();
         mPeriodicIO.current = mMaster.getStatorCurrent().getValue();
+        mPeriodicIO.supply_voltage = mMaster.getSupplyVoltage().getValue();
         // mPeriodicIO.position = mMaster.getRotorPosition().getValue();
         mPeriodicIO.velocity = mMaster.getRotorVelocity().getValue();
         mPeriodicIO.beamBreak = !mBeamBreak.get();
@@ -1,5 +1,7 @@
 package com.team8013.frc2024.subsystems;
 
+import java.util.List;
+
 import com.team8013.frc2024.loops.ILooper;
 
 /**
@@ -43,6 +45,23 @@ public abstract class Subsystem {
     public void registerEnabledLoops(ILooper enabledLooper) {
     }
 
+    /**
+     * CAN bus this subsystem's readPeriodicInputs talks to. Reads on different
+     * buses are done in parallel. Null means it doesn't block on CAN or talks to
+     * more than one bus, and is read on the loop thread while the bus readers
+     * run.
+     */
+    public String getCanBus() {
+        return null;
+    }
+
+    /**
+     * Subsystems whose readPeriodicInputs have to finish before this one's runs.
+     */
+    public List<Subsystem> getReadDependencies() {
+        return List.of();
+    }
+
     public boolean checkSystem() {
         return false;
     }
@@ -1,5 +1,7 @@
 package com.team8013.frc2024.subsystems;
 
+import java.util.List;
+
 import com.team254.lib.util.Util;
 import com.team8013.frc2024.Constants;
 import com.team8013.frc2024.controlboard.ControlBoard;
@@ -7,8 +9,13 @@ import com.team8013.frc2024.controlboard.CustomXboxController.Button;
 import com.team8013.frc2024.controlboard.CustomXboxController.Side;
 import com.team8013.frc2024.loops.ILooper;
 import com.team8013.frc2024.loops.Loop;
+import com.team8013.frc2024.planners.SuperstructureFeasibilityMap;
+import com.team8013.frc2024.planners.SuperstructureMotionPlanner;
+import com.team8013.frc2024.regressions.ShotLog;
 import com.team8013.frc2024.subsystems.EndEffectorREV.State;
 import com.team8013.lib.Conversions;
+import com.team8013.lib.telemetry.LatencyTracer;
+import com.team8013.lib.util.RobotClock;
 
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
@@ -24,6 +31,10 @@ public class Superstructure extends Subsystem {
     private Shooter mShooter = Shooter.getInstance();
     private ClimberHook mClimberHook = ClimberHook.getInstance();
     private EndEffectorREV mEndEffector = EndEffectorREV.getInstance();
+    // operator request to the state machine picking it up to the mechanisms
+    // being commanded
+    private final LatencyTracer.Trace mRequestTrace = LatencyTracer.getInstance().create("Superstructure",
+            "request", "handled", LatencyTracer.kOutputsWritten);
 
     private double pivotManualPosition = mPivot.getPivotAngleDeg() + 4;
     private double elevatorManualPosition = mElevator.getElevatorUnits() + 0.02;
@@ -49,6 +60,19 @@ public class Superstructure extends Subsystem {
     private double gamePieceDelayCounter = 0;
     private Timer shootingTimer = new Timer();
 
+    private final SuperstructureFeasibilityMap mFeasibilityMap = new SuperstructureFeasibilityMap(
+            Constants.SuperstructureConstants.kPlannerMin,
+            Constants.SuperstructureConstants.kPlannerMax,
+            Constants.SuperstructureConstants.kPlannerResolution,
+            Constants.SuperstructureConstants.kKeepOutRegions,
+            Constants.ElevatorConstants.groundIntakeWristPositionsOut,
+            Constants.SuperstructureConstants.kGroundExtensionMaxPivot,
+            Constants.SuperstructureConstants.kGroundExtensionMinWrist);
+    private final SuperstructureMotionPlanner mPlanner = new SuperstructureMotionPlanner(mFeasibilityMap,
+            Constants.SuperstructureConstants.kPlannerMaxVelocity,
+            Constants.SuperstructureConstants.kPlannerMaxAccel,
+            Constants.SuperstructureConstants.kPlannerClearance);
+    private boolean mUsedPlannerThisLoop = false;
 
     /* Singleton Instance */
     private static Superstructure mInstance;
@@ -61,6 +85,12 @@ public class Superstructure extends Subsystem {
         return mInstance;
     };
 
+    // the state machine works off the mechanisms' periodic inputs
+    @Override
+    public List<Subsystem> getReadDependencies() {
+        return List.of(mElevator, mPivot, mWrist, mEndEffector, mShooter);
+    }
+
     @Override
     public void registerEnabledLoops(ILooper enabledLooper) {
         enabledLooper.register(new Loop() {
@@ -87,6 +117,13 @@ public class Superstructure extends Subsystem {
         return false;
     }
 
+    @Override
+    public void outputTelemetry() {
+        SmartDashboard.putNumber("Superstructure Plan Duration", mPlanner.getPlanDuration());
+        SmartDashboard.putBoolean("Superstructure Plan Feasible", mPlanner.isPlanFeasible());
+        SmartDashboard.putBoolean("Superstructure Plan Truncated", mPlanner.isPlanTruncated());
+    }
+
     Timer flash_timeout = new Timer();
 
     public void resetForAuto() {
@@ -112,12 +149,8 @@ public class Superstructure extends Subsystem {
         if (mSuperstructureState != SuperstructureState.INTAKING_GROUND
                 && (!(mShooter.getBeamBreak() || mEndEffector.hasGamePiece()))) {
             mSuperstructureState = SuperstructureState.INTAKING_GROUND;
-
-            mWrist.setSetpointMotionMagic(280);
+            mRequestTrace.begin();
             gamePieceDelayCounter = 0;
-            // flips the wrist down immediatly, then elevator waits for it to get into
-            // position before extending
-
         }
     }
 
@@ -125,6 +158,7 @@ public class Superstructure extends Subsystem {
         if (mSuperstructureState != SuperstructureState.INTAKING_SOURCE
                 && (!(mShooter.getBeamBreak() || mEndEffector.hasGamePiece()))) {
             mSuperstructureState = SuperstructureState.INTAKING_SOURCE;
+            mRequestTrace.begin();
         }
     }
 
@@ -132,8 +166,10 @@ public class Superstructure extends Subsystem {
         if (mSuperstructureState != SuperstructureState.SCORE_AMP
                 && mSuperstructureState != SuperstructureState.SHOOTER_TO_AMP && !mShooter.getBeamBreak()) {
             mSuperstructureState = SuperstructureState.SCORE_AMP;
+            mRequestTrace.begin();
         } else if (mSuperstructureState != SuperstructureState.SHOOTER_TO_AMP && mShooter.getBeamBreak()) {
             mSuperstructureState = SuperstructureState.SHOOTER_TO_AMP;
+            mRequestTrace.begin();
             shooterToEndEffectorTracker = -1;
         }
     }
@@ -141,6 +177,7 @@ public class Superstructure extends Subsystem {
     public void setSuperstuctureLowPass() {
         if (mSuperstructureState == SuperstructureState.STOW && mShooter.getBeamBreak()) {
             mSuperstructureState = SuperstructureState.LOW_PASS;
+            mRequestTrace.begin();
             lowPassTracker = -1;
             shootingTimer.reset();
         }
@@ -149,6 +186,7 @@ public class Superstructure extends Subsystem {
     public void setSuperstuctureTransferToShooter() {
         if (mSuperstructureState != SuperstructureState.TRANSFER_TO_SHOOTER) {
             mSuperstructureState = SuperstructureState.TRANSFER_TO_SHOOTER;
+            mRequestTrace.begin();
 
             if (!mShooter.getBeamBreak()) {
                 transfterToShooterTracker = -1;
@@ -162,19 +200,23 @@ public class Superstructure extends Subsystem {
     }
 
     public void setSuperstuctureShoot(boolean shoot) {
+        if (shoot && !mWantsToShoot) {
+            mRequestTrace.begin();
+        }
         mWantsToShoot = shoot;
     }
 
     public void setSuperstuctureStow() {
         if (mSuperstructureState != SuperstructureState.STOW) {
             mSuperstructureState = SuperstructureState.STOW;
-            mPivot.setSetpointMotionMagic(14);
+            mRequestTrace.begin();
         }
     }
 
     public void setSuperstuctureSourceLoadShooter() {
         if (mSuperstructureState != SuperstructureState.INTAKING_SHOOTER_SOURCE && !mShooter.getBeamBreak()) {
             mSuperstructureState = SuperstructureState.INTAKING_SHOOTER_SOURCE;
+            mRequestTrace.begin();
             intakingShooterSourceTracker = -1;
             if (mEndEffector.hasGamePiece()) {
                 intakingShooterSourceTracker = 2;
@@ -186,6 +228,7 @@ public class Superstructure extends Subsystem {
     public void setSuperstuctureShooterToEndEffector() {
         if (mSuperstructureState != SuperstructureState.SHOOTER_TO_END_EFFECTOR && mShooter.getBeamBreak()) {
             mSuperstructureState = SuperstructureState.SHOOTER_TO_END_EFFECTOR;
+            mRequestTrace.begin();
             shooterToEndEffectorTracker = -1;
         }
     }
@@ -199,6 +242,7 @@ public class Superstructure extends Subsystem {
     public void setClimbMode() {
         if (mSuperstructureState != SuperstructureState.CLIMB) {
             mSuperstructureState = SuperstructureState.CLIMB;
+            mRequestTrace.begin();
             // reset everything
             climbingTracker = -1;
             climbModeStage2 = false;
@@ -210,6 +254,7 @@ public class Superstructure extends Subsystem {
     public void setManualSourceIntake() {
         if (mSuperstructureState != SuperstructureState.INTAKING_SOURCE_MANUAL) {
             mSuperstructureState = SuperstructureState.INTAKING_SOURCE_MANUAL;
+            mRequestTrace.begin();
         }
     }
 
@@ -226,6 +271,7 @@ public class Superstructure extends Subsystem {
     public void setSuperstuctureDeclimb() {
         if (mSuperstructureState != SuperstructureState.DECLIMB) {
             mSuperstructureState = SuperstructureState.DECLIMB;
+            mRequestTrace.begin();
         }
         deClimbTracker = -1;
     }
@@ -256,6 +302,8 @@ public class Superstructure extends Subsystem {
 
     @Override
     public void writePeriodicOutputs() {
+        mRequestTrace.mark(1);
+        mUsedPlannerThisLoop = false;
         if (manualControlMode) {
             // do manual control things -- good for early season testing and finding
             // position setpoints
@@ -263,16 +311,16 @@ public class Superstructure extends Subsystem {
             if (mSuperstructureState == SuperstructureState.STOW) {
                 SmartDashboard.putString("SUPERSTRUCTURE STATE: ", "STOW");
 
-                mPivot.setSetpointMotionMagic(Constants.PivotConstants.kStowAngle);
                 if (mShooter.getBeamBreak()) {
-                    mElevator.setSetpointMotionMagic(
-                            Constants.ElevatorConstants.kStowHeight + Conversions.inchesToMeters(0.25));
-                    mWrist.setSetpointMotionMagic(Constants.WristConstants.kloadShooterAngle + 1.5);
+                    setPlannedGoal(Constants.ElevatorConstants.kStowHeight + Conversions.inchesToMeters(0.25),
+                            Constants.PivotConstants.kStowAngle,
+                            Constants.WristConstants.kloadShooterAngle + 1.5);
                     mShooter.setOpenLoopDemand(-0.03);
                 } else {
-                    mWrist.setSetpointMotionMagic(Constants.WristConstants.kStowAngle);
+                    setPlannedGoal(Constants.ElevatorConstants.kStowHeight,
+                            Constants.PivotConstants.kStowAngle,
+                            Constants.WristConstants.kStowAngle);
                     mShooter.setOpenLoopDemand(0);
-                    mElevator.setSetpointMotionMagic(Constants.ElevatorConstants.kStowHeight);
                 }
 
             } else if (mSuperstructureState == SuperstructureState.TRANSFER_TO_SHOOTER) {
@@ -353,9 +401,16 @@ public class Superstructure extends Subsystem {
                         ((mEndEffector.getVelocityMaster() - mLimelight.getEndEffectorShootingVelocity()) > -600)) {
                     mShooter.setOpenLoopDemand(Constants.ShooterConstants.kSlingshotDemand);
                     transfterToShooterTracker = 3;
+                    Drive drive = Drive.getInstance();
+                    ShotLog.getInstance().recordShot(RobotClock.getInstance().getTimestamp(),
+                            mLimelight.getTanLineToSpeaker(), mLimelight.hasTarget(), mPivot.getPivotAngleDeg(),
+                            mLimelight.getPivotShootingAngle(), mEndEffector.getVelocityMaster(),
+                            mLimelight.getEndEffectorShootingVelocity(), drive.getMeasuredXVelocity(),
+                            drive.getMeasuredYVelocity());
                 }
 
                 if ((transfterToShooterTracker == 3) && (!mShooter.getBeamBreak())) {
+                    ShotLog.getInstance().noteLeft(RobotClock.getInstance().getTimestamp());
                     shootingTimer.stop();
                     shootingTimer.reset();
                     shootingTimer.start();
@@ -374,12 +429,10 @@ public class Superstructure extends Subsystem {
             } else if (mSuperstructureState == SuperstructureState.SCORE_AMP) {
                 SmartDashboard.putString("SUPERSTRUCTURE STATE: ", "SCORE AMP");
 
-                mWrist.setSetpointMotionMagic(Constants.WristConstants.kAmpScoreAngle);
-                mPivot.setSetpointMotionMagic(Constants.PivotConstants.kAmpScoreAngle);
-
-                if (mPivot.getPivotAngleDeg() > 25) {
-                    mElevator.setSetpointMotionMagic(Constants.ElevatorConstants.kAmpScoreHeight);
-                }
+                // the planner keeps the elevator in until the pivot is up out of the way
+                setPlannedGoal(Constants.ElevatorConstants.kAmpScoreHeight,
+                        Constants.PivotConstants.kAmpScoreAngle,
+                        Constants.WristConstants.kAmpScoreAngle);
 
                 if (!mEndEffector.hasGamePiece()) {
                     // automatically stow after game piece ejected
@@ -389,12 +442,11 @@ public class Superstructure extends Subsystem {
             } else if (mSuperstructureState == SuperstructureState.INTAKING_GROUND) {
                 SmartDashboard.putString("SUPERSTRUCTURE STATE: ", "INTAKING GROUND");
 
-                if (mWrist.getWristAngleDeg() > 13) { // greater angle, furthur down 225
-                    mElevator.setSetpointMotionMagic(Constants.ElevatorConstants.kFloorIntakeHeight);
-                    // need to follow an array so that it doesn't extend beyond the extension limits
-                    mWrist.setSetpointMotionMagic(getPositionsGroundIntakeOut(mElevator.getElevatorUnits())[0]);
-                    mPivot.setSetpointMotionMagic(getPositionsGroundIntakeOut(mElevator.getElevatorUnits())[1]);
-                }
+                // the planner keeps the wrist inside the ground intake extension table
+                // while the elevator goes out, and the pivot follows the table's pivot column
+                setPlannedGoal(Constants.ElevatorConstants.kFloorIntakeHeight,
+                        mFeasibilityMap.getExtensionPivot(Constants.ElevatorConstants.kFloorIntakeHeight),
+                        Constants.WristConstants.kGroundIntakeAngle, true);
 
                 if (!mEndEffector.hasGamePiece() && mWrist.getWristAngleDeg() > 350) {
                     mEndEffector.setState(State.INTAKING);
@@ -410,12 +462,9 @@ public class Superstructure extends Subsystem {
 
             } else if (mSuperstructureState == SuperstructureState.INTAKING_SOURCE) {
                 SmartDashboard.putString("SUPERSTRUCTURE STATE: ", "INTAKING SOURCE");
-                mElevator.setSetpointMotionMagic(Constants.ElevatorConstants.kSourceIntakeHeight);
-                mPivot.setSetpointMotionMagic(Constants.PivotConstants.kSourceIntakeAngle);
-
-                if (mPivot.getPivotAngleDeg() > Constants.PivotConstants.kSourceIntakeAngle - 55) {
-                    mWrist.setSetpointMotionMagic(Constants.WristConstants.kSourceIntakeAngle);
-                }
+                setPlannedGoal(Constants.ElevatorConstants.kSourceIntakeHeight,
+                        Constants.PivotConstants.kSourceIntakeAngle,
+                        Constants.WristConstants.kSourceIntakeAngle);
 
                 if (!mEndEffector.hasGamePiece() && mWrist.getWristAngleDeg() > 260) {
                     mEndEffector.setOpenLoopDemand(Constants.EndEffectorConstants.kSourceIntakeDemand); /// .48 seemed
@@ -669,15 +718,15 @@ public class Superstructure extends Subsystem {
             } else if (mSuperstructureState == SuperstructureState.INTAKING_SHOOTER_SOURCE) {
                 SmartDashboard.putString("SUPERSTRUCTURE STATE: ", "INTAKING SHOOTER SOURCE");
 
-                if (intakingShooterSourceTracker == -1) {
-                    mElevator.setSetpointMotionMagic(Constants.ElevatorConstants.kSourceIntakeHeight);
-                    mPivot.setSetpointMotionMagic(Constants.PivotConstants.kSourceIntakeAngle);
-                    transfterToShooterTracker = -1;
+                // hold the source position until the note is in
+                if (intakingShooterSourceTracker < 3) {
+                    setPlannedGoal(Constants.ElevatorConstants.kSourceIntakeHeight,
+                            Constants.PivotConstants.kSourceIntakeAngle,
+                            Constants.WristConstants.kSourceIntakeAngle);
                 }
 
-                if (mPivot.getPivotAngleDeg() > Constants.PivotConstants.kSourceIntakeAngle - 55
-                        && intakingShooterSourceTracker == -1) {
-                    mWrist.setSetpointMotionMagic(Constants.WristConstants.kSourceIntakeAngle);
+                if (intakingShooterSourceTracker == -1) {
+                    transfterToShooterTracker = -1;
                     intakingShooterSourceTracker = 1;
                 }
 
@@ -809,12 +858,9 @@ public class Superstructure extends Subsystem {
                 // added after the match with 5940 where our end effector got smashed and the
                 // beam break triggered so we couldn't intake
                 SmartDashboard.putString("SUPERSTRUCTURE STATE: ", "INTAKING SOURCE MANUAL");
-                mElevator.setSetpointMotionMagic(Constants.ElevatorConstants.kSourceIntakeHeight);
-                mPivot.setSetpointMotionMagic(Constants.PivotConstants.kSourceIntakeAngle);
-
-                if (mPivot.getPivotAngleDeg() > Constants.PivotConstants.kSourceIntakeAngle - 55) {
-                    mWrist.setSetpointMotionMagic(Constants.WristConstants.kSourceIntakeAngle);
-                }
+                setPlannedGoal(Constants.ElevatorConstants.kSourceIntakeHeight,
+                        Constants.PivotConstants.kSourceIntakeAngle,
+                        Constants.WristConstants.kSourceIntakeAngle);
 
             }
 
@@ -853,6 +899,12 @@ public class Superstructure extends Subsystem {
             }
         }
 
+        // anything not following the planner this loop commanded the joints itself,
+        // so the next planned move has to start from wherever they end up
+        if (!mUsedPlannerThisLoop) {
+            mPlanner.reset();
+        }
+
         if (autoShot && autoShotTracker == -1)
 
         {
@@ -881,31 +933,31 @@ public class Superstructure extends Subsystem {
         return ((Math.abs(a) - Math.abs(error)) > 0);
     }
 
-    private double[] getPositionsGroundIntakeOut(double elevatorPosition) {
-        /*
-         * { 0.004, 280,0.0},
-         * {0.03,288,0.0},
-         * {0.052,293,0.0},
-         * {0.075,300,1},
-         * {0.1,306,2},
-         * {0.125, 313,4},
-         * {0.15,321,5.2},
-         * {0.175,327,5.3},
-         * {0.2,335,5.5},
-         * {0.215,338,5.1},
-         * {0.23,343,5.2},
-         * {0.25,347,3.5},
-         * {0.275,359.5,1.6}
-         * 
-         */
-        int index = 0;
-        for (int i = 0; i < Constants.ElevatorConstants.groundIntakeWristPositionsOut.length; i++) {
-            if (Constants.ElevatorConstants.groundIntakeWristPositionsOut[i][0] < elevatorPosition) {
-                index = i;
-            }
-        }
-        return new double[] { Constants.ElevatorConstants.groundIntakeWristPositionsOut[index][1],
-                Constants.ElevatorConstants.groundIntakeWristPositionsOut[index][2] };
+    /**
+     * Moves the elevator, pivot, and wrist toward a goal all at once. The motion
+     * planner picks setpoints along the way that stay out of the keep-out regions
+     * and extension limits, so call this every loop while in the state.
+     */
+    private void setPlannedGoal(double elevatorHeight, double pivotAngle, double wristAngle) {
+        setPlannedGoal(elevatorHeight, pivotAngle, wristAngle, false);
+    }
+
+    /**
+     * @param followExtensionPivot have the pivot track the ground intake
+     *                             extension table once it's down
+     */
+    private void setPlannedGoal(double elevatorHeight, double pivotAngle, double wristAngle,
+            boolean followExtensionPivot) {
+        double timestamp = RobotClock.getInstance().getTimestamp();
+        mPlanner.setGoal(timestamp, elevatorHeight, pivotAngle, wristAngle,
+                mElevator.getElevatorUnits(), mPivot.getPivotAngleDeg(), mWrist.getWristAngleDeg());
+        mPlanner.update(timestamp);
+
+        mElevator.setSetpointMotionMagic(mPlanner.getElevatorSetpoint());
+        mPivot.setSetpointMotionMagic(
+                followExtensionPivot ? mPlanner.getExtensionPivotSetpoint() : mPlanner.getPivotSetpoint());
+        mWrist.setSetpointMotionMagic(mPlanner.getWristSetpoint());
+        mUsedPlannerThisLoop = true;
     }
 
     // private double[] getPositionsGroundIntakeIn(double elevatorPosition) {
@@ -0,0 +1,475 @@
+package com.team8013.frc2024.subsystems;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.team8013.frc2024.Constants.VisionConstants;
+import com.team8013.frc2024.planners.NoteTracker;
+import com.team8013.lib.stats.WindowedStats;
+import com.team8013.lib.util.RobotClock;
+import com.team8013.lib.util.RobotStateHistory;
+import com.team8013.lib.vision.CameraConfig;
+import com.team8013.lib.vision.MeasurementRing;
+import com.team8013.lib.vision.MeasurementValidator;
+import com.team8013.lib.vision.MeasurementValidator.Verdict;
+import com.team8013.lib.vision.PoseMeasurement;
+
+import edu.wpi.first.apriltag.AprilTagFields;
+
+import edu.wpi.first.networktables.DoubleArraySubscriber;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.PubSubOption;
+import edu.wpi.first.networktables.TimestampedDoubleArray;
+import edu.wpi.first.util.WPIUtilJNI;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Every camera in VisionConstants.kCameras, each read on its own thread.
+ * <p>
+ * A camera's thread sleeps on its NetworkTables subscriber and wakes when a
+ * frame arrives, so parsing happens off the control loop no matter how many
+ * cameras there are. AprilTag frames are parsed into pose measurements,
+ * checked and given a standard deviation by the MeasurementValidator, and
+ * handed to the loop through a lock-free ring; note frames go straight into
+ * the NoteTracker.
+ * <p>
+ * Each loop, readPeriodicInputs checks the new measurements against the last
+ * fused pose moved along by odometry, takes the newest from every camera
+ * that's still connected, moves the older ones up to the newest with the
+ * odometry in between, and fuses them by inverse variance. A camera that
+ * stops sending frames drops out of the fusion and the rest carry on; with
+ * none left there's simply no fused pose until one comes back.
+ */
+public class Vision extends Subsystem {
+
+    private static Vision mInstance;
+
+    public static Vision getInstance() {
+        if (mInstance == null) {
+            mInstance = new Vision();
+        }
+        return mInstance;
+    }
+
+    private final MeasurementValidator mValidator;
+    private final NoteTracker mNoteTracker = new NoteTracker();
+    private final List<Camera> mCameras = new ArrayList<>();
+    private final List<Camera> mTagCameras = new ArrayList<>();
+
+    private final Drive mDrive = Drive.getInstance();
+    private final RobotStateHistory mHistory = RobotStateHistory.getInstance();
+    private int mPoseXChannel = -1;
+    private int mPoseYChannel = -1;
+    private int mHeadingChannel = -1;
+
+    // last fused pose, what new measurements are checked against
+    private double mReferenceX = 0.0;
+    private double mReferenceY = 0.0;
+    private double mReferenceTime = Double.NEGATIVE_INFINITY;
+    private double mReferenceVariance = 0.0;
+    private int mOdometryRejects = 0;
+
+    // the loop's copy of each tag camera's newest measurement
+    private final PoseMeasurement[] mLatest;
+    private final boolean[] mHasLatest;
+    private final PoseMeasurement mPolled = new PoseMeasurement();
+
+    private PeriodicIO mPeriodicIO = new PeriodicIO();
+
+    public static class PeriodicIO {
+        // INPUTS
+        public boolean has_pose;
+        public double timestamp;
+        public double latency;
+        public double x;
+        public double y;
+        public double yawDeg;
+        public double xyStdDev;
+        public int primaryTag;
+        public int fused_cameras;
+        public int connected_cameras;
+    }
+
+    /**
+     * One camera's subscriber and ingestion thread. Everything the thread
+     * writes that anyone else reads is volatile or goes through the ring.
+     */
+    private class Camera implements Runnable {
+        final CameraConfig config;
+        final MeasurementRing ring = new MeasurementRing(VisionConstants.kRingCapacity);
+        private final NetworkTable table;
+        private final DoubleArraySubscriber subscriber;
+        private final NetworkTableEntry pipelineLatency;
+        private final NetworkTableEntry captureLatency;
+        private final PoseMeasurement parsed = new PoseMeasurement();
+        private final WindowedStats latencies = new WindowedStats(VisionConstants.kStatsWindow);
+        // robot relative velocity history, looked up by this thread
+        private int vxChannel = -1;
+        private int vyChannel = -1;
+        private int omegaChannel = -1;
+
+        // health, written by the camera's thread
+        volatile double lastFrameTime = Double.NEGATIVE_INFINITY;
+        volatile double fps = 0.0;
+        volatile double meanLatencyMs = 0.0;
+        volatile double maxLatencyMs = 0.0;
+        volatile double parseUs = 0.0;
+        volatile int frames = 0;
+        volatile int rejected = 0;
+        volatile int dropped = 0;
+        volatile int odometryRejected = 0; // written by the loop
+        private double fpsWindowStart = Double.NaN;
+        private int fpsWindowFrames = 0;
+
+        Camera(CameraConfig config) {
+            this.config = config;
+            table = NetworkTableInstance.getDefault().getTable(config.getName());
+            String topic = config.getRole() == CameraConfig.Role.APRILTAG ? "botpose_wpiblue" : "rawdetections";
+            // every frame, not just the latest, so none are skipped between wakeups
+            subscriber = table.getDoubleArrayTopic(topic).subscribe(new double[0], PubSubOption.sendAll(true),
+                    PubSubOption.keepDuplicates(true), PubSubOption.pollStorage(VisionConstants.kRingCapacity));
+            pipelineLatency = table.getEntry("tl");
+            captureLatency = table.getEntry("cl");
+        }
+
+        boolean isConnected(double now) {
+            return now - lastFrameTime < VisionConstants.kCameraTimeout;
+        }
+
+        @Override
+        public void run() {
+            if (VisionConstants.kPushExtrinsics && config.getRole() == CameraConfig.Role.APRILTAG) {
+                // the Limelight's robot space is forward, right, up
+                table.getEntry("camerapose_robotspace_set").setDoubleArray(new double[] {
+                        config.getX(), -config.getY(), config.getZ(), config.getRollDeg(), config.getPitchDeg(),
+                        config.getYawDeg() });
+            }
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    WPIUtilJNI.waitForObjectTimeout(subscriber.getHandle(), VisionConstants.kWaitTimeout);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (TimestampedDoubleArray frame : subscriber.readQueue()) {
+                    long start = System.nanoTime();
+                    // frame timestamps are NT time, which is FPGA time on the robot
+                    double arrival = frame.timestamp / 1.0e6;
+                    if (config.getRole() == CameraConfig.Role.APRILTAG) {
+                        handleTagFrame(arrival, frame.value);
+                    } else {
+                        double latency = (pipelineLatency.getDouble(0.0) + captureLatency.getDouble(0.0)) / 1000.0;
+                        mNoteTracker.addFrame(config, arrival - latency, frame.value);
+                        recordLatency(latency);
+                    }
+                    updateHealth(arrival);
+                    parseUs = (System.nanoTime() - start) / 1.0e3;
+                }
+            }
+        }
+
+        private void handleTagFrame(double arrival, double[] botpose) {
+            if (botpose.length <= MeasurementValidator.kBotposeTagCount) {
+                return;
+            }
+            double latency = botpose[MeasurementValidator.kBotposeLatency] / 1000.0;
+            recordLatency(latency);
+            int tags = (int) botpose[MeasurementValidator.kBotposeTagCount];
+            if (tags < 1) {
+                return; // the camera is up but doesn't see anything
+            }
+            parsed.timestamp = arrival - latency;
+            parsed.latency = latency;
+            parsed.x = botpose[0];
+            parsed.y = botpose[1];
+            parsed.yawDeg = botpose[5];
+            parsed.tagCount = tags;
+            parsed.primaryTag = botpose.length > MeasurementValidator.kBotposeFiducials
+                    ? (int) botpose[MeasurementValidator.kBotposeFiducials]
+                    : -1;
+
+            double speed = 0.0;
+            double omega = 0.0;
+            if (vxChannel < 0) {
+                vxChannel = mHistory.getChannel("Drive/measuredXVelocity");
+                vyChannel = mHistory.getChannel("Drive/measuredYVelocity");
+                omegaChannel = mHistory.getChannel("Drive/measuredOmega");
+            }
+            if (vxChannel >= 0 && vyChannel >= 0 && omegaChannel >= 0) {
+                speed = Math.hypot(mHistory.get(vxChannel, parsed.timestamp), mHistory.get(vyChannel, parsed.timestamp));
+                omega = mHistory.get(omegaChannel, parsed.timestamp);
+            }
+
+            if (mValidator.validate(parsed, botpose, config.getTrust(), speed, omega) != Verdict.ACCEPTED) {
+                rejected++;
+                return;
+            }
+            if (!ring.offer(parsed)) {
+                dropped++;
+            }
+        }
+
+        private void recordLatency(double latency) {
+            latencies.add(latency * 1000.0);
+            meanLatencyMs = latencies.getMean();
+            maxLatencyMs = latencies.getMax();
+        }
+
+        private void updateHealth(double arrival) {
+            lastFrameTime = arrival;
+            frames++;
+            if (Double.isNaN(fpsWindowStart)) {
+                fpsWindowStart = arrival;
+            }
+            fpsWindowFrames++;
+            if (arrival - fpsWindowStart >= 1.0) {
+                fps = fpsWindowFrames / (arrival - fpsWindowStart);
+                fpsWindowStart = arrival;
+                fpsWindowFrames = 0;
+            }
+        }
+    }
+
+    private Vision() {
+        mValidator = new MeasurementValidator(AprilTagFields.k2024Crescendo.loadAprilTagLayoutField());
+        for (CameraConfig config : VisionConstants.kCameras) {
+            Camera camera = new Camera(config);
+            mCameras.add(camera);
+            if (config.getRole() == CameraConfig.Role.APRILTAG) {
+                mTagCameras.add(camera);
+            }
+            Thread thread = new Thread(camera, "Vision-" + config.getName());
+            thread.setDaemon(true);
+            thread.start();
+        }
+        mLatest = new PoseMeasurement[mTagCameras.size()];
+        mHasLatest = new boolean[mTagCameras.size()];
+        for (int i = 0; i < mLatest.length; i++) {
+            mLatest[i] = new PoseMeasurement();
+        }
+    }
+
+    @Override
+    public synchronized void readPeriodicInputs() {
+        double now = RobotClock.getInstance().getTimestamp();
+        if (mPoseXChannel < 0) {
+            mPoseXChannel = mHistory.getChannel("Drive/poseX");
+            mPoseYChannel = mHistory.getChannel("Drive/poseY");
+            mHeadingChannel = mHistory.getChannel("Drive/thetaDegrees");
+        }
+        boolean canAlign = mPoseXChannel >= 0 && mPoseYChannel >= 0 && mHeadingChannel >= 0;
+
+        // newest measurement from each camera, older ones in the ring are
+        // superseded
+        double newest = Double.NEGATIVE_INFINITY;
+        int connected = 0;
+        for (int i = 0; i < mTagCameras.size(); i++) {
+            Camera camera = mTagCameras.get(i);
+            while (camera.ring.poll(mPolled)) {
+                if (!agreesWithOdometry(mPolled, canAlign)) {
+                    camera.odometryRejected++;
+                    continue;
+                }
+                mLatest[i].copyFrom(mPolled);
+                mHasLatest[i] = true;
+            }
+            if (camera.isConnected(now)) {
+                connected++;
+                if (mHasLatest[i] && now - mLatest[i].timestamp < VisionConstants.kMaxMeasurementAge) {
+                    newest = Math.max(newest, mLatest[i].timestamp);
+                }
+            }
+        }
+        mPeriodicIO.connected_cameras = connected;
+
+        if (Double.isInfinite(newest)) {
+            mPeriodicIO.has_pose = false;
+            mPeriodicIO.fused_cameras = 0;
+            return;
+        }
+
+        // inverse variance weighting, yaw as a weighted sum of unit vectors
+        double xySum = 0.0;
+        double xSum = 0.0;
+        double ySum = 0.0;
+        double yawCosSum = 0.0;
+        double yawSinSum = 0.0;
+        double bestWeight = 0.0;
+        int fused = 0;
+        for (int i = 0; i < mTagCameras.size(); i++) {
+            PoseMeasurement m = mLatest[i];
+            if (!mHasLatest[i] || !mTagCameras.get(i).isConnected(now)
+                    || newest - m.timestamp > VisionConstants.kFusionWindow) {
+                continue;
+            }
+            double x = m.x;
+            double y = m.y;
+            double yawDeg = m.yawDeg;
+            if (canAlign && m.timestamp < newest) {
+                // where the robot went between the two frames
+                x += mHistory.get(mPoseXChannel, newest) - mHistory.get(mPoseXChannel, m.timestamp);
+                y += mHistory.get(mPoseYChannel, newest) - mHistory.get(mPoseYChannel, m.timestamp);
+                double turned = mHistory.get(mHeadingChannel, newest) - mHistory.get(mHeadingChannel, m.timestamp);
+                if (Math.abs(turned) < 180.0) {
+                    yawDeg += turned; // otherwise the heading wrapped in between and it's nonsense
+                }
+            }
+            double xyWeight = 1.0 / (m.xyStdDev * m.xyStdDev);
+            double yawWeight = 1.0 / (m.yawStdDev * m.yawStdDev);
+            xySum += xyWeight;
+            xSum += xyWeight * x;
+            ySum += xyWeight * y;
+            yawCosSum += yawWeight * Math.cos(Math.toRadians(yawDeg));
+            yawSinSum += yawWeight * Math.sin(Math.toRadians(yawDeg));
+            if (xyWeight > bestWeight) {
+                bestWeight = xyWeight;
+                mPeriodicIO.primaryTag = m.primaryTag;
+            }
+            fused++;
+        }
+
+        mPeriodicIO.has_pose = fused > 0;
+        mPeriodicIO.fused_cameras = fused;
+        if (fused > 0) {
+            mPeriodicIO.timestamp = newest;
+            mPeriodicIO.latency = now - newest;
+            mPeriodicIO.x = xSum / xySum;
+            mPeriodicIO.y = ySum / xySum;
+            mPeriodicIO.yawDeg = Math.toDegrees(Math.atan2(yawSinSum, yawCosSum));
+            mPeriodicIO.xyStdDev = 1.0 / Math.sqrt(xySum);
+
+            mReferenceX = mPeriodicIO.x;
+            mReferenceY = mPeriodicIO.y;
+            mReferenceTime = newest;
+            mReferenceVariance = 1.0 / xySum;
+        }
+    }
+
+    /**
+     * Checks a measurement against the last fused pose moved along by
+     * odometry. Only done when odometry has been reset onto the field and the
+     * last fused pose is recent; a run of disagreements means the reference
+     * was the bad one, so it's dropped and the next measurement starts over.
+     */
+    private boolean agreesWithOdometry(PoseMeasurement m, boolean canAlign) {
+        double age = m.timestamp - mReferenceTime;
+        if (!canAlign || !mDrive.readyForAuto() || Math.abs(age) > VisionConstants.kReferenceMaxAge) {
+            return true;
+        }
+        double predictedX = mReferenceX + mHistory.get(mPoseXChannel, m.timestamp)
+                - mHistory.get(mPoseXChannel, mReferenceTime);
+        double predictedY = mReferenceY + mHistory.get(mPoseYChannel, m.timestamp)
+                - mHistory.get(mPoseYChannel, mReferenceTime);
+        double variance = mReferenceVariance + VisionConstants.kOdometryDriftRate * Math.abs(age);
+        if (mValidator.checkOdometry(m, predictedX, predictedY, variance) == Verdict.ACCEPTED) {
+            mOdometryRejects = 0;
+            return true;
+        }
+        if (++mOdometryRejects >= VisionConstants.kMaxOdometryRejects) {
+            mReferenceTime = Double.NEGATIVE_INFINITY;
+            mOdometryRejects = 0;
+        }
+        return false;
+    }
+
+    /**
+     * @return whether there's a fused pose from a frame no older than the
+     *         measurement age limit
+     */
+    public synchronized boolean hasPose() {
+        return mPeriodicIO.has_pose;
+    }
+
+    /**
+     * @return FPGA time of the frame the fused pose is for
+     */
+    public synchronized double getPoseTimestamp() {
+        return mPeriodicIO.timestamp;
+    }
+
+    /**
+     * @return s from the fused pose's frame being taken to this loop
+     */
+    public synchronized double getPoseLatency() {
+        return mPeriodicIO.latency;
+    }
+
+    /*
+     * The fused pose, in the blue alliance field frame.
+     */
+
+    public synchronized double getPoseX() {
+        return mPeriodicIO.x;
+    }
+
+    public synchronized double getPoseY() {
+        return mPeriodicIO.y;
+    }
+
+    public synchronized double getPoseYawDegrees() {
+        return mPeriodicIO.yawDeg;
+    }
+
+    public synchronized double getPoseStdDev() {
+        return mPeriodicIO.xyStdDev;
+    }
+
+    /**
+     * @return id of the first tag seen by the camera trusted most in the fused
+     *         pose, -1 if it didn't say
+     */
+    public synchronized int getPrimaryTag() {
+        return mPeriodicIO.primaryTag;
+    }
+
+    /**
+     * @return whether any AprilTag camera is sending frames
+     */
+    public synchronized boolean hasComms() {
+        return mPeriodicIO.connected_cameras > 0;
+    }
+
+    public NoteTracker getNoteTracker() {
+        return mNoteTracker;
+    }
+
+    @Override
+    public void outputTelemetry() {
+        double now = RobotClock.getInstance().getTimestamp();
+        SmartDashboard.putBoolean("Vision Has Pose", mPeriodicIO.has_pose);
+        SmartDashboard.putNumber("Vision Fused Cameras", mPeriodicIO.fused_cameras);
+        SmartDashboard.putNumber("Vision Connected Cameras", mPeriodicIO.connected_cameras);
+        SmartDashboard.putNumber("Vision Pose Std Dev", mPeriodicIO.xyStdDev);
+        SmartDashboard.putNumber("Vision Pose Latency Ms", mPeriodicIO.latency * 1000.0);
+        SmartDashboard.putNumber("Vision Accepted", mValidator.getCount(Verdict.ACCEPTED));
+        SmartDashboard.putNumber("Vision Rejected", mValidator.getRejectedCount());
+        SmartDashboard.putNumber("Vision Acceptance Rate", mValidator.getAcceptanceRate());
+        for (Verdict verdict : Verdict.values()) {
+            if (verdict != Verdict.ACCEPTED) {
+                SmartDashboard.putNumber("Vision Rejected " + verdict, mValidator.getCount(verdict));
+            }
+        }
+        for (Camera camera : mCameras) {
+            String prefix = "Vision " + camera.config.getName() + " ";
+            SmartDashboard.putBoolean(prefix + "Connected", camera.isConnected(now));
+            SmartDashboard.putNumber(prefix + "FPS", camera.fps);
+            SmartDashboard.putNumber(prefix + "Latency Ms", camera.meanLatencyMs);
+            SmartDashboard.putNumber(prefix + "Max Latency Ms", camera.maxLatencyMs);
+            SmartDashboard.putNumber(prefix + "Parse Us", camera.parseUs);
+            SmartDashboard.putNumber(prefix + "Frames", camera.frames);
+            SmartDashboard.putNumber(prefix + "Rejected", camera.rejected + camera.odometryRejected);
+            SmartDashboard.putNumber(prefix + "Dropped", camera.dropped);
+        }
+        mNoteTracker.outputTelemetry();
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public boolean checkSystem() {
+        return true;
+    }
+}
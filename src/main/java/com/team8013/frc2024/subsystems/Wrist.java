@@ -1,12 +1,19 @@
 package com.team8013.frc2024.subsystems;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.team8013.frc2024.Constants;
 import com.team8013.frc2024.Ports;
 import com.team8013.frc2024.loops.ILooper;
 import com.team8013.frc2024.loops.Loop;
 import com.team8013.lib.Conversions;
 import com.team8013.lib.Util;
+import com.team8013.lib.characterization.CharacterizationDevice;
+import com.team8013.lib.characterization.TalonFXCharacterizationDevice;
+import com.team8013.lib.drivers.DeviceBringup;
 import com.team8013.lib.logger.Log;
+import com.team8013.lib.util.RobotClock;
+import com.team8013.lib.util.RobotStateHistory;
 
 import com.ctre.phoenix6.configs.MotionMagicConfigs;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
@@ -36,11 +43,18 @@ public class Wrist extends Subsystem {
         mCANcoder = new CANcoder(Ports.WRIST_CANCODER, Ports.CANBUS_UPPER);
 
         // Customize these configs from constants in the future
-        mMotor.getConfigurator().apply(Constants.WristConstants.wristMotorConfig());
-        mCANcoder.getConfigurator().apply(Constants.WristConstants.wristCancoderConfig());
+        DeviceBringup bringup = DeviceBringup.getInstance();
+        CompletableFuture<Boolean> motor = bringup.configure(mMotor, Constants.WristConstants.wristMotorConfig(),
+                "Wrist", Ports.CANBUS_UPPER);
+        CompletableFuture<Boolean> cancoder = bringup.configure(mCANcoder,
+                Constants.WristConstants.wristCancoderConfig(), "Wrist CANcoder", Ports.CANBUS_UPPER);
+
+        bringup.afterConfigured("Wrist Setup", Ports.CANBUS_UPPER, () -> {
+            setWantNeutralBrake(true);
+            resetToAbsolute();
+        }, motor, cancoder);
 
-        setWantNeutralBrake(true);
-        resetToAbsolute();
+        RobotStateHistory.getInstance().addChannel("Wrist/angleDegrees", () -> mPeriodicIO.position_degrees);
     }
 
     public void resetToAbsolute() {
@@ -54,6 +68,11 @@ public class Wrist extends Subsystem {
         mMotor.setNeutralMode(mode);
     }
 
+    @Override
+    public String getCanBus() {
+        return Ports.CANBUS_UPPER;
+    }
+
     @Override
     public void registerEnabledLoops(ILooper mEnabledLooper) {
         mEnabledLooper.register(new Loop() {
@@ -133,9 +152,19 @@ public class Wrist extends Subsystem {
         mMotor.getConfigurator().apply(config);
     }
 
-    @Log
+    /**
+     * For test mode characterization. The gravity angle it fits is only right
+     * for the pivot angle it was run at, stow.
+     */
+    public CharacterizationDevice getCharacterizationDevice() {
+        return new TalonFXCharacterizationDevice(mMotor, "Wrist", "deg", CharacterizationDevice.Gravity.COSINE,
+                Conversions.rotationsToDegrees(1.0, Constants.WristConstants.kGearRatio),
+                Constants.SuperstructureConstants.kPlannerMin[2], Constants.SuperstructureConstants.kPlannerMax[2]);
+    }
+
+    @Log(critical = true)
     public double getWristAngleDeg() {
-        return getCanCoder();
+        return mPeriodicIO.cancoder_degrees;
     }
 
     @Log
@@ -158,14 +187,14 @@ public class Wrist extends Subsystem {
         return mPeriodicIO.current;
     }
 
-    @Log
+    @Log(critical = true)
     public double getTimestamp() {
         return mPeriodicIO.timestamp;
     }
 
     @Log
     public double getMainMotorBusVolts() {
-        return mMotor.getSupplyVoltage().getValue();
+        return mPeriodicIO.supply_voltage;
     }
 
     public static class mPeriodicIO {
@@ -177,6 +206,8 @@ public class Wrist extends Subsystem {
 
         public double current = 0.0;
         public double output_voltage = 0.0;
+        public double supply_voltage = 0.0;
+        public double cancoder_degrees = 0.0;
 
         // Outputs
         public double demand = 0;
@@ -190,10 +221,13 @@ public class Wrist extends Subsystem {
 
     @Override
     public synchronized void readPeriodicInputs() {
+        mPeriodicIO.timestamp = RobotClock.getInstance().getTimestamp();
         mPeriodicIO.position_degrees = Conversions.rotationsToDegrees(mMotor.getRotorPosition().getValue(),
                 Constants.WristConstants.kGearRatio);
         mPeriodicIO.current = mMotor.getTorqueCurrent().getValue();
         mPeriodicIO.output_voltage = mMotor.getMotorVoltage().getValue();
+        mPeriodicIO.supply_voltage = mMotor.getSupplyVoltage().getValue();
+        mPeriodicIO.cancoder_degrees = getCanCoder();
         mPeriodicIO.velocity_rps = Conversions.rotationsToDegrees(mMotor.getVelocity().getValue(),
                 Constants.WristConstants.kGearRatio);
     }
@@ -201,7 +235,7 @@ public class Wrist extends Subsystem {
     @Override
     public void outputTelemetry() {
         SmartDashboard.putNumber("WristAngle (degrees)", mPeriodicIO.position_degrees);
-        SmartDashboard.putNumber("Wrist CANCODER (degrees)", getCanCoder());
+        SmartDashboard.putNumber("Wrist CANCODER (degrees)", mPeriodicIO.cancoder_degrees);
         SmartDashboard.putNumber("Wrist Motor Rotations", mMotor.getRotorPosition().getValueAsDouble());
         SmartDashboard.putNumber("Wrist Demand", mPeriodicIO.demand);
         SmartDashboard.putNumber("Wrist Velocity rad/s", mPeriodicIO.velocity_rps);
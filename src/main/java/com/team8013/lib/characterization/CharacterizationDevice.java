@@ -0,0 +1,107 @@
+package com.team8013.lib.characterization;
+
+/**
+ * A mechanism CharacterizationRoutine can drive with raw voltage and sample
+ * as fast as its sensors update. Position and velocity are in the mechanism's
+ * own units (degrees, meters, rotations) and per second, the description fields
+ * go in the capture file header for FeedforwardFit.
+ */
+public abstract class CharacterizationDevice {
+
+    /**
+     * What gravity does to the mechanism, picks the gravity term of the fit.
+     */
+    public enum Gravity {
+        // flywheels, rollers, anything balanced
+        NONE,
+        // elevators, the same pull at every position
+        CONSTANT,
+        // arms, pull goes with the cosine of the angle, position in degrees
+        COSINE
+    }
+
+    private final String mName;
+    private final String mUnits;
+    private final Gravity mGravity;
+    private final double mRotorScale;
+    private final double mMinPosition;
+    private final double mMaxPosition;
+
+    /**
+     * @param rotorScale mechanism units per motor rotation, to turn the fitted
+     *                   gains into motor controller units
+     * @param min        lowest position the routine may drive to,
+     *                   NEGATIVE_INFINITY for none
+     * @param max        highest position the routine may drive to,
+     *                   POSITIVE_INFINITY for none
+     */
+    protected CharacterizationDevice(String name, String units, Gravity gravity, double rotorScale, double min,
+            double max) {
+        mName = name;
+        mUnits = units;
+        mGravity = gravity;
+        mRotorScale = rotorScale;
+        mMinPosition = min;
+        mMaxPosition = max;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public String getUnits() {
+        return mUnits;
+    }
+
+    public Gravity getGravity() {
+        return mGravity;
+    }
+
+    public double getRotorScale() {
+        return mRotorScale;
+    }
+
+    public double getMinPosition() {
+        return mMinPosition;
+    }
+
+    public double getMaxPosition() {
+        return mMaxPosition;
+    }
+
+    /**
+     * @return how often new samples come in, hz
+     */
+    public abstract double getSampleRate();
+
+    /**
+     * Speeds up whatever the samples come from. Called before the first sample.
+     */
+    public abstract void start();
+
+    /**
+     * Blocks until a new sample is in.
+     *
+     * @return false if none came in time
+     */
+    public abstract boolean waitForSample(double timeoutSeconds);
+
+    /**
+     * @return when the latest sample was taken, seconds
+     */
+    public abstract double getTimestamp();
+
+    public abstract double getVoltage();
+
+    public abstract double getPosition();
+
+    public abstract double getVelocity();
+
+    public abstract void setVoltage(double volts);
+
+    /**
+     * Turns the output off and puts the sample rate back. Has to be safe to call
+     * more than once.
+     */
+    public abstract void stop();
+}
@@ -0,0 +1,242 @@
+package com.team8013.lib.characterization;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Runs the four feedforward tests on one mechanism from its own thread:
+ * a slow voltage ramp each way (quasistatic, for kS, kV and kG) and a voltage
+ * step each way (dynamic, for kA), resting in between. Every sample the
+ * device produces goes into buffers allocated up front, and the capture is
+ * written out as CSV for FeedforwardFit once the tests are over, so the file
+ * system never holds up a sample.
+ * <p>
+ * A test ends when its time is up or the mechanism gets within the margin of
+ * the end of its travel in the direction it's moving. Stopping the routine
+ * zeroes the output right away.
+ */
+public class CharacterizationRoutine {
+
+    public static final String kFilePrefix = "CHARACTERIZATION_";
+    public static final String kHeader = "phase,timestamp,commandVolts,volts,position,velocity";
+
+    public enum Phase {
+        QUASISTATIC_FORWARD(true, 1.0),
+        QUASISTATIC_REVERSE(true, -1.0),
+        DYNAMIC_FORWARD(false, 1.0),
+        DYNAMIC_REVERSE(false, -1.0);
+
+        public final boolean quasistatic;
+        public final double direction;
+
+        Phase(boolean quasistatic, double direction) {
+            this.quasistatic = quasistatic;
+            this.direction = direction;
+        }
+    }
+
+    public enum State {
+        IDLE, RUNNING, WRITING, DONE, FAILED
+    }
+
+    private final CharacterizationDevice mDevice;
+    private final double mRampRate;
+    private final double mStepVoltage;
+    private final double mPhaseTime;
+    private final double mRestTime;
+    private final double mLimitMargin;
+    private final File mDirectory;
+
+    private final int mCapacity;
+    private final byte[] mPhases;
+    private final double[] mTimestamps;
+    private final double[] mCommands;
+    private final double[] mVoltages;
+    private final double[] mPositions;
+    private final double[] mVelocities;
+    private volatile int mSize = 0;
+
+    private volatile State mState = State.IDLE;
+    private volatile Phase mPhase = null;
+    private volatile boolean mStopRequested = false;
+    private volatile String mResult = "";
+    private Thread mThread;
+
+    /**
+     * @param rampRate    volts per second for the quasistatic tests
+     * @param stepVoltage volts for the dynamic tests
+     * @param phaseTime   longest a test runs, seconds
+     * @param restTime    seconds at 0 volts before each test
+     * @param limitMargin fraction of the travel to keep away from either end
+     * @param directory   where the capture is written
+     */
+    public CharacterizationRoutine(CharacterizationDevice device, double rampRate, double stepVoltage,
+            double phaseTime, double restTime, double limitMargin, File directory) {
+        mDevice = device;
+        mRampRate = rampRate;
+        mStepVoltage = stepVoltage;
+        mPhaseTime = phaseTime;
+        mRestTime = restTime;
+        mLimitMargin = limitMargin;
+        mDirectory = directory;
+
+        mCapacity = (int) Math.ceil(device.getSampleRate() * Phase.values().length * phaseTime * 1.1);
+        mPhases = new byte[mCapacity];
+        mTimestamps = new double[mCapacity];
+        mCommands = new double[mCapacity];
+        mVoltages = new double[mCapacity];
+        mPositions = new double[mCapacity];
+        mVelocities = new double[mCapacity];
+    }
+
+    public synchronized void start() {
+        if (mThread != null) {
+            return;
+        }
+        mState = State.RUNNING;
+        mThread = new Thread(this::run, "Characterization");
+        mThread.setDaemon(true);
+        mThread.setPriority(Thread.MAX_PRIORITY);
+        mThread.start();
+    }
+
+    /**
+     * Ends the tests early. Whatever was captured is still written.
+     */
+    public void stop() {
+        mStopRequested = true;
+        mDevice.setVoltage(0.0);
+    }
+
+    public State getState() {
+        return mState;
+    }
+
+    private void run() {
+        System.out.println("Characterizing " + mDevice.getName());
+        try {
+            mDevice.start();
+            for (Phase phase : Phase.values()) {
+                if (mStopRequested) {
+                    break;
+                }
+                mPhase = null;
+                rest();
+                mPhase = phase;
+                runPhase(phase);
+            }
+        } finally {
+            mDevice.stop();
+            mPhase = null;
+        }
+
+        mState = State.WRITING;
+        try {
+            File file = write();
+            mResult = file.toString();
+            mState = State.DONE;
+            System.out.println("Wrote " + mSize + " characterization samples to " + file);
+        } catch (IOException e) {
+            mResult = e.getMessage();
+            mState = State.FAILED;
+            System.err.println("Unable to write characterization capture");
+            e.printStackTrace();
+        }
+    }
+
+    private void rest() {
+        mDevice.setVoltage(0.0);
+        double start = Double.NaN;
+        while (!mStopRequested) {
+            if (!mDevice.waitForSample(0.1)) {
+                continue;
+            }
+            if (Double.isNaN(start)) {
+                start = mDevice.getTimestamp();
+            } else if (mDevice.getTimestamp() - start >= mRestTime) {
+                return;
+            }
+        }
+    }
+
+    private void runPhase(Phase phase) {
+        double start = Double.NaN;
+        while (!mStopRequested && mSize < mCapacity) {
+            if (!mDevice.waitForSample(0.1)) {
+                continue;
+            }
+            double timestamp = mDevice.getTimestamp();
+            if (Double.isNaN(start)) {
+                start = timestamp;
+            }
+            double elapsed = timestamp - start;
+            double position = mDevice.getPosition();
+            if (elapsed > mPhaseTime || nearLimit(position, phase.direction)) {
+                break;
+            }
+
+            double command = phase.direction * (phase.quasistatic ? mRampRate * elapsed : mStepVoltage);
+            mDevice.setVoltage(command);
+
+            int i = mSize;
+            mPhases[i] = (byte) phase.ordinal();
+            mTimestamps[i] = timestamp;
+            mCommands[i] = command;
+            mVoltages[i] = mDevice.getVoltage();
+            mPositions[i] = position;
+            mVelocities[i] = mDevice.getVelocity();
+            mSize = i + 1;
+        }
+        mDevice.setVoltage(0.0);
+    }
+
+    private boolean nearLimit(double position, double direction) {
+        double min = mDevice.getMinPosition();
+        double max = mDevice.getMaxPosition();
+        if (Double.isInfinite(min) || Double.isInfinite(max)) {
+            return false;
+        }
+        double margin = (max - min) * mLimitMargin;
+        return direction > 0.0 ? position >= max - margin : position <= min + margin;
+    }
+
+    private File write() throws IOException {
+        if (mDirectory == null) {
+            throw new IOException("No drive to write the characterization capture to");
+        }
+        mDirectory.mkdirs();
+        String name = kFilePrefix + mDevice.getName().replace(' ', '_') + "_"
+                + new SimpleDateFormat("yyyy_MM_dd_HH_mm_ss").format(new Date()) + ".csv";
+        File file = new File(mDirectory, name);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write("# mechanism " + mDevice.getName() + "\n");
+            writer.write("# units " + mDevice.getUnits() + "\n");
+            writer.write("# gravity " + mDevice.getGravity() + "\n");
+            writer.write("# rotorScale " + mDevice.getRotorScale() + "\n");
+            writer.write("# sampleRate " + mDevice.getSampleRate() + "\n");
+            writer.write(kHeader + "\n");
+            for (int i = 0; i < mSize; i++) {
+                writer.write(String.format(Locale.ROOT, "%s,%.6f,%.4f,%.4f,%.6f,%.6f%n",
+                        Phase.values()[mPhases[i]], mTimestamps[i], mCommands[i], mVoltages[i], mPositions[i],
+                        mVelocities[i]));
+            }
+        }
+        return file;
+    }
+
+    public void outputTelemetry() {
+        SmartDashboard.putString("Characterization Mechanism", mDevice.getName());
+        SmartDashboard.putString("Characterization State", mState.toString());
+        Phase phase = mPhase;
+        SmartDashboard.putString("Characterization Phase", phase == null ? "REST" : phase.toString());
+        SmartDashboard.putNumber("Characterization Samples", mSize);
+        SmartDashboard.putString("Characterization Result", mResult);
+    }
+}
@@ -0,0 +1,207 @@
+package com.team8013.lib.characterization;
+
+import com.team8013.lib.characterization.CharacterizationDevice.Gravity;
+
+/**
+ * Least squares fit of
+ *
+ * <pre>
+ * V = kS sgn(v) + kV v + kA a + gravity
+ * </pre>
+ *
+ * over a characterization capture, where gravity is nothing, a constant kG, or
+ * kG cos(position - offset) for an arm. The arm term is fitted as a cosine
+ * plus a sine so the angle the arm is level at comes out of the fit instead
+ * of having to be known.
+ * <p>
+ * Acceleration is the slope of a line fitted to the velocity over a short
+ * window, only within a segment so the jumps between tests don't show up as
+ * acceleration. Samples below the velocity threshold are left out, the sign of
+ * the static friction isn't known there.
+ */
+public class FeedforwardFit {
+
+    public final double kS;
+    public final double kV;
+    public final double kA;
+    public final double kG;
+    // position the arm is level at, in the position units, 0 unless COSINE
+    public final double gravityOffset;
+    public final double rSquared;
+    public final double rmse;
+    public final int samples;
+
+    private FeedforwardFit(double kS, double kV, double kA, double kG, double gravityOffset, double rSquared,
+            double rmse, int samples) {
+        this.kS = kS;
+        this.kV = kV;
+        this.kA = kA;
+        this.kG = kG;
+        this.gravityOffset = gravityOffset;
+        this.rSquared = rSquared;
+        this.rmse = rmse;
+        this.samples = samples;
+    }
+
+    /**
+     * @param segments    samples with the same segment id were taken in one
+     *                    continuous test
+     * @param minVelocity samples slower than this are left out
+     * @param window      samples on either side used for the acceleration
+     * @return the fit, null if there isn't enough data to solve it
+     */
+    public static FeedforwardFit fit(Gravity gravity, double[] timestamps, double[] volts, double[] positions,
+            double[] velocities, int[] segments, double minVelocity, int window) {
+        int n = timestamps.length;
+        int terms = gravity == Gravity.COSINE ? 5 : gravity == Gravity.CONSTANT ? 4 : 3;
+        double[][] normal = new double[terms][terms];
+        double[] rhs = new double[terms];
+        double[] row = new double[terms];
+        double sumV = 0.0;
+        double sumVV = 0.0;
+        int used = 0;
+
+        for (int i = 0; i < n; i++) {
+            if (Math.abs(velocities[i]) < minVelocity) {
+                continue;
+            }
+            double accel = getAcceleration(timestamps, velocities, segments, i, window);
+            if (Double.isNaN(accel)) {
+                continue;
+            }
+            fillRow(row, gravity, positions[i], velocities[i], accel);
+            for (int r = 0; r < terms; r++) {
+                for (int c = 0; c < terms; c++) {
+                    normal[r][c] += row[r] * row[c];
+                }
+                rhs[r] += row[r] * volts[i];
+            }
+            sumV += volts[i];
+            sumVV += volts[i] * volts[i];
+            used++;
+        }
+        if (used <= terms) {
+            return null;
+        }
+        double[] gains = solve(normal, rhs);
+        if (gains == null) {
+            return null;
+        }
+
+        // residuals in a second pass, the normal equations lose too much
+        // precision to get them from the sums
+        double residual = 0.0;
+        for (int i = 0; i < n; i++) {
+            if (Math.abs(velocities[i]) < minVelocity) {
+                continue;
+            }
+            double accel = getAcceleration(timestamps, velocities, segments, i, window);
+            if (Double.isNaN(accel)) {
+                continue;
+            }
+            fillRow(row, gravity, positions[i], velocities[i], accel);
+            double predicted = 0.0;
+            for (int t = 0; t < terms; t++) {
+                predicted += row[t] * gains[t];
+            }
+            residual += (volts[i] - predicted) * (volts[i] - predicted);
+        }
+        double total = sumVV - sumV * sumV / used;
+
+        double kG = 0.0;
+        double offset = 0.0;
+        if (gravity == Gravity.CONSTANT) {
+            kG = gains[3];
+        } else if (gravity == Gravity.COSINE) {
+            // a cos(x) + b sin(x) = kG cos(x - offset)
+            kG = Math.hypot(gains[3], gains[4]);
+            offset = Math.toDegrees(Math.atan2(gains[4], gains[3]));
+        }
+        return new FeedforwardFit(gains[0], gains[1], gains[2], kG, offset,
+                total > 0.0 ? 1.0 - residual / total : 0.0, Math.sqrt(residual / used), used);
+    }
+
+    private static void fillRow(double[] row, Gravity gravity, double position, double velocity, double accel) {
+        row[0] = Math.signum(velocity);
+        row[1] = velocity;
+        row[2] = accel;
+        if (gravity == Gravity.CONSTANT) {
+            row[3] = 1.0;
+        } else if (gravity == Gravity.COSINE) {
+            row[3] = Math.cos(Math.toRadians(position));
+            row[4] = Math.sin(Math.toRadians(position));
+        }
+    }
+
+    /**
+     * @return slope of the velocity over the samples around i in the same
+     *         segment, NaN if the window runs off the segment
+     */
+    private static double getAcceleration(double[] timestamps, double[] velocities, int[] segments, int i,
+            int window) {
+        int first = i - window;
+        int last = i + window;
+        if (first < 0 || last >= timestamps.length || segments[first] != segments[i]
+                || segments[last] != segments[i]) {
+            return Double.NaN;
+        }
+        double meanT = 0.0;
+        double meanV = 0.0;
+        for (int j = first; j <= last; j++) {
+            meanT += timestamps[j];
+            meanV += velocities[j];
+        }
+        meanT /= (last - first + 1);
+        meanV /= (last - first + 1);
+        double covariance = 0.0;
+        double variance = 0.0;
+        for (int j = first; j <= last; j++) {
+            covariance += (timestamps[j] - meanT) * (velocities[j] - meanV);
+            variance += (timestamps[j] - meanT) * (timestamps[j] - meanT);
+        }
+        return variance > 0.0 ? covariance / variance : Double.NaN;
+    }
+
+    /**
+     * Gaussian elimination with partial pivoting, the system is at most 5x5.
+     *
+     * @return null if the system is singular, e.g. no gravity signal in the data
+     */
+    private static double[] solve(double[][] a, double[] b) {
+        int n = b.length;
+        double[][] m = new double[n][n + 1];
+        for (int r = 0; r < n; r++) {
+            System.arraycopy(a[r], 0, m[r], 0, n);
+            m[r][n] = b[r];
+        }
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            for (int r = col + 1; r < n; r++) {
+                if (Math.abs(m[r][col]) > Math.abs(m[pivot][col])) {
+                    pivot = r;
+                }
+            }
+            if (Math.abs(m[pivot][col]) < 1e-12) {
+                return null;
+            }
+            double[] swap = m[col];
+            m[col] = m[pivot];
+            m[pivot] = swap;
+            for (int r = col + 1; r < n; r++) {
+                double factor = m[r][col] / m[col][col];
+                for (int c = col; c <= n; c++) {
+                    m[r][c] -= factor * m[col][c];
+                }
+            }
+        }
+        double[] x = new double[n];
+        for (int r = n - 1; r >= 0; r--) {
+            double sum = m[r][n];
+            for (int c = r + 1; c < n; c++) {
+                sum -= m[r][c] * x[c];
+            }
+            x[r] = sum / m[r][r];
+        }
+        return x;
+    }
+}
@@ -0,0 +1,103 @@
+package com.team8013.lib.characterization;
+
+import com.revrobotics.CANSparkBase;
+import com.revrobotics.CANSparkLowLevel.PeriodicFrame;
+import com.revrobotics.RelativeEncoder;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * A Spark driven mechanism, position in motor rotations. The Spark can't be
+ * waited on, so while capturing its status frames are sped up to
+ * kCaptureFramePeriodMs and samples are polled at that period.
+ */
+public class SparkCharacterizationDevice extends CharacterizationDevice {
+
+    public static final int kCaptureFramePeriodMs = 5;
+    // REV's defaults for applied output, velocity and position
+    private static final int kStatus0PeriodMs = 10;
+    private static final int kStatus1PeriodMs = 20;
+    private static final int kStatus2PeriodMs = 20;
+
+    private final CANSparkBase mMotor;
+    private final RelativeEncoder mEncoder;
+    private double mNextSample = 0.0;
+    private double mTimestamp = 0.0;
+    private double mVoltage = 0.0;
+    private double mPosition = 0.0;
+    private double mVelocity = 0.0;
+
+    public SparkCharacterizationDevice(CANSparkBase motor, String name) {
+        super(name, "rot", Gravity.NONE, 1.0, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+        mMotor = motor;
+        mEncoder = motor.getEncoder();
+    }
+
+    @Override
+    public double getSampleRate() {
+        return 1000.0 / kCaptureFramePeriodMs;
+    }
+
+    @Override
+    public void start() {
+        mMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus0, kCaptureFramePeriodMs);
+        mMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus1, kCaptureFramePeriodMs);
+        mMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus2, kCaptureFramePeriodMs);
+        mNextSample = Timer.getFPGATimestamp();
+    }
+
+    @Override
+    public boolean waitForSample(double timeoutSeconds) {
+        double wait = mNextSample - Timer.getFPGATimestamp();
+        if (wait > timeoutSeconds) {
+            return false;
+        }
+        if (wait > 0.0) {
+            try {
+                Thread.sleep((long) (wait * 1000.0), (int) ((wait * 1.0e9) % 1.0e6));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        mTimestamp = Timer.getFPGATimestamp();
+        mNextSample = Math.max(mNextSample + kCaptureFramePeriodMs / 1000.0, mTimestamp);
+        mVoltage = mMotor.getAppliedOutput() * mMotor.getBusVoltage();
+        mPosition = mEncoder.getPosition();
+        mVelocity = mEncoder.getVelocity() / 60.0;
+        return true;
+    }
+
+    @Override
+    public double getTimestamp() {
+        return mTimestamp;
+    }
+
+    @Override
+    public double getVoltage() {
+        return mVoltage;
+    }
+
+    @Override
+    public double getPosition() {
+        return mPosition;
+    }
+
+    @Override
+    public double getVelocity() {
+        return mVelocity;
+    }
+
+    @Override
+    public void setVoltage(double volts) {
+        mMotor.setVoltage(volts);
+    }
+
+    @Override
+    public void stop() {
+        mMotor.stopMotor();
+        mMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus0, kStatus0PeriodMs);
+        mMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus1, kStatus1PeriodMs);
+        mMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus2, kStatus2PeriodMs);
+    }
+}
@@ -0,0 +1,83 @@
+package com.team8013.lib.characterization;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusSignal;
+import com.ctre.phoenix6.controls.NeutralOut;
+import com.ctre.phoenix6.controls.VoltageOut;
+import com.ctre.phoenix6.hardware.TalonFX;
+
+/**
+ * A TalonFX driven mechanism. While capturing, the rotor position, velocity
+ * and output voltage are sent at kCaptureFrequency and each sample waits on
+ * all three together, so the timestamps are the device's own. Followers keep
+ * following the voltage request.
+ */
+public class TalonFXCharacterizationDevice extends CharacterizationDevice {
+
+    // as fast as a TalonFX sends on a CANivore
+    public static final double kCaptureFrequency = 1000.0;
+    // what the loop reads them at the rest of the time
+    private static final double kNormalFrequency = 50.0;
+
+    private final TalonFX mMotor;
+    private final StatusSignal<Double> mPosition;
+    private final StatusSignal<Double> mVelocity;
+    private final StatusSignal<Double> mVoltage;
+    private final VoltageOut mVoltageRequest = new VoltageOut(0.0);
+    private final NeutralOut mNeutralRequest = new NeutralOut();
+
+    public TalonFXCharacterizationDevice(TalonFX motor, String name, String units, Gravity gravity, double rotorScale,
+            double min, double max) {
+        super(name, units, gravity, rotorScale, min, max);
+        mMotor = motor;
+        mPosition = motor.getRotorPosition();
+        mVelocity = motor.getRotorVelocity();
+        mVoltage = motor.getMotorVoltage();
+    }
+
+    @Override
+    public double getSampleRate() {
+        return kCaptureFrequency;
+    }
+
+    @Override
+    public void start() {
+        BaseStatusSignal.setUpdateFrequencyForAll(kCaptureFrequency, mPosition, mVelocity, mVoltage);
+    }
+
+    @Override
+    public boolean waitForSample(double timeoutSeconds) {
+        return BaseStatusSignal.waitForAll(timeoutSeconds, mPosition, mVelocity, mVoltage).isOK();
+    }
+
+    @Override
+    public double getTimestamp() {
+        return mPosition.getTimestamp().getTime();
+    }
+
+    @Override
+    public double getVoltage() {
+        return mVoltage.getValueAsDouble();
+    }
+
+    @Override
+    public double getPosition() {
+        return mPosition.getValueAsDouble() * getRotorScale();
+    }
+
+    @Override
+    public double getVelocity() {
+        return mVelocity.getValueAsDouble() * getRotorScale();
+    }
+
+    @Override
+    public void setVoltage(double volts) {
+        mMotor.setControl(mVoltageRequest.withOutput(volts));
+    }
+
+    @Override
+    public void stop() {
+        mMotor.setControl(mNeutralRequest);
+        BaseStatusSignal.setUpdateFrequencyForAll(kNormalFrequency, mPosition, mVelocity, mVoltage);
+    }
+}
@@ -0,0 +1,328 @@
+package com.team8013.lib.drivers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ctre.phoenix6.StatusCode;
+import com.ctre.phoenix6.configs.CANcoderConfiguration;
+import com.ctre.phoenix6.configs.TalonFXConfiguration;
+import com.ctre.phoenix6.hardware.CANcoder;
+import com.ctre.phoenix6.hardware.TalonFX;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Applies device configurations in the background at boot instead of blocking
+ * each subsystem constructor on CAN round trips. Every bus gets its own small
+ * pool so a slow bus doesn't hold up the other one. Each config is applied,
+ * read back off the device and compared, and retried with backoff if either
+ * step fails.
+ * <p>
+ * Anything that has to happen after a device is configured (followers, neutral
+ * mode, seeding positions from an absolute encoder) is passed in as the
+ * onConfigured callback or registered with afterConfigured. Either way
+ * awaitAll waits for it and a setup step that throws is reported as failed,
+ * so don't chain setup off the returned futures directly.
+ */
+public class DeviceBringup {
+
+    private static DeviceBringup mInstance;
+
+    public static synchronized DeviceBringup getInstance() {
+        if (mInstance == null) {
+            mInstance = new DeviceBringup();
+        }
+        return mInstance;
+    }
+
+    private static final int kThreadsPerBus = 2;
+    private static final int kMaxAttempts = 4;
+    private static final double kApplyTimeout = 0.1; // seconds
+    private static final long kBaseBackoffMs = 20;
+    private static final double kVerifyEpsilon = 1e-4;
+
+    private final long mStartNanos = System.nanoTime();
+    private final Map<String, ExecutorService> mBusExecutors = new HashMap<>();
+    private final List<DeviceRecord> mRecords = Collections.synchronizedList(new ArrayList<>());
+    private final List<CompletableFuture<?>> mFutures = Collections.synchronizedList(new ArrayList<>());
+
+    private DeviceBringup() {
+    }
+
+    /**
+     * Interface for applying and checking a configuration. apply() returns false
+     * if the device rejected or didn't acknowledge the config.
+     */
+    public interface DeviceConfigurator {
+        boolean apply();
+
+        boolean verify();
+    }
+
+    public CompletableFuture<Boolean> configure(TalonFX talon, TalonFXConfiguration config, String name,
+            String bus) {
+        return configure(name, bus, new DeviceConfigurator() {
+            @Override
+            public boolean apply() {
+                return talon.getConfigurator().apply(config, kApplyTimeout).isOK();
+            }
+
+            @Override
+            public boolean verify() {
+                TalonFXConfiguration readBack = new TalonFXConfiguration();
+                StatusCode status = talon.getConfigurator().refresh(readBack, kApplyTimeout);
+                return status.isOK() && talonConfigsMatch(config, readBack);
+            }
+        }, null);
+    }
+
+    public CompletableFuture<Boolean> configure(CANcoder cancoder, CANcoderConfiguration config, String name,
+            String bus) {
+        return configure(name, bus, new DeviceConfigurator() {
+            @Override
+            public boolean apply() {
+                return cancoder.getConfigurator().apply(config, kApplyTimeout).isOK();
+            }
+
+            @Override
+            public boolean verify() {
+                CANcoderConfiguration readBack = new CANcoderConfiguration();
+                StatusCode status = cancoder.getConfigurator().refresh(readBack, kApplyTimeout);
+                return status.isOK() && cancoderConfigsMatch(config, readBack);
+            }
+        }, null);
+    }
+
+    /**
+     * Queues a device to be configured on its bus' pool.
+     *
+     * @param onConfigured run on the bring-up thread once the device is
+     *                     verified, or after the last attempt if it never is
+     * @return completes with true if the config was verified on the device
+     */
+    public CompletableFuture<Boolean> configure(String name, String bus, DeviceConfigurator configurator,
+            Runnable onConfigured) {
+        DeviceRecord record = new DeviceRecord(name, bus);
+        mRecords.add(record);
+        CompletableFuture<Boolean> future = CompletableFuture.supplyAsync(() -> {
+            record.startMs = elapsedMs();
+            boolean verified = false;
+            while (!verified && record.attempts < kMaxAttempts) {
+                if (record.attempts > 0) {
+                    sleep(kBaseBackoffMs << (record.attempts - 1));
+                }
+                record.attempts++;
+                try {
+                    verified = configurator.apply() && configurator.verify();
+                } catch (Exception e) {
+                    System.err.println("Bring-up of " + name + " threw " + e.getMessage());
+                    verified = false;
+                }
+            }
+            record.verified = verified;
+            if (!verified) {
+                System.err.println("FAILED to configure " + name + " on " + bus + " after " + record.attempts
+                        + " attempts");
+            }
+            if (onConfigured != null && !runSetup(name, onConfigured)) {
+                verified = false;
+                record.verified = false;
+            }
+            record.endMs = elapsedMs();
+            return verified;
+        }, getExecutor(bus));
+        mFutures.add(future);
+        return future;
+    }
+
+    /**
+     * Runs setup on the bus' pool once the given devices are done configuring
+     * (whether or not they verified), tracked like a device so awaitAll waits
+     * for it and the timeline shows it.
+     *
+     * @return completes with true if the setup ran without throwing
+     */
+    public CompletableFuture<Boolean> afterConfigured(String name, String bus, Runnable setup,
+            CompletableFuture<?>... configs) {
+        DeviceRecord record = new DeviceRecord(name, bus);
+        mRecords.add(record);
+        CompletableFuture<Boolean> future = CompletableFuture.allOf(configs).handleAsync((ignored, error) -> {
+            record.startMs = elapsedMs();
+            record.attempts = 1;
+            if (error != null) {
+                System.err.println("FAILED setup of " + name + ", configuring threw " + error.getMessage());
+            } else {
+                record.verified = runSetup(name, setup);
+            }
+            record.endMs = elapsedMs();
+            return record.verified;
+        }, getExecutor(bus));
+        mFutures.add(future);
+        return future;
+    }
+
+    /**
+     * Blocks until every queued device is done or the timeout runs out.
+     *
+     * @return true if every device was configured and verified
+     */
+    public boolean awaitAll(double timeoutSeconds) {
+        CompletableFuture<?>[] futures;
+        synchronized (mFutures) {
+            futures = mFutures.toArray(new CompletableFuture<?>[0]);
+        }
+        try {
+            CompletableFuture.allOf(futures).get((long) (timeoutSeconds * 1000), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            System.err.println("Device bring-up timed out after " + timeoutSeconds + " s, still waiting on "
+                    + getPendingNames());
+        } catch (Exception e) {
+            System.err.println("Device bring-up interrupted: " + e.getMessage());
+        }
+        return allVerified();
+    }
+
+    private String getPendingNames() {
+        List<String> pending = new ArrayList<>();
+        synchronized (mRecords) {
+            for (DeviceRecord record : mRecords) {
+                if (record.endMs == 0.0) {
+                    pending.add(record.name);
+                }
+            }
+        }
+        return String.join(", ", pending);
+    }
+
+    public boolean allVerified() {
+        synchronized (mRecords) {
+            for (DeviceRecord record : mRecords) {
+                if (!record.verified) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return one line per device in the order they started, with start and end
+     *         times relative to when bring-up began
+     */
+    public String getTimelineReport() {
+        List<DeviceRecord> records;
+        synchronized (mRecords) {
+            records = new ArrayList<>(mRecords);
+        }
+        records.sort((a, b) -> Double.compare(a.startMs, b.startMs));
+
+        StringBuilder report = new StringBuilder("Device bring-up timeline:\n");
+        double lastEnd = 0.0;
+        for (DeviceRecord record : records) {
+            lastEnd = Math.max(lastEnd, record.endMs);
+            report.append(String.format("  %-24s %-8s start %7.1f ms  took %6.1f ms  attempts %d  %s%n",
+                    record.name, record.bus, record.startMs, record.endMs - record.startMs, record.attempts,
+                    record.verified ? "OK" : (record.endMs > 0 ? "FAILED" : "PENDING")));
+        }
+        report.append(String.format("  total %.1f ms, %s", lastEnd, allVerified() ? "all verified" : "NOT VERIFIED"));
+        return report.toString();
+    }
+
+    public void outputTelemetry() {
+        synchronized (mRecords) {
+            for (DeviceRecord record : mRecords) {
+                SmartDashboard.putNumber("Bringup/" + record.name + " Ms", record.endMs - record.startMs);
+                SmartDashboard.putBoolean("Bringup/" + record.name + " Verified", record.verified);
+            }
+        }
+        SmartDashboard.putBoolean("Bringup/All Verified", allVerified());
+    }
+
+    private synchronized ExecutorService getExecutor(String bus) {
+        return mBusExecutors.computeIfAbsent(bus, (b) -> {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(kThreadsPerBus, (r) -> {
+                Thread thread = new Thread(r, "Bringup-" + b + "-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        });
+    }
+
+    private double elapsedMs() {
+        return (System.nanoTime() - mStartNanos) / 1.0e6;
+    }
+
+    private static boolean runSetup(String name, Runnable setup) {
+        try {
+            setup.run();
+            return true;
+        } catch (Exception e) {
+            System.err.println("FAILED setup of " + name + ": " + e);
+            return false;
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Loose compare for read back config values, devices store some parameters
+     * as floats.
+     */
+    public static boolean valuesMatch(double a, double b) {
+        return Math.abs(a - b) <= kVerifyEpsilon * Math.max(1.0, Math.abs(a));
+    }
+
+    private static boolean talonConfigsMatch(TalonFXConfiguration want, TalonFXConfiguration got) {
+        return want.MotorOutput.Inverted == got.MotorOutput.Inverted
+                && want.MotorOutput.NeutralMode == got.MotorOutput.NeutralMode
+                && want.CurrentLimits.SupplyCurrentLimitEnable == got.CurrentLimits.SupplyCurrentLimitEnable
+                && valuesMatch(want.CurrentLimits.SupplyCurrentLimit, got.CurrentLimits.SupplyCurrentLimit)
+                && want.CurrentLimits.StatorCurrentLimitEnable == got.CurrentLimits.StatorCurrentLimitEnable
+                && valuesMatch(want.CurrentLimits.StatorCurrentLimit, got.CurrentLimits.StatorCurrentLimit)
+                && valuesMatch(want.Feedback.SensorToMechanismRatio, got.Feedback.SensorToMechanismRatio)
+                && valuesMatch(want.Slot0.kP, got.Slot0.kP)
+                && valuesMatch(want.Slot0.kI, got.Slot0.kI)
+                && valuesMatch(want.Slot0.kD, got.Slot0.kD)
+                && valuesMatch(want.Slot0.kS, got.Slot0.kS)
+                && valuesMatch(want.Slot0.kV, got.Slot0.kV)
+                && valuesMatch(want.Slot0.kG, got.Slot0.kG)
+                && valuesMatch(want.MotionMagic.MotionMagicCruiseVelocity, got.MotionMagic.MotionMagicCruiseVelocity)
+                && valuesMatch(want.MotionMagic.MotionMagicAcceleration, got.MotionMagic.MotionMagicAcceleration);
+    }
+
+    private static boolean cancoderConfigsMatch(CANcoderConfiguration want, CANcoderConfiguration got) {
+        return want.MagnetSensor.SensorDirection == got.MagnetSensor.SensorDirection
+                && want.MagnetSensor.AbsoluteSensorRange == got.MagnetSensor.AbsoluteSensorRange
+                && valuesMatch(want.MagnetSensor.MagnetOffset, got.MagnetSensor.MagnetOffset);
+    }
+
+    private static class DeviceRecord {
+        final String name;
+        final String bus;
+        volatile double startMs = 0.0;
+        volatile double endMs = 0.0;
+        volatile int attempts = 0;
+        volatile boolean verified = false;
+
+        DeviceRecord(String name, String bus) {
+            this.name = name;
+            this.bus = bus;
+        }
+    }
+}
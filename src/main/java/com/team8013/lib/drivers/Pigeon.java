@@ -1,13 +1,30 @@
 package com.team8013.lib.drivers;
 
 
+import java.lang.invoke.VarHandle;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusSignal;
+import com.ctre.phoenix6.Utils;
 import com.ctre.phoenix6.configs.Pigeon2Configuration;
 import com.ctre.phoenix6.hardware.Pigeon2;
 import com.team8013.frc2024.Constants;
+import com.team8013.frc2024.Constants.SwerveConstants;
 import com.team8013.frc2024.Ports;
+import com.team8013.lib.util.RobotClock;
 
 import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
+/**
+ * The Pigeon 2, with yaw and yaw rate sampled on their own thread.
+ * <p>
+ * The sampler waits on both signals at the gyro update frequency and keeps
+ * the newest pair with its CAN timestamp, so reading the yaw never blocks on
+ * the bus and the heading can be carried forward by the rate to exactly the
+ * time a loop wants it for. The sample is published under a sequence counter
+ * instead of a lock: a reader that catches it mid write just reads it again.
+ */
 public class Pigeon {
 
     private static Pigeon mInstance;
@@ -24,21 +41,163 @@ public class Pigeon {
 
     // Configs
     private boolean inverted = Constants.SwerveConstants.invertGyro;
-    private Rotation2d yawAdjustmentAngle = new Rotation2d();
+    private volatile double yawAdjustmentDeg = 0.0;
     private Rotation2d rollAdjustmentAngle = new Rotation2d();
     private Rotation2d pitchAdjustmentAngle = new Rotation2d();
 
-    private Pigeon(int port) {        
+    private final StatusSignal<Double> mYaw;
+    private final StatusSignal<Double> mYawRate;
+    private final StatusSignal<Double> mPitch;
+    private final StatusSignal<Double> mRoll;
+
+    // newest sample, odd sequence while it's being written
+    private volatile int mSequence = 0;
+    private double mSampleYaw = 0.0; // deg, unadjusted
+    private double mSampleRate = 0.0; // deg/s, unadjusted
+    private double mSampleTime = Double.NEGATIVE_INFINITY;
+    private volatile int mSamples = 0;
+    private volatile int mTimeouts = 0;
+    private volatile int mStaleReads = 0;
+    private double mRateWindowStart = Double.NaN;
+    private int mRateWindowSamples = 0;
+    private volatile double mSampleFrequency = 0.0;
+
+    private Pigeon(int port) {
         mGyro = new Pigeon2(port, Ports.CANBUS_LOWER);
-        mGyro.getConfigurator().apply(new Pigeon2Configuration());
+        mYaw = mGyro.getYaw();
+        mYawRate = mGyro.getAngularVelocityZWorld();
+        mPitch = mGyro.getPitch();
+        mRoll = mGyro.getRoll();
+        DeviceBringup.getInstance().configure("Pigeon", Ports.CANBUS_LOWER, new DeviceBringup.DeviceConfigurator() {
+            @Override
+            public boolean apply() {
+                return mGyro.getConfigurator().apply(new Pigeon2Configuration(), 0.1).isOK();
+            }
+
+            @Override
+            public boolean verify() {
+                Pigeon2Configuration readBack = new Pigeon2Configuration();
+                return mGyro.getConfigurator().refresh(readBack, 0.1).isOK()
+                        && readBack.MountPose.MountPoseYaw == 0.0;
+            }
+        }, null);
+        BaseStatusSignal.setUpdateFrequencyForAll(SwerveConstants.kGyroUpdateFrequency, mYaw, mYawRate);
+        // a first sample before the sampler starts, so zeroing right away works
+        BaseStatusSignal.refreshAll(mYaw, mYawRate);
+        publish(mYaw.getValueAsDouble(), mYawRate.getValueAsDouble(), getSampleTime());
+
+        Thread sampler = new Thread(this::sample, "PigeonSampler");
+        sampler.setDaemon(true);
+        sampler.setPriority(Thread.MAX_PRIORITY);
+        sampler.start();
     }
 
-    public Rotation2d getYaw() {
-        Rotation2d angle = getUnadjustedYaw().rotateBy(yawAdjustmentAngle.unaryMinus());
-        if (inverted) {
-            return angle.unaryMinus();
+    private void sample() {
+        while (!Thread.currentThread().isInterrupted()) {
+            // blocks until both signals have a new frame
+            if (!BaseStatusSignal.waitForAll(SwerveConstants.kGyroWaitTimeout, mYaw, mYawRate).isOK()) {
+                mTimeouts++;
+                continue;
+            }
+            publish(mYaw.getValueAsDouble(), mYawRate.getValueAsDouble(), getSampleTime());
+        }
+    }
+
+    /**
+     * @return when the yaw in the signal was measured, in robot clock time.
+     *         Signal timestamps are in CTRE's own time base, so only how old
+     *         it is carries over.
+     */
+    private double getSampleTime() {
+        double age = Utils.getCurrentTimeSeconds() - mYaw.getTimestamp().getTime();
+        return RobotClock.getInstance().now() - Math.max(0.0, age);
+    }
+
+    // only called from the sampler thread once it's running
+    private void publish(double yaw, double rate, double time) {
+        mSequence++;
+        VarHandle.storeStoreFence();
+        mSampleYaw = yaw;
+        mSampleRate = rate;
+        mSampleTime = time;
+        mSequence++;
+
+        mSamples++;
+        if (Double.isNaN(mRateWindowStart)) {
+            mRateWindowStart = time;
+        }
+        mRateWindowSamples++;
+        if (time - mRateWindowStart >= 1.0) {
+            mSampleFrequency = mRateWindowSamples / (time - mRateWindowStart);
+            mRateWindowStart = time;
+            mRateWindowSamples = 0;
+        }
+    }
+
+    /**
+     * Yaw carried forward from the newest sample by its rate.
+     *
+     * @param timestamp FPGA time to estimate the yaw at, usually the loop's
+     * @return degrees, CCW positive, not wrapped
+     */
+    public double getYawDegrees(double timestamp) {
+        return adjust(getUnadjustedYawDegrees(timestamp));
+    }
+
+    private double getUnadjustedYawDegrees(double timestamp) {
+        double yaw, rate, time;
+        while (true) {
+            int sequence = mSequence;
+            yaw = mSampleYaw;
+            rate = mSampleRate;
+            time = mSampleTime;
+            VarHandle.acquireFence();
+            if ((sequence & 1) == 0 && sequence == mSequence) {
+                break;
+            }
+            Thread.onSpinWait();
+        }
+        if (timestamp - time > SwerveConstants.kGyroStaleTime) {
+            // the gyro stopped sending, hold the last sample rather than
+            // carry it forward by a rate that's just as old
+            mStaleReads++;
+            return yaw;
+        }
+        double dt = Math.max(0.0, Math.min(timestamp - time, SwerveConstants.kGyroMaxExtrapolation));
+        return yaw + rate * dt;
+    }
+
+    /**
+     * @return yaw right now, degrees
+     */
+    public double getYawDegrees() {
+        return getYawDegrees(RobotClock.getInstance().now());
+    }
+
+    /**
+     * @return yaw rate from the newest sample, deg/s CCW positive
+     */
+    public double getYawRateDegreesPerSecond() {
+        double rate;
+        while (true) {
+            int sequence = mSequence;
+            rate = mSampleRate;
+            VarHandle.acquireFence();
+            if ((sequence & 1) == 0 && sequence == mSequence) {
+                break;
+            }
+            Thread.onSpinWait();
         }
-        return Rotation2d.fromDegrees(angle.getDegrees()); //not 0-360?
+        return inverted ? -rate : rate;
+    }
+
+    private double adjust(double unadjustedYaw) {
+        double yaw = unadjustedYaw - yawAdjustmentDeg;
+        return inverted ? -yaw : yaw;
+    }
+
+    public Rotation2d getYaw() {
+        return Rotation2d.fromDegrees(getYawDegrees());
     }
 
     public Rotation2d getRoll() {
@@ -55,7 +214,8 @@ public class Pigeon {
      * @param angleDeg New yaw in degrees
      */
     public void setYaw(double angleDeg) {
-        yawAdjustmentAngle = getUnadjustedYaw().rotateBy(Rotation2d.fromDegrees(angleDeg).unaryMinus());
+        double yaw = getUnadjustedYawDegrees(RobotClock.getInstance().now());
+        yawAdjustmentDeg = yaw - (inverted ? -angleDeg : angleDeg);
     }
 
     /**
@@ -78,14 +238,22 @@ public class Pigeon {
     }
 
     public Rotation2d getUnadjustedYaw() {
-        return Rotation2d.fromDegrees(mGyro.getYaw().getValue());
+        return Rotation2d.fromDegrees(getUnadjustedYawDegrees(RobotClock.getInstance().now()));
     }
 
     public Rotation2d getUnadjustedPitch() {
-        return Rotation2d.fromDegrees(mGyro.getRoll().getValue());
+        return Rotation2d.fromDegrees(mRoll.refresh().getValueAsDouble());
     }
 
     public Rotation2d getUnadjustedRoll() {
-        return Rotation2d.fromDegrees(mGyro.getPitch().getValue());
+        return Rotation2d.fromDegrees(mPitch.refresh().getValueAsDouble());
+    }
+
+    public void outputTelemetry() {
+        SmartDashboard.putNumber("Gyro Sample Hz", mSampleFrequency);
+        SmartDashboard.putNumber("Gyro Samples", mSamples);
+        SmartDashboard.putNumber("Gyro Timeouts", mTimeouts);
+        SmartDashboard.putNumber("Gyro Stale Reads", mStaleReads);
+        SmartDashboard.putNumber("Gyro Yaw Rate", getYawRateDegreesPerSecond());
     }
 }
\ No newline at end of file
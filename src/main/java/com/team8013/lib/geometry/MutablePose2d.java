@@ -0,0 +1,158 @@
+package com.team8013.lib.geometry;
+
+/**
+ * Pose that is changed in place, the allocation-free counterpart of the WPILib
+ * and 254 Pose2d for the drive loop. Every operation writes its result back
+ * into this pose and returns it for chaining.
+ * <p>
+ * getTranslation() and getRotation() return the pose's own parts, so changing
+ * them changes the pose. Convert with toWpilib()/toTeam254() at the edges where
+ * an immutable pose is needed.
+ */
+public class MutablePose2d {
+
+    private static final double kEpsilon = 1e-9;
+
+    private final MutableTranslation2d mTranslation = new MutableTranslation2d();
+    private final MutableRotation2d mRotation = new MutableRotation2d();
+
+    public MutablePose2d() {
+    }
+
+    public MutablePose2d(double x, double y, double radians) {
+        set(x, y, radians);
+    }
+
+    public MutablePose2d(edu.wpi.first.math.geometry.Pose2d pose) {
+        set(pose);
+    }
+
+    public MutablePose2d(com.team254.lib.geometry.Pose2d pose) {
+        set(pose);
+    }
+
+    public MutablePose2d setIdentity() {
+        mTranslation.set(0.0, 0.0);
+        mRotation.setIdentity();
+        return this;
+    }
+
+    public MutablePose2d set(double x, double y, double radians) {
+        mTranslation.set(x, y);
+        mRotation.setRadians(radians);
+        return this;
+    }
+
+    public MutablePose2d set(MutablePose2d other) {
+        mTranslation.set(other.mTranslation);
+        mRotation.set(other.mRotation);
+        return this;
+    }
+
+    public MutablePose2d set(edu.wpi.first.math.geometry.Pose2d pose) {
+        mTranslation.set(pose.getX(), pose.getY());
+        mRotation.set(pose.getRotation());
+        return this;
+    }
+
+    public MutablePose2d set(com.team254.lib.geometry.Pose2d pose) {
+        mTranslation.set(pose.getTranslation());
+        mRotation.set(pose.getRotation());
+        return this;
+    }
+
+    public MutableTranslation2d getTranslation() {
+        return mTranslation;
+    }
+
+    public MutableRotation2d getRotation() {
+        return mRotation;
+    }
+
+    public double getX() {
+        return mTranslation.getX();
+    }
+
+    public double getY() {
+        return mTranslation.getY();
+    }
+
+    /**
+     * Applies a transform expressed in this pose's frame, same as the 254
+     * transformBy or the WPILib plus(Transform2d).
+     */
+    public MutablePose2d transformBy(double x, double y, double cos, double sin) {
+        mTranslation.plus(x * mRotation.getCos() - y * mRotation.getSin(),
+                x * mRotation.getSin() + y * mRotation.getCos());
+        mRotation.rotateBy(cos, sin);
+        return this;
+    }
+
+    public MutablePose2d transformBy(MutablePose2d other) {
+        return transformBy(other.getX(), other.getY(), other.mRotation.getCos(), other.mRotation.getSin());
+    }
+
+    /**
+     * Re-expresses this pose in the frame of origin, same as the WPILib
+     * relativeTo.
+     */
+    public MutablePose2d relativeTo(MutablePose2d origin) {
+        mTranslation.minus(origin.mTranslation).rotateBy(origin.mRotation.getCos(), -origin.mRotation.getSin());
+        mRotation.minus(origin.mRotation);
+        return this;
+    }
+
+    public MutablePose2d inverse() {
+        mRotation.inverse();
+        mTranslation.inverse().rotateBy(mRotation);
+        return this;
+    }
+
+    /**
+     * Moves this pose along a twist in its own frame, same as the WPILib
+     * pose.exp(twist).
+     */
+    public MutablePose2d exp(MutableTwist2d twist) {
+        return exp(twist.dx, twist.dy, twist.dtheta);
+    }
+
+    public MutablePose2d exp(double dx, double dy, double dtheta) {
+        double sinTheta = Math.sin(dtheta);
+        double cosTheta = Math.cos(dtheta);
+        double s, c;
+        if (Math.abs(dtheta) < kEpsilon) {
+            s = 1.0 - 1.0 / 6.0 * dtheta * dtheta;
+            c = 0.5 * dtheta;
+        } else {
+            s = sinTheta / dtheta;
+            c = (1.0 - cosTheta) / dtheta;
+        }
+        return transformBy(dx * s - dy * c, dx * c + dy * s, cosTheta, sinTheta);
+    }
+
+    /**
+     * Sets this to the pose reached by following the twist from the identity,
+     * same as the 254 Pose2d.exp(twist).
+     */
+    public MutablePose2d setExp(MutableTwist2d twist) {
+        return setIdentity().exp(twist);
+    }
+
+    public boolean epsilonEquals(MutablePose2d other, double epsilon) {
+        return mTranslation.epsilonEquals(other.mTranslation, epsilon)
+                && mRotation.epsilonEquals(other.mRotation, epsilon);
+    }
+
+    public edu.wpi.first.math.geometry.Pose2d toWpilib() {
+        return new edu.wpi.first.math.geometry.Pose2d(mTranslation.toWpilib(), mRotation.toWpilib());
+    }
+
+    public com.team254.lib.geometry.Pose2d toTeam254() {
+        return new com.team254.lib.geometry.Pose2d(mTranslation.toTeam254(), mRotation.toTeam254());
+    }
+
+    @Override
+    public String toString() {
+        return "T:" + mTranslation + ", R:" + mRotation;
+    }
+}
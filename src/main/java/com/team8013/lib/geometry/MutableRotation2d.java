@@ -0,0 +1,147 @@
+package com.team8013.lib.geometry;
+
+/**
+ * Rotation stored as cos/sin that is changed in place. Same math as the WPILib
+ * and 254 Rotation2d, but for loop code that would otherwise allocate a new
+ * rotation for every operation. The angle itself is only computed (atan2) when
+ * asked for.
+ */
+public class MutableRotation2d {
+
+    private static final double kEpsilon = 1e-9;
+
+    private double mCos = 1.0;
+    private double mSin = 0.0;
+
+    public MutableRotation2d() {
+    }
+
+    public MutableRotation2d(double radians) {
+        setRadians(radians);
+    }
+
+    public MutableRotation2d(edu.wpi.first.math.geometry.Rotation2d rotation) {
+        set(rotation);
+    }
+
+    public MutableRotation2d(com.team254.lib.geometry.Rotation2d rotation) {
+        set(rotation);
+    }
+
+    public MutableRotation2d setIdentity() {
+        mCos = 1.0;
+        mSin = 0.0;
+        return this;
+    }
+
+    /**
+     * Sets the rotation to the direction of (x, y), normalizing it.
+     */
+    public MutableRotation2d set(double x, double y) {
+        double magnitude = Math.hypot(x, y);
+        if (magnitude > kEpsilon) {
+            mCos = x / magnitude;
+            mSin = y / magnitude;
+        } else {
+            mCos = 1.0;
+            mSin = 0.0;
+        }
+        return this;
+    }
+
+    public MutableRotation2d setRadians(double radians) {
+        mCos = Math.cos(radians);
+        mSin = Math.sin(radians);
+        return this;
+    }
+
+    public MutableRotation2d setDegrees(double degrees) {
+        return setRadians(Math.toRadians(degrees));
+    }
+
+    public MutableRotation2d set(MutableRotation2d other) {
+        mCos = other.mCos;
+        mSin = other.mSin;
+        return this;
+    }
+
+    public MutableRotation2d set(edu.wpi.first.math.geometry.Rotation2d rotation) {
+        mCos = rotation.getCos();
+        mSin = rotation.getSin();
+        return this;
+    }
+
+    public MutableRotation2d set(com.team254.lib.geometry.Rotation2d rotation) {
+        mCos = rotation.cos();
+        mSin = rotation.sin();
+        return this;
+    }
+
+    /**
+     * this = this + (the rotation with the given cos/sin)
+     */
+    public MutableRotation2d rotateBy(double cos, double sin) {
+        return set(mCos * cos - mSin * sin, mCos * sin + mSin * cos);
+    }
+
+    public MutableRotation2d rotateBy(MutableRotation2d other) {
+        return rotateBy(other.mCos, other.mSin);
+    }
+
+    public MutableRotation2d rotateBy(edu.wpi.first.math.geometry.Rotation2d other) {
+        return rotateBy(other.getCos(), other.getSin());
+    }
+
+    /**
+     * this = this - other
+     */
+    public MutableRotation2d minus(MutableRotation2d other) {
+        return rotateBy(other.mCos, -other.mSin);
+    }
+
+    public MutableRotation2d inverse() {
+        mSin = -mSin;
+        return this;
+    }
+
+    /**
+     * @return (this - other) in radians, wrapped to [-pi, pi], without changing
+     *         either rotation
+     */
+    public double radiansFrom(MutableRotation2d other) {
+        return Math.atan2(mSin * other.mCos - mCos * other.mSin, mCos * other.mCos + mSin * other.mSin);
+    }
+
+    public double getCos() {
+        return mCos;
+    }
+
+    public double getSin() {
+        return mSin;
+    }
+
+    public double getRadians() {
+        return Math.atan2(mSin, mCos);
+    }
+
+    public double getDegrees() {
+        return Math.toDegrees(getRadians());
+    }
+
+    public boolean epsilonEquals(MutableRotation2d other, double epsilon) {
+        return Math.abs(radiansFrom(other)) <= epsilon;
+    }
+
+    public edu.wpi.first.math.geometry.Rotation2d toWpilib() {
+        return new edu.wpi.first.math.geometry.Rotation2d(mCos, mSin);
+    }
+
+    public com.team254.lib.geometry.Rotation2d toTeam254() {
+        return new com.team254.lib.geometry.Rotation2d(mCos, mSin, false);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.3f deg", getDegrees());
+    }
+}
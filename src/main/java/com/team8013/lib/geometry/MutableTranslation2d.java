@@ -0,0 +1,113 @@
+package com.team8013.lib.geometry;
+
+/**
+ * Translation that is changed in place, the allocation-free counterpart of the
+ * WPILib and 254 Translation2d.
+ */
+public class MutableTranslation2d {
+
+    private double mX = 0.0;
+    private double mY = 0.0;
+
+    public MutableTranslation2d() {
+    }
+
+    public MutableTranslation2d(double x, double y) {
+        set(x, y);
+    }
+
+    public MutableTranslation2d(edu.wpi.first.math.geometry.Translation2d translation) {
+        set(translation);
+    }
+
+    public MutableTranslation2d(com.team254.lib.geometry.Translation2d translation) {
+        set(translation);
+    }
+
+    public MutableTranslation2d set(double x, double y) {
+        mX = x;
+        mY = y;
+        return this;
+    }
+
+    public MutableTranslation2d set(MutableTranslation2d other) {
+        return set(other.mX, other.mY);
+    }
+
+    public MutableTranslation2d set(edu.wpi.first.math.geometry.Translation2d translation) {
+        return set(translation.getX(), translation.getY());
+    }
+
+    public MutableTranslation2d set(com.team254.lib.geometry.Translation2d translation) {
+        return set(translation.x(), translation.y());
+    }
+
+    public MutableTranslation2d plus(double x, double y) {
+        mX += x;
+        mY += y;
+        return this;
+    }
+
+    public MutableTranslation2d plus(MutableTranslation2d other) {
+        return plus(other.mX, other.mY);
+    }
+
+    public MutableTranslation2d minus(MutableTranslation2d other) {
+        return plus(-other.mX, -other.mY);
+    }
+
+    public MutableTranslation2d rotateBy(double cos, double sin) {
+        return set(mX * cos - mY * sin, mX * sin + mY * cos);
+    }
+
+    public MutableTranslation2d rotateBy(MutableRotation2d rotation) {
+        return rotateBy(rotation.getCos(), rotation.getSin());
+    }
+
+    public MutableTranslation2d rotateBy(edu.wpi.first.math.geometry.Rotation2d rotation) {
+        return rotateBy(rotation.getCos(), rotation.getSin());
+    }
+
+    public MutableTranslation2d scale(double scalar) {
+        mX *= scalar;
+        mY *= scalar;
+        return this;
+    }
+
+    public MutableTranslation2d inverse() {
+        return scale(-1.0);
+    }
+
+    public double getX() {
+        return mX;
+    }
+
+    public double getY() {
+        return mY;
+    }
+
+    public double getNorm() {
+        return Math.hypot(mX, mY);
+    }
+
+    public double getDistance(MutableTranslation2d other) {
+        return Math.hypot(other.mX - mX, other.mY - mY);
+    }
+
+    public boolean epsilonEquals(MutableTranslation2d other, double epsilon) {
+        return Math.abs(mX - other.mX) <= epsilon && Math.abs(mY - other.mY) <= epsilon;
+    }
+
+    public edu.wpi.first.math.geometry.Translation2d toWpilib() {
+        return new edu.wpi.first.math.geometry.Translation2d(mX, mY);
+    }
+
+    public com.team254.lib.geometry.Translation2d toTeam254() {
+        return new com.team254.lib.geometry.Translation2d(mX, mY);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("(%.3f, %.3f)", mX, mY);
+    }
+}
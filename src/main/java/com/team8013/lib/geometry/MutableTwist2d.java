@@ -0,0 +1,121 @@
+package com.team8013.lib.geometry;
+
+/**
+ * Twist (constant curvature motion) that is changed in place. Fields are public
+ * like the WPILib Twist2d.
+ */
+public class MutableTwist2d {
+
+    private static final double kEpsilon = 1e-9;
+
+    public double dx;
+    public double dy;
+    public double dtheta; // radians
+
+    public MutableTwist2d() {
+    }
+
+    public MutableTwist2d(double dx, double dy, double dtheta) {
+        set(dx, dy, dtheta);
+    }
+
+    public MutableTwist2d set(double dx, double dy, double dtheta) {
+        this.dx = dx;
+        this.dy = dy;
+        this.dtheta = dtheta;
+        return this;
+    }
+
+    public MutableTwist2d set(MutableTwist2d other) {
+        return set(other.dx, other.dy, other.dtheta);
+    }
+
+    public MutableTwist2d set(edu.wpi.first.math.geometry.Twist2d twist) {
+        return set(twist.dx, twist.dy, twist.dtheta);
+    }
+
+    public MutableTwist2d set(com.team254.lib.geometry.Twist2d twist) {
+        return set(twist.dx, twist.dy, twist.dtheta);
+    }
+
+    public MutableTwist2d scale(double scalar) {
+        dx *= scalar;
+        dy *= scalar;
+        dtheta *= scalar;
+        return this;
+    }
+
+    /**
+     * Sets this to the twist that moves the identity to the given transform, same
+     * as the 254 Pose2d.log(transform) or the WPILib new Pose2d().log(transform).
+     */
+    public MutableTwist2d setLog(MutablePose2d transform) {
+        MutableTranslation2d translation = transform.getTranslation();
+        MutableRotation2d rotation = transform.getRotation();
+        return setLog(translation.getX(), translation.getY(), rotation.getCos(), rotation.getSin());
+    }
+
+    /**
+     * Sets this to the twist that moves start to end, same as the WPILib
+     * start.log(end).
+     */
+    public MutableTwist2d setLog(MutablePose2d start, MutablePose2d end) {
+        MutableRotation2d startRotation = start.getRotation();
+        MutableRotation2d endRotation = end.getRotation();
+        double cos = startRotation.getCos();
+        double sin = startRotation.getSin();
+
+        // end relative to start
+        double x = end.getTranslation().getX() - start.getTranslation().getX();
+        double y = end.getTranslation().getY() - start.getTranslation().getY();
+        double relativeX = x * cos + y * sin;
+        double relativeY = -x * sin + y * cos;
+        double relativeCos = endRotation.getCos() * cos + endRotation.getSin() * sin;
+        double relativeSin = endRotation.getSin() * cos - endRotation.getCos() * sin;
+        return setLog(relativeX, relativeY, relativeCos, relativeSin);
+    }
+
+    private MutableTwist2d setLog(double x, double y, double cos, double sin) {
+        double theta = Math.atan2(sin, cos);
+        double halfTheta = 0.5 * theta;
+        double cosMinusOne = cos - 1.0;
+        double halfThetaByTanOfHalfTheta;
+        if (Math.abs(cosMinusOne) < kEpsilon) {
+            halfThetaByTanOfHalfTheta = 1.0 - 1.0 / 12.0 * theta * theta;
+        } else {
+            halfThetaByTanOfHalfTheta = -(halfTheta * sin) / cosMinusOne;
+        }
+        // rotate the translation by (halfThetaByTanOfHalfTheta, -halfTheta), not
+        // normalized
+        dx = x * halfThetaByTanOfHalfTheta + y * halfTheta;
+        dy = -x * halfTheta + y * halfThetaByTanOfHalfTheta;
+        dtheta = theta;
+        return this;
+    }
+
+    public double getNorm() {
+        // Common case of dy == 0
+        if (dy == 0.0) {
+            return Math.abs(dx);
+        }
+        return Math.hypot(dx, dy);
+    }
+
+    public boolean epsilonEquals(MutableTwist2d other, double epsilon) {
+        return Math.abs(dx - other.dx) <= epsilon && Math.abs(dy - other.dy) <= epsilon
+                && Math.abs(dtheta - other.dtheta) <= epsilon;
+    }
+
+    public edu.wpi.first.math.geometry.Twist2d toWpilib() {
+        return new edu.wpi.first.math.geometry.Twist2d(dx, dy, dtheta);
+    }
+
+    public com.team254.lib.geometry.Twist2d toTeam254() {
+        return new com.team254.lib.geometry.Twist2d(dx, dy, dtheta);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("(%.3f, %.3f, %.3f rad)", dx, dy, dtheta);
+    }
+}
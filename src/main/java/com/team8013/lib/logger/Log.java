@@ -9,4 +9,8 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Log {
     String header() default "NO_NAME";
+
+    // critical channels keep being sampled every tick while the load governor
+    // has verbose logging shed, everything else is only sampled every few ticks
+    boolean critical() default false;
 }
@@ -0,0 +1,240 @@
+package com.team8013.lib.logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes one log file's rows into the blocks LogFormat describes. Runs on the
+ * logging thread, the control loop only hands over the values it captured.
+ * <p>
+ * The buffers and the Deflater are reused block to block, so steady state
+ * logging doesn't allocate beyond the strings it hasn't seen yet. Not thread
+ * safe.
+ */
+public class LogBlockEncoder {
+
+    private final byte[] mTypes;
+    private final long[] mPrevious; // double bits or int per column, cleared each block
+    private final Map<String, Integer> mDictionary = new HashMap<>();
+    private final Deflater mDeflater;
+    private final CRC32 mCrc = new CRC32();
+
+    private byte[] mBuffer = new byte[1 << 14];
+    private int mSize = 0;
+    private int mRows = 0;
+    private byte[] mCompressed = new byte[1 << 14];
+    private final byte[] mHeader = new byte[LogFormat.kFrameHeaderSize];
+
+    private long mRawBytes = 0;
+    private long mWrittenBytes = 0;
+
+    /**
+     * @param types   LogFormat.kType* per column
+     * @param deflate whether to deflate each block, worth it unless the CPU is
+     *                the bottleneck rather than the drive
+     */
+    public LogBlockEncoder(byte[] types, boolean deflate) {
+        mTypes = types.clone();
+        mPrevious = new long[types.length];
+        mDeflater = deflate ? new Deflater(Deflater.BEST_SPEED) : null;
+    }
+
+    public void writeSchema(OutputStream out, List<String> names) throws IOException {
+        mSize = 0;
+        putVarLong(names.size());
+        for (int c = 0; c < names.size(); c++) {
+            put(mTypes[c]);
+            putString(names.get(c));
+        }
+        writeFrame(out, LogFormat.kSchemaFrame, 0, false);
+        mSize = 0;
+    }
+
+    /**
+     * @param values  every column but the strings, see LogEntry
+     * @param strings the string columns
+     */
+    public void addRow(double[] values, String[] strings) {
+        int columns = mTypes.length;
+        boolean nulls = false;
+        for (int c = 0; c < columns; c++) {
+            nulls |= isNull(values, strings, c);
+        }
+        put(nulls ? 1 : 0);
+        if (nulls) {
+            for (int c = 0; c < columns; c += 8) {
+                int bits = 0;
+                for (int b = 0; b < 8 && c + b < columns; b++) {
+                    if (isNull(values, strings, c + b)) {
+                        bits |= 1 << b;
+                    }
+                }
+                put(bits);
+            }
+        }
+
+        for (int c = 0; c < columns; c++) {
+            if (isNull(values, strings, c)) {
+                continue;
+            }
+            switch (mTypes[c]) {
+                case LogFormat.kTypeDouble:
+                    putDouble(c, Double.doubleToRawLongBits(values[c]));
+                    break;
+                case LogFormat.kTypeInt:
+                    long x = (long) values[c];
+                    putVarLong(LogFormat.zigzag(x - mPrevious[c]));
+                    mPrevious[c] = x;
+                    break;
+                case LogFormat.kTypeBoolean:
+                    put(values[c] != 0.0 ? 1 : 0);
+                    break;
+                default:
+                    String string = strings[c];
+                    Integer id = mDictionary.get(string);
+                    if (id != null) {
+                        putVarLong(id + 1);
+                    } else {
+                        putVarLong(0);
+                        putString(string);
+                        mDictionary.put(string, mDictionary.size());
+                    }
+                    break;
+            }
+        }
+        mRows++;
+    }
+
+    private boolean isNull(double[] values, String[] strings, int column) {
+        return mTypes[column] == LogFormat.kTypeString ? strings[column] == null
+                : LogFormat.isNull(values[column], mTypes[column]);
+    }
+
+    private void putDouble(int column, long bits) {
+        long xor = bits ^ mPrevious[column];
+        mPrevious[column] = bits;
+        if (xor == 0) {
+            put(LogFormat.kDoubleUnchanged);
+            return;
+        }
+        int leading = Long.numberOfLeadingZeros(xor) / 8;
+        int trailing = Long.numberOfTrailingZeros(xor) / 8;
+        put((leading << 4) | trailing);
+        long middle = xor >>> (8 * trailing);
+        for (int i = 0; i < 8 - leading - trailing; i++) {
+            put((int) (middle >>> (8 * i)));
+        }
+    }
+
+    /**
+     * @return rows waiting for writeBlock
+     */
+    public int getRows() {
+        return mRows;
+    }
+
+    /**
+     * Frames and writes the rows added since the last block, then starts the
+     * next block fresh.
+     */
+    public void writeBlock(OutputStream out) throws IOException {
+        if (mRows == 0) {
+            return;
+        }
+        writeFrame(out, LogFormat.kRowsFrame, mRows, mDeflater != null);
+        mSize = 0;
+        mRows = 0;
+        Arrays.fill(mPrevious, 0L);
+        mDictionary.clear();
+    }
+
+    private void writeFrame(OutputStream out, byte type, int rows, boolean deflate) throws IOException {
+        byte[] payload = mBuffer;
+        int length = mSize;
+        byte flags = 0;
+        if (deflate) {
+            mDeflater.reset();
+            mDeflater.setInput(mBuffer, 0, mSize);
+            mDeflater.finish();
+            int compressed = 0;
+            while (!mDeflater.finished()) {
+                if (compressed == mCompressed.length) {
+                    mCompressed = Arrays.copyOf(mCompressed, mCompressed.length * 2);
+                }
+                compressed += mDeflater.deflate(mCompressed, compressed, mCompressed.length - compressed);
+            }
+            // noise doesn't compress, keep the block raw if deflating didn't help
+            if (compressed < mSize) {
+                payload = mCompressed;
+                length = compressed;
+                flags = LogFormat.kFlagDeflated;
+            }
+        }
+        putInt(mHeader, 0, LogFormat.kMagic);
+        mHeader[4] = type;
+        mHeader[5] = flags;
+        putInt(mHeader, 6, rows);
+        putInt(mHeader, 10, mSize);
+        putInt(mHeader, 14, length);
+        mCrc.reset();
+        mCrc.update(mHeader, LogFormat.kCrcHeaderOffset, LogFormat.kCrcHeaderLength);
+        mCrc.update(payload, 0, length);
+        putInt(mHeader, 18, (int) mCrc.getValue());
+
+        out.write(mHeader);
+        out.write(payload, 0, length);
+        mRawBytes += mSize;
+        mWrittenBytes += LogFormat.kFrameHeaderSize + length;
+    }
+
+    public long getRawBytes() {
+        return mRawBytes;
+    }
+
+    public long getWrittenBytes() {
+        return mWrittenBytes;
+    }
+
+    public void close() {
+        if (mDeflater != null) {
+            mDeflater.end();
+        }
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private void put(int b) {
+        if (mSize == mBuffer.length) {
+            mBuffer = Arrays.copyOf(mBuffer, mBuffer.length * 2);
+        }
+        mBuffer[mSize++] = (byte) b;
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            put((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        put((int) value);
+    }
+
+    private void putString(String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        putVarLong(bytes.length);
+        for (byte b : bytes) {
+            put(b);
+        }
+    }
+}
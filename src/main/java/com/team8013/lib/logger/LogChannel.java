@@ -0,0 +1,128 @@
+package com.team8013.lib.logger;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One field or no-arg method marked with {@link Log}, bound to its object as a
+ * method handle adapted to return a primitive double (or a String), so sampling
+ * it doesn't box. Shared by the file logger and the telemetry stream.
+ * <p>
+ * What the getter itself does is still paid on every sample, so logged getters
+ * should only return what readPeriodicInputs already stored.
+ */
+public final class LogChannel {
+
+    // How each loggable type is stored, see LogFormat
+    public static final Map<Class<?>, Byte> kTypes = Map.of(
+            int.class, LogFormat.kTypeInt,
+            boolean.class, LogFormat.kTypeBoolean,
+            String.class, LogFormat.kTypeString,
+            double.class, LogFormat.kTypeDouble);
+
+    private static final MethodHandle kBooleanToDouble;
+
+    static {
+        try {
+            kBooleanToDouble = MethodHandles.lookup().findStatic(LogChannel.class, "toDouble",
+                    MethodType.methodType(double.class, boolean.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    public final String name;
+    public final byte type;
+    public final boolean critical;
+    // ()double for doubles, ints and booleans, ()String for strings
+    private final MethodHandle mGetter;
+
+    private LogChannel(String name, byte type, boolean critical, MethodHandle getter) {
+        this.name = name;
+        this.type = type;
+        this.critical = critical;
+        if (type == LogFormat.kTypeString) {
+            mGetter = getter.asType(MethodType.methodType(String.class));
+        } else if (type == LogFormat.kTypeBoolean) {
+            mGetter = MethodHandles.filterReturnValue(getter.asType(MethodType.methodType(boolean.class)),
+                    kBooleanToDouble);
+        } else {
+            mGetter = getter.asType(MethodType.methodType(double.class));
+        }
+    }
+
+    /**
+     * @return every loggable {@link Log} method then field of the object, in
+     *         declaration order
+     */
+    public static List<LogChannel> bind(Class<?> loggedClass, Object loggedObject) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        List<LogChannel> channels = new ArrayList<>();
+        for (Method method : loggedClass.getDeclaredMethods()) {
+            Byte type = kTypes.get(method.getReturnType());
+            if (!method.isAnnotationPresent(Log.class) || type == null || method.getParameterCount() > 0) {
+                continue;
+            }
+            method.setAccessible(true);
+            try {
+                channels.add(new LogChannel(method.getName(), type, method.getAnnotation(Log.class).critical(),
+                        bindTo(lookup.unreflect(method), method.getModifiers(), loggedObject)));
+            } catch (IllegalAccessException e) {
+                System.err.println("Couldn't log " + method.getName() + ": " + e.getMessage());
+            }
+        }
+
+        for (Field field : loggedClass.getDeclaredFields()) {
+            Byte type = kTypes.get(field.getType());
+            if (!field.isAnnotationPresent(Log.class) || type == null) {
+                continue;
+            }
+            field.setAccessible(true);
+            try {
+                channels.add(new LogChannel(field.getName(), type, field.getAnnotation(Log.class).critical(),
+                        bindTo(lookup.unreflectGetter(field), field.getModifiers(), loggedObject)));
+            } catch (IllegalAccessException e) {
+                System.err.println("Couldn't log " + field.getName() + ": " + e.getMessage());
+            }
+        }
+        return channels;
+    }
+
+    private static MethodHandle bindTo(MethodHandle handle, int modifiers, Object loggedObject) {
+        return Modifier.isStatic(modifiers) ? handle : handle.bindTo(loggedObject);
+    }
+
+    private static double toDouble(boolean value) {
+        return value ? 1.0 : 0.0;
+    }
+
+    /**
+     * @return the value of a double, int or boolean (1 or 0) channel, NaN if the
+     *         getter threw
+     */
+    public double getAsDouble() {
+        try {
+            return (double) mGetter.invokeExact();
+        } catch (Throwable e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * @return the value of a string channel, null if the getter threw
+     */
+    public String getString() {
+        try {
+            return (String) mGetter.invokeExact();
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+}
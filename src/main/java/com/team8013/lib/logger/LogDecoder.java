@@ -0,0 +1,276 @@
+package com.team8013.lib.logger;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Turns the compressed logs LogStorage writes back into the CSV it would have
+ * written uncompressed, value for value. Blocks that fail their checksum or
+ * were cut off are skipped and counted, the rest of the file still decodes.
+ *
+ * <pre>
+ * ./gradlew decodeLogs --args="path/to/robotlogs"
+ * </pre>
+ *
+ * Each FILE_LOGS.bin is written out as FILE_LOGS.csv next to it. LogQuery
+ * does the same on its own when pointed at compressed logs.
+ */
+public class LogDecoder {
+
+    public static class Result {
+        public long blocks = 0;
+        public long badBlocks = 0;
+        public long rows = 0;
+        public long bytes = 0; // compressed
+        public long csvBytes = 0;
+    }
+
+    private LogDecoder() {
+    }
+
+    /**
+     * @return the CSV for a compressed log, decoding it first if there isn't
+     *         one newer than the log
+     */
+    public static Path getOrDecode(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        Path csv = file.resolveSibling(name.substring(0, name.length() - LogFormat.kSuffix.length())
+                + LogSession.kLogSuffix);
+        if (Files.isRegularFile(csv)
+                && Files.getLastModifiedTime(csv).compareTo(Files.getLastModifiedTime(file)) >= 0) {
+            return csv;
+        }
+        try {
+            decode(file, csv);
+        } catch (IOException e) {
+            // read only archive
+            csv = Files.createTempFile(name, ".csv");
+            csv.toFile().deleteOnExit();
+            decode(file, csv);
+        }
+        return csv;
+    }
+
+    public static Result decode(Path in, Path out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(in));
+        Result result = new Result();
+        result.bytes = buffer.limit();
+        CRC32 crc = new CRC32();
+        Inflater inflater = new Inflater();
+
+        byte[] types = null;
+        String[] names = null;
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(out.toFile()))) {
+            int position = 0;
+            while (position + LogFormat.kFrameHeaderSize <= buffer.limit()) {
+                if (buffer.getInt(position) != LogFormat.kMagic) {
+                    position++;
+                    continue;
+                }
+                byte type = buffer.get(position + 4);
+                byte flags = buffer.get(position + 5);
+                int rows = buffer.getInt(position + 6);
+                int rawLength = buffer.getInt(position + 10);
+                int length = buffer.getInt(position + 14);
+                int expected = buffer.getInt(position + 18);
+                int start = position + LogFormat.kFrameHeaderSize;
+                if (length < 0 || rawLength < 0 || rows < 0 || start + length > buffer.limit()) {
+                    // cut off by a power loss, or a magic that's really data
+                    result.badBlocks++;
+                    position++;
+                    continue;
+                }
+                crc.reset();
+                crc.update(buffer.array(), position + LogFormat.kCrcHeaderOffset, LogFormat.kCrcHeaderLength);
+                crc.update(buffer.array(), start, length);
+                if ((int) crc.getValue() != expected) {
+                    result.badBlocks++;
+                    position++;
+                    continue;
+                }
+                position = start + length;
+
+                byte[] payload = new byte[rawLength];
+                if ((flags & LogFormat.kFlagDeflated) != 0) {
+                    inflater.reset();
+                    inflater.setInput(buffer.array(), start, length);
+                    try {
+                        if (inflater.inflate(payload) != rawLength) {
+                            result.badBlocks++;
+                            continue;
+                        }
+                    } catch (DataFormatException e) {
+                        result.badBlocks++;
+                        continue;
+                    }
+                } else {
+                    System.arraycopy(buffer.array(), start, payload, 0, Math.min(length, rawLength));
+                }
+                ByteBuffer data = ByteBuffer.wrap(payload);
+
+                if (type == LogFormat.kSchemaFrame) {
+                    int columns = (int) getVarLong(data);
+                    types = new byte[columns];
+                    names = new String[columns];
+                    for (int c = 0; c < columns; c++) {
+                        types[c] = data.get();
+                        names[c] = getString(data);
+                    }
+                    writer.write(String.join(",", names));
+                    writer.write("\n");
+                } else if (type == LogFormat.kRowsFrame && types != null) {
+                    try {
+                        // decode the whole block before writing any of it
+                        List<String> lines = decodeRows(data, rows, types);
+                        for (String line : lines) {
+                            writer.write(line);
+                            writer.write("\n");
+                            result.csvBytes += line.length() + 1;
+                        }
+                        result.rows += rows;
+                        result.blocks++;
+                    } catch (RuntimeException e) {
+                        result.badBlocks++;
+                    }
+                } else {
+                    result.badBlocks++; // rows before a good schema
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+        return result;
+    }
+
+    private static List<String> decodeRows(ByteBuffer data, int rows, byte[] types) {
+        int columns = types.length;
+        long[] previous = new long[columns];
+        List<String> dictionary = new ArrayList<>();
+        boolean[] isNull = new boolean[columns];
+        List<String> lines = new ArrayList<>(rows);
+        StringBuilder line = new StringBuilder();
+
+        for (int r = 0; r < rows; r++) {
+            boolean nulls = data.get() != 0;
+            for (int c = 0; c < columns; c += 8) {
+                int bits = nulls ? data.get() & 0xFF : 0;
+                for (int b = 0; b < 8 && c + b < columns; b++) {
+                    isNull[c + b] = (bits & (1 << b)) != 0;
+                }
+            }
+
+            line.setLength(0);
+            for (int c = 0; c < columns; c++) {
+                if (c > 0) {
+                    line.append(',');
+                }
+                if (isNull[c]) {
+                    continue;
+                }
+                Object value;
+                switch (types[c]) {
+                    case LogFormat.kTypeDouble:
+                        int header = data.get() & 0xFF;
+                        if (header != LogFormat.kDoubleUnchanged) {
+                            int leading = header >>> 4;
+                            int trailing = header & 0xF;
+                            long middle = 0;
+                            for (int i = 0; i < 8 - leading - trailing; i++) {
+                                middle |= (data.get() & 0xFFL) << (8 * i);
+                            }
+                            previous[c] ^= middle << (8 * trailing);
+                        }
+                        value = Double.longBitsToDouble(previous[c]);
+                        break;
+                    case LogFormat.kTypeInt:
+                        previous[c] += LogFormat.unzigzag(getVarLong(data));
+                        value = (int) previous[c];
+                        break;
+                    case LogFormat.kTypeBoolean:
+                        value = data.get() != 0;
+                        break;
+                    default:
+                        int id = (int) getVarLong(data);
+                        if (id == 0) {
+                            value = getString(data);
+                            dictionary.add((String) value);
+                        } else {
+                            value = dictionary.get(id - 1);
+                        }
+                        break;
+                }
+                line.append(LogFormat.format(value, types[c]));
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    private static long getVarLong(ByteBuffer data) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = data.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new IllegalStateException("Bad varint");
+            }
+        }
+    }
+
+    private static String getString(ByteBuffer data) {
+        int length = (int) getVarLong(data);
+        byte[] bytes = new byte[length];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: LogDecoder <log dirs or .bin files>");
+            System.exit(1);
+        }
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            try (Stream<Path> walk = Files.walk(Path.of(arg))) {
+                files.addAll(walk.filter(Files::isRegularFile)
+                        .filter((f) -> f.getFileName().toString().endsWith(LogFormat.kSuffix))
+                        .sorted()
+                        .collect(Collectors.toList()));
+            }
+        }
+
+        long bytes = 0;
+        long csvBytes = 0;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            Path csv = file.resolveSibling(name.substring(0, name.length() - LogFormat.kSuffix.length())
+                    + LogSession.kLogSuffix);
+            Result result = decode(file, csv);
+            bytes += result.bytes;
+            csvBytes += result.csvBytes;
+            System.out.println(String.format(Locale.ROOT, "%s: %d rows in %d blocks%s, %.1fx", file,
+                    result.rows, result.blocks, result.badBlocks > 0 ? ", " + result.badBlocks + " bad" : "",
+                    (double) result.csvBytes / Math.max(1, result.bytes)));
+        }
+        System.out.println(String.format(Locale.ROOT, "%d files, %.1f MB compressed, %.1f MB as CSV", files.size(),
+                bytes / 1e6, csvBytes / 1e6));
+    }
+}
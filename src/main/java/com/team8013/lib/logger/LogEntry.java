@@ -1,20 +1,48 @@
 package com.team8013.lib.logger;
 
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * One row for a log file, filled on the control loop and written on the
+ * logging loop. Entries are preallocated per logged object and handed back to
+ * its pool once written, so queueing a row doesn't allocate.
+ * <p>
+ * Doubles, ints and booleans (1 or 0) are all held as doubles, strings
+ * separately. A NaN int or boolean and a null string are logged as null.
+ */
 public class LogEntry {
 
-    private int target;
-    private String[] values;
+    private final int target;
+    private final double[] values;
+    private final String[] strings;
+    private final BlockingQueue<LogEntry> pool;
 
-    public LogEntry(int target, String[] values){
+    public LogEntry(int target, int columns, BlockingQueue<LogEntry> pool) {
         this.target = target;
-        this.values = values;
+        this.values = new double[columns];
+        this.strings = new String[columns];
+        this.pool = pool;
+    }
+
+    public void set(double[] values, String[] strings) {
+        System.arraycopy(values, 0, this.values, 0, this.values.length);
+        System.arraycopy(strings, 0, this.strings, 0, this.strings.length);
     }
 
     public int getTarget() {
         return target;
     }
 
-    public String[] getValues() {
+    public double[] getValues() {
         return values;
     }
+
+    public String[] getStrings() {
+        return strings;
+    }
+
+    // back to the pool once written or thrown away
+    public void release() {
+        pool.offer(this);
+    }
 }
@@ -0,0 +1,173 @@
+package com.team8013.lib.logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file opened through LogFileManager. Writing only copies into memory, the
+ * manager's sync thread moves what's been written to the drive and forces it
+ * down in batches, so the logging loop never waits on the drive.
+ * <p>
+ * The file is grown kPreallocateBytes at a time ahead of the data, so a sync
+ * doesn't have to allocate on the drive as well, and cut back to the data by
+ * the sync thread once it's closed. After a crash LogFileManager.recover trims
+ * what's left over.
+ */
+public class LogFile extends OutputStream {
+
+    private final Path mPath;
+    private final FileChannel mChannel;
+    private final long mOpenedNanos = System.nanoTime();
+    // the logging thread fills mPending, the sync thread swaps it out and drains mWriting
+    private ByteBuffer mPending = ByteBuffer.allocate(LogFileManager.kInitialBufferBytes);
+    private ByteBuffer mWriting = ByteBuffer.allocate(LogFileManager.kInitialBufferBytes);
+    private final Object mIoLock = new Object();
+
+    private long mSize = 0; // bytes handed to write
+    private long mPosition = 0; // bytes on the drive
+    private long mAllocated = 0;
+    private long mDroppedBytes = 0;
+    private boolean mClosed = false;
+    private volatile boolean mFailed = false;
+
+    LogFile(Path path) throws IOException {
+        mPath = path;
+        mChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public void write(int b) {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes, int offset, int length) {
+        if (mClosed || mFailed) {
+            mDroppedBytes += length;
+            return;
+        }
+        if (mPending.remaining() < length) {
+            int needed = mPending.position() + length;
+            if (needed > LogFileManager.kMaxBufferedBytes) {
+                // the drive has stalled, keep what's buffered and drop the rest
+                mDroppedBytes += length;
+                return;
+            }
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(needed, Math.min(mPending.capacity() * 2,
+                    LogFileManager.kMaxBufferedBytes)));
+            mPending.flip();
+            grown.put(mPending);
+            mPending = grown;
+        }
+        mPending.put(bytes, offset, length);
+        mSize += length;
+    }
+
+    /**
+     * Writes out everything written so far and forces it to the drive. Called
+     * from the sync thread, and from finish.
+     */
+    void sync() throws IOException {
+        synchronized (mIoLock) {
+            if (!mChannel.isOpen()) {
+                return;
+            }
+            synchronized (this) {
+                ByteBuffer filled = mPending;
+                mPending = mWriting;
+                mWriting = filled;
+                mPending.clear();
+            }
+            mWriting.flip();
+            if (!mWriting.hasRemaining()) {
+                return;
+            }
+            try {
+                long end = mPosition + mWriting.remaining();
+                if (end > mAllocated) {
+                    // extend with a byte at the new end, filesystems without sparse files allocate up to it
+                    mAllocated = end + LogFileManager.kPreallocateBytes;
+                    mChannel.write(ByteBuffer.allocate(1), mAllocated - 1);
+                }
+                while (mWriting.hasRemaining()) {
+                    mPosition += mChannel.write(mWriting, mPosition);
+                }
+                mChannel.force(false);
+            } catch (IOException e) {
+                mFailed = true;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Stops taking writes. What's left is written out by the sync thread, so
+     * closing never waits on the drive.
+     */
+    @Override
+    public synchronized void close() {
+        mClosed = true;
+    }
+
+    /**
+     * Syncs what's left and trims the preallocated space off the end. Called
+     * from the sync thread once the file is closed.
+     */
+    void finish() {
+        synchronized (mIoLock) {
+            if (!mChannel.isOpen()) {
+                return;
+            }
+            try {
+                if (!mFailed) {
+                    sync();
+                    mChannel.truncate(mPosition);
+                    mChannel.force(true);
+                }
+            } catch (IOException e) {
+                System.out.println("Unable to finish writing " + mPath + ": " + e.getMessage());
+            } finally {
+                try {
+                    mChannel.close();
+                } catch (IOException e) {
+                    // already gone with the drive
+                }
+            }
+        }
+    }
+
+    public Path getPath() {
+        return mPath;
+    }
+
+    /**
+     * @return bytes written, whether or not they've reached the drive yet
+     */
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    public double getAgeSeconds() {
+        return (System.nanoTime() - mOpenedNanos) / 1e9;
+    }
+
+    public synchronized long getDroppedBytes() {
+        return mDroppedBytes;
+    }
+
+    public synchronized boolean isClosed() {
+        return mClosed;
+    }
+
+    /**
+     * @return whether writing to the drive has failed, e.g. it was unplugged
+     */
+    public boolean hasFailed() {
+        return mFailed;
+    }
+}
@@ -0,0 +1,484 @@
+package com.team8013.lib.logger;
+
+import java.io.File;
+import java.io.IOError;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Owns the files LoggingSystem writes to and the drive they're on.
+ * <p>
+ * A background thread syncs every open LogFile each kSyncPeriodMillis,
+ * writing out what the logging loop buffered and forcing it to the drive in
+ * one go, and keeps an eye on how long that takes and how much space is left.
+ * Closed files are finished (synced, trimmed and closed) on that thread too,
+ * so rotating to a new file or ending a session never waits on the drive.
+ * If a sync fails (the drive was pulled or went read only) or the drive is
+ * nearly full, the manager reports unhealthy and LoggingSystem starts a new
+ * session on whichever drive comes back instead of giving up on logging.
+ * <p>
+ * Sessions are numbered from a sessions.txt index in the log directory rather
+ * than by listing it. A session is added to the index when it's opened and
+ * again when it's closed, and the files of one that was never closed (the
+ * robot lost power) are trimmed back to their last complete row or block the
+ * next time a session starts on that drive.
+ */
+public class LogFileManager {
+
+    // Constants
+    public static final int kInitialBufferBytes = 1 << 16;
+    // per file, past this a stalled drive costs data rather than memory
+    public static final int kMaxBufferedBytes = 8 << 20;
+    public static final long kPreallocateBytes = 4 << 20;
+    private static final long kSyncPeriodMillis = 500;
+    private static final double kFreeSpaceCheckPeriod = 5.0; // s
+    public static final long kMinFreeBytes = 64L << 20;
+    public static final String kSessionIndexFile = "sessions.txt";
+    private static final String kProbeFile = ".probe";
+
+    private final List<LogFile> mFiles = new ArrayList<>();
+    // ended sessions the sync thread still has to mark closed, guarded by mFiles
+    private final List<ClosingSession> mClosingSessions = new ArrayList<>();
+    // dropped by files already taken out of mFiles, guarded by mFiles
+    private long mClosedDroppedBytes = 0;
+    // endSession wakes the sync thread so an ended session reaches the drive right away
+    private final Object mWakeLock = new Object();
+    private boolean mWakeRequested = false;
+    private Thread mSyncThread;
+
+    // session being written, for the index
+    private File mBaseDirectory;
+    private int mSessionNumber = 0;
+
+    private volatile boolean mHealthy = true;
+    private volatile long mFreeBytes = -1;
+    private volatile double mSyncMillis = 0.0;
+    private volatile double mMaxSyncMillis = 0.0;
+    private volatile double mProbeMillis = 0.0;
+    private volatile double mLastFreeSpaceCheck = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Checks a drive can take logs by writing, syncing and deleting a file in
+     * the log directory on it.
+     *
+     * @param directory the log directory, e.g. /media/sda1/robotlogs/
+     */
+    public boolean probe(File directory) {
+        // nothing is mounted there
+        if (!directory.getParentFile().isDirectory()) {
+            return false;
+        }
+        System.out.println("Checking " + directory + " for IO errors");
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                System.out.println(directory + " can't be created, potentially unmounted incorrectly.");
+                return false;
+            }
+            Path probe = directory.toPath().resolve(kProbeFile);
+            long start = System.nanoTime();
+            try (FileChannel channel = FileChannel.open(probe, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(ByteBuffer.wrap(new byte[4096]));
+                channel.force(true);
+            }
+            Files.delete(probe);
+            mProbeMillis = (System.nanoTime() - start) / 1e6;
+
+            long free = directory.getUsableSpace();
+            if (free < kMinFreeBytes) {
+                System.out.println(directory + " only has " + free / (1 << 20) + " MB free.");
+                return false;
+            }
+            System.out.println(String.format("%s wrote in %.1f ms, %d MB free", directory, mProbeMillis,
+                    free / (1 << 20)));
+            return true;
+        } catch (IOException | IOError e) {
+            System.out.println(directory + " has an IO error, potentially unmounted incorrectly: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Numbers and creates the next session's directory, recovering the files
+     * of any session that wasn't closed.
+     */
+    public synchronized File startSession(File baseDirectory, String name) throws IOException {
+        Path index = baseDirectory.toPath().resolve(kSessionIndexFile);
+        int last = 0;
+        // sessions opened but not closed, by number
+        Map<Integer, String> unclosed = new LinkedHashMap<>();
+        if (Files.isRegularFile(index)) {
+            for (String line : Files.readAllLines(index, StandardCharsets.ISO_8859_1)) {
+                String[] parts = line.split(" ", 3);
+                try {
+                    int number = Integer.parseInt(parts[1]);
+                    if (parts[0].equals("open") && parts.length == 3) {
+                        unclosed.put(number, parts[2]);
+                        last = Math.max(last, number);
+                    } else if (parts[0].equals("close")) {
+                        unclosed.remove(number);
+                    }
+                } catch (RuntimeException e) {
+                    // a line cut off by a power loss
+                }
+            }
+        } else {
+            last = countSessions(baseDirectory);
+        }
+
+        synchronized (mFiles) {
+            // the sync thread is still finishing these, they aren't crashed
+            for (ClosingSession session : mClosingSessions) {
+                if (session.baseDirectory.equals(baseDirectory)) {
+                    unclosed.remove(session.number);
+                }
+            }
+        }
+        for (String directory : unclosed.values()) {
+            recoverSession(baseDirectory.toPath().resolve(directory));
+        }
+
+        mBaseDirectory = baseDirectory;
+        mSessionNumber = last + 1;
+        String directoryName = "(" + mSessionNumber + ") " + name;
+        File session = new File(baseDirectory, directoryName);
+        session.mkdir();
+        appendToIndex(baseDirectory, "open " + mSessionNumber + " " + directoryName);
+
+        mHealthy = true;
+        mLastFreeSpaceCheck = Double.NEGATIVE_INFINITY;
+        return session;
+    }
+
+    /**
+     * For the sessions that were logged before there was an index.
+     */
+    private static int countSessions(File baseDirectory) {
+        int maxNum = 0;
+        File[] entries = baseDirectory.listFiles();
+        if (entries == null) {
+            return 0;
+        }
+        for (final File entry : entries) {
+            try {
+                if (!entry.isDirectory()) {
+                    continue;
+                }
+                String directory_name = entry.getName();
+                int char_index = directory_name.indexOf(")");
+                int num = Integer.parseInt(directory_name.substring(1, char_index));
+                if (num > maxNum) {
+                    maxNum = num;
+                }
+            } catch (Exception e) {
+                // Files that are not numbers are expected and ignored
+            }
+        }
+        return maxNum;
+    }
+
+    /**
+     * Marks the session closed in the index, once its files are closed. The
+     * sync thread writes the mark after finishing those files, so it's never
+     * ahead of the data.
+     */
+    public synchronized void endSession() {
+        if (mBaseDirectory == null) {
+            return;
+        }
+        synchronized (mFiles) {
+            mClosingSessions.add(new ClosingSession(mBaseDirectory, mSessionNumber));
+        }
+        mBaseDirectory = null;
+        startSyncThread();
+        synchronized (mWakeLock) {
+            mWakeRequested = true;
+            mWakeLock.notifyAll();
+        }
+    }
+
+    /**
+     * For logs that aren't numbered sessions, e.g. benchmarking in sim.
+     */
+    public synchronized File startSession(File directory) {
+        directory.mkdirs();
+        mBaseDirectory = null;
+        mHealthy = true;
+        mLastFreeSpaceCheck = Double.NEGATIVE_INFINITY;
+        return directory;
+    }
+
+    private static void appendToIndex(File baseDirectory, String line) throws IOException {
+        try (FileChannel channel = FileChannel.open(baseDirectory.toPath().resolve(kSessionIndexFile),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.ISO_8859_1)));
+            channel.force(true);
+        }
+    }
+
+    private static void recoverSession(Path directory) {
+        File[] files = directory.toFile().listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(LogSession.kLogSuffix) && !name.endsWith(LogFormat.kSuffix)) {
+                continue;
+            }
+            try {
+                recover(file.toPath());
+            } catch (IOException e) {
+                System.out.println("Unable to recover " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Trims a log that wasn't closed back to its last complete row, or block
+     * for a compressed log, taking the preallocated space with it.
+     *
+     * @return bytes trimmed
+     */
+    public static long recover(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long end = file.getFileName().toString().endsWith(LogFormat.kSuffix) ? findLastFrame(channel, size)
+                    : findLastLine(channel, size);
+            if (end >= size) {
+                return 0;
+            }
+            channel.truncate(end);
+            channel.force(true);
+            System.out.println("Recovered " + file + ", trimmed " + (size - end) + " bytes");
+            return size - end;
+        }
+    }
+
+    // just past the last newline
+    private static long findLastLine(FileChannel channel, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        long end = size;
+        while (end > 0) {
+            long start = Math.max(0, end - buffer.capacity());
+            buffer.clear();
+            buffer.limit((int) (end - start));
+            readFully(channel, buffer, start);
+            for (int i = buffer.limit() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    // just past the last whole frame, see LogFormat
+    private static long findLastFrame(FileChannel channel, long size) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(LogFormat.kFrameHeaderSize);
+        long position = 0;
+        boolean torn = false;
+        while (position + LogFormat.kFrameHeaderSize <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            if (header.getInt(0) != LogFormat.kMagic) {
+                break;
+            }
+            long end = position + LogFormat.kFrameHeaderSize + header.getInt(14);
+            if (end < position + LogFormat.kFrameHeaderSize || end > size) {
+                torn = true;
+                break;
+            }
+            position = end;
+        }
+        if (position >= size || torn) {
+            return position;
+        }
+        // what's left should be preallocated zeros or a header cut short, anything
+        // else is damage the decoder can skip past and isn't ours to cut off
+        ByteBuffer next = ByteBuffer.allocate(1);
+        readFully(channel, next, position);
+        boolean partialHeader = position + LogFormat.kFrameHeaderSize > size && next.get(0) == 0x4C;
+        return next.get(0) == 0 || partialHeader ? position : size;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Opens a file that's synced from the background thread.
+     */
+    public LogFile open(Path path) throws IOException {
+        LogFile file = new LogFile(path);
+        synchronized (mFiles) {
+            mFiles.add(file);
+        }
+        startSyncThread();
+        return file;
+    }
+
+    private synchronized void startSyncThread() {
+        if (mSyncThread != null) {
+            return;
+        }
+        mSyncThread = new Thread(this::runSync, "LogFileSync");
+        mSyncThread.setDaemon(true);
+        mSyncThread.start();
+    }
+
+    private void runSync() {
+        List<LogFile> files = new ArrayList<>();
+        List<LogFile> closed = new ArrayList<>();
+        List<ClosingSession> closing = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                synchronized (mWakeLock) {
+                    if (!mWakeRequested) {
+                        mWakeLock.wait(kSyncPeriodMillis);
+                    }
+                    mWakeRequested = false;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            synchronized (mFiles) {
+                files.clear();
+                closed.clear();
+                for (LogFile file : mFiles) {
+                    (file.isClosed() ? closed : files).add(file);
+                }
+                mFiles.removeAll(closed);
+                for (LogFile file : closed) {
+                    mClosedDroppedBytes += file.getDroppedBytes();
+                }
+                // only sessions ended after their files were closed, so those are in closed
+                closing.clear();
+                closing.addAll(mClosingSessions);
+            }
+
+            long start = System.nanoTime();
+            for (LogFile file : files) {
+                if (file.hasFailed()) {
+                    continue;
+                }
+                try {
+                    file.sync();
+                } catch (IOException e) {
+                    if (mHealthy) {
+                        System.out.println("Unable to write " + file.getPath() + ": " + e.getMessage());
+                    }
+                    mHealthy = false;
+                }
+            }
+            mSyncMillis = (System.nanoTime() - start) / 1e6;
+            mMaxSyncMillis = Math.max(mMaxSyncMillis, mSyncMillis);
+
+            for (LogFile file : closed) {
+                file.finish();
+            }
+            for (ClosingSession session : closing) {
+                try {
+                    appendToIndex(session.baseDirectory, "close " + session.number);
+                } catch (IOException e) {
+                    System.out.println("Unable to close session " + session.number + " in the index: "
+                            + e.getMessage());
+                }
+            }
+            synchronized (mFiles) {
+                mClosingSessions.removeAll(closing);
+            }
+
+            double now = System.nanoTime() / 1e9;
+            if (now - mLastFreeSpaceCheck >= kFreeSpaceCheckPeriod) {
+                mLastFreeSpaceCheck = now;
+                checkFreeSpace(files);
+            }
+        }
+    }
+
+    private void checkFreeSpace(List<LogFile> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+        // zero once the drive is gone
+        mFreeBytes = files.get(0).getPath().toFile().getUsableSpace();
+        if (mFreeBytes < kMinFreeBytes && mHealthy) {
+            System.out.println("Log drive has " + mFreeBytes / (1 << 20) + " MB left");
+            mHealthy = false;
+        }
+    }
+
+    /**
+     * @return false once a sync has failed or the drive is nearly full, until
+     *         the next session starts
+     */
+    public boolean isHealthy() {
+        return mHealthy;
+    }
+
+    /**
+     * @return bytes free on the drive being logged to, -1 before it's checked
+     */
+    public long getFreeBytes() {
+        return mFreeBytes;
+    }
+
+    /**
+     * @return how long the last sync of every file took
+     */
+    public double getSyncMillis() {
+        return mSyncMillis;
+    }
+
+    public double getMaxSyncMillis() {
+        return mMaxSyncMillis;
+    }
+
+    /**
+     * @return how long the last drive probe took to write and sync
+     */
+    public double getProbeMillis() {
+        return mProbeMillis;
+    }
+
+    /**
+     * @return bytes dropped across every file opened so far because the drive
+     *         was failing or couldn't keep up
+     */
+    public long getDroppedBytes() {
+        synchronized (mFiles) {
+            long dropped = mClosedDroppedBytes;
+            for (LogFile file : mFiles) {
+                dropped += file.getDroppedBytes();
+            }
+            return dropped;
+        }
+    }
+
+    private static class ClosingSession {
+        final File baseDirectory;
+        final int number;
+
+        ClosingSession(File baseDirectory, int number) {
+            this.baseDirectory = baseDirectory;
+            this.number = number;
+        }
+    }
+}
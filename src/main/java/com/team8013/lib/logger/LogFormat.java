@@ -0,0 +1,93 @@
+package com.team8013.lib.logger;
+
+/**
+ * Layout of the compressed log files, shared by LogBlockEncoder on the robot
+ * and LogDecoder on the desktop. Only uses the standard library so the decoder
+ * runs anywhere.
+ * <p>
+ * A file is a run of frames, each {magic, frame type, flags, rows, raw length,
+ * length, CRC32} then the payload, big endian. The CRC covers everything
+ * between the magic and the CRC as well as the payload, so a flipped bit in a
+ * row count or length is caught like one in the data. The first frame
+ * is the schema: the column count, then each column's type and name. Every
+ * frame after it is a block of rows that decodes on its own, so a torn write
+ * or a bad sector only costs the block it hits, and the decoder finds the next
+ * one by its magic.
+ * <p>
+ * In a block each row starts with 0, or 1 and a bitmap of the columns that
+ * were null. Doubles are XORed with the column's previous value and written as
+ * a byte of {leading zero bytes, trailing zero bytes} and the bytes between,
+ * or just kDoubleUnchanged, so a value that holds still costs one byte and a
+ * slowly changing one a few. Ints are the zigzag varint of the change from the
+ * previous value, booleans a byte, and strings (enums are logged by name) a
+ * varint index into the block's dictionary, or 0 and the string the first time
+ * it's seen. The row data can then be deflated as a whole.
+ */
+public final class LogFormat {
+
+    public static final String kSuffix = "_LOGS.bin";
+
+    public static final int kMagic = 0x4C4F4742; // "LOGB"
+    public static final byte kSchemaFrame = 1;
+    public static final byte kRowsFrame = 2;
+    public static final byte kFlagDeflated = 1;
+    public static final int kFrameHeaderSize = 4 + 1 + 1 + 4 + 4 + 4 + 4;
+    // the header fields the CRC covers, {frame type, flags, rows, raw length, length}
+    public static final int kCrcHeaderOffset = 4;
+    public static final int kCrcHeaderLength = 1 + 1 + 4 + 4 + 4;
+
+    public static final byte kTypeDouble = 0;
+    public static final byte kTypeInt = 1;
+    public static final byte kTypeBoolean = 2;
+    public static final byte kTypeString = 3;
+
+    public static final int kDoubleUnchanged = 0x80; // leading zero bytes = 8
+
+    private LogFormat() {
+    }
+
+    /**
+     * @return the value as LogStorage writes it to a CSV, empty for null and
+     *         NaN
+     */
+    public static String format(Object value, byte type) {
+        if (value == null) {
+            return "";
+        }
+        String string = value.toString();
+        return type == kTypeDouble && string.equals("NaN") ? "" : string;
+    }
+
+    /**
+     * @return a double, int or boolean column's value as LogStorage writes it to
+     *         a CSV, the same as the boxed value would be
+     */
+    public static String format(double value, byte type) {
+        if (Double.isNaN(value)) {
+            return "";
+        }
+        switch (type) {
+            case kTypeInt:
+                return Integer.toString((int) value);
+            case kTypeBoolean:
+                return Boolean.toString(value != 0.0);
+            default:
+                return Double.toString(value);
+        }
+    }
+
+    /**
+     * @return true if a double, int or boolean column's value stands for null
+     */
+    public static boolean isNull(double value, byte type) {
+        return type != kTypeDouble && Double.isNaN(value);
+    }
+
+    public static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,467 @@
+package com.team8013.lib.logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A sidecar index for one of the CSV files LogStorage writes, so a query can
+ * jump to a time range and skip most of the file.
+ * <p>
+ * The rows are split into blocks of kBlockRows. For each block the index keeps
+ * the byte offset of its first row, its first and last timestamp, and the
+ * count, sum, sum of squares, min and max of every column. A time range then
+ * seeks straight to the first block that overlaps it, and a block entirely
+ * inside the range can be summed up without reading it at all.
+ * <p>
+ * The index is saved next to the file as FILE.csv.idx, along with the file's
+ * size and modification time, and rebuilt whenever those change. If the
+ * archive is read only it's just kept in memory.
+ */
+public class LogIndex {
+
+    public static final String kSuffix = ".idx";
+    private static final String kMagic = "# logindex 1";
+    private static final int kBlockRows = 512;
+    // the subsystems log their loop timestamp from a getTimestamp method
+    private static final String[] kTimeColumns = { "getTimestamp", "timestamp" };
+
+    public static class Block {
+        public final long offset; // bytes from the start of the file to the first row
+        public final int rows;
+        public final double firstTime; // NaN if the file has no time column
+        public final double lastTime;
+        // per column, only numeric values are counted
+        public final long[] counts;
+        public final double[] sums;
+        public final double[] sumSquares;
+        public final double[] mins;
+        public final double[] maxes;
+
+        Block(long offset, int rows, double firstTime, double lastTime, int columns) {
+            this.offset = offset;
+            this.rows = rows;
+            this.firstTime = firstTime;
+            this.lastTime = lastTime;
+            counts = new long[columns];
+            sums = new double[columns];
+            sumSquares = new double[columns];
+            mins = new double[columns];
+            maxes = new double[columns];
+            Arrays.fill(mins, Double.NaN);
+            Arrays.fill(maxes, Double.NaN);
+        }
+
+        void add(int column, double value) {
+            counts[column]++;
+            sums[column] += value;
+            sumSquares[column] += value * value;
+            mins[column] = Double.isNaN(mins[column]) ? value : Math.min(mins[column], value);
+            maxes[column] = Double.isNaN(maxes[column]) ? value : Math.max(maxes[column], value);
+        }
+    }
+
+    @FunctionalInterface
+    public interface RowVisitor {
+        /**
+         * @param values the requested columns, NaN where a value is empty or not
+         *               a number. Reused between rows.
+         */
+        void visit(double time, double[] values);
+    }
+
+    private final Path mFile;
+    private final long mSize;
+    private final long mModified;
+    private final List<String> mColumns;
+    private final int mTimeColumn;
+    private final List<Block> mBlocks;
+
+    private LogIndex(Path file, long size, long modified, List<String> columns, int timeColumn,
+            List<Block> blocks) {
+        mFile = file;
+        mSize = size;
+        mModified = modified;
+        mColumns = Collections.unmodifiableList(columns);
+        mTimeColumn = timeColumn;
+        mBlocks = Collections.unmodifiableList(blocks);
+    }
+
+    /**
+     * Loads the file's index, building and saving it first if it's missing or
+     * out of date. Compressed logs are decoded to CSV first.
+     */
+    public static LogIndex getOrBuild(Path file) throws IOException {
+        if (file.getFileName().toString().endsWith(LogFormat.kSuffix)) {
+            file = LogDecoder.getOrDecode(file);
+        }
+        Path indexFile = getIndexFile(file);
+        long size = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        if (Files.isRegularFile(indexFile)) {
+            try {
+                LogIndex index = load(file, indexFile);
+                if (index.mSize == size && index.mModified == modified) {
+                    return index;
+                }
+            } catch (IOException | RuntimeException e) {
+                // rebuilt below
+            }
+        }
+
+        LogIndex index = build(file);
+        try {
+            index.write(indexFile);
+        } catch (IOException e) {
+            // read only archive, the index still works from memory
+        }
+        return index;
+    }
+
+    public static Path getIndexFile(Path file) {
+        return file.resolveSibling(file.getFileName() + kSuffix);
+    }
+
+    public static LogIndex build(Path file) throws IOException {
+        long size = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        List<Block> blocks = new ArrayList<>();
+        List<String> columns;
+        int timeColumn;
+        try (LineReader reader = new LineReader(Files.newInputStream(file), 0)) {
+            String header = reader.readLine();
+            if (header == null) {
+                return new LogIndex(file, size, modified, new ArrayList<>(), -1, blocks);
+            }
+            columns = new ArrayList<>(Arrays.asList(header.split(",", -1)));
+            timeColumn = findTimeColumn(columns);
+
+            int n = columns.size();
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) {
+                all[i] = i;
+            }
+            double[] values = new double[n];
+            int[] commas = new int[n + 1];
+
+            // rows of the block being built
+            long offset = reader.getOffset();
+            List<double[]> rows = new ArrayList<>(kBlockRows);
+            String line = reader.readLine();
+            while (line != null) {
+                if (!line.isEmpty()) {
+                    extract(line, all, commas, values);
+                    rows.add(values.clone());
+                }
+                if (rows.size() == kBlockRows) {
+                    blocks.add(summarize(offset, rows, timeColumn, n));
+                    rows.clear();
+                    offset = reader.getOffset();
+                }
+                line = reader.readLine();
+            }
+            if (!rows.isEmpty()) {
+                blocks.add(summarize(offset, rows, timeColumn, n));
+            }
+        }
+        return new LogIndex(file, size, modified, columns, timeColumn, blocks);
+    }
+
+    private static Block summarize(long offset, List<double[]> rows, int timeColumn, int columns) {
+        double first = timeColumn < 0 ? Double.NaN : rows.get(0)[timeColumn];
+        double last = timeColumn < 0 ? Double.NaN : rows.get(rows.size() - 1)[timeColumn];
+        Block block = new Block(offset, rows.size(), first, last, columns);
+        for (double[] row : rows) {
+            for (int c = 0; c < columns; c++) {
+                if (!Double.isNaN(row[c])) {
+                    block.add(c, row[c]);
+                }
+            }
+        }
+        return block;
+    }
+
+    private static int findTimeColumn(List<String> columns) {
+        for (String name : kTimeColumns) {
+            for (int i = 0; i < columns.size(); i++) {
+                if (columns.get(i).equalsIgnoreCase(name)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void write(Path indexFile) throws IOException {
+        int n = mColumns.size();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(indexFile.toFile()))) {
+            writer.write(kMagic + "\n");
+            writer.write("# source " + mSize + " " + mModified + "\n");
+            writer.write("# time " + mTimeColumn + "\n");
+            writer.write(String.join(",", mColumns) + "\n");
+            StringBuilder line = new StringBuilder();
+            for (Block block : mBlocks) {
+                line.setLength(0);
+                line.append(block.offset).append(',').append(block.rows).append(',').append(block.firstTime)
+                        .append(',').append(block.lastTime);
+                for (int c = 0; c < n; c++) {
+                    line.append(',').append(block.counts[c]).append(',').append(block.sums[c]).append(',')
+                            .append(block.sumSquares[c]).append(',').append(block.mins[c]).append(',')
+                            .append(block.maxes[c]);
+                }
+                writer.write(line.append('\n').toString());
+            }
+        }
+    }
+
+    private static LogIndex load(Path file, Path indexFile) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(indexFile.toFile()))) {
+            if (!kMagic.equals(reader.readLine())) {
+                throw new IOException(indexFile + " isn't a log index");
+            }
+            String[] source = reader.readLine().split(" ");
+            long size = Long.parseLong(source[2]);
+            long modified = Long.parseLong(source[3]);
+            int timeColumn = Integer.parseInt(reader.readLine().split(" ")[2]);
+            List<String> columns = new ArrayList<>(Arrays.asList(reader.readLine().split(",", -1)));
+            int n = columns.size();
+
+            List<Block> blocks = new ArrayList<>();
+            String line = reader.readLine();
+            while (line != null) {
+                String[] split = line.split(",");
+                Block block = new Block(Long.parseLong(split[0]), Integer.parseInt(split[1]),
+                        Double.parseDouble(split[2]), Double.parseDouble(split[3]), n);
+                for (int c = 0; c < n; c++) {
+                    int i = 4 + c * 5;
+                    block.counts[c] = Long.parseLong(split[i]);
+                    block.sums[c] = Double.parseDouble(split[i + 1]);
+                    block.sumSquares[c] = Double.parseDouble(split[i + 2]);
+                    block.mins[c] = Double.parseDouble(split[i + 3]);
+                    block.maxes[c] = Double.parseDouble(split[i + 4]);
+                }
+                blocks.add(block);
+                line = reader.readLine();
+            }
+            return new LogIndex(file, size, modified, columns, timeColumn, blocks);
+        }
+    }
+
+    public Path getFile() {
+        return mFile;
+    }
+
+    public List<String> getColumns() {
+        return mColumns;
+    }
+
+    /**
+     * @return the column's index, or -1 if the file doesn't have it
+     */
+    public int getColumn(String name) {
+        return mColumns.indexOf(name);
+    }
+
+    public boolean hasTime() {
+        return mTimeColumn >= 0;
+    }
+
+    /**
+     * @return timestamp of the first row, NaN if there's no time column or no
+     *         rows
+     */
+    public double getStartTime() {
+        return mBlocks.isEmpty() ? Double.NaN : mBlocks.get(0).firstTime;
+    }
+
+    public long getRows() {
+        long rows = 0;
+        for (Block block : mBlocks) {
+            rows += block.rows;
+        }
+        return rows;
+    }
+
+    public List<Block> getBlocks() {
+        return mBlocks;
+    }
+
+    /**
+     * @return true if every row in the block is between from and to
+     */
+    public boolean isInside(Block block, double from, double to) {
+        if (Double.isInfinite(from) && Double.isInfinite(to)) {
+            return true;
+        }
+        return hasTime() && block.firstTime >= from && block.lastTime <= to;
+    }
+
+    /**
+     * Reads the given columns of every row from to to, in order.
+     *
+     * @param blocks which blocks to read, by position in getBlocks(), or null
+     *               for all of them. Blocks are read in order and the ones
+     *               outside the time range are skipped either way.
+     */
+    public void scan(int[] columns, double from, double to, boolean[] blocks, RowVisitor visitor)
+            throws IOException {
+        boolean filter = !(Double.isInfinite(from) && Double.isInfinite(to));
+        if (filter && !hasTime()) {
+            return;
+        }
+        int[] wanted = Arrays.copyOf(columns, columns.length + 1);
+        wanted[columns.length] = Math.max(mTimeColumn, 0);
+        double[] parsed = new double[wanted.length];
+        double[] values = new double[columns.length];
+        int[] commas = new int[mColumns.size() + 1];
+
+        try (FileChannel channel = FileChannel.open(mFile, StandardOpenOption.READ)) {
+            LineReader reader = null;
+            long position = -1; // where the reader is, -1 if it has to seek
+            for (int b = 0; b < mBlocks.size(); b++) {
+                Block block = mBlocks.get(b);
+                if ((blocks != null && !blocks[b]) || (filter && (block.lastTime < from || block.firstTime > to))) {
+                    position = -1;
+                    continue;
+                }
+                if (position != block.offset) {
+                    channel.position(block.offset);
+                    reader = new LineReader(Channels.newInputStream(channel), block.offset);
+                }
+                int rows = 0;
+                while (rows < block.rows) {
+                    String line = reader.readLine();
+                    if (line == null) {
+                        break;
+                    }
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    rows++;
+                    extract(line, wanted, commas, parsed);
+                    double time = hasTime() ? parsed[columns.length] : Double.NaN;
+                    if (filter && (time < from || time > to)) {
+                        continue;
+                    }
+                    System.arraycopy(parsed, 0, values, 0, columns.length);
+                    visitor.visit(time, values);
+                }
+                position = reader.getOffset();
+            }
+        }
+    }
+
+    /**
+     * Parses only the wanted columns of a CSV row.
+     *
+     * @param commas scratch, at least one longer than the row has columns
+     */
+    private static void extract(String line, int[] wanted, int[] commas, double[] out) {
+        int fields = 1;
+        commas[0] = -1;
+        for (int i = 0; i < line.length() && fields < commas.length; i++) {
+            if (line.charAt(i) == ',') {
+                commas[fields++] = i;
+            }
+        }
+        for (int w = 0; w < wanted.length; w++) {
+            int column = wanted[w];
+            if (column >= fields) {
+                out[w] = Double.NaN; // a row cut off by a crash
+                continue;
+            }
+            int start = commas[column] + 1;
+            int end = column + 1 < fields ? commas[column + 1] : line.length();
+            out[w] = parseValue(line, start, end);
+        }
+    }
+
+    private static double parseValue(String line, int start, int end) {
+        if (start >= end) {
+            return Double.NaN;
+        }
+        char first = line.charAt(start);
+        if (first == 't' && line.startsWith("true", start) && end - start == 4) {
+            return 1.0;
+        }
+        if (first == 'f' && line.startsWith("false", start) && end - start == 5) {
+            return 0.0;
+        }
+        // skip enum names and other strings without paying for an exception
+        if (Character.isLetter(first) && first != 'N' && first != 'I') {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(line.substring(start, end));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Reads lines while keeping track of the byte offset, which BufferedReader
+     * can't. The logs are plain ASCII.
+     */
+    private static class LineReader implements Closeable {
+        private final InputStream mIn;
+        private final byte[] mBuffer = new byte[1 << 16];
+        private final StringBuilder mLine = new StringBuilder();
+        private int mPosition = 0;
+        private int mLimit = 0;
+        private long mOffset;
+
+        LineReader(InputStream in, long offset) {
+            mIn = in;
+            mOffset = offset;
+        }
+
+        /**
+         * @return bytes from the start of the file to the next line
+         */
+        long getOffset() {
+            return mOffset;
+        }
+
+        String readLine() throws IOException {
+            mLine.setLength(0);
+            boolean read = false;
+            while (true) {
+                if (mPosition == mLimit) {
+                    mLimit = mIn.read(mBuffer);
+                    mPosition = 0;
+                    if (mLimit <= 0) {
+                        mLimit = 0;
+                        return read ? mLine.toString() : null;
+                    }
+                }
+                read = true;
+                byte c = mBuffer[mPosition++];
+                mOffset++;
+                if (c == '\n') {
+                    return mLine.toString();
+                }
+                if (c != '\r') {
+                    mLine.append((char) c);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            mIn.close();
+        }
+    }
+}
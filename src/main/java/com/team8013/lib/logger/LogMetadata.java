@@ -1,5 +1,9 @@
 package com.team8013.lib.logger;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.OptionalInt;
 
 import edu.wpi.first.wpilibj.DriverStation;
@@ -45,4 +49,45 @@ public class LogMetadata {
 
     }
 
+    /**
+     * Reads back a matchinfo.txt written from generateMetadataString.
+     */
+    public static LogMetadata read(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file);
+        if (lines.size() < 6) {
+            throw new IOException(file + " is missing match info");
+        }
+        // OptionalInt's toString, "OptionalInt[2]" or "OptionalInt.empty"
+        String location = lines.get(4);
+        OptionalInt driverStationLocation = location.contains("[")
+                ? OptionalInt.of(Integer.parseInt(location.substring(location.indexOf('[') + 1, location.indexOf(']'))))
+                : OptionalInt.empty();
+        return new LogMetadata(lines.get(0), Integer.parseInt(lines.get(1)), MatchType.valueOf(lines.get(2)),
+                Alliance.valueOf(lines.get(3)), driverStationLocation, Long.parseLong(lines.get(5)));
+    }
+
+    public String getEventName() {
+        return eventName;
+    }
+
+    public int getMatchNumber() {
+        return matchNumber;
+    }
+
+    public MatchType getMatchType() {
+        return matchType;
+    }
+
+    public Alliance getAlliance() {
+        return alliance;
+    }
+
+    public OptionalInt getDriverStationLocation() {
+        return driverStationLocation;
+    }
+
+    public long getDisableTimeUnixMillis() {
+        return disableTimeUnixMillis;
+    }
+
 }
@@ -0,0 +1,419 @@
+package com.team8013.lib.logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.team8013.lib.logger.LogIndex.Block;
+
+import edu.wpi.first.wpilibj.DriverStation.MatchType;
+
+/**
+ * Answers questions like "pivot current across every qual" from a pile of
+ * robotlogs directories without opening each file by hand.
+ * <p>
+ * Sessions are picked by their match info, and each session's files are
+ * scanned on a thread pool through their LogIndex. Only the blocks that
+ * overlap the time range are read, and only the columns asked for are parsed.
+ * Blocks that fall entirely inside the range are summed from the index without
+ * being read, unless percentiles are asked for, which need every value.
+ *
+ * <pre>
+ * ./gradlew queryLogs --args="path/to/robotlogs --channel PIVOT/getPivotCurrent --match-type Qualification"
+ * </pre>
+ *
+ * Options: --channel FILE/column (repeatable), --from S, --to S (seconds from
+ * the start of each session), --match-type T, --event NAME, --match N,
+ * --percentiles 50,90,99, --per-session, --threads T, --list.
+ */
+public class LogQuery {
+
+    public static class Aggregate {
+        public long count = 0;
+        public double sum = 0.0;
+        public double sumSquares = 0.0;
+        public double min = Double.NaN;
+        public double max = Double.NaN;
+        private double[] mValues; // only kept for percentiles
+        private int mSize = 0;
+
+        public Aggregate(boolean keepValues) {
+            mValues = keepValues ? new double[256] : null;
+        }
+
+        public void add(double value) {
+            count++;
+            sum += value;
+            sumSquares += value * value;
+            min = Double.isNaN(min) ? value : Math.min(min, value);
+            max = Double.isNaN(max) ? value : Math.max(max, value);
+            if (mValues != null) {
+                if (mSize == mValues.length) {
+                    mValues = Arrays.copyOf(mValues, mSize * 2);
+                }
+                mValues[mSize++] = value;
+            }
+        }
+
+        void addBlock(Block block, int column) {
+            if (block.counts[column] == 0) {
+                return;
+            }
+            count += block.counts[column];
+            sum += block.sums[column];
+            sumSquares += block.sumSquares[column];
+            min = Double.isNaN(min) ? block.mins[column] : Math.min(min, block.mins[column]);
+            max = Double.isNaN(max) ? block.maxes[column] : Math.max(max, block.maxes[column]);
+        }
+
+        public void merge(Aggregate other) {
+            count += other.count;
+            sum += other.sum;
+            sumSquares += other.sumSquares;
+            if (!Double.isNaN(other.min)) {
+                min = Double.isNaN(min) ? other.min : Math.min(min, other.min);
+                max = Double.isNaN(max) ? other.max : Math.max(max, other.max);
+            }
+            if (mValues != null && other.mValues != null) {
+                if (mSize + other.mSize > mValues.length) {
+                    mValues = Arrays.copyOf(mValues, Math.max(mValues.length * 2, mSize + other.mSize));
+                }
+                System.arraycopy(other.mValues, 0, mValues, mSize, other.mSize);
+                mSize += other.mSize;
+            }
+        }
+
+        public double getMean() {
+            return count == 0 ? Double.NaN : sum / count;
+        }
+
+        public double getStandardDeviation() {
+            if (count < 2) {
+                return Double.NaN;
+            }
+            return Math.sqrt(Math.max(0.0, (sumSquares - sum * sum / count) / (count - 1)));
+        }
+
+        /**
+         * @param percentile 0 to 100, NaN if values weren't kept
+         */
+        public double getPercentile(double percentile) {
+            if (mValues == null || mSize == 0) {
+                return Double.NaN;
+            }
+            Arrays.sort(mValues, 0, mSize);
+            return mValues[(int) Math.round(percentile / 100.0 * (mSize - 1))];
+        }
+    }
+
+    private final List<String> mChannels;
+    private final double mFrom;
+    private final double mTo;
+    private final double[] mPercentiles;
+
+    // what the scan did, for the footer
+    private final AtomicLong mFilesRead = new AtomicLong();
+    private final AtomicLong mBlocksRead = new AtomicLong();
+    private final AtomicLong mBlocksFromIndex = new AtomicLong();
+    private final AtomicLong mBlocksTotal = new AtomicLong();
+
+    /**
+     * @param channels FILE/column, e.g. PIVOT/getPivotCurrent
+     * @param from     s from the start of each session, -infinity for the start
+     * @param to       s from the start of each session, infinity for the end
+     */
+    public LogQuery(List<String> channels, double from, double to, double[] percentiles) {
+        mChannels = channels;
+        mFrom = from;
+        mTo = to;
+        mPercentiles = percentiles;
+    }
+
+    /**
+     * @return aggregates by session, then by channel in the order asked for
+     */
+    public Aggregate[][] run(List<LogSession> sessions, int threads) throws Exception {
+        // scan each file once for every channel in it
+        Map<String, List<Integer>> byLogName = new LinkedHashMap<>();
+        for (int c = 0; c < mChannels.size(); c++) {
+            String logName = mChannels.get(c).split("/", 2)[0].toUpperCase();
+            byLogName.computeIfAbsent(logName, k -> new ArrayList<>()).add(c);
+        }
+
+        Aggregate[][] results = new Aggregate[sessions.size()][mChannels.size()];
+        for (Aggregate[] session : results) {
+            for (int c = 0; c < session.length; c++) {
+                session[c] = new Aggregate(mPercentiles.length > 0);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "LogQuery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> scans = new ArrayList<>();
+            for (int s = 0; s < sessions.size(); s++) {
+                for (Map.Entry<String, List<Integer>> file : byLogName.entrySet()) {
+                    List<Path> parts = sessions.get(s).getFiles(file.getKey());
+                    if (parts.isEmpty()) {
+                        continue;
+                    }
+                    Aggregate[] out = results[s];
+                    List<Integer> channels = file.getValue();
+                    scans.add(executor.submit((Callable<Void>) () -> {
+                        // parts in order on one thread, they share the first part's start time
+                        double start = Double.NaN;
+                        for (Path path : parts) {
+                            start = scan(path, channels, out, start);
+                        }
+                        return null;
+                    }));
+                }
+            }
+            for (Future<?> scan : scans) {
+                scan.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * @param start the session's first timestamp, NaN to take it from this
+     *              file
+     * @return the start used
+     */
+    private double scan(Path file, List<Integer> channels, Aggregate[] out, double start) throws IOException {
+        LogIndex index = LogIndex.getOrBuild(file);
+        List<Integer> present = new ArrayList<>();
+        List<Integer> columns = new ArrayList<>();
+        for (int channel : channels) {
+            int column = index.getColumn(mChannels.get(channel).split("/", 2)[1]);
+            if (column >= 0) {
+                present.add(channel);
+                columns.add(column);
+            }
+        }
+        List<Block> blocks = index.getBlocks();
+        mBlocksTotal.addAndGet(blocks.size());
+        if (present.isEmpty()) {
+            return start;
+        }
+
+        boolean timed = !(Double.isInfinite(mFrom) && Double.isInfinite(mTo));
+        if (timed && !index.hasTime()) {
+            System.err.println(file + " has no timestamp column, leaving it out of a time range query");
+            return start;
+        }
+        if (Double.isNaN(start)) {
+            start = index.getStartTime();
+        }
+        double from = timed ? start + mFrom : Double.NEGATIVE_INFINITY;
+        double to = timed ? start + mTo : Double.POSITIVE_INFINITY;
+
+        // answer whole blocks from the index where that's enough
+        boolean[] read = new boolean[blocks.size()];
+        for (int b = 0; b < blocks.size(); b++) {
+            Block block = blocks.get(b);
+            if (mPercentiles.length == 0 && index.isInside(block, from, to)) {
+                for (int i = 0; i < present.size(); i++) {
+                    out[present.get(i)].addBlock(block, columns.get(i));
+                }
+                mBlocksFromIndex.incrementAndGet();
+            } else if (!timed || (block.lastTime >= from && block.firstTime <= to)) {
+                read[b] = true;
+                mBlocksRead.incrementAndGet();
+            }
+        }
+
+        int[] columnArray = columns.stream().mapToInt(Integer::intValue).toArray();
+        index.scan(columnArray, from, to, read, (time, values) -> {
+            for (int i = 0; i < values.length; i++) {
+                if (!Double.isNaN(values[i])) {
+                    out[present.get(i)].add(values[i]);
+                }
+            }
+        });
+        mFilesRead.incrementAndGet();
+        return start;
+    }
+
+    public void report(List<LogSession> sessions, Aggregate[][] results, boolean perSession) {
+        StringBuilder header = new StringBuilder(String.format("  %-48s %9s %10s %10s %10s", "", "count", "mean",
+                "sd", "min"));
+        for (double percentile : mPercentiles) {
+            header.append(String.format(" %10s", "p" + formatPercentile(percentile)));
+        }
+        header.append(String.format(" %10s", "max"));
+
+        for (int c = 0; c < mChannels.size(); c++) {
+            System.out.println(mChannels.get(c));
+            System.out.println(header);
+            Aggregate all = new Aggregate(mPercentiles.length > 0);
+            int withData = 0;
+            for (int s = 0; s < sessions.size(); s++) {
+                Aggregate aggregate = results[s][c];
+                if (aggregate.count == 0) {
+                    continue;
+                }
+                withData++;
+                if (perSession) {
+                    System.out.println(formatRow(sessions.get(s).toString(), aggregate));
+                }
+                all.merge(aggregate);
+            }
+            System.out.println(formatRow("all " + withData + " sessions", all));
+            System.out.println();
+        }
+        System.out.println(String.format("Read %d of %d blocks, %d more summed from the index, from %d files",
+                mBlocksRead.get(), mBlocksTotal.get(), mBlocksFromIndex.get(), mFilesRead.get()));
+    }
+
+    private String formatRow(String label, Aggregate aggregate) {
+        if (label.length() > 48) {
+            label = label.substring(0, 45) + "...";
+        }
+        StringBuilder row = new StringBuilder(String.format(Locale.ROOT, "  %-48s %9d %10s %10s %10s", label,
+                aggregate.count, format(aggregate.getMean()), format(aggregate.getStandardDeviation()),
+                format(aggregate.min)));
+        for (double percentile : mPercentiles) {
+            row.append(String.format(" %10s", format(aggregate.getPercentile(percentile))));
+        }
+        row.append(String.format(" %10s", format(aggregate.max)));
+        return row.toString();
+    }
+
+    private static String format(double value) {
+        return Double.isNaN(value) ? "-" : String.format(Locale.ROOT, "%.4g", value);
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : String.valueOf(percentile);
+    }
+
+    /**
+     * Prints every FILE/column in the sessions and how many sessions have it.
+     */
+    public static void list(List<LogSession> sessions) throws IOException {
+        Map<String, Integer> channels = new TreeMap<>();
+        for (LogSession session : sessions) {
+            // once per session, however many parts a channel is in
+            Set<String> inSession = new HashSet<>();
+            for (Path file : session.getFiles()) {
+                for (String column : LogIndex.getOrBuild(file).getColumns()) {
+                    inSession.add(LogSession.getLogName(file) + "/" + column);
+                }
+            }
+            inSession.forEach((channel) -> channels.merge(channel, 1, Integer::sum));
+        }
+        for (Map.Entry<String, Integer> channel : channels.entrySet()) {
+            System.out.println(String.format("%-60s %d sessions", channel.getKey(), channel.getValue()));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Path> paths = new ArrayList<>();
+        List<String> channels = new ArrayList<>();
+        double from = Double.NEGATIVE_INFINITY;
+        double to = Double.POSITIVE_INFINITY;
+        MatchType matchType = null;
+        String event = null;
+        int match = -1;
+        double[] percentiles = new double[0];
+        boolean perSession = false;
+        boolean list = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--channel":
+                    String channel = args[++i];
+                    if (!channel.contains("/")) {
+                        throw new IllegalArgumentException("Channels are FILE/column, e.g. PIVOT/getPivotCurrent");
+                    }
+                    channels.add(channel);
+                    break;
+                case "--from":
+                    from = Double.parseDouble(args[++i]);
+                    break;
+                case "--to":
+                    to = Double.parseDouble(args[++i]);
+                    break;
+                case "--match-type":
+                    matchType = MatchType.valueOf(args[++i]);
+                    break;
+                case "--event":
+                    event = args[++i];
+                    break;
+                case "--match":
+                    match = Integer.parseInt(args[++i]);
+                    break;
+                case "--percentiles":
+                    percentiles = Arrays.stream(args[++i].split(",")).mapToDouble(Double::parseDouble).toArray();
+                    break;
+                case "--per-session":
+                    perSession = true;
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--list":
+                    list = true;
+                    break;
+                default:
+                    paths.add(Path.of(args[i]));
+                    break;
+            }
+        }
+        if (paths.isEmpty() || (channels.isEmpty() && !list)) {
+            System.err.println("Usage: LogQuery <log dirs> --channel FILE/column [--channel ...] [--from S] [--to S]"
+                    + " [--match-type None|Practice|Qualification|Elimination] [--event NAME] [--match N]"
+                    + " [--percentiles 50,90,99] [--per-session] [--threads T] [--list]");
+            System.exit(1);
+        }
+
+        List<LogSession> sessions = new ArrayList<>();
+        int found = 0;
+        for (LogSession session : LogSession.find(paths)) {
+            found++;
+            LogMetadata metadata = session.getMetadata();
+            boolean filtered = matchType != null || event != null || match >= 0;
+            if (filtered && (metadata == null
+                    || (matchType != null && metadata.getMatchType() != matchType)
+                    || (event != null && !metadata.getEventName().equalsIgnoreCase(event))
+                    || (match >= 0 && metadata.getMatchNumber() != match))) {
+                continue;
+            }
+            sessions.add(session);
+        }
+        System.out.println(String.format("%d of %d sessions match", sessions.size(), found));
+        if (list) {
+            list(sessions);
+            return;
+        }
+
+        long start = System.nanoTime();
+        LogQuery query = new LogQuery(channels, from, to, percentiles);
+        Aggregate[][] results = query.run(sessions, threads);
+        System.out.println();
+        query.report(sessions, results, perSession);
+        System.out.println(String.format(Locale.ROOT, "%.2f s on %d threads", (System.nanoTime() - start) / 1e9,
+                threads));
+    }
+}
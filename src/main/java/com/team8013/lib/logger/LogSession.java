@@ -0,0 +1,150 @@
+package com.team8013.lib.logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * One "(N) date" directory LoggingSystem made, with the match info written
+ * when the robot was disabled and the files each subsystem logged to. That's
+ * the compressed log if there is one, since a CSV next to it is just what
+ * LogDecoder made of it. A subsystem that logged long enough to rotate has
+ * parts after the first, NAME.2_LOGS.bin and so on.
+ */
+public class LogSession {
+
+    public static final String kMetadataFile = "matchinfo.txt";
+    public static final String kLogSuffix = "_LOGS.csv";
+
+    private final Path mDirectory;
+    private final LogMetadata mMetadata;
+    private final List<Path> mFiles;
+
+    private LogSession(Path directory, LogMetadata metadata, List<Path> files) {
+        mDirectory = directory;
+        mMetadata = metadata;
+        mFiles = Collections.unmodifiableList(files);
+    }
+
+    /**
+     * @param paths session directories or directories to search for them
+     */
+    public static List<LogSession> find(List<Path> paths) throws IOException {
+        // by directory, then by log name and part
+        Map<Path, Map<String, Path>> files = new TreeMap<>();
+        for (Path path : paths) {
+            try (Stream<Path> walk = Files.walk(path)) {
+                for (Path file : walk.filter(Files::isRegularFile)
+                        .filter((f) -> isLog(f))
+                        .collect(Collectors.toList())) {
+                    Map<String, Path> session = files.computeIfAbsent(file.getParent(), k -> new TreeMap<>());
+                    if (file.getFileName().toString().endsWith(LogFormat.kSuffix)) {
+                        session.put(getStem(file), file);
+                    } else {
+                        session.putIfAbsent(getStem(file), file);
+                    }
+                }
+            }
+        }
+
+        List<LogSession> sessions = new ArrayList<>();
+        for (Map.Entry<Path, Map<String, Path>> session : files.entrySet()) {
+            LogMetadata metadata = null;
+            Path info = session.getKey().resolve(kMetadataFile);
+            if (Files.isRegularFile(info)) {
+                try {
+                    metadata = LogMetadata.read(info);
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Couldn't read " + info + ": " + e.getMessage());
+                }
+            }
+            List<Path> logs = new ArrayList<>(session.getValue().values());
+            logs.sort(Comparator.comparing(LogSession::getLogName).thenComparingInt(LogSession::getPart));
+            sessions.add(new LogSession(session.getKey(), metadata, logs));
+        }
+        return sessions;
+    }
+
+    /**
+     * @return the name a subsystem's file is logged under, e.g. PIVOT
+     */
+    public static String getLogName(Path file) {
+        String stem = getStem(file);
+        int dot = stem.lastIndexOf('.');
+        return dot < 0 ? stem : stem.substring(0, dot);
+    }
+
+    /**
+     * @return 1 for the first file a subsystem logged to, counting up as it
+     *         rotated
+     */
+    public static int getPart(Path file) {
+        String stem = getStem(file);
+        int dot = stem.lastIndexOf('.');
+        try {
+            return dot < 0 ? 1 : Integer.parseInt(stem.substring(dot + 1));
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    // the name with its part, e.g. PIVOT.2
+    private static String getStem(Path file) {
+        String name = file.getFileName().toString();
+        String suffix = name.endsWith(LogFormat.kSuffix) ? LogFormat.kSuffix : kLogSuffix;
+        return name.substring(0, name.length() - suffix.length());
+    }
+
+    private static boolean isLog(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(kLogSuffix) || name.endsWith(LogFormat.kSuffix);
+    }
+
+    /**
+     * @return the subsystem's files in order, matched ignoring case, empty if
+     *         it didn't log in this session
+     */
+    public List<Path> getFiles(String logName) {
+        List<Path> parts = new ArrayList<>();
+        for (Path file : mFiles) {
+            if (getLogName(file).equalsIgnoreCase(logName)) {
+                parts.add(file);
+            }
+        }
+        return parts;
+    }
+
+    public Path getDirectory() {
+        return mDirectory;
+    }
+
+    /**
+     * @return null if the session has no (readable) match info, e.g. the robot
+     *         was never disabled cleanly
+     */
+    public LogMetadata getMetadata() {
+        return mMetadata;
+    }
+
+    public List<Path> getFiles() {
+        return mFiles;
+    }
+
+    @Override
+    public String toString() {
+        String name = mDirectory.getFileName().toString();
+        if (mMetadata == null) {
+            return name;
+        }
+        return name + " " + mMetadata.getEventName() + " " + mMetadata.getMatchType() + " "
+                + mMetadata.getMatchNumber();
+    }
+}
@@ -1,32 +1,60 @@
 package com.team8013.lib.logger;
 
-import java.io.FileWriter;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.List;
 
 public class LogStorage {
 
     private String filename;
     private String path;
-    private FileWriter writer;
+    private String directory;
+    // files after the first are NAME.2_LOGS.csv and so on, see LoggingSystem.kRotateBytes
+    private int part = 1;
+    private LogFile file;
+    private Writer writer;
     
     private final List<String> headers;
+    private final byte[] types;
     private final int size; 
 
-    public LogStorage(String filename, List<String> headers) {
+    // compressed logs, see LogFormat
+    private final boolean compress;
+    private LogBlockEncoder encoder;
+    private OutputStream output;
+    private long blockStartNanos = 0;
+
+    public LogStorage(String filename, List<String> headers, byte[] types, boolean compress) {
         this.filename = filename.toUpperCase();
         this.headers = headers;
+        this.types = types;
         this.size = headers.size();
+        this.compress = compress;
     }
 
     public void setPath(String targetPath) {
-        this.path = targetPath + "/" + filename + "_LOGS.csv";
-        try {
-            if (writer != null) {
-                writer.close();
-            }
+        this.directory = targetPath;
+        this.part = 1;
+        open();
+    }
 
-            writer = new FileWriter(path);
+    private void open() {
+        close();
+        String name = part > 1 ? filename + "." + part : filename;
+        if (compress) {
+            openCompressed(name);
+            return;
+        }
+        this.path = directory + "/" + name + "_LOGS.csv";
+        try {
+            file = LoggingSystem.getInstance().mFileManager.open(Path.of(path));
+            writer = new BufferedWriter(new OutputStreamWriter(file, StandardCharsets.UTF_8), 1 << 14);
             // Write headers into logfile
             for (int i = 0; i < headers.size(); i++) {
                 writer.write(headers.get(i));
@@ -39,17 +67,40 @@ public class LogStorage {
         } catch (IOException e) {
             System.out.println("Unable to create file \"" + path + "\"");
             e.printStackTrace();
+            writer = null;
         }
     }
 
-    public void writeData(String[] data) {
+    private void openCompressed(String name) {
+        this.path = directory + "/" + name + LogFormat.kSuffix;
+        try {
+            file = LoggingSystem.getInstance().mFileManager.open(Path.of(path));
+            output = new BufferedOutputStream(file, 1 << 16);
+            encoder = new LogBlockEncoder(types, LoggingSystem.kDeflateBlocks);
+            encoder.writeSchema(output, headers);
+            output.flush();
+            blockStartNanos = System.nanoTime();
+        } catch (IOException e) {
+            System.out.println("Unable to create file \"" + path + "\"");
+            e.printStackTrace();
+            output = null;
+        }
+    }
+
+    // string columns are read from strings, every other column from values
+    public void writeData(double[] values, String[] strings) {
+        if (compress) {
+            writeCompressed(values, strings);
+            return;
+        }
         if (writer == null) {
             LoggingSystem.getInstance().pathSet = false;
             return;
         }
         try {
             for (int i = 0; i < size; i++) {
-                writer.write(data[i]);
+                writer.write(types[i] == LogFormat.kTypeString ? LogFormat.format(strings[i], types[i])
+                        : LogFormat.format(values[i], types[i]));
                 if (i != size - 1) {
                     writer.write(",");
                 }
@@ -60,19 +111,86 @@ public class LogStorage {
         }
     }
 
+    private void writeCompressed(double[] values, String[] strings) {
+        if (output == null) {
+            LoggingSystem.getInstance().pathSet = false;
+            return;
+        }
+        if (encoder.getRows() == 0) {
+            blockStartNanos = System.nanoTime();
+        }
+        encoder.addRow(values, strings);
+        if (encoder.getRows() >= LoggingSystem.kBlockRows) {
+            writeBlock();
+        }
+    }
+
+    private void writeBlock() {
+        try {
+            encoder.writeBlock(output);
+            output.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Hands what's been written to the file manager to sync, and starts the
+     * next file once this one is big or old enough. Called by LogWriter each
+     * time it drains the queue.
+     */
     public void flush() {
         try {
-            writer.flush();
+            if (compress) {
+                // a power cut loses the block being built, so keep blocks short
+                if (output != null && encoder.getRows() > 0
+                        && System.nanoTime() - blockStartNanos >= LoggingSystem.kBlockPeriodNanos) {
+                    writeBlock();
+                }
+            } else if (writer != null) {
+                writer.flush();
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
+
+        if (file != null && (file.getSize() >= LoggingSystem.kRotateBytes
+                || file.getAgeSeconds() >= LoggingSystem.kRotatePeriodSeconds)) {
+            part++;
+            open();
+        }
+    }
+
+    /**
+     * @return bytes of encoded rows before deflating
+     */
+    public long getRawBytes() {
+        return encoder == null ? 0 : encoder.getRawBytes();
+    }
+
+    /**
+     * @return bytes written to the file, frame headers included
+     */
+    public long getWrittenBytes() {
+        return encoder == null ? 0 : encoder.getWrittenBytes();
     }
 
     public void close() {
         try {
-            writer.close();
+            if (compress) {
+                if (output != null) {
+                    encoder.writeBlock(output);
+                    output.close();
+                    encoder.close();
+                    output = null;
+                }
+            } else if (writer != null) {
+                writer.close();
+                writer = null;
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
+        file = null;
     }
 }
@@ -1,14 +1,14 @@
 package com.team8013.lib.logger;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
 
 public class LogWriter {
     
-    private final ArrayDeque<LogEntry> queue;
+    private final BlockingQueue<LogEntry> queue;
     private ArrayList<LogStorage> storage;
 
-    public LogWriter(ArrayDeque<LogEntry> queue) {
+    public LogWriter(BlockingQueue<LogEntry> queue) {
         this.queue = queue;
     }
 
@@ -16,27 +16,26 @@ public class LogWriter {
         this.storage = storage;
     }
 
+    // Writes everything queued so far, encoding and compressing happen here
+    // rather than on the control loop
     public void log() {
-        if (queue.isEmpty()) {
-            return;
+        for (int i = queue.size(); i > 0; i--) {
+            LogEntry entry = queue.poll();
+            if (entry == null) {
+                break;
+            }
+            try {
+                storage.get(entry.getTarget()).writeData(entry.getValues(), entry.getStrings());
+            } finally {
+                entry.release();
+            }
         }
-        
-        LogEntry entry = queue.pop();
-
-        LogStorage store = storage.get(entry.getTarget());
-
-        if (entry.getValues() == null) {
-            return;
-        }
-
-        store.writeData(entry.getValues());
+        storage.forEach((s) -> s.flush());
     }
 
 
     public void close() {
-        while (!queue.isEmpty()) {
-            log();
-        }
+        log();
         storage.forEach((s) -> s.close());
     }
 }
@@ -2,44 +2,55 @@ package com.team8013.lib.logger;
 
 import java.io.File;
 import java.io.FileWriter;
-import java.io.IOError;
 import java.io.IOException;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.sql.Date;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.TimeZone;
-import java.util.function.Supplier;
+import java.util.concurrent.ArrayBlockingQueue;
 
 import com.team8013.frc2024.Robot;
 import com.team8013.frc2024.loops.Loop;
+import com.team8013.lib.util.RobotClock;
 
-import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
-import java.lang.Object;
-
-import static java.util.Map.entry;
 
 public class LoggingSystem {
 
     // Constants
     private static final int kQueueCapacity = 4000;
+    // Rows preallocated per logged object, one is in use from queueLogs until it's written
+    private static final int kFramesPerObject = 128;
+    // Write compressed blocks (see LogFormat) instead of CSV, decode with LogDecoder
+    public static final boolean kCompressLogs = true;
+    public static final boolean kDeflateBlocks = true;
+    // A block is written once it has this many rows or is this old, a power cut loses at most one
+    public static final int kBlockRows = 250;
+    public static final long kBlockPeriodNanos = 1_000_000_000L;
+    // Each subsystem starts a new file past either, so a bad sector or a long practice costs one part
+    public static final long kRotateBytes = 32L << 20;
+    public static final double kRotatePeriodSeconds = 600.0;
+    // How often to look for a drive again after losing or not finding one
+    private static final double kDriveRetryPeriod = 5.0;
     public final List<String> kDriveRoot = Arrays.asList("/media/sdb1/", "/media/sda1/", "/media/sdc1/");
     public final String kLogDirectory = "robotlogs/";
 
     // Class that holds the filewriter
     public final LogWriter mLogWriter;
 
-    private static ArrayList<ArrayList<Supplier<String>>> mElements = new ArrayList<ArrayList<Supplier<String>>>();
+    // Opens, syncs and rotates the files, and watches the drive
+    public final LogFileManager mFileManager = new LogFileManager();
+    private double mLastDriveAttempt = Double.NEGATIVE_INFINITY;
+
+    private static ArrayList<LoggedObject> mObjects = new ArrayList<LoggedObject>();
     private static ArrayList<LogStorage> mStorage = new ArrayList<LogStorage>();
-    private static ArrayDeque<LogEntry> mQueue = new ArrayDeque<LogEntry>(kQueueCapacity);
+    // Filled by the control loop and drained by the logging loop
+    private static ArrayBlockingQueue<LogEntry> mQueue = new ArrayBlockingQueue<LogEntry>(kQueueCapacity);
+    private static int mDroppedEntries = 0;
 
     // Directory of logging for this session
     private static File mSessionDirectory = null;
@@ -59,10 +70,29 @@ public class LoggingSystem {
 
     // Use different directory if benchmarking in sim
     private final boolean isBenchmark;
-    public boolean pathSet = false;
+    // Set on the logging loop, read by queueLogs on the control loop
+    public volatile boolean pathSet = false;
 
     public static boolean disableLogger = false;
 
+    // The bound channels of one registered object, the last value sampled from
+    // each (rows that skip the verbose ones repeat them) and its free rows
+    private static class LoggedObject {
+        final LogChannel[] channels;
+        final double[] values;
+        final String[] strings;
+        final ArrayBlockingQueue<LogEntry> free = new ArrayBlockingQueue<LogEntry>(kFramesPerObject);
+
+        LoggedObject(int target, LogChannel[] channels) {
+            this.channels = channels;
+            values = new double[channels.length];
+            strings = new String[channels.length];
+            for (int i = 0; i < kFramesPerObject; i++) {
+                free.add(new LogEntry(target, channels.length, free));
+            }
+        }
+    }
+
     // Seperate loop for writing to files to not slow down main loop
     private class LoggingLoop implements Loop {
         @Override
@@ -75,9 +105,10 @@ public class LoggingSystem {
                 setDirectory();
 
                 // Record timestamp of logging start
-                mStartTimestamp = Timer.getFPGATimestamp(); 
+                mStartTimestamp = RobotClock.getInstance().now(); 
             } catch (Exception e) {
-                disableLogger = true;
+                // tried again from onLoop
+                e.printStackTrace();
             }
 
         }
@@ -88,14 +119,28 @@ public class LoggingSystem {
                 return;
             }
             try {
+                if (pathSet && !mFileManager.isHealthy()) {
+                    // pulled, read only or full, start over on whichever drive is usable
+                    System.out.println("Log drive failed, looking for another");
+                    mStorage.forEach((s) -> s.close());
+                    clearQueue();
+                    mFileManager.endSession();
+                    mSessionDirectory = null;
+                    mBaseDirectory = null;
+                    pathSet = false;
+                }
                 if (!pathSet) {
-                    setDirectory();
+                    if (timestamp - mLastDriveAttempt >= kDriveRetryPeriod) {
+                        mLastDriveAttempt = timestamp;
+                        setDirectory();
+                    }
                 } else {
                     // Write to files
                     mLogWriter.log();
                 }
             } catch (Exception e) {
-                disableLogger = true;
+                e.printStackTrace();
+                pathSet = false;
             }
 
         }
@@ -116,15 +161,27 @@ public class LoggingSystem {
                 return;
             }
 
-            // Reset for next logging session
-            mQueue.clear();
+            // Write out what's left, then reset for next logging session
             mLogWriter.close();
+            mFileManager.endSession();
+            clearQueue();
             mSessionDirectory = null;
+            pathSet = false;
+        }
+    }
 
+    // Throws away the queued rows, handing them back to their pools
+    private void clearQueue() {
+        LogEntry entry;
+        while ((entry = mQueue.poll()) != null) {
+            entry.release();
         }
     }
 
     private void writeMetaData() {
+        if (mSessionDirectory == null) {
+            return;
+        }
         LogMetadata metadata = new LogMetadata();
         try {
             FileWriter write = new FileWriter(mSessionDirectory + "/matchinfo.txt");
@@ -155,55 +212,19 @@ public class LoggingSystem {
         return registerObject(loggedClass, loggedObject, name);
     }
 
-    // Reflect over object and save suppliers to log
+    // Bind the object's @Log getters and fields, see LogChannel
     public synchronized int registerObject(Class<?> loggedClass, Object loggedObject, String name) {
+        int subsystemIndex = mObjects.size();
+        LogChannel[] channels = LogChannel.bind(loggedClass, loggedObject).toArray(new LogChannel[0]);
+        mObjects.add(new LoggedObject(subsystemIndex, channels));
 
         ArrayList<String> headers = new ArrayList<String>();
-
-        int subsystemIndex = mElements.size();
-        mElements.add(new ArrayList<Supplier<String>>());
-
-        for (Method method : loggedClass.getDeclaredMethods()) {
-            if (!method.isAnnotationPresent(Log.class) || !LoggalbeHandler.containsKey(method.getReturnType())
-                    || method.getParameterCount() > 0) {
-                continue;
-            }
-            method.setAccessible(true);
-
-            LoggableProcessor processor = LoggalbeHandler.get(
-                    method.getReturnType().isEnum() ? String.class : method.getReturnType());
-
-            processor.getLoggable(() -> {
-                try {
-                    return method.invoke(loggedObject);
-                } catch (IllegalAccessException | InvocationTargetException e) {
-                    e.printStackTrace();
-                    return null;
-                }
-            }, subsystemIndex);
-            headers.add(method.getName());
+        byte[] typeArray = new byte[channels.length];
+        for (int i = 0; i < channels.length; i++) {
+            headers.add(channels[i].name);
+            typeArray[i] = channels[i].type;
         }
-
-        for (Field field : loggedClass.getDeclaredFields()) {
-            if (!field.isAnnotationPresent(Log.class) || !LoggalbeHandler.containsKey(field.getType())) {
-                continue;
-            }
-            field.setAccessible(true);
-
-            LoggableProcessor processor = LoggalbeHandler.get(
-                    field.getType().isEnum() ? String.class : field.getType());
-            
-            processor.getLoggable(() -> {
-                try {
-                    return field.get(loggedObject);
-                } catch (IllegalAccessException e) {
-                    return null;
-                }
-            }, subsystemIndex);
-            headers.add(field.getName());
-        }
-
-        LogStorage store = new LogStorage(name, headers);
+        LogStorage store = new LogStorage(name, headers, typeArray, kCompressLogs);
         mStorage.add(store);
         return subsystemIndex;
     }
@@ -216,73 +237,42 @@ public class LoggingSystem {
                 mBaseDirectory = "./Output Logs";
             } else {
                 for (String potentialRoot : kDriveRoot) {
-
-                    // Test the potential directory by writing a 'iotest/' directory then deleting it
-                    // Yes this is the only way to do this
-                    // Also should catch other IO errors before they result in a runtime crash
-                    File testDir = new File(potentialRoot + "iotest/");
-                    System.out.println("Checking " + potentialRoot + " for IO errors");
-                    try {
-                        testDir.mkdir();
-                        if (!testDir.exists()) {
-                            System.out.println(potentialRoot + " has an IO error, potentially unmounted incorrectly. Skipping and looking for another drive.");
-                            continue;
-                        }
-                        testDir.delete();
-                    } catch (IOError e) {
-                        System.out.println(potentialRoot + " has an IO error, potentially unmounted incorrectly. Skipping and looking for another drive.");
-                        continue;
+                    // Write and sync a file on each drive, which also catches IO errors
+                    // before they result in a runtime crash
+                    if (mFileManager.probe(new File(potentialRoot + kLogDirectory))) {
+                        mBaseDirectory = potentialRoot + kLogDirectory;
+                        System.out.println("Chose the location for logs: " + mBaseDirectory);
+                        break;
                     }
-                    mBaseDirectory = potentialRoot + kLogDirectory;
-                    System.out.println("Chose the location for logs: " + mBaseDirectory);
-                    break;
                 }
                 if (mBaseDirectory == null) {
-                    System.out.println("Couldn't find a usable location to store logs. Disabling logger.");
-                    disableLogger = true;
+                    System.out.println("Couldn't find a usable location to store logs. Checking again in "
+                            + kDriveRetryPeriod + "s.");
                     return;
                 }
             }
         }
         String path = mBaseDirectory;
 
-        if (!isBenchmark || Robot.isReal()) {
-            // create logs folder if not present
-            File rootDirectory = new File(mBaseDirectory);
-            if (!rootDirectory.isDirectory()) {
-                rootDirectory.mkdir();
-            }
-
-            // count up previous logging session and number this session accordingly
-            Integer maxNum = 0;
-            for (final File entry : rootDirectory.listFiles()) {
-                try {
-                    if (!entry.isDirectory()) {
-                        continue;
-                    }
-                    String directory_name = entry.getName();
-                    int char_index = directory_name.indexOf(")");
-                    int num = Integer.parseInt(directory_name.substring(1, char_index));
-                    if (num > maxNum) {
-                        maxNum = num;
-                    }
-                } catch (Exception e) {
-                    // Files that are not numbers are expected and ignored
-                }
+        try {
+            if (!isBenchmark || Robot.isReal()) {
+                // get system time in milliseconds and convert to datetime
+                startTime = new Date(System.currentTimeMillis());
+
+                // number the session from the drive's session index and create its directory
+                File rootDirectory = new File(mBaseDirectory);
+                rootDirectory.mkdirs();
+                mSessionDirectory = mFileManager.startSession(rootDirectory, dateFormat.format(startTime));
+            } else {
+                mSessionDirectory = mFileManager.startSession(new File(path));
             }
-            maxNum++;
-
-            // get system time in milliseconds and convert to datetime
-            startTime = new Date(System.currentTimeMillis());
-
-            // format time in datetime and add to file name
-            path = mBaseDirectory + "/(" + maxNum.toString() + ") " + dateFormat.format(startTime);
-
+        } catch (IOException e) {
+            System.out.println("Unable to start a logging session in " + mBaseDirectory);
+            e.printStackTrace();
+            mBaseDirectory = null;
+            return;
         }
-
-        // create new directory
-        mSessionDirectory = new File(path);
-        mSessionDirectory.mkdir();
+        path = mSessionDirectory.getPath();
 
         if (mSessionDirectory.isDirectory()) {
             // update filewriters
@@ -297,18 +287,59 @@ public class LoggingSystem {
         }
     }
 
-    // Pull from suppliers and queue values for logging
+    // Sample the channels into a preallocated row and queue it, nothing is
+    // boxed or allocated here and the row is formatted or encoded on the
+    // logging loop. Nothing is queued until there's a session to write it to
     public void queueLogs() {
-        for (int i = 0; i < mElements.size(); i++) {
-            ArrayList<Supplier<String>> values = mElements.get(i);
-            String[] temp = new String[values.size()];
-            for (int j = 0; j < values.size(); j++) {
-                temp[j] = values.get(j).get();
+        queueLogs(true);
+    }
+
+    // With verbose false only the critical channels are sampled, the rest repeat
+    // the last value sampled so every row stays complete
+    public void queueLogs(boolean verbose) {
+        if (!pathSet) {
+            return;
+        }
+        for (int i = 0; i < mObjects.size(); i++) {
+            LoggedObject object = mObjects.get(i);
+            LogChannel[] channels = object.channels;
+            for (int j = 0; j < channels.length; j++) {
+                if (!verbose && !channels[j].critical) {
+                    continue;
+                }
+                if (channels[j].type == LogFormat.kTypeString) {
+                    object.strings[j] = channels[j].getString();
+                } else {
+                    object.values[j] = channels[j].getAsDouble();
+                }
+            }
+            LogEntry entry = object.free.poll();
+            if (entry == null) {
+                mDroppedEntries++;
+                continue;
+            }
+            entry.set(object.values, object.strings);
+            if (!mQueue.offer(entry)) {
+                entry.release();
+                mDroppedEntries++;
             }
-            mQueue.add(new LogEntry(i, temp));
         }
     }
 
+    // Entries thrown away because the logging loop fell behind
+    public int getDroppedEntries() {
+        return mDroppedEntries;
+    }
+
+    public void outputTelemetry() {
+        SmartDashboard.putBoolean("Log Drive Healthy", pathSet && mFileManager.isHealthy());
+        SmartDashboard.putNumber("Log Free MB", mFileManager.getFreeBytes() / (double) (1 << 20));
+        SmartDashboard.putNumber("Log Sync Ms", mFileManager.getSyncMillis());
+        SmartDashboard.putNumber("Log Sync Max Ms", mFileManager.getMaxSyncMillis());
+        SmartDashboard.putNumber("Log Dropped Entries", mDroppedEntries);
+        SmartDashboard.putNumber("Log Dropped Bytes", mFileManager.getDroppedBytes());
+    }
+
     public int queueSize() {
         return mQueue.size();
     }
@@ -330,48 +361,4 @@ public class LoggingSystem {
         return new LoggingLoop();
     }
 
-    @FunctionalInterface
-    public interface LoggableProcessor {
-        public void getLoggable(Supplier<Object> supplier, int subsystem);
-    }
-
-    public static Map<Class<?>, LoggableProcessor> LoggalbeHandler = Map.ofEntries(
-            entry(int.class,
-                    (supplier, subsystem) -> {
-                        mElements.get(subsystem).add(() -> {
-                            if (supplier.get() == null) {
-                                return new String();
-                            }
-                            return String.valueOf(supplier.get());
-                        });
-                    }),
-            entry(boolean.class,
-                    (supplier, subsystem) -> {
-                        mElements.get(subsystem).add(() -> {
-                            if (supplier.get() == null) {
-                                return new String();
-                            }
-                            return String.valueOf(supplier.get());
-                        });
-                    }),
-            entry(String.class,
-                    (supplier, subsystem) -> {
-                        mElements.get(subsystem).add(() -> {
-                            if (supplier.get() == null) {
-                                return new String();
-                            }
-                            return (String) supplier.get();
-                        });
-                    }),
-            entry(double.class,
-                    (supplier, subsystem) -> {
-                        mElements.get(subsystem).add(() -> {
-                            if (supplier.get() == null) {
-                                return new String();
-                            }
-                            String ret = String.valueOf(supplier.get());
-                            return ret.equals("NaN") ? "" : ret;
-                        });
-                    }));
-
 }
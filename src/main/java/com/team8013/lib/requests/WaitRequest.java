@@ -1,6 +1,6 @@
 package com.team8013.lib.requests;
 
-import edu.wpi.first.wpilibj.Timer;
+import com.team8013.lib.util.RobotClock;
 
 public class WaitRequest extends Request {
 
@@ -13,12 +13,12 @@ public class WaitRequest extends Request {
 
     @Override
     public void act() {
-        startTime = Timer.getFPGATimestamp();
+        startTime = RobotClock.getInstance().now();
     }
 
     @Override
     public boolean isFinished() {
-        return (Timer.getFPGATimestamp() - startTime) >= this.waitTime;
+        return (RobotClock.getInstance().now() - startTime) >= this.waitTime;
     }
     
 }
@@ -0,0 +1,54 @@
+package com.team8013.lib.stats;
+
+/**
+ * Weighted least squares fit of a sequence that only goes one way, by pool
+ * adjacent violators: neighbours that break the order are merged into their
+ * weighted mean until none do.
+ */
+public class IsotonicRegression {
+
+    /**
+     * @param values     in order, e.g. by distance
+     * @param weights    how much each value counts, 0 to ignore it
+     * @param increasing true for a non-decreasing fit, false for non-increasing
+     * @return the fitted value at each index
+     */
+    public static double[] fit(double[] values, double[] weights, boolean increasing) {
+        int n = values.length;
+        double[] blockMean = new double[n];
+        double[] blockWeight = new double[n];
+        int[] blockEnd = new int[n]; // last index covered by each block
+        int blocks = 0;
+
+        double sign = increasing ? 1.0 : -1.0;
+        for (int i = 0; i < n; i++) {
+            if (weights[i] <= 0.0) {
+                continue;
+            }
+            blockMean[blocks] = sign * values[i];
+            blockWeight[blocks] = weights[i];
+            blockEnd[blocks] = i;
+            blocks++;
+            while (blocks > 1 && blockMean[blocks - 2] > blockMean[blocks - 1]) {
+                double weight = blockWeight[blocks - 2] + blockWeight[blocks - 1];
+                blockMean[blocks - 2] = (blockMean[blocks - 2] * blockWeight[blocks - 2]
+                        + blockMean[blocks - 1] * blockWeight[blocks - 1]) / weight;
+                blockWeight[blocks - 2] = weight;
+                blockEnd[blocks - 2] = blockEnd[blocks - 1];
+                blocks--;
+            }
+        }
+
+        // indexes with no weight take the value of the block after them, or
+        // the last block past the end
+        double[] fitted = new double[n];
+        int block = 0;
+        for (int i = 0; i < n; i++) {
+            while (block < blocks - 1 && blockEnd[block] < i) {
+                block++;
+            }
+            fitted[i] = blocks == 0 ? Double.NaN : sign * blockMean[block];
+        }
+        return fitted;
+    }
+}
@@ -0,0 +1,69 @@
+package com.team8013.lib.stats;
+
+/**
+ * Mean, variance, min and max of every sample added so far, without keeping
+ * the samples. Uses Welford's update so the variance stays accurate over long
+ * runs.
+ */
+public class RunningStats {
+
+    private long mCount = 0;
+    private double mMean = 0.0;
+    private double mM2 = 0.0;
+    private double mSum = 0.0;
+    private double mMin = Double.POSITIVE_INFINITY;
+    private double mMax = Double.NEGATIVE_INFINITY;
+
+    public void add(double value) {
+        mCount++;
+        double delta = value - mMean;
+        mMean += delta / mCount;
+        mM2 += delta * (value - mMean);
+        mSum += value;
+        mMin = Math.min(mMin, value);
+        mMax = Math.max(mMax, value);
+    }
+
+    public void clear() {
+        mCount = 0;
+        mMean = 0.0;
+        mM2 = 0.0;
+        mSum = 0.0;
+        mMin = Double.POSITIVE_INFINITY;
+        mMax = Double.NEGATIVE_INFINITY;
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public double getSum() {
+        return mSum;
+    }
+
+    /**
+     * @return mean of all samples, NaN if empty
+     */
+    public double getMean() {
+        return mCount == 0 ? Double.NaN : mMean;
+    }
+
+    /**
+     * @return sample variance, 0 with fewer than two samples
+     */
+    public double getVariance() {
+        return mCount < 2 ? 0.0 : mM2 / (mCount - 1);
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    public double getMin() {
+        return mMin;
+    }
+
+    public double getMax() {
+        return mMax;
+    }
+}
@@ -0,0 +1,312 @@
+package com.team8013.lib.stats;
+
+import java.util.Arrays;
+
+/**
+ * Statistics over the last N samples, kept in a primitive ring buffer. Adding a
+ * sample and reading the mean, variance, min or max are all O(1) and nothing
+ * allocates after construction, so it's safe to use every loop.
+ * <p>
+ * Min and max come from monotonic deques. Percentiles are exact (quickselect
+ * over a preallocated scratch copy, O(N)) unless a histogram range is set with
+ * {@link #enableHistogram}, which makes them approximate and O(bins).
+ */
+public class WindowedStats {
+
+    // re-sum the window this often to get rid of floating point drift
+    private static final int kRecomputePeriodWindows = 64;
+
+    private final int mCapacity;
+    private final double[] mBuffer;
+    private int mHead = 0; // next slot to write
+    private int mSize = 0;
+    private long mCount = 0; // samples ever added, used as deque indices
+
+    private double mSum = 0.0;
+    private double mSumSquares = 0.0;
+    private int mAddsSinceRecompute = 0;
+
+    // monotonic deques of sample indices, increasing values for min and
+    // decreasing for max
+    private final long[] mMinIndices;
+    private final double[] mMinValues;
+    private int mMinHead = 0;
+    private int mMinSize = 0;
+    private final long[] mMaxIndices;
+    private final double[] mMaxValues;
+    private int mMaxHead = 0;
+    private int mMaxSize = 0;
+
+    private final double[] mScratch;
+
+    private int[] mHistogram = null;
+    private double mHistogramMin;
+    private double mHistogramBinWidth;
+
+    public WindowedStats(int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Window size must be at least 1");
+        }
+        mCapacity = windowSize;
+        mBuffer = new double[windowSize];
+        mMinIndices = new long[windowSize];
+        mMinValues = new double[windowSize];
+        mMaxIndices = new long[windowSize];
+        mMaxValues = new double[windowSize];
+        mScratch = new double[windowSize];
+    }
+
+    /**
+     * Keeps a histogram of the window over [min, max] so percentiles are
+     * approximate and cheap instead of exact. Samples outside the range count in
+     * the end bins.
+     */
+    public WindowedStats enableHistogram(double min, double max, int bins) {
+        mHistogram = new int[bins];
+        mHistogramMin = min;
+        mHistogramBinWidth = (max - min) / bins;
+        for (int i = 0; i < mSize; i++) {
+            mHistogram[binFor(get(i))]++;
+        }
+        return this;
+    }
+
+    public void add(double value) {
+        if (mSize == mCapacity) {
+            double evicted = mBuffer[mHead];
+            mSum -= evicted;
+            mSumSquares -= evicted * evicted;
+            if (mHistogram != null) {
+                mHistogram[binFor(evicted)]--;
+            }
+        } else {
+            mSize++;
+        }
+        mBuffer[mHead] = value;
+        mHead = (mHead + 1) % mCapacity;
+        mSum += value;
+        mSumSquares += value * value;
+        if (mHistogram != null) {
+            mHistogram[binFor(value)]++;
+        }
+
+        long index = mCount++;
+        long oldest = index - mCapacity;
+
+        // drop anything that fell out of the window, then anything the new
+        // sample makes irrelevant
+        while (mMinSize > 0 && mMinIndices[mMinHead] <= oldest) {
+            mMinHead = (mMinHead + 1) % mCapacity;
+            mMinSize--;
+        }
+        while (mMinSize > 0 && mMinValues[(mMinHead + mMinSize - 1) % mCapacity] >= value) {
+            mMinSize--;
+        }
+        int minTail = (mMinHead + mMinSize) % mCapacity;
+        mMinIndices[minTail] = index;
+        mMinValues[minTail] = value;
+        mMinSize++;
+
+        while (mMaxSize > 0 && mMaxIndices[mMaxHead] <= oldest) {
+            mMaxHead = (mMaxHead + 1) % mCapacity;
+            mMaxSize--;
+        }
+        while (mMaxSize > 0 && mMaxValues[(mMaxHead + mMaxSize - 1) % mCapacity] <= value) {
+            mMaxSize--;
+        }
+        int maxTail = (mMaxHead + mMaxSize) % mCapacity;
+        mMaxIndices[maxTail] = index;
+        mMaxValues[maxTail] = value;
+        mMaxSize++;
+
+        if (++mAddsSinceRecompute >= mCapacity * kRecomputePeriodWindows) {
+            recompute();
+        }
+    }
+
+    public void clear() {
+        mHead = 0;
+        mSize = 0;
+        mSum = 0.0;
+        mSumSquares = 0.0;
+        mMinHead = mMinSize = 0;
+        mMaxHead = mMaxSize = 0;
+        mAddsSinceRecompute = 0;
+        if (mHistogram != null) {
+            Arrays.fill(mHistogram, 0);
+        }
+    }
+
+    /**
+     * Re-sums the window from the buffer to reset accumulated rounding error.
+     */
+    public void recompute() {
+        mSum = 0.0;
+        mSumSquares = 0.0;
+        for (int i = 0; i < mSize; i++) {
+            double value = get(i);
+            mSum += value;
+            mSumSquares += value * value;
+        }
+        mAddsSinceRecompute = 0;
+    }
+
+    /**
+     * @return the i-th oldest sample in the window
+     */
+    public double get(int i) {
+        return mBuffer[(mHead - mSize + i + mCapacity) % mCapacity];
+    }
+
+    /**
+     * @return the most recent sample, NaN if empty
+     */
+    public double getLast() {
+        return mSize == 0 ? Double.NaN : mBuffer[(mHead - 1 + mCapacity) % mCapacity];
+    }
+
+    public int getSize() {
+        return mSize;
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    public boolean isFull() {
+        return mSize == mCapacity;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public double getSum() {
+        return mSum;
+    }
+
+    /**
+     * @return mean of the window, NaN if empty
+     */
+    public double getMean() {
+        return mSize == 0 ? Double.NaN : mSum / mSize;
+    }
+
+    /**
+     * @return sample variance of the window, 0 with fewer than two samples
+     */
+    public double getVariance() {
+        if (mSize < 2) {
+            return 0.0;
+        }
+        double variance = (mSumSquares - mSum * mSum / mSize) / (mSize - 1);
+        return Math.max(variance, 0.0);
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * @return smallest sample in the window, NaN if empty
+     */
+    public double getMin() {
+        return mMinSize == 0 ? Double.NaN : mMinValues[mMinHead];
+    }
+
+    /**
+     * @return largest sample in the window, NaN if empty
+     */
+    public double getMax() {
+        return mMaxSize == 0 ? Double.NaN : mMaxValues[mMaxHead];
+    }
+
+    public double getMedian() {
+        return getPercentile(0.5);
+    }
+
+    /**
+     * @param percentile between 0 and 1
+     * @return the value at that percentile of the window, NaN if empty
+     */
+    public double getPercentile(double percentile) {
+        if (mSize == 0) {
+            return Double.NaN;
+        }
+        percentile = Math.max(0.0, Math.min(1.0, percentile));
+        if (mHistogram != null) {
+            return histogramPercentile(percentile);
+        }
+
+        for (int i = 0; i < mSize; i++) {
+            mScratch[i] = get(i);
+        }
+        double rank = percentile * (mSize - 1);
+        int lower = (int) Math.floor(rank);
+        double lowerValue = select(mScratch, mSize, lower);
+        if (lower + 1 >= mSize || rank == lower) {
+            return lowerValue;
+        }
+        // everything above lower is now >= lowerValue, the next order statistic
+        // is the smallest of those
+        double upperValue = Double.POSITIVE_INFINITY;
+        for (int i = lower + 1; i < mSize; i++) {
+            upperValue = Math.min(upperValue, mScratch[i]);
+        }
+        return lowerValue + (upperValue - lowerValue) * (rank - lower);
+    }
+
+    private double histogramPercentile(double percentile) {
+        double target = percentile * mSize;
+        int seen = 0;
+        for (int bin = 0; bin < mHistogram.length; bin++) {
+            int count = mHistogram[bin];
+            if (count > 0 && seen + count >= target) {
+                double fraction = (target - seen) / count;
+                return mHistogramMin + (bin + fraction) * mHistogramBinWidth;
+            }
+            seen += count;
+        }
+        return mHistogramMin + mHistogram.length * mHistogramBinWidth;
+    }
+
+    private int binFor(double value) {
+        int bin = (int) Math.floor((value - mHistogramMin) / mHistogramBinWidth);
+        return Math.max(0, Math.min(mHistogram.length - 1, bin));
+    }
+
+    // Hoare quickselect, leaves values[k] as the k-th smallest with everything
+    // after it no smaller
+    private static double select(double[] values, int size, int k) {
+        int left = 0;
+        int right = size - 1;
+        while (left < right) {
+            double pivot = values[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    double temp = values[i];
+                    values[i] = values[j];
+                    values[j] = temp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                break;
+            }
+        }
+        return values[k];
+    }
+}
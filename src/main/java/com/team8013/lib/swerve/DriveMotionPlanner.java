@@ -4,7 +4,9 @@ import java.util.ArrayList;
 
 import com.team8013.frc2024.Constants;
 import com.team8013.frc2024.Robot;
+import com.team8013.lib.trajectory.SwerveTimedTrajectory;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.controller.ProfiledPIDController;
 import edu.wpi.first.math.geometry.Pose2d;
@@ -13,7 +15,6 @@ import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.trajectory.Trajectory;
 import edu.wpi.first.math.trajectory.TrajectoryConfig;
 import edu.wpi.first.math.trajectory.TrajectoryGenerator;
-import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 public class DriveMotionPlanner {
@@ -22,11 +23,14 @@ public class DriveMotionPlanner {
     private final ProfiledPIDController rotationController;
 
     private final PIDController snapController;
+    private double mLastSnapTarget = Double.NaN;
     
     private final HolonomicDriveController mDriveController;
 
     private Trajectory mCurrentTrajectory;
     private Rotation2d mTargetRotation;
+    // heading to follow along the trajectory, until something sets a heading directly
+    private SwerveTimedTrajectory mHeadingProfile = null;
     private Double mStartTime = Double.NaN;
 
     private boolean isFinished = false;
@@ -35,7 +39,8 @@ public class DriveMotionPlanner {
         forwardController = new PIDController(Constants.AutoConstants.kPXController, 0.0, Constants.AutoConstants.kDXController);
         strafeController = new PIDController(Constants.AutoConstants.kPYController, 0.0, Constants.AutoConstants.kDYController);
         rotationController = new ProfiledPIDController(Constants.AutoConstants.kPThetaController, 0.0, 0.0, Constants.AutoConstants.kThetaControllerConstraints);
-        snapController = new PIDController(Constants.SnapConstants.kP, Constants.SnapConstants.kI, Constants.SnapConstants.kD);
+        // the derivative is done on the gyro's rate in calculateRotationalAdjustment
+        snapController = new PIDController(Constants.SnapConstants.kP, Constants.SnapConstants.kI, 0.0);
         
         rotationController.enableContinuousInput(0, 2 * Math.PI);
         snapController.enableContinuousInput(0, 2 * Math.PI);
@@ -45,12 +50,37 @@ public class DriveMotionPlanner {
         SmartDashboard.putNumber("Desired traj speed", 0.0);
     }
 
-    public double calculateRotationalAdjustment(double target_heading, double current_heading) {
-        if (snapController.getSetpoint() != target_heading) {
+    /**
+     * Heading hold toward a target that can move, like the speaker heading
+     * while driving. PI on the heading error, the target's own turn rate fed
+     * forward, and damping from the gyro's rate rather than differencing a
+     * heading that's already a loop old.
+     *
+     * @param yaw_rate measured rad/s CCW positive
+     */
+    public double calculateRotationalAdjustment(double target_heading, double current_heading, double yaw_rate) {
+        double targetRate = 0.0;
+        if (!Double.isNaN(mLastSnapTarget)) {
+            double step = MathUtil.angleModulus(target_heading - mLastSnapTarget);
+            if (Math.abs(step) < Constants.SnapConstants.kMaxTrackingStep) {
+                targetRate = step / Constants.kLooperDt;
+            } else {
+                snapController.reset(); // a new target, not one being tracked
+            }
+        } else {
             snapController.reset();
-            snapController.setSetpoint(target_heading);
         }
-        return snapController.calculate(current_heading, target_heading);
+        mLastSnapTarget = target_heading;
+        return snapController.calculate(current_heading, target_heading)
+                + Constants.SnapConstants.kTargetRateFeedforward * targetRate
+                + Constants.SnapConstants.kD * (targetRate - yaw_rate);
+    }
+
+    /**
+     * Forgets the last snap target, call when heading control starts.
+     */
+    public void resetRotationalAdjustment() {
+        mLastSnapTarget = Double.NaN;
     }
 
     public void setTrajectory(Trajectory trajectory, Rotation2d heading, Pose2d current_pose) {
@@ -61,9 +91,13 @@ public class DriveMotionPlanner {
         mCurrentTrajectory = trajectory;
         isFinished = false;
         setTargetHeading(heading);
+        if (trajectory instanceof SwerveTimedTrajectory) {
+            mHeadingProfile = (SwerveTimedTrajectory) trajectory;
+        }
     }
 
     public void setTargetHeading(Rotation2d newHeading) {
+        mHeadingProfile = null;
         mTargetRotation = newHeading;
         if (Robot.flip_trajectories) {
             mTargetRotation = Rotation2d.fromDegrees(180.0).rotateBy(mTargetRotation.unaryMinus());
@@ -78,9 +112,13 @@ public class DriveMotionPlanner {
         return TrajectoryGenerator.generateTrajectory(poses[0], interiorPoints, poses[poses.length - 1], config);
     }
 
-    public ChassisSpeeds update(Pose2d current_state, double timestamp) {
+    /**
+     * @param yaw_rate measured rad/s CCW positive, for the heading controller's
+     *                 damping
+     */
+    public ChassisSpeeds update(Pose2d current_state, double timestamp, double yaw_rate) {
         if (mStartTime.isNaN()) {
-            mStartTime = Timer.getFPGATimestamp();
+            mStartTime = timestamp;
         }
 
         if (timestamp > mStartTime + mCurrentTrajectory.getTotalTimeSeconds()) {
@@ -92,9 +130,14 @@ public class DriveMotionPlanner {
         }
         
         Trajectory.State desired_state = mCurrentTrajectory.sample(timestamp - mStartTime);
+        if (mHeadingProfile != null) {
+            // already flipped for the alliance when it was loaded
+            mTargetRotation = mHeadingProfile.sampleHeading(timestamp - mStartTime);
+        }
 
         SmartDashboard.putNumber("Desired traj speed", desired_state.velocityMetersPerSecond);
 
+        mDriveController.setMeasuredYawRate(yaw_rate);
         return mDriveController.calculate(current_state, desired_state, mTargetRotation);
     }
 
@@ -4,6 +4,10 @@
 
 package com.team8013.lib.swerve;
 
+import com.team8013.frc2024.Constants;
+import com.team8013.lib.geometry.MutablePose2d;
+import com.team8013.lib.geometry.MutableRotation2d;
+
 import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.controller.ProfiledPIDController;
 import edu.wpi.first.math.geometry.Pose2d;
@@ -30,8 +34,10 @@ import edu.wpi.first.math.util.Units;
  * point toward. This heading reference is profiled for smoothness.
  */
 public class HolonomicDriveController {
-    private Pose2d m_poseError = new Pose2d();
-    private Rotation2d m_rotationError = new Rotation2d();
+    // errors are updated in place every call
+    private final MutablePose2d m_poseError = new MutablePose2d();
+    private final MutableRotation2d m_rotationError = new MutableRotation2d();
+    private final MutablePose2d m_currentPose = new MutablePose2d();
     private Pose2d m_poseTolerance = new Pose2d();
     private boolean m_enabled = true;
 
@@ -40,6 +46,7 @@ public class HolonomicDriveController {
     private final ProfiledPIDController m_thetaController;
 
     private boolean m_firstRun = true;
+    private double m_measuredYawRate = 0.0;
 
     /**
      * Constructs a holonomic drive controller.
@@ -65,13 +72,11 @@ public class HolonomicDriveController {
      * @return True if the pose error is within tolerance of the reference.
      */
     public boolean atReference() {
-        final var eTranslate = m_poseError.getTranslation();
-        final var eRotate = m_rotationError;
         final var tolTranslate = m_poseTolerance.getTranslation();
         final var tolRotate = m_poseTolerance.getRotation();
-        return Math.abs(eTranslate.getX()) < tolTranslate.getX()
-                && Math.abs(eTranslate.getY()) < tolTranslate.getY()
-                && Math.abs(eRotate.getRadians()) < tolRotate.getRadians();
+        return Math.abs(m_poseError.getX()) < tolTranslate.getX()
+                && Math.abs(m_poseError.getY()) < tolTranslate.getY()
+                && Math.abs(m_rotationError.getRadians()) < tolRotate.getRadians();
     }
 
     /**
@@ -112,9 +117,13 @@ public class HolonomicDriveController {
         double yFF = desiredLinearVelocityMetersPerSecond * trajectoryPose.getRotation().getSin();
         double thetaFF = m_thetaController.calculate(
                 currentPose.getRotation().getRadians(), desiredHeading.getRadians());
+        // damp toward the profile's turn rate with the gyro's measured one
+        thetaFF += Constants.AutoConstants.kDThetaController
+                * (m_thetaController.getSetpoint().velocity - m_measuredYawRate);
 
-        m_poseError = trajectoryPose.relativeTo(currentPose);
-        m_rotationError = desiredHeading.minus(currentPose.getRotation());
+        m_currentPose.set(currentPose);
+        m_poseError.set(trajectoryPose).relativeTo(m_currentPose);
+        m_rotationError.set(desiredHeading).minus(m_currentPose.getRotation());
 
         if (!m_enabled) {
             return ChassisSpeeds.fromFieldRelativeSpeeds(xFF, yFF, thetaFF, currentPose.getRotation());
@@ -145,6 +154,15 @@ public class HolonomicDriveController {
                 currentPose, desiredState.poseMeters, desiredState.velocityMetersPerSecond, desiredHeading);
     }
 
+    /**
+     * Sets the yaw rate used for the heading damping on the next calculate.
+     *
+     * @param radiansPerSecond measured, CCW positive
+     */
+    public void setMeasuredYawRate(double radiansPerSecond) {
+        m_measuredYawRate = radiansPerSecond;
+    }
+
     /**
      * Enables and disables the controller for troubleshooting problems. When
      * calculate() is called on
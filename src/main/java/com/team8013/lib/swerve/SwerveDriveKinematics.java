@@ -4,6 +4,8 @@
 
 package com.team8013.lib.swerve;
 
+import com.team8013.lib.geometry.MutableTwist2d;
+
 import edu.wpi.first.math.MathSharedStore;
 import edu.wpi.first.math.MathUsageId;
 import edu.wpi.first.math.geometry.Rotation2d;
@@ -218,6 +220,31 @@ public class SwerveDriveKinematics {
         chassisDeltaVector.get(0, 0), chassisDeltaVector.get(1, 0), chassisDeltaVector.get(2, 0));
   }
 
+  /**
+   * Allocation-free version of {@link #toTwist2d(SwerveModulePosition...)} for odometry.
+   *
+   * @param moduleDeltaComponents The robot-relative x and y components of each module's change in
+   *     position, interleaved as {x0, y0, x1, y1, ...} in the order passed to the constructor.
+   * @param twist Where to write the resulting chassis twist.
+   * @return The twist that was passed in.
+   */
+  public MutableTwist2d toTwist2d(double[] moduleDeltaComponents, MutableTwist2d twist) {
+    if (moduleDeltaComponents.length != m_numModules * 2) {
+      throw new IllegalArgumentException(
+          "Number of modules is not consistent with number of wheel locations provided in "
+              + "constructor");
+    }
+    double dx = 0.0;
+    double dy = 0.0;
+    double dtheta = 0.0;
+    for (int i = 0; i < moduleDeltaComponents.length; i++) {
+      dx += m_forwardKinematics.get(0, i) * moduleDeltaComponents[i];
+      dy += m_forwardKinematics.get(1, i) * moduleDeltaComponents[i];
+      dtheta += m_forwardKinematics.get(2, i) * moduleDeltaComponents[i];
+    }
+    return twist.set(dx, dy, dtheta);
+  }
+
   /**
    * Renormalizes the wheel speeds if any individual speed is above the specified maximum.
    *
@@ -4,6 +4,10 @@
 
 package com.team8013.lib.swerve;
 
+import com.team8013.lib.geometry.MutablePose2d;
+import com.team8013.lib.geometry.MutableRotation2d;
+import com.team8013.lib.geometry.MutableTwist2d;
+
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
@@ -20,14 +24,23 @@ import edu.wpi.first.math.kinematics.SwerveModulePosition;
  * path following.
  * Furthermore, odometry can be used for latency compensation when using
  * computer-vision systems.
+ *
+ * <p>
+ * The pose is kept in mutable geometry and updated in place so update() doesn't
+ * allocate. getPoseMeters() builds an immutable Pose2d at most once per update
+ * and hands the same one to every caller until the pose changes again.
  */
 public class SwerveDriveOdometry {
 	private final SwerveDriveKinematics m_kinematics;
-	private Pose2d m_poseMeters;
+	private final MutablePose2d m_pose = new MutablePose2d();
+	private Pose2d m_cachedPose = null;
 
-	private Rotation2d m_previousAngle;
+	private final MutableRotation2d m_previousAngle = new MutableRotation2d();
+	private final MutableRotation2d m_gyroAngle = new MutableRotation2d();
+	private final MutableTwist2d m_twist = new MutableTwist2d();
 	private final int m_numModules;
-	private SwerveModulePosition[] m_previousModulePositions;
+	private final double[] m_previousDistances;
+	private final double[] m_moduleDeltas;
 
 	/**
 	 * Constructs a SwerveDriveOdometry object.
@@ -39,15 +52,10 @@ public class SwerveDriveOdometry {
 	public SwerveDriveOdometry(
 			SwerveDriveKinematics kinematics, SwerveModulePosition[] modulePositions, Pose2d initialPose) {
 		m_kinematics = kinematics;
-		m_poseMeters = initialPose;
-		m_previousAngle = initialPose.getRotation();
 		m_numModules = modulePositions.length;
-
-		m_previousModulePositions = new SwerveModulePosition[m_numModules];
-		for (int index = 0; index < m_numModules; index++) {
-			m_previousModulePositions[index] = new SwerveModulePosition(
-					modulePositions[index].distanceMeters, modulePositions[index].angle);
-		}
+		m_previousDistances = new double[m_numModules];
+		m_moduleDeltas = new double[m_numModules * 2];
+		resetPosition(modulePositions, initialPose);
 	}
 
 	/**
@@ -72,12 +80,12 @@ public class SwerveDriveOdometry {
 	 * @param modulePositions The wheel positions reported by each module.,
 	 * @param pose            The position on the field that your robot is at.
 	 */
-	public void resetPosition(SwerveModulePosition[] modulePositions, Pose2d pose) {
-		m_poseMeters = pose;
-		m_previousAngle = pose.getRotation();
+	public synchronized void resetPosition(SwerveModulePosition[] modulePositions, Pose2d pose) {
+		m_pose.set(pose);
+		m_previousAngle.set(pose.getRotation());
+		m_cachedPose = null;
 		for (int index = 0; index < m_numModules; index++) {
-			m_previousModulePositions[index] = new SwerveModulePosition(
-					modulePositions[index].distanceMeters, modulePositions[index].angle);
+			m_previousDistances[index] = modulePositions[index].distanceMeters;
 		}
 	}
 
@@ -86,9 +94,41 @@ public class SwerveDriveOdometry {
 	 *
 	 * @return The pose of the robot (x and y are in meters).
 	 */
-	public Pose2d getPoseMeters() { // I CHANGED THIS
-		Pose2d newPose = new Pose2d(m_poseMeters.getTranslation(), Rotation2d.fromDegrees(m_poseMeters.getRotation().getDegrees()));
-		return newPose;
+	public synchronized Pose2d getPoseMeters() {
+		if (m_cachedPose == null) {
+			m_cachedPose = m_pose.toWpilib();
+		}
+		return m_cachedPose;
+	}
+
+	/**
+	 * Copies the position of the robot on the field into out without allocating.
+	 *
+	 * @param out Where to write the pose.
+	 * @return out
+	 */
+	public synchronized MutablePose2d getPoseMeters(MutablePose2d out) {
+		return out.set(m_pose);
+	}
+
+	/**
+	 * Fills m_moduleDeltas with the robot-relative change in position of each
+	 * module since the last update.
+	 */
+	private void updateModuleDeltas(SwerveModulePosition[] modulePositions) {
+		if (modulePositions.length != m_numModules) {
+			throw new IllegalArgumentException(
+					"Number of modules is not consistent with number of wheel locations provided in "
+							+ "constructor");
+		}
+
+		for (int index = 0; index < m_numModules; index++) {
+			var current = modulePositions[index];
+			double delta = current.distanceMeters - m_previousDistances[index];
+			m_moduleDeltas[index * 2] = delta * current.angle.getCos();
+			m_moduleDeltas[index * 2 + 1] = delta * current.angle.getSin();
+			m_previousDistances[index] = current.distanceMeters;
+		}
 	}
 
 	/**
@@ -107,57 +147,26 @@ public class SwerveDriveOdometry {
 	 *                        provide the positions
 	 *                        in the same order in which you instantiated your
 	 *                        SwerveDriveKinematics.
-	 * @return The new pose of the robot.
 	 */
-	public Pose2d update(Rotation2d gyroAngle, SwerveModulePosition[] modulePositions) {
-		if (modulePositions.length != m_numModules) {
-			throw new IllegalArgumentException(
-					"Number of modules is not consistent with number of wheel locations provided in "
-							+ "constructor");
-		}
-
-		var moduleDeltas = new SwerveModulePosition[m_numModules];
-		for (int index = 0; index < m_numModules; index++) {
-			var current = modulePositions[index];
-			var previous = m_previousModulePositions[index];
-
-			moduleDeltas[index] = new SwerveModulePosition(current.distanceMeters - previous.distanceMeters,
-					current.angle);
-			previous.distanceMeters = current.distanceMeters;
-		}
-
-		var twist = m_kinematics.toTwist2d(moduleDeltas);
-		twist.dtheta = gyroAngle.minus(m_previousAngle).getRadians();
+	public synchronized void update(Rotation2d gyroAngle, SwerveModulePosition[] modulePositions) {
+		updateModuleDeltas(modulePositions);
 
-		var newPose = m_poseMeters.exp(twist);
+		m_kinematics.toTwist2d(m_moduleDeltas, m_twist);
+		m_gyroAngle.set(gyroAngle);
+		m_twist.dtheta = m_gyroAngle.radiansFrom(m_previousAngle);
 
-		m_previousAngle = gyroAngle;
-		m_poseMeters = new Pose2d(newPose.getTranslation(), gyroAngle); //CHANGE THIS TODO:
+		m_pose.exp(m_twist);
 
-		return m_poseMeters;
+		m_previousAngle.set(m_gyroAngle);
+		m_pose.getRotation().set(m_gyroAngle); //CHANGE THIS TODO:
+		m_cachedPose = null;
 	}
 
-	public Pose2d update(SwerveModulePosition[] modulePositions) {
-		if (modulePositions.length != m_numModules) {
-			throw new IllegalArgumentException(
-					"Number of modules is not consistent with number of wheel locations provided in "
-							+ "constructor");
-		}
-
-		var moduleDeltas = new SwerveModulePosition[m_numModules];
-		for (int index = 0; index < m_numModules; index++) {
-			var current = modulePositions[index];
-			var previous = m_previousModulePositions[index];
-
-			moduleDeltas[index] = new SwerveModulePosition(current.distanceMeters - previous.distanceMeters,
-					current.angle);
-			previous.distanceMeters = current.distanceMeters;
-		}
-
-		var twist = m_kinematics.toTwist2d(moduleDeltas);
+	public synchronized Pose2d update(SwerveModulePosition[] modulePositions) {
+		updateModuleDeltas(modulePositions);
 
-		var newPose = m_poseMeters.exp(twist);
+		m_kinematics.toTwist2d(m_moduleDeltas, m_twist);
 
-		return newPose;
+		return new MutablePose2d().set(m_pose).exp(m_twist).toWpilib();
 	}
-}
\ No newline at end of file
+}
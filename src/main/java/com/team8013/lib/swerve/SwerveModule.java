@@ -1,5 +1,7 @@
 package com.team8013.lib.swerve;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.ctre.phoenix6.controls.*;
 import com.ctre.phoenix6.hardware.CANcoder;
 import com.ctre.phoenix6.hardware.TalonFX;
@@ -9,10 +11,11 @@ import com.team8013.frc2024.Ports;
 import com.team8013.frc2024.subsystems.Subsystem;
 import com.team8013.lib.Conversions;
 import com.team8013.lib.Util;
+import com.team8013.lib.drivers.DeviceBringup;
 import com.team8013.lib.logger.Log;
+import com.team8013.lib.util.RobotClock;
 import com.team254.lib.geometry.Rotation2d;
 
-import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 public class SwerveModule extends Subsystem {
@@ -33,21 +36,27 @@ public class SwerveModule extends Subsystem {
         this.kModuleNumber = moduleNumber;
         kAngleOffset = moduleConstants.angleOffset;
 
+        DeviceBringup bringup = DeviceBringup.getInstance();
+        String name = "Module " + moduleNumber;
+
         // Absolute encoder config
         angleEncoder = new CANcoder(moduleConstants.cancoderID, Ports.CANBUS_LOWER);
-        angleEncoder.getConfigurator().apply(Constants.SwerveConstants.swerveCancoderConfig());
+        CompletableFuture<Boolean> encoder = bringup.configure(angleEncoder,
+                Constants.SwerveConstants.swerveCancoderConfig(), name + " CANcoder", Ports.CANBUS_LOWER);
 
         // Angle motor config
         mAngleMotor = new TalonFX(moduleConstants.angleMotorID, Ports.CANBUS_LOWER);
-        mAngleMotor.getConfigurator().apply(Constants.SwerveConstants.swerveAngleFXConfig());
-        mAngleMotor.setPosition(0);
+        CompletableFuture<Boolean> angle = bringup.configure(mAngleMotor,
+                Constants.SwerveConstants.swerveAngleFXConfig(), name + " Angle", Ports.CANBUS_LOWER);
 
         // Drive motor config
         mDriveMotor = new TalonFX(moduleConstants.driveMotorID, Ports.CANBUS_LOWER);
-        mDriveMotor.getConfigurator().apply(Constants.SwerveConstants.swerveDriveFXConfig());
-        mDriveMotor.setPosition(0.0);
+        CompletableFuture<Boolean> drive = bringup.configure(mDriveMotor,
+                Constants.SwerveConstants.swerveDriveFXConfig(), name + " Drive", Ports.CANBUS_LOWER);
 
-        resetToAbsolute();
+        bringup.afterConfigured(name + " Drive Zero", Ports.CANBUS_LOWER,
+                () -> mDriveMotor.setPosition(0.0), drive);
+        bringup.afterConfigured(name + " Angle Seed", Ports.CANBUS_LOWER, this::resetToAbsolute, encoder, angle);
     }
 
     public void setDesiredState(ModuleState desiredState, boolean isOpenLoop) {
@@ -101,7 +110,7 @@ public class SwerveModule extends Subsystem {
     @Override
     public synchronized void readPeriodicInputs() {
 
-        mPeriodicIO.timestamp = Timer.getFPGATimestamp();
+        mPeriodicIO.timestamp = RobotClock.getInstance().getTimestamp();
 
         mPeriodicIO.velocity = Conversions.RPSToMPS(mDriveMotor.getRotorVelocity().getValue(),
                 Constants.SwerveConstants.wheelCircumference, Constants.SwerveConstants.driveGearRatio);
@@ -214,7 +223,7 @@ public class SwerveModule extends Subsystem {
 
     @Log
     public double getCurrentSpeed() {
-        return getState().speedMetersPerSecond;
+        return mPeriodicIO.velocity;
     }
 
     @Log
@@ -222,7 +231,7 @@ public class SwerveModule extends Subsystem {
         return mPeriodicIO.rotationPosition;
     }
 
-    @Log
+    @Log(critical = true)
     public double getTimestamp() {
         return mPeriodicIO.timestamp;
     }
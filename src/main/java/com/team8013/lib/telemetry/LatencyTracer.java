@@ -0,0 +1,167 @@
+package com.team8013.lib.telemetry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.team8013.lib.stats.WindowedStats;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Measures how long an input takes to get through a pipeline of stages that
+ * may run on different threads, e.g. a stick sample read in teleopPeriodic,
+ * fed to the drive, turned into module setpoints in the enabled loop and
+ * written to the motors.
+ * <p>
+ * Starting a trace stamps a new sample with a sequence number. Marking a stage
+ * hands it the newest sample the stage before it has seen, and if that sample
+ * is new to this stage its age goes into the stage's latency window. A sample
+ * that gets replaced before a later stage picks it up (two inputs between
+ * loops) is counted as skipped rather than measured, so the numbers are for
+ * inputs that actually made it to the motors.
+ */
+public class LatencyTracer {
+
+    private static LatencyTracer mInstance;
+
+    public static synchronized LatencyTracer getInstance() {
+        if (mInstance == null) {
+            mInstance = new LatencyTracer();
+        }
+        return mInstance;
+    }
+
+    // stage name SubsystemManager marks on every trace after all outputs are written
+    public static final String kOutputsWritten = "written";
+
+    private static final int kWindowSize = 500; // 10 s of loops
+    private static final double kHistogramMax = 0.1; // s
+    private static final int kHistogramBins = 400;
+
+    private final List<Trace> mTraces = new ArrayList<>();
+
+    private LatencyTracer() {
+    }
+
+    /**
+     * @param stages names of the stages in order, the first is where samples
+     *               start
+     */
+    public synchronized Trace create(String name, String... stages) {
+        Trace trace = new Trace(name, stages);
+        mTraces.add(trace);
+        return trace;
+    }
+
+    /**
+     * Marks the named stage on every trace that has it.
+     */
+    public synchronized void mark(String stage) {
+        for (Trace trace : mTraces) {
+            int index = trace.getStage(stage);
+            if (index > 0) {
+                trace.mark(index);
+            }
+        }
+    }
+
+    public synchronized void outputTelemetry() {
+        mTraces.forEach(Trace::outputTelemetry);
+    }
+
+    public synchronized void clear() {
+        mTraces.forEach(Trace::clear);
+    }
+
+    public static class Trace {
+        private final String mName;
+        private final String[] mStages;
+
+        private long mNextSequence = 1;
+        // newest sample each stage has seen
+        private final long[] mSequences;
+        private final long[] mStartNanos;
+        private final WindowedStats[] mLatencies;
+        private long mSkipped = 0;
+
+        private Trace(String name, String[] stages) {
+            mName = name;
+            mStages = stages;
+            mSequences = new long[stages.length];
+            mStartNanos = new long[stages.length];
+            mLatencies = new WindowedStats[stages.length];
+            for (int i = 1; i < stages.length; i++) {
+                mLatencies[i] = new WindowedStats(kWindowSize).enableHistogram(0.0, kHistogramMax, kHistogramBins);
+            }
+        }
+
+        /**
+         * Starts a new sample at the first stage.
+         *
+         * @return its sequence number
+         */
+        public synchronized long begin() {
+            mSequences[0] = mNextSequence++;
+            mStartNanos[0] = System.nanoTime();
+            return mSequences[0];
+        }
+
+        /**
+         * Hands the newest sample from the stage before to this one.
+         */
+        public synchronized void mark(int stage) {
+            long sequence = mSequences[stage - 1];
+            if (sequence <= mSequences[stage]) {
+                return;
+            }
+            if (stage == mStages.length - 1) {
+                mSkipped += Math.max(0, sequence - mSequences[stage] - 1);
+            }
+            mSequences[stage] = sequence;
+            mStartNanos[stage] = mStartNanos[stage - 1];
+            mLatencies[stage].add((System.nanoTime() - mStartNanos[stage]) / 1.0e9);
+        }
+
+        /**
+         * @return index of the named stage, -1 if there isn't one
+         */
+        public int getStage(String stage) {
+            for (int i = 0; i < mStages.length; i++) {
+                if (mStages[i].equals(stage)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return seconds from the first stage to this one at the percentile
+         *         (0 to 1) over the last kWindowSize samples, NaN if none
+         */
+        public synchronized double getLatency(int stage, double percentile) {
+            return mLatencies[stage].getPercentile(percentile);
+        }
+
+        public synchronized long getSkipped() {
+            return mSkipped;
+        }
+
+        public synchronized void clear() {
+            for (int i = 1; i < mLatencies.length; i++) {
+                mLatencies[i].clear();
+            }
+            mSkipped = 0;
+        }
+
+        private synchronized void outputTelemetry() {
+            for (int i = 1; i < mStages.length; i++) {
+                SmartDashboard.putString("Latency " + mName + " " + mStages[i],
+                        String.format(Locale.ROOT, "p50 %.1f p99 %.1f max %.1f ms",
+                                mLatencies[i].getPercentile(0.5) * 1000.0,
+                                mLatencies[i].getPercentile(0.99) * 1000.0, mLatencies[i].getMax() * 1000.0));
+            }
+            SmartDashboard.putNumber("Latency " + mName + " Skipped", mSkipped);
+        }
+    }
+}
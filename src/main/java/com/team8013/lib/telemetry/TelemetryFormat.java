@@ -0,0 +1,208 @@
+package com.team8013.lib.telemetry;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Wire format shared by the robot side stream and the desktop receiver. Only
+ * uses the standard library so the receiver runs anywhere.
+ * <p>
+ * Every packet starts with a header of {magic, version, packet type, schema id}.
+ * A schema packet lists the channel names and types once, then every frame is
+ * {sequence, timestamp, doubles, packed booleans} in the order the schema gave.
+ * Frames don't carry names so a frame is a few bytes per channel. All values
+ * are little endian.
+ */
+public final class TelemetryFormat {
+
+    public static final short kMagic = 0x5438;
+    public static final byte kVersion = 1;
+
+    public static final byte kSchemaPacket = 1;
+    public static final byte kFramePacket = 2;
+
+    public static final byte kTypeDouble = 0;
+    public static final byte kTypeBoolean = 1;
+
+    public static final int kHeaderSize = 2 + 1 + 1 + 4;
+    // biggest datagram we'll build, large schemas get fragmented by IP
+    public static final int kMaxPacketSize = 65000;
+
+    private TelemetryFormat() {
+    }
+
+    /**
+     * Channel names and types, fixed for the life of a stream.
+     */
+    public static final class Schema {
+        public final int id;
+        public final String[] names;
+        public final byte[] types;
+        public final int numDoubles;
+        public final int numBooleans;
+
+        public Schema(List<String> names, List<Byte> types) {
+            this.names = names.toArray(new String[0]);
+            this.types = new byte[types.size()];
+            int doubles = 0;
+            CRC32 crc = new CRC32();
+            for (int i = 0; i < this.types.length; i++) {
+                this.types[i] = types.get(i);
+                if (this.types[i] == kTypeDouble) {
+                    doubles++;
+                }
+                crc.update(this.names[i].getBytes(StandardCharsets.UTF_8));
+                crc.update(this.types[i]);
+            }
+            numDoubles = doubles;
+            numBooleans = this.types.length - doubles;
+            id = (int) crc.getValue();
+        }
+
+        private Schema(int id, String[] names, byte[] types) {
+            this.id = id;
+            this.names = names;
+            this.types = types;
+            int doubles = 0;
+            for (byte type : types) {
+                if (type == kTypeDouble) {
+                    doubles++;
+                }
+            }
+            numDoubles = doubles;
+            numBooleans = types.length - doubles;
+        }
+
+        public int size() {
+            return names.length;
+        }
+
+        public int getFrameSize() {
+            return kHeaderSize + 4 + 8 + numDoubles * 8 + (numBooleans + 7) / 8;
+        }
+    }
+
+    public static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void putHeader(ByteBuffer buffer, byte type, int schemaId) {
+        buffer.putShort(kMagic);
+        buffer.put(kVersion);
+        buffer.put(type);
+        buffer.putInt(schemaId);
+    }
+
+    public static void encodeSchema(ByteBuffer buffer, Schema schema) {
+        buffer.clear();
+        putHeader(buffer, kSchemaPacket, schema.id);
+        buffer.putShort((short) schema.size());
+        for (int i = 0; i < schema.size(); i++) {
+            byte[] name = schema.names[i].getBytes(StandardCharsets.UTF_8);
+            buffer.put(schema.types[i]);
+            buffer.putShort((short) name.length);
+            buffer.put(name);
+        }
+        buffer.flip();
+    }
+
+    /**
+     * @param values one value per channel, booleans are anything non zero
+     */
+    public static void encodeFrame(ByteBuffer buffer, Schema schema, int sequence, double timestamp,
+            double[] values, int offset) {
+        buffer.clear();
+        putHeader(buffer, kFramePacket, schema.id);
+        buffer.putInt(sequence);
+        buffer.putDouble(timestamp);
+        for (int i = 0; i < schema.size(); i++) {
+            if (schema.types[i] == kTypeDouble) {
+                buffer.putDouble(values[offset + i]);
+            }
+        }
+        int bits = 0;
+        int count = 0;
+        for (int i = 0; i < schema.size(); i++) {
+            if (schema.types[i] == kTypeBoolean) {
+                if (values[offset + i] != 0.0) {
+                    bits |= 1 << count;
+                }
+                if (++count == 8) {
+                    buffer.put((byte) bits);
+                    bits = 0;
+                    count = 0;
+                }
+            }
+        }
+        if (count > 0) {
+            buffer.put((byte) bits);
+        }
+        buffer.flip();
+    }
+
+    /**
+     * @return packet type, or -1 if this isn't one of our packets
+     */
+    public static int readHeader(ByteBuffer buffer) {
+        if (buffer.remaining() < kHeaderSize || buffer.getShort() != kMagic || buffer.get() != kVersion) {
+            return -1;
+        }
+        return buffer.get();
+    }
+
+    /**
+     * Call after readHeader returned kSchemaPacket.
+     */
+    public static Schema decodeSchema(ByteBuffer buffer) {
+        int id = buffer.getInt();
+        int count = buffer.getShort() & 0xFFFF;
+        String[] names = new String[count];
+        byte[] types = new byte[count];
+        for (int i = 0; i < count; i++) {
+            types[i] = buffer.get();
+            byte[] name = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(name);
+            names[i] = new String(name, StandardCharsets.UTF_8);
+        }
+        return new Schema(id, names, types);
+    }
+
+    /**
+     * Call after readHeader returned kFramePacket.
+     *
+     * @param values filled with one value per channel, booleans as 0 or 1
+     * @return false if the frame was built from a different schema
+     */
+    public static boolean decodeFrame(ByteBuffer buffer, Schema schema, Frame frame, double[] values) {
+        if (buffer.getInt() != schema.id || buffer.remaining() < schema.getFrameSize() - kHeaderSize) {
+            return false;
+        }
+        frame.sequence = buffer.getInt();
+        frame.timestamp = buffer.getDouble();
+        for (int i = 0; i < schema.size(); i++) {
+            if (schema.types[i] == kTypeDouble) {
+                values[i] = buffer.getDouble();
+            }
+        }
+        int bits = 0;
+        int count = 0;
+        for (int i = 0; i < schema.size(); i++) {
+            if (schema.types[i] == kTypeBoolean) {
+                if (count == 0) {
+                    bits = buffer.get();
+                }
+                values[i] = ((bits >> count) & 1) != 0 ? 1.0 : 0.0;
+                count = (count + 1) % 8;
+            }
+        }
+        return true;
+    }
+
+    public static final class Frame {
+        public int sequence;
+        public double timestamp;
+    }
+}
@@ -0,0 +1,153 @@
+package com.team8013.lib.telemetry;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Desktop side of the telemetry stream. Listens for TelemetryStream packets
+ * and writes every frame as a row of a csv, starting a new file whenever the
+ * schema changes (robot code redeployed with different channels).
+ * <p>
+ * Only uses the standard library, run it from the robot project's compiled
+ * classes:
+ *
+ * <pre>
+ * java -cp build/classes/java/main com.team8013.lib.telemetry.TelemetryReceiver [port] [output dir]
+ * </pre>
+ *
+ * Point the robot's stream at 127.0.0.1 in simulation to test it on one
+ * machine.
+ */
+public class TelemetryReceiver {
+
+    public static final int kDefaultPort = 5809;
+    private static final double kStatusPeriod = 5.0; // seconds
+
+    private final Path mOutputDirectory;
+    private TelemetryFormat.Schema mSchema = null;
+    private double[] mValues = new double[0];
+    private final TelemetryFormat.Frame mFrame = new TelemetryFormat.Frame();
+    private BufferedWriter mWriter = null;
+
+    private int mLastSequence = -1;
+    private long mFrames = 0;
+    private long mLostFrames = 0;
+    private long mUnknownFrames = 0;
+
+    public TelemetryReceiver(Path outputDirectory) {
+        mOutputDirectory = outputDirectory;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : kDefaultPort;
+        Path output = Paths.get(args.length > 1 ? args[1] : "telemetry");
+        Files.createDirectories(output);
+
+        TelemetryReceiver receiver = new TelemetryReceiver(output);
+        Runtime.getRuntime().addShutdownHook(new Thread(receiver::close));
+        receiver.run(port);
+    }
+
+    public void run(int port) throws IOException {
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            channel.bind(new InetSocketAddress(port));
+            System.out.println("Listening for telemetry on port " + port + ", writing to " + mOutputDirectory);
+
+            ByteBuffer buffer = TelemetryFormat.allocate(TelemetryFormat.kMaxPacketSize);
+            long lastStatus = System.nanoTime();
+            while (true) {
+                buffer.clear();
+                channel.receive(buffer);
+                buffer.flip();
+                handlePacket(buffer);
+
+                if ((System.nanoTime() - lastStatus) / 1e9 > kStatusPeriod) {
+                    lastStatus = System.nanoTime();
+                    System.out.println("frames " + mFrames + ", lost " + mLostFrames + ", waiting on schema "
+                            + mUnknownFrames);
+                    if (mWriter != null) {
+                        mWriter.flush();
+                    }
+                }
+            }
+        }
+    }
+
+    public void handlePacket(ByteBuffer buffer) throws IOException {
+        int type = TelemetryFormat.readHeader(buffer);
+        if (type == TelemetryFormat.kSchemaPacket) {
+            TelemetryFormat.Schema schema = TelemetryFormat.decodeSchema(buffer);
+            if (mSchema == null || schema.id != mSchema.id) {
+                startFile(schema);
+            }
+        } else if (type == TelemetryFormat.kFramePacket) {
+            if (mSchema == null) {
+                mUnknownFrames++;
+                return;
+            }
+            if (!TelemetryFormat.decodeFrame(buffer, mSchema, mFrame, mValues)) {
+                mUnknownFrames++;
+                return;
+            }
+            if (mLastSequence >= 0 && mFrame.sequence > mLastSequence + 1) {
+                mLostFrames += mFrame.sequence - mLastSequence - 1;
+            }
+            mLastSequence = mFrame.sequence;
+            mFrames++;
+            writeRow();
+        }
+    }
+
+    private void startFile(TelemetryFormat.Schema schema) throws IOException {
+        close();
+        mSchema = schema;
+        mValues = new double[schema.size()];
+        mLastSequence = -1;
+
+        String time = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
+        Path file = mOutputDirectory.resolve(String.format("telemetry_%s_%08x.csv", time, schema.id));
+        mWriter = new BufferedWriter(new FileWriter(file.toFile()));
+        mWriter.write("sequence,timestamp");
+        for (String name : schema.names) {
+            mWriter.write(",");
+            mWriter.write(name);
+        }
+        mWriter.newLine();
+        System.out.println("New schema with " + schema.size() + " channels, writing " + file);
+    }
+
+    private void writeRow() throws IOException {
+        mWriter.write(Integer.toString(mFrame.sequence));
+        mWriter.write(",");
+        mWriter.write(Double.toString(mFrame.timestamp));
+        for (int i = 0; i < mValues.length; i++) {
+            mWriter.write(",");
+            if (mSchema.types[i] == TelemetryFormat.kTypeBoolean) {
+                mWriter.write(mValues[i] != 0.0 ? "1" : "0");
+            } else if (!Double.isNaN(mValues[i])) {
+                mWriter.write(Double.toString(mValues[i]));
+            }
+        }
+        mWriter.newLine();
+    }
+
+    public void close() {
+        try {
+            if (mWriter != null) {
+                mWriter.close();
+                mWriter = null;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
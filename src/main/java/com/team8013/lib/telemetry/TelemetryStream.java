@@ -0,0 +1,243 @@
+package com.team8013.lib.telemetry;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+
+import com.team8013.lib.logger.Log;
+import com.team8013.lib.logger.LogChannel;
+import com.team8013.lib.logger.LogFormat;
+
+/**
+ * Streams telemetry channels over UDP in the TelemetryFormat binary layout.
+ * Channels are registered before the stream starts. After that the loop thread
+ * only copies the current values into a preallocated frame each tick, and a
+ * background thread does the encoding and the socket sends.
+ * <p>
+ * The schema goes out when the stream starts and then every
+ * kSchemaPeriodFrames frames so a receiver started late can still decode. If
+ * the sender falls behind, frames are dropped instead of queued.
+ * <p>
+ * Channels are either critical or verbose. A frame sampled without the verbose
+ * channels repeats their last sampled values, so shedding load only costs
+ * resolution on the channels nobody relies on.
+ */
+public class TelemetryStream {
+
+    private static TelemetryStream mInstance;
+
+    public static synchronized TelemetryStream getInstance() {
+        if (mInstance == null) {
+            mInstance = new TelemetryStream();
+        }
+        return mInstance;
+    }
+
+    private static final int kFrameQueueSize = 8;
+    private static final int kSchemaPeriodFrames = 50;
+
+    private final List<String> mNames = new ArrayList<>();
+    private final List<Byte> mTypes = new ArrayList<>();
+    private final List<DoubleSupplier> mSuppliers = new ArrayList<>();
+    private final List<Boolean> mCritical = new ArrayList<>();
+
+    private TelemetryFormat.Schema mSchema;
+    private DoubleSupplier[] mSupplierArray;
+    private boolean[] mCriticalArray;
+    // last sampled value of every channel, carried into frames that skip verbose ones
+    private double[] mLastValues;
+    // frames are {sequence, timestamp, values...}
+    private ArrayBlockingQueue<double[]> mFreeFrames;
+    private ArrayBlockingQueue<double[]> mFilledFrames;
+
+    private DatagramChannel mChannel;
+    private InetSocketAddress mAddress;
+    private Thread mSenderThread;
+    private volatile boolean mRunning = false;
+
+    private int mSequence = 0;
+    private volatile long mFramesSent = 0;
+    private volatile long mFramesDropped = 0;
+
+    // the robot uses the one instance, tests each make their own
+    TelemetryStream() {
+    }
+
+    public synchronized void addDouble(String name, DoubleSupplier supplier) {
+        addDouble(name, supplier, false);
+    }
+
+    public synchronized void addDouble(String name, DoubleSupplier supplier, boolean critical) {
+        addChannel(name, TelemetryFormat.kTypeDouble, supplier, critical);
+    }
+
+    public synchronized void addBoolean(String name, BooleanSupplier supplier) {
+        addBoolean(name, supplier, false);
+    }
+
+    public synchronized void addBoolean(String name, BooleanSupplier supplier, boolean critical) {
+        addChannel(name, TelemetryFormat.kTypeBoolean, () -> supplier.getAsBoolean() ? 1.0 : 0.0, critical);
+    }
+
+    private void addChannel(String name, byte type, DoubleSupplier supplier, boolean critical) {
+        if (mRunning) {
+            throw new IllegalStateException("Can't add telemetry channel " + name + " after the stream started");
+        }
+        mNames.add(name);
+        mTypes.add(type);
+        mSuppliers.add(supplier);
+        mCritical.add(critical);
+    }
+
+    /**
+     * Adds every numeric or boolean field and no-arg method marked with {@link Log}
+     * as a channel named prefix/name, bound the same way the file logger binds
+     * them (see {@link LogChannel}). The annotation's critical flag carries over.
+     */
+    public synchronized void registerObject(Class<?> loggedClass, Object loggedObject, String prefix) {
+        for (LogChannel channel : LogChannel.bind(loggedClass, loggedObject)) {
+            if (channel.type == LogFormat.kTypeString) {
+                continue;
+            }
+            String name = prefix + "/" + channel.name;
+            if (channel.type == LogFormat.kTypeBoolean) {
+                // a getter that threw samples as NaN, send it as false
+                addChannel(name, TelemetryFormat.kTypeBoolean, () -> channel.getAsDouble() == 1.0 ? 1.0 : 0.0,
+                        channel.critical);
+            } else {
+                addChannel(name, TelemetryFormat.kTypeDouble, channel::getAsDouble, channel.critical);
+            }
+        }
+    }
+
+    /**
+     * Locks in the registered channels and starts sending to host:port.
+     */
+    public synchronized void start(String host, int port) {
+        if (mRunning) {
+            return;
+        }
+        mSchema = new TelemetryFormat.Schema(mNames, mTypes);
+        mSupplierArray = mSuppliers.toArray(new DoubleSupplier[0]);
+        mCriticalArray = new boolean[mSupplierArray.length];
+        for (int i = 0; i < mCriticalArray.length; i++) {
+            mCriticalArray[i] = mCritical.get(i);
+        }
+        mLastValues = new double[mSupplierArray.length];
+        mFreeFrames = new ArrayBlockingQueue<>(kFrameQueueSize);
+        mFilledFrames = new ArrayBlockingQueue<>(kFrameQueueSize);
+        for (int i = 0; i < kFrameQueueSize; i++) {
+            mFreeFrames.add(new double[mSchema.size() + 2]);
+        }
+
+        try {
+            mChannel = DatagramChannel.open();
+            mAddress = new InetSocketAddress(host, port);
+        } catch (IOException e) {
+            System.err.println("Couldn't open telemetry socket: " + e.getMessage());
+            return;
+        }
+
+        mRunning = true;
+        mSenderThread = new Thread(this::runSender, "TelemetryStream");
+        mSenderThread.setDaemon(true);
+        mSenderThread.start();
+        System.out.println("Streaming " + mSchema.size() + " telemetry channels to " + host + ":" + port
+                + " (" + mSchema.getFrameSize() + " bytes/frame)");
+    }
+
+    public synchronized void stop() {
+        mRunning = false;
+        if (mSenderThread != null) {
+            mSenderThread.interrupt();
+            mSenderThread = null;
+        }
+        try {
+            if (mChannel != null) {
+                mChannel.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Samples every channel into the next frame. Called once per loop from the
+     * loop thread, doesn't block or allocate beyond what the channel getters
+     * themselves do.
+     */
+    public void sample(double timestamp) {
+        sample(timestamp, true);
+    }
+
+    /**
+     * @param verbose false to only sample the critical channels, the verbose
+     *                ones repeat their last values
+     */
+    public void sample(double timestamp, boolean verbose) {
+        if (!mRunning) {
+            return;
+        }
+        double[] frame = mFreeFrames.poll();
+        if (frame == null) {
+            mFramesDropped++;
+            return;
+        }
+        frame[0] = mSequence++;
+        frame[1] = timestamp;
+        for (int i = 0; i < mSupplierArray.length; i++) {
+            if (verbose || mCriticalArray[i]) {
+                mLastValues[i] = mSupplierArray[i].getAsDouble();
+            }
+        }
+        System.arraycopy(mLastValues, 0, frame, 2, mLastValues.length);
+        mFilledFrames.offer(frame);
+    }
+
+    public long getFramesSent() {
+        return mFramesSent;
+    }
+
+    public long getFramesDropped() {
+        return mFramesDropped;
+    }
+
+    private void runSender() {
+        ByteBuffer schemaBuffer = TelemetryFormat.allocate(TelemetryFormat.kMaxPacketSize);
+        ByteBuffer frameBuffer = TelemetryFormat.allocate(mSchema.getFrameSize());
+        TelemetryFormat.encodeSchema(schemaBuffer, mSchema);
+
+        int framesSinceSchema = kSchemaPeriodFrames;
+        while (mRunning) {
+            double[] frame;
+            try {
+                frame = mFilledFrames.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                if (framesSinceSchema >= kSchemaPeriodFrames) {
+                    schemaBuffer.rewind();
+                    mChannel.send(schemaBuffer, mAddress);
+                    framesSinceSchema = 0;
+                }
+                TelemetryFormat.encodeFrame(frameBuffer, mSchema, (int) frame[0], frame[1], frame, 2);
+                mChannel.send(frameBuffer, mAddress);
+                framesSinceSchema++;
+                mFramesSent++;
+            } catch (IOException e) {
+                // nobody listening or the network dropped, keep going
+                mFramesDropped++;
+            } finally {
+                mFreeFrames.offer(frame);
+            }
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.team8013.lib.tracking;
+
+/**
+ * Keeps track of several stationary targets on the field from noisy, cluttered
+ * detections, one constant-position Kalman filter per target.
+ * <p>
+ * Each frame, every track is predicted forward (its covariance grows with the
+ * process noise, targets do get pushed), then detections are paired with
+ * tracks closest first by Mahalanobis distance, as long as they're inside the
+ * gate. Paired tracks take the detection as a measurement. Leftover detections
+ * start new tracks, which count as confirmed once they've been seen a few
+ * times. A track the camera should have seen but didn't gets a miss and is
+ * dropped after enough of them in a row; tracks out of view are kept until
+ * they're too old, so losing a frame or looking away doesn't lose a target.
+ * <p>
+ * All the state is in arrays sized up front, so a frame never allocates.
+ */
+public class TargetTracker {
+
+    /**
+     * Whether a point on the field was in the camera's view for a frame.
+     */
+    public interface Visibility {
+        boolean canSee(double x, double y);
+    }
+
+    private final int mCapacity;
+    private final int mMaxDetections;
+    private final double mProcessNoise;
+    private final double mGate;
+    private final int mConfirmHits;
+    private final int mMaxMisses;
+    private final double mMaxAge;
+
+    // tracks, the first mCount are live
+    private int mCount = 0;
+    private int mNextId = 1;
+    private final int[] mIds;
+    private final double[] mX;
+    private final double[] mY;
+    private final double[] mPxx;
+    private final double[] mPxy;
+    private final double[] mPyy;
+    private final double[] mLastPredict;
+    private final double[] mLastSeen;
+    private final int[] mHits;
+    private final int[] mMisses;
+
+    // association scratch
+    private final double[] mDistances;
+    private final boolean[] mTrackUsed;
+    private final boolean[] mDetectionUsed;
+
+    /**
+     * @param capacity      most tracks kept at once
+     * @param maxDetections most detections in a frame
+     * @param processNoise  m^2/s the position variance grows by
+     * @param gate          largest squared Mahalanobis distance a detection
+     *                      can be from a track to be paired with it, 9.21 keeps
+     *                      99% of true pairings for a 2D position
+     * @param confirmHits   detections before a track is confirmed
+     * @param maxMisses     misses in a row while in view before a track is
+     *                      dropped
+     * @param maxAge        seconds without a detection before a track is
+     *                      dropped regardless
+     */
+    public TargetTracker(int capacity, int maxDetections, double processNoise, double gate, int confirmHits,
+            int maxMisses, double maxAge) {
+        mCapacity = capacity;
+        mMaxDetections = maxDetections;
+        mProcessNoise = processNoise;
+        mGate = gate;
+        mConfirmHits = confirmHits;
+        mMaxMisses = maxMisses;
+        mMaxAge = maxAge;
+
+        mIds = new int[capacity];
+        mX = new double[capacity];
+        mY = new double[capacity];
+        mPxx = new double[capacity];
+        mPxy = new double[capacity];
+        mPyy = new double[capacity];
+        mLastPredict = new double[capacity];
+        mLastSeen = new double[capacity];
+        mHits = new int[capacity];
+        mMisses = new int[capacity];
+
+        mDistances = new double[capacity * maxDetections];
+        mTrackUsed = new boolean[capacity];
+        mDetectionUsed = new boolean[maxDetections];
+    }
+
+    public int getMaxDetections() {
+        return mMaxDetections;
+    }
+
+    /**
+     * Runs one frame through the tracker.
+     *
+     * @param timestamp  when the frame was taken
+     * @param xs         detected x positions, only the first count are used
+     * @param ys         detected y positions
+     * @param rxx        measurement covariance of each detection
+     * @param rxy
+     * @param ryy
+     * @param count      detections in the frame
+     * @param visibility what the camera could see for the frame, null to treat
+     *                   every track as in view
+     */
+    public synchronized void update(double timestamp, double[] xs, double[] ys, double[] rxx, double[] rxy,
+            double[] ryy, int count, Visibility visibility) {
+        count = Math.min(count, mMaxDetections);
+        predict(timestamp);
+
+        // squared Mahalanobis distance of every pairing inside the gate
+        for (int t = 0; t < mCount; t++) {
+            mTrackUsed[t] = false;
+            for (int d = 0; d < count; d++) {
+                double sxx = mPxx[t] + rxx[d];
+                double sxy = mPxy[t] + rxy[d];
+                double syy = mPyy[t] + ryy[d];
+                double det = sxx * syy - sxy * sxy;
+                double dx = xs[d] - mX[t];
+                double dy = ys[d] - mY[t];
+                double distance = det > 0.0 ? (syy * dx * dx - 2.0 * sxy * dx * dy + sxx * dy * dy) / det
+                        : Double.POSITIVE_INFINITY;
+                mDistances[t * mMaxDetections + d] = distance <= mGate ? distance : Double.POSITIVE_INFINITY;
+            }
+        }
+        for (int d = 0; d < count; d++) {
+            mDetectionUsed[d] = false;
+        }
+
+        // closest pair first until nothing inside the gate is left
+        int tracks = mCount;
+        while (true) {
+            int bestTrack = -1;
+            int bestDetection = -1;
+            double best = Double.POSITIVE_INFINITY;
+            for (int t = 0; t < tracks; t++) {
+                if (mTrackUsed[t]) {
+                    continue;
+                }
+                for (int d = 0; d < count; d++) {
+                    double distance = mDistances[t * mMaxDetections + d];
+                    if (!mDetectionUsed[d] && distance < best) {
+                        best = distance;
+                        bestTrack = t;
+                        bestDetection = d;
+                    }
+                }
+            }
+            if (bestTrack < 0) {
+                break;
+            }
+            mTrackUsed[bestTrack] = true;
+            mDetectionUsed[bestDetection] = true;
+            correct(bestTrack, xs[bestDetection], ys[bestDetection], rxx[bestDetection], rxy[bestDetection],
+                    ryy[bestDetection], timestamp);
+        }
+
+        for (int t = 0; t < tracks; t++) {
+            if (!mTrackUsed[t] && (visibility == null || visibility.canSee(mX[t], mY[t]))) {
+                mMisses[t]++;
+            }
+        }
+        for (int d = 0; d < count; d++) {
+            if (!mDetectionUsed[d]) {
+                spawn(xs[d], ys[d], rxx[d], rxy[d], ryy[d], timestamp);
+            }
+        }
+        prune(timestamp);
+    }
+
+    private void predict(double timestamp) {
+        for (int t = 0; t < mCount; t++) {
+            double dt = Math.max(0.0, timestamp - mLastPredict[t]);
+            mPxx[t] += mProcessNoise * dt;
+            mPyy[t] += mProcessNoise * dt;
+            mLastPredict[t] = Math.max(mLastPredict[t], timestamp);
+        }
+    }
+
+    private void correct(int t, double x, double y, double rxx, double rxy, double ryy, double timestamp) {
+        double sxx = mPxx[t] + rxx;
+        double sxy = mPxy[t] + rxy;
+        double syy = mPyy[t] + ryy;
+        double det = sxx * syy - sxy * sxy;
+        // K = P S^-1
+        double ixx = syy / det;
+        double ixy = -sxy / det;
+        double iyy = sxx / det;
+        double kxx = mPxx[t] * ixx + mPxy[t] * ixy;
+        double kxy = mPxx[t] * ixy + mPxy[t] * iyy;
+        double kyx = mPxy[t] * ixx + mPyy[t] * ixy;
+        double kyy = mPxy[t] * ixy + mPyy[t] * iyy;
+
+        double dx = x - mX[t];
+        double dy = y - mY[t];
+        mX[t] += kxx * dx + kxy * dy;
+        mY[t] += kyx * dx + kyy * dy;
+
+        // P = (I - K) P
+        double pxx = (1.0 - kxx) * mPxx[t] - kxy * mPxy[t];
+        double pxy = (1.0 - kxx) * mPxy[t] - kxy * mPyy[t];
+        double pyy = -kyx * mPxy[t] + (1.0 - kyy) * mPyy[t];
+        mPxx[t] = pxx;
+        mPxy[t] = pxy;
+        mPyy[t] = pyy;
+
+        mHits[t]++;
+        mMisses[t] = 0;
+        mLastSeen[t] = Math.max(mLastSeen[t], timestamp);
+    }
+
+    private void spawn(double x, double y, double rxx, double rxy, double ryy, double timestamp) {
+        int t = mCount;
+        if (t == mCapacity) {
+            // full, give the slot of the stalest unconfirmed track to the new one
+            t = -1;
+            for (int i = 0; i < mCount; i++) {
+                if (mHits[i] < mConfirmHits && (t < 0 || mLastSeen[i] < mLastSeen[t])) {
+                    t = i;
+                }
+            }
+            if (t < 0) {
+                return;
+            }
+        } else {
+            mCount++;
+        }
+        mIds[t] = mNextId++;
+        mX[t] = x;
+        mY[t] = y;
+        mPxx[t] = rxx;
+        mPxy[t] = rxy;
+        mPyy[t] = ryy;
+        mLastPredict[t] = timestamp;
+        mLastSeen[t] = timestamp;
+        mHits[t] = 1;
+        mMisses[t] = 0;
+    }
+
+    private void prune(double timestamp) {
+        int t = 0;
+        while (t < mCount) {
+            if (mMisses[t] >= mMaxMisses || timestamp - mLastSeen[t] > mMaxAge) {
+                remove(t);
+            } else {
+                t++;
+            }
+        }
+    }
+
+    private void remove(int t) {
+        int last = mCount - 1;
+        mIds[t] = mIds[last];
+        mX[t] = mX[last];
+        mY[t] = mY[last];
+        mPxx[t] = mPxx[last];
+        mPxy[t] = mPxy[last];
+        mPyy[t] = mPyy[last];
+        mLastPredict[t] = mLastPredict[last];
+        mLastSeen[t] = mLastSeen[last];
+        mHits[t] = mHits[last];
+        mMisses[t] = mMisses[last];
+        mCount = last;
+    }
+
+    /**
+     * Drops every track.
+     */
+    public synchronized void clear() {
+        mCount = 0;
+    }
+
+    /*
+     * Track accessors. Indices are only good until the next update, use the id
+     * to follow one target across frames.
+     */
+
+    public synchronized int getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return index of the track with the id, -1 if it's gone
+     */
+    public synchronized int indexOf(int id) {
+        for (int t = 0; t < mCount; t++) {
+            if (mIds[t] == id) {
+                return t;
+            }
+        }
+        return -1;
+    }
+
+    public synchronized int getId(int t) {
+        return mIds[t];
+    }
+
+    public synchronized double getX(int t) {
+        return mX[t];
+    }
+
+    public synchronized double getY(int t) {
+        return mY[t];
+    }
+
+    /**
+     * @return the larger of the x and y position variances, m^2
+     */
+    public synchronized double getVariance(int t) {
+        return Math.max(mPxx[t], mPyy[t]);
+    }
+
+    public synchronized double getLastSeen(int t) {
+        return mLastSeen[t];
+    }
+
+    public synchronized boolean isConfirmed(int t) {
+        return mHits[t] >= mConfirmHits;
+    }
+}
@@ -0,0 +1,59 @@
+package com.team8013.lib.trajectory;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * Robot heading as a function of distance along a path: hold the start
+ * heading, turn to the end heading over a window of the path, then hold. The
+ * turn eases in and out so the commanded angular velocity has no steps.
+ */
+public class HeadingProfile {
+
+    private final double mStart;
+    private final double mDelta;
+    private final double mWindowStart; // meters
+    private final double mWindowEnd;
+
+    /**
+     * @param startHeading radians
+     * @param endHeading   radians, reached the short way around
+     * @param windowStart  fraction of the path where the turn starts
+     * @param windowEnd    fraction of the path where the turn is done
+     * @param length       path length, meters
+     */
+    public HeadingProfile(double startHeading, double endHeading, double windowStart, double windowEnd,
+            double length) {
+        mStart = startHeading;
+        mDelta = MathUtil.angleModulus(endHeading - startHeading);
+        mWindowStart = windowStart * length;
+        mWindowEnd = Math.max(windowEnd * length, mWindowStart + 1e-6);
+    }
+
+    /**
+     * @return radians, unwrapped from the start heading
+     */
+    public double getHeading(double s) {
+        double u = getProgress(s);
+        return mStart + mDelta * u * u * (3.0 - 2.0 * u);
+    }
+
+    /**
+     * @return d(heading)/d(distance), rad/m
+     */
+    public double getHeadingRate(double s) {
+        double u = getProgress(s);
+        return mDelta * 6.0 * u * (1.0 - u) / (mWindowEnd - mWindowStart);
+    }
+
+    public double getWindowStart() {
+        return mWindowStart;
+    }
+
+    public double getWindowEnd() {
+        return mWindowEnd;
+    }
+
+    private double getProgress(double s) {
+        return MathUtil.clamp((s - mWindowStart) / (mWindowEnd - mWindowStart), 0.0, 1.0);
+    }
+}
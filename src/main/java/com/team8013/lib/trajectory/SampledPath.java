@@ -0,0 +1,78 @@
+package com.team8013.lib.trajectory;
+
+import java.util.List;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.spline.PoseWithCurvature;
+
+/**
+ * A spline path resampled at even steps of distance traveled, which is what
+ * the forward/backward passes in SwerveTimeParameterizer want. Only geometry,
+ * no timing.
+ */
+public class SampledPath {
+
+    public final double[] s; // meters along the path
+    public final double[] x;
+    public final double[] y;
+    public final double[] tangent; // direction of travel, radians, unwrapped
+    public final double[] curvature; // rad/m
+
+    /**
+     * @param points spline points as TrajectoryGenerator.splinePointsFromSplines
+     *               returns them
+     * @param step   meters between samples, roughly
+     */
+    public SampledPath(List<PoseWithCurvature> points, double step) {
+        int n = points.size();
+        double[] distance = new double[n];
+        for (int i = 1; i < n; i++) {
+            distance[i] = distance[i - 1] + points.get(i).poseMeters.getTranslation()
+                    .getDistance(points.get(i - 1).poseMeters.getTranslation());
+        }
+        double length = distance[n - 1];
+        int samples = Math.max(2, (int) Math.ceil(length / step) + 1);
+
+        s = new double[samples];
+        x = new double[samples];
+        y = new double[samples];
+        tangent = new double[samples];
+        curvature = new double[samples];
+
+        int segment = 0;
+        for (int k = 0; k < samples; k++) {
+            double target = Math.min(length, k * length / (samples - 1));
+            while (segment < n - 2 && distance[segment + 1] < target) {
+                segment++;
+            }
+            PoseWithCurvature a = points.get(segment);
+            PoseWithCurvature b = points.get(Math.min(segment + 1, n - 1));
+            double span = distance[Math.min(segment + 1, n - 1)] - distance[segment];
+            double t = span > 1e-9 ? (target - distance[segment]) / span : 0.0;
+
+            s[k] = target;
+            x[k] = MathUtil.interpolate(a.poseMeters.getX(), b.poseMeters.getX(), t);
+            y[k] = MathUtil.interpolate(a.poseMeters.getY(), b.poseMeters.getY(), t);
+            double headingA = a.poseMeters.getRotation().getRadians();
+            double headingB = headingA + MathUtil.angleModulus(b.poseMeters.getRotation().getRadians() - headingA);
+            double heading = MathUtil.interpolate(headingA, headingB, t);
+            tangent[k] = k == 0 ? heading : tangent[k - 1] + MathUtil.angleModulus(heading - tangent[k - 1]);
+            curvature[k] = MathUtil.interpolate(a.curvatureRadPerMeter, b.curvatureRadPerMeter, t);
+        }
+    }
+
+    public int size() {
+        return s.length;
+    }
+
+    public double getLength() {
+        return s[s.length - 1];
+    }
+
+    /**
+     * @return meters between samples
+     */
+    public double getStep() {
+        return s[1] - s[0];
+    }
+}
@@ -0,0 +1,112 @@
+package com.team8013.lib.trajectory;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * What a swerve drive can physically do, per module rather than per chassis.
+ * Acceleration comes from the drive motor feedforward (volts = kS + kV * v +
+ * kA * a) at the given battery voltage, capped by what the wheels can put into
+ * the carpet, so a sagging battery shows up as both a lower top speed and
+ * less acceleration near it.
+ */
+public class SwerveLimits {
+
+    private final double[][] mModuleLocations; // meters from robot center, robot frame
+    private final double mNominalModuleSpeed; // m/s at 12 volts
+    private final double mMaxAngularSpeed; // rad/s
+    private final double mMaxSteeringRate; // rad/s of a module turning relative to the robot
+    private final double mMaxCentripetalAccel; // m/s^2
+    private final double mMaxTractionAccel; // m/s^2
+    private final double mKS; // volts
+    private final double mKV; // volts per m/s
+    private final double mKA; // volts per m/s^2
+    private final double mBatteryVoltage;
+
+    public SwerveLimits(Translation2d[] moduleLocations, double nominalModuleSpeed, double maxAngularSpeed,
+            double maxSteeringRate, double maxCentripetalAccel, double maxTractionAccel, double kS, double kV,
+            double kA, double batteryVoltage) {
+        mModuleLocations = new double[moduleLocations.length][2];
+        for (int i = 0; i < moduleLocations.length; i++) {
+            mModuleLocations[i][0] = moduleLocations[i].getX();
+            mModuleLocations[i][1] = moduleLocations[i].getY();
+        }
+        mNominalModuleSpeed = nominalModuleSpeed;
+        mMaxAngularSpeed = maxAngularSpeed;
+        mMaxSteeringRate = maxSteeringRate;
+        mMaxCentripetalAccel = maxCentripetalAccel;
+        mMaxTractionAccel = maxTractionAccel;
+        mKS = kS;
+        mKV = kV;
+        mKA = kA;
+        mBatteryVoltage = batteryVoltage;
+    }
+
+    public int getNumModules() {
+        return mModuleLocations.length;
+    }
+
+    public double getModuleX(int module) {
+        return mModuleLocations[module][0];
+    }
+
+    public double getModuleY(int module) {
+        return mModuleLocations[module][1];
+    }
+
+    /**
+     * @return fastest a wheel can turn at this battery voltage, m/s
+     */
+    public double getMaxModuleSpeed() {
+        return mNominalModuleSpeed * mBatteryVoltage / 12.0;
+    }
+
+    public double getMaxAngularSpeed() {
+        return mMaxAngularSpeed;
+    }
+
+    public double getMaxSteeringRate() {
+        return mMaxSteeringRate;
+    }
+
+    public double getMaxCentripetalAccel() {
+        return mMaxCentripetalAccel;
+    }
+
+    public double getMaxTractionAccel() {
+        return mMaxTractionAccel;
+    }
+
+    public double getBatteryVoltage() {
+        return mBatteryVoltage;
+    }
+
+    /**
+     * @param wheelSpeed m/s, not negative
+     * @return most a wheel at this speed can speed up, m/s^2
+     */
+    public double getMaxWheelAccel(double wheelSpeed) {
+        double volts = mBatteryVoltage - mKS - mKV * wheelSpeed;
+        return Math.max(0.0, Math.min(mMaxTractionAccel, volts / mKA));
+    }
+
+    /**
+     * Back EMF and friction both help when slowing down, so braking is limited
+     * by traction long before the motor runs out of voltage.
+     *
+     * @param wheelSpeed m/s, not negative
+     * @return most a wheel at this speed can slow down, m/s^2 (positive)
+     */
+    public double getMaxWheelDecel(double wheelSpeed) {
+        double volts = mBatteryVoltage + mKS + mKV * wheelSpeed;
+        return Math.max(0.0, Math.min(mMaxTractionAccel, volts / mKA));
+    }
+
+    public SwerveLimits withBatteryVoltage(double batteryVoltage) {
+        Translation2d[] locations = new Translation2d[mModuleLocations.length];
+        for (int i = 0; i < locations.length; i++) {
+            locations[i] = new Translation2d(mModuleLocations[i][0], mModuleLocations[i][1]);
+        }
+        return new SwerveLimits(locations, mNominalModuleSpeed, mMaxAngularSpeed, mMaxSteeringRate,
+                mMaxCentripetalAccel, mMaxTractionAccel, mKS, mKV, mKA, batteryVoltage);
+    }
+}
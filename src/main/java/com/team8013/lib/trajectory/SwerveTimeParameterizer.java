@@ -0,0 +1,220 @@
+package com.team8013.lib.trajectory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+
+/**
+ * Times a path as fast as the swerve modules allow for a given heading
+ * profile. Turning while driving means each wheel moves at a different speed
+ * and in a different direction than the chassis, so the limits are checked per
+ * module:
+ * <ul>
+ * <li>wheel speed, from the chassis velocity plus the turn</li>
+ * <li>how fast each module has to steer to keep up with the path</li>
+ * <li>robot angular speed and centripetal acceleration</li>
+ * <li>wheel acceleration from the drive feedforward at the battery voltage, and
+ * traction shared between speeding up and going around corners</li>
+ * </ul>
+ * The speed limits only depend on where on the path the robot is, so they are
+ * computed once; acceleration is then applied with the usual forward pass
+ * from the start speed and backward pass from the end speed.
+ */
+public class SwerveTimeParameterizer {
+
+    public enum Limit {
+        MODULE_SPEED, ANGULAR_SPEED, STEERING_RATE, CENTRIPETAL, ACCELERATION
+    }
+
+    // below this fraction of chassis speed a wheel's direction doesn't matter
+    private static final double kMinWheelSpeedFraction = 0.05;
+
+    public static class TimedPath {
+        public final SampledPath path;
+        public final HeadingProfile heading;
+        public final double[] time;
+        public final double[] velocity;
+        public final double[] acceleration;
+        public final Limit[] limit; // what held the robot back at each sample
+
+        private TimedPath(SampledPath path, HeadingProfile heading, double[] time, double[] velocity,
+                double[] acceleration, Limit[] limit) {
+            this.path = path;
+            this.heading = heading;
+            this.time = time;
+            this.velocity = velocity;
+            this.acceleration = acceleration;
+            this.limit = limit;
+        }
+
+        public double getTotalTime() {
+            return time[time.length - 1];
+        }
+
+        /**
+         * @return fraction of the path's time spent held back by each limit,
+         *         indexed by Limit.ordinal()
+         */
+        public double[] getTimeShares() {
+            double[] shares = new double[Limit.values().length];
+            for (int i = 0; i + 1 < time.length; i++) {
+                shares[limit[i].ordinal()] += (time[i + 1] - time[i]) / getTotalTime();
+            }
+            return shares;
+        }
+
+        public List<Trajectory.State> getStates() {
+            List<Trajectory.State> states = new ArrayList<>(time.length);
+            for (int i = 0; i < time.length; i++) {
+                states.add(new Trajectory.State(time[i], velocity[i], acceleration[i],
+                        new Pose2d(path.x[i], path.y[i], new Rotation2d(path.tangent[i])), path.curvature[i]));
+            }
+            return states;
+        }
+
+        /**
+         * @return robot heading at each sample, radians
+         */
+        public double[] getHeadings() {
+            double[] headings = new double[time.length];
+            for (int i = 0; i < headings.length; i++) {
+                headings[i] = heading.getHeading(path.s[i]);
+            }
+            return headings;
+        }
+    }
+
+    /**
+     * @param startSpeed m/s at the start of the path
+     * @param endSpeed   m/s at the end of the path
+     */
+    public static TimedPath parameterize(SampledPath path, HeadingProfile heading, SwerveLimits limits,
+            double startSpeed, double endSpeed) {
+        int n = path.size();
+        int modules = limits.getNumModules();
+        double ds = path.getStep();
+
+        // wheel velocity per unit of chassis speed, field frame
+        double[][] wheelGain = new double[n][modules];
+        double[][] wheelAngle = new double[n][modules]; // relative to the robot
+        double[] headingRate = new double[n];
+        for (int i = 0; i < n; i++) {
+            double theta = heading.getHeading(path.s[i]);
+            double dTheta = heading.getHeadingRate(path.s[i]);
+            double cos = Math.cos(theta);
+            double sin = Math.sin(theta);
+            headingRate[i] = dTheta;
+            for (int j = 0; j < modules; j++) {
+                double rx = cos * limits.getModuleX(j) - sin * limits.getModuleY(j);
+                double ry = sin * limits.getModuleX(j) + cos * limits.getModuleY(j);
+                double gx = Math.cos(path.tangent[i]) - dTheta * ry;
+                double gy = Math.sin(path.tangent[i]) + dTheta * rx;
+                wheelGain[i][j] = Math.hypot(gx, gy);
+                wheelAngle[i][j] = Math.atan2(gy, gx) - theta;
+            }
+        }
+
+        double[] maxVelocity = new double[n];
+        Limit[] limit = new Limit[n];
+        for (int i = 0; i < n; i++) {
+            double max = Double.POSITIVE_INFINITY;
+            Limit reason = Limit.ACCELERATION;
+
+            for (int j = 0; j < modules; j++) {
+                double moduleLimit = limits.getMaxModuleSpeed() / wheelGain[i][j];
+                if (moduleLimit < max) {
+                    max = moduleLimit;
+                    reason = Limit.MODULE_SPEED;
+                }
+                // modules can run backwards, so a half turn of steering is free
+                double steering = Math.abs(angleModulusHalf(
+                        wheelAngle[Math.min(i + 1, n - 1)][j] - wheelAngle[Math.max(i - 1, 0)][j]))
+                        / (ds * (Math.min(i + 1, n - 1) - Math.max(i - 1, 0)));
+                if (wheelGain[i][j] > kMinWheelSpeedFraction && steering > 1e-9
+                        && limits.getMaxSteeringRate() / steering < max) {
+                    max = limits.getMaxSteeringRate() / steering;
+                    reason = Limit.STEERING_RATE;
+                }
+            }
+            if (Math.abs(headingRate[i]) > 1e-9 && limits.getMaxAngularSpeed() / Math.abs(headingRate[i]) < max) {
+                max = limits.getMaxAngularSpeed() / Math.abs(headingRate[i]);
+                reason = Limit.ANGULAR_SPEED;
+            }
+            double centripetal = Math.min(limits.getMaxCentripetalAccel(), limits.getMaxTractionAccel());
+            if (Math.abs(path.curvature[i]) > 1e-9 && Math.sqrt(centripetal / Math.abs(path.curvature[i])) < max) {
+                max = Math.sqrt(centripetal / Math.abs(path.curvature[i]));
+                reason = Limit.CENTRIPETAL;
+            }
+            maxVelocity[i] = max;
+            limit[i] = reason;
+        }
+
+        // d|wheel gain|/ds, a wheel speeds up along a turn even at constant chassis speed
+        double[][] wheelGainRate = new double[n][modules];
+        for (int i = 0; i < n; i++) {
+            int prev = Math.max(i - 1, 0);
+            int next = Math.min(i + 1, n - 1);
+            for (int j = 0; j < modules; j++) {
+                wheelGainRate[i][j] = (wheelGain[next][j] - wheelGain[prev][j]) / (ds * (next - prev));
+            }
+        }
+
+        double[] velocity = new double[n];
+        velocity[0] = Math.min(startSpeed, maxVelocity[0]);
+        for (int i = 0; i + 1 < n; i++) {
+            double accel = getMaxAccel(path.curvature[i], wheelGain[i], wheelGainRate[i], velocity[i], limits, true);
+            velocity[i + 1] = Math.min(maxVelocity[i + 1],
+                    Math.sqrt(velocity[i] * velocity[i] + 2.0 * accel * ds));
+        }
+        velocity[n - 1] = Math.min(velocity[n - 1], endSpeed);
+        for (int i = n - 1; i > 0; i--) {
+            double decel = getMaxAccel(path.curvature[i], wheelGain[i], wheelGainRate[i], velocity[i], limits, false);
+            velocity[i - 1] = Math.min(velocity[i - 1], Math.sqrt(velocity[i] * velocity[i] + 2.0 * decel * ds));
+        }
+
+        double[] time = new double[n];
+        double[] acceleration = new double[n];
+        for (int i = 0; i + 1 < n; i++) {
+            double sum = velocity[i] + velocity[i + 1];
+            time[i + 1] = time[i] + (sum > 1e-9 ? 2.0 * ds / sum : 0.0);
+            acceleration[i] = (velocity[i + 1] * velocity[i + 1] - velocity[i] * velocity[i]) / (2.0 * ds);
+            if (velocity[i] < maxVelocity[i] - 1e-6) {
+                limit[i] = Limit.ACCELERATION;
+            }
+        }
+        return new TimedPath(path, heading, time, velocity, acceleration, limit);
+    }
+
+    /**
+     * @param forward true for the most the robot can speed up, false for the
+     *                most it can slow down (returned positive)
+     */
+    private static double getMaxAccel(double curvature, double[] wheelGain, double[] wheelGainRate,
+            double velocity, SwerveLimits limits, boolean forward) {
+        double lateral = velocity * velocity * curvature;
+        double traction = limits.getMaxTractionAccel();
+        double max = Math.sqrt(Math.max(0.0, traction * traction - lateral * lateral));
+
+        for (int j = 0; j < wheelGain.length; j++) {
+            if (wheelGain[j] < 1e-3) {
+                continue;
+            }
+            // wheel accel = a * gain + v^2 * d(gain)/ds
+            double wheelSpeed = velocity * wheelGain[j];
+            double turning = velocity * velocity * wheelGainRate[j];
+            double wheelLimit = forward
+                    ? (limits.getMaxWheelAccel(wheelSpeed) - turning) / wheelGain[j]
+                    : (limits.getMaxWheelDecel(wheelSpeed) + turning) / wheelGain[j];
+            max = Math.min(max, wheelLimit);
+        }
+        return Math.max(0.0, max);
+    }
+
+    private static double angleModulusHalf(double angle) {
+        return MathUtil.inputModulus(angle, -Math.PI / 2.0, Math.PI / 2.0);
+    }
+}
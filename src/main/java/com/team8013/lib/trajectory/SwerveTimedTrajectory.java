@@ -0,0 +1,69 @@
+package com.team8013.lib.trajectory;
+
+import java.util.List;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+
+/**
+ * A trajectory that also says which way the robot should face along it. The
+ * pose rotation of each state is still the direction of travel, the way the
+ * drive controller expects; the heading is kept alongside.
+ */
+public class SwerveTimedTrajectory extends Trajectory {
+
+    private final double[] mTimes;
+    private final double[] mHeadings; // radians, unwrapped
+
+    /**
+     * @param headings robot heading at each state, radians
+     */
+    public SwerveTimedTrajectory(List<Trajectory.State> states, double[] headings) {
+        super(states);
+        if (headings.length != states.size()) {
+            throw new IllegalArgumentException(
+                    "Got " + headings.length + " headings for " + states.size() + " states");
+        }
+        mTimes = new double[states.size()];
+        for (int i = 0; i < mTimes.length; i++) {
+            mTimes[i] = states.get(i).timeSeconds;
+        }
+        mHeadings = headings.clone();
+    }
+
+    public Rotation2d sampleHeading(double timeSeconds) {
+        return new Rotation2d(sampleHeadingRadians(timeSeconds));
+    }
+
+    public double sampleHeadingRadians(double timeSeconds) {
+        if (timeSeconds <= mTimes[0]) {
+            return mHeadings[0];
+        }
+        int last = mTimes.length - 1;
+        if (timeSeconds >= mTimes[last]) {
+            return mHeadings[last];
+        }
+        int low = 0;
+        int high = last;
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (mTimes[mid] <= timeSeconds) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        double span = mTimes[high] - mTimes[low];
+        double t = span > 1e-9 ? (timeSeconds - mTimes[low]) / span : 0.0;
+        return MathUtil.interpolate(mHeadings[low], mHeadings[high], t);
+    }
+
+    public double getInitialHeadingRadians() {
+        return mHeadings[0];
+    }
+
+    public double getFinalHeadingRadians() {
+        return mHeadings[mHeadings.length - 1];
+    }
+}
@@ -0,0 +1,135 @@
+package com.team8013.lib.util;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * One clock for the whole robot. The looper captures a single timestamp at the
+ * start of every tick and everything running inside that tick reads it back
+ * from here, so all of the math in a cycle agrees on what "now" is and the HAL
+ * only gets asked once. Phase stamps record when each part of the tick
+ * finished.
+ * <p>
+ * Code that runs outside of the loops (auto actions, waits) uses now(), which
+ * reads the time source fresh. The time source can be swapped for a
+ * VirtualClock to run code against simulated time.
+ */
+public class RobotClock {
+
+    private static RobotClock mInstance;
+
+    public static synchronized RobotClock getInstance() {
+        if (mInstance == null) {
+            mInstance = new RobotClock();
+        }
+        return mInstance;
+    }
+
+    public interface TimeSource {
+        /** @return monotonic time in seconds */
+        double now();
+    }
+
+    public enum Phase {
+        READ,
+        LOOPS,
+        WRITE
+    }
+
+    private volatile TimeSource mSource = Timer::getFPGATimestamp;
+    private volatile double mTimestamp = 0.0;
+    private volatile double mLastTimestamp = 0.0;
+    private final double[] mPhaseStamps = new double[Phase.values().length];
+
+    private RobotClock() {
+    }
+
+    /**
+     * Replaces the time source, for running against a virtual clock.
+     */
+    public void setTimeSource(TimeSource source) {
+        mSource = source;
+    }
+
+    /**
+     * Captures the timestamp for a new tick. Only the looper should call this.
+     */
+    public double tick() {
+        double now = mSource.now();
+        mLastTimestamp = mTimestamp;
+        mTimestamp = now;
+        for (int i = 0; i < mPhaseStamps.length; i++) {
+            mPhaseStamps[i] = now;
+        }
+        return now;
+    }
+
+    /**
+     * @return the timestamp captured at the start of the current tick
+     */
+    public double getTimestamp() {
+        return mTimestamp;
+    }
+
+    /**
+     * @return time between the start of the last two ticks
+     */
+    public double getDt() {
+        return mTimestamp - mLastTimestamp;
+    }
+
+    /**
+     * Reads the time source right now, for code that isn't running in a tick.
+     */
+    public double now() {
+        return mSource.now();
+    }
+
+    /**
+     * Records that a phase of the tick has finished.
+     */
+    public double stampPhase(Phase phase) {
+        double now = mSource.now();
+        mPhaseStamps[phase.ordinal()] = now;
+        return now;
+    }
+
+    /**
+     * @return when the phase finished in the current tick
+     */
+    public double getPhaseTimestamp(Phase phase) {
+        return mPhaseStamps[phase.ordinal()];
+    }
+
+    /**
+     * @return how long the phase took, measured from the end of the phase before
+     *         it (or the start of the tick)
+     */
+    public double getPhaseDuration(Phase phase) {
+        double start = phase.ordinal() == 0 ? mTimestamp : mPhaseStamps[phase.ordinal() - 1];
+        return mPhaseStamps[phase.ordinal()] - start;
+    }
+
+    /**
+     * Time source that only moves when told to.
+     */
+    public static class VirtualClock implements TimeSource {
+        private double mTime;
+
+        public VirtualClock(double start) {
+            mTime = start;
+        }
+
+        @Override
+        public synchronized double now() {
+            return mTime;
+        }
+
+        public synchronized void set(double time) {
+            mTime = time;
+        }
+
+        public synchronized void advance(double dt) {
+            mTime += dt;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.team8013.lib.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+
+/**
+ * The last few seconds of the mechanism and sensor states other code looks
+ * back on, sampled once per tick right after the subsystems read their inputs.
+ * Each channel is a ring of doubles sharing one ring of timestamps, so
+ * recording allocates nothing and a query for "the robot heading 60 ms ago" is
+ * a search over the timestamps and one interpolation.
+ * <p>
+ * Channels are added before the first sample and referred to by the handle
+ * addChannel returns. Their suppliers are called every tick in the order they
+ * were added and should only read what readPeriodicInputs already stored.
+ * Queries remember where the last one landed, so the usual pattern of asking
+ * for the same delay every tick finds its samples without a search.
+ */
+public class RobotStateHistory {
+
+    private static RobotStateHistory mInstance;
+
+    public static synchronized RobotStateHistory getInstance() {
+        if (mInstance == null) {
+            mInstance = new RobotStateHistory(kDefaultCapacity);
+        }
+        return mInstance;
+    }
+
+    public static final int kDefaultCapacity = 256; // a little over 5 s at 50 hz
+
+    private final int mCapacity;
+    private final List<String> mNames = new ArrayList<>();
+    private final List<DoubleSupplier> mSuppliers = new ArrayList<>();
+
+    private DoubleSupplier[] mSupplierArray = null;
+    private final double[] mTimestamps;
+    private double[][] mValues;
+    // samples recorded since startup, the newest is at (mCount - 1) % mCapacity
+    private long mCount = 0;
+    // sample the last query started from
+    private long mHint = 0;
+
+    public RobotStateHistory(int capacity) {
+        mCapacity = capacity;
+        mTimestamps = new double[capacity];
+    }
+
+    /**
+     * @return handle to query the channel with
+     */
+    public synchronized int addChannel(String name, DoubleSupplier supplier) {
+        if (mSupplierArray != null) {
+            throw new IllegalStateException("Can't add history channel " + name + " after recording started");
+        }
+        if (mNames.contains(name)) {
+            throw new IllegalArgumentException("History channel " + name + " already exists");
+        }
+        mNames.add(name);
+        mSuppliers.add(supplier);
+        return mNames.size() - 1;
+    }
+
+    /**
+     * @return handle for the named channel, -1 if there isn't one
+     */
+    public synchronized int getChannel(String name) {
+        return mNames.indexOf(name);
+    }
+
+    public synchronized String getChannelName(int channel) {
+        return mNames.get(channel);
+    }
+
+    public synchronized int getChannelCount() {
+        return mNames.size();
+    }
+
+    /**
+     * Samples every channel. Called once per tick from the loop thread after
+     * the inputs are read; a timestamp that isn't newer than the last sample is
+     * ignored so the disabled and enabled loops can both call this.
+     */
+    public synchronized void record(double timestamp) {
+        if (mSupplierArray == null) {
+            mSupplierArray = mSuppliers.toArray(new DoubleSupplier[0]);
+            mValues = new double[mSupplierArray.length][mCapacity];
+        }
+        if (mCount > 0 && !(timestamp > mTimestamps[index(mCount - 1)])) {
+            return;
+        }
+        int slot = index(mCount);
+        mTimestamps[slot] = timestamp;
+        for (int i = 0; i < mSupplierArray.length; i++) {
+            mValues[i][slot] = mSupplierArray[i].getAsDouble();
+        }
+        mCount++;
+    }
+
+    /**
+     * Drops every sample, e.g. after the clock jumps in simulation.
+     */
+    public synchronized void clear() {
+        mCount = 0;
+        mHint = 0;
+    }
+
+    /**
+     * @return the channel's value at the timestamp, interpolated between the
+     *         samples on either side. Clamps to the oldest or newest sample
+     *         outside of the history, NaN if nothing is recorded yet.
+     */
+    public synchronized double get(int channel, double timestamp) {
+        if (mCount == 0) {
+            return Double.NaN;
+        }
+        double[] values = mValues[channel];
+        long oldest = getOldestSample();
+        if (!(timestamp > mTimestamps[index(oldest)])) {
+            return values[index(oldest)];
+        }
+        if (timestamp >= mTimestamps[index(mCount - 1)]) {
+            return values[index(mCount - 1)];
+        }
+
+        long before = findSampleBefore(timestamp, oldest);
+        int low = index(before);
+        int high = index(before + 1);
+        double t = (timestamp - mTimestamps[low]) / (mTimestamps[high] - mTimestamps[low]);
+        return values[low] + (values[high] - values[low]) * t;
+    }
+
+    /**
+     * @return the channel's value the given number of seconds before the
+     *         newest sample
+     */
+    public synchronized double getAgo(int channel, double seconds) {
+        return get(channel, getNewestTimestamp() - seconds);
+    }
+
+    public synchronized double getLatest(int channel) {
+        return mCount == 0 ? Double.NaN : mValues[channel][index(mCount - 1)];
+    }
+
+    /**
+     * @return the smallest and largest value the channel had between the two
+     *         timestamps, counting the interpolated values at either end
+     */
+    public synchronized double[] getRange(int channel, double from, double to) {
+        double atFrom = get(channel, from);
+        double atTo = get(channel, to);
+        double min = Math.min(atFrom, atTo);
+        double max = Math.max(atFrom, atTo);
+        if (mCount == 0) {
+            return new double[] { min, max };
+        }
+        double[] values = mValues[channel];
+        long oldest = getOldestSample();
+        for (long sample = mCount - 1; sample >= oldest; sample--) {
+            double timestamp = mTimestamps[index(sample)];
+            if (timestamp <= from) {
+                break;
+            }
+            if (timestamp < to) {
+                min = Math.min(min, values[index(sample)]);
+                max = Math.max(max, values[index(sample)]);
+            }
+        }
+        return new double[] { min, max };
+    }
+
+    public synchronized double getOldestTimestamp() {
+        return mCount == 0 ? Double.NaN : mTimestamps[index(getOldestSample())];
+    }
+
+    public synchronized double getNewestTimestamp() {
+        return mCount == 0 ? Double.NaN : mTimestamps[index(mCount - 1)];
+    }
+
+    public synchronized int getSize() {
+        return (int) (mCount - getOldestSample());
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * @return the newest sample at or before the timestamp, which has to be
+     *         inside the history
+     */
+    private long findSampleBefore(double timestamp, long oldest) {
+        // the last query's sample or the one after it covers repeated queries
+        // for the same delay
+        for (long sample = Math.max(mHint, oldest); sample <= mHint + 1 && sample < mCount - 1; sample++) {
+            if (mTimestamps[index(sample)] <= timestamp && timestamp < mTimestamps[index(sample + 1)]) {
+                mHint = sample;
+                return sample;
+            }
+        }
+
+        long low = oldest;
+        long high = mCount - 1;
+        while (high - low > 1) {
+            long mid = (low + high) >>> 1;
+            if (mTimestamps[index(mid)] <= timestamp) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        mHint = low;
+        return low;
+    }
+
+    private long getOldestSample() {
+        return Math.max(0, mCount - mCapacity);
+    }
+
+    private int index(long sample) {
+        return (int) (sample % mCapacity);
+    }
+}
@@ -0,0 +1,77 @@
+package com.team8013.lib.vision;
+
+/**
+ * One camera on the robot: the NetworkTables name it publishes under, what
+ * it's for, and where it's mounted.
+ * <p>
+ * The mount is robot relative in WPILib's convention, x forward, y left, z up
+ * from the center of the robot on the floor, and roll, pitch and yaw in
+ * degrees with negative pitch looking down and positive yaw turned left.
+ */
+public class CameraConfig {
+
+    public enum Role {
+        APRILTAG, // publishes botpose estimates from the field tags
+        NOTE // publishes rawdetections of notes on the floor
+    }
+
+    private final String mName;
+    private final Role mRole;
+    private final double mX, mY, mZ;
+    private final double mRollDeg, mPitchDeg, mYawDeg;
+    private final double mTrust;
+
+    /**
+     * @param name  NetworkTables table, e.g. "limelight-crepe"
+     * @param trust scales the camera's measurement standard deviations, more
+     *              than 1 for a camera with a worse view or lower resolution
+     */
+    public CameraConfig(String name, Role role, double x, double y, double z, double rollDeg, double pitchDeg,
+            double yawDeg, double trust) {
+        mName = name;
+        mRole = role;
+        mX = x;
+        mY = y;
+        mZ = z;
+        mRollDeg = rollDeg;
+        mPitchDeg = pitchDeg;
+        mYawDeg = yawDeg;
+        mTrust = trust;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public Role getRole() {
+        return mRole;
+    }
+
+    public double getX() {
+        return mX;
+    }
+
+    public double getY() {
+        return mY;
+    }
+
+    public double getZ() {
+        return mZ;
+    }
+
+    public double getRollDeg() {
+        return mRollDeg;
+    }
+
+    public double getPitchDeg() {
+        return mPitchDeg;
+    }
+
+    public double getYawDeg() {
+        return mYawDeg;
+    }
+
+    public double getTrust() {
+        return mTrust;
+    }
+}
@@ -0,0 +1,64 @@
+package com.team8013.lib.vision;
+
+/**
+ * Hands pose measurements from one camera's thread to the control loop without
+ * locking either of them.
+ * <p>
+ * Single producer, single consumer: only the camera thread calls offer and
+ * only the loop calls poll. The slots are allocated up front and copied in and
+ * out, and each side only ever writes its own index, so publishing a slot is
+ * one volatile write after it's filled and neither side ever waits.
+ */
+public class MeasurementRing {
+
+    private final PoseMeasurement[] mSlots;
+    private final int mMask;
+    private volatile long mHead = 0; // next slot to fill, written by the producer
+    private volatile long mTail = 0; // next slot to read, written by the consumer
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public MeasurementRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        mSlots = new PoseMeasurement[size];
+        for (int i = 0; i < size; i++) {
+            mSlots[i] = new PoseMeasurement();
+        }
+        mMask = size - 1;
+    }
+
+    /**
+     * Producer side.
+     *
+     * @return false if the ring is full and the measurement was dropped
+     */
+    public boolean offer(PoseMeasurement measurement) {
+        long head = mHead;
+        if (head - mTail > mMask) {
+            return false;
+        }
+        mSlots[(int) (head & mMask)].copyFrom(measurement);
+        mHead = head + 1;
+        return true;
+    }
+
+    /**
+     * Consumer side.
+     *
+     * @return false if there was nothing to read
+     */
+    public boolean poll(PoseMeasurement out) {
+        long tail = mTail;
+        if (tail == mHead) {
+            return false;
+        }
+        out.copyFrom(mSlots[(int) (tail & mMask)]);
+        mTail = tail + 1;
+        return true;
+    }
+
+    public int getCapacity() {
+        return mSlots.length;
+    }
+}
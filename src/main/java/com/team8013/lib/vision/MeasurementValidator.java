@@ -0,0 +1,205 @@
+package com.team8013.lib.vision;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.team8013.frc2024.Constants.VisionConstants;
+
+import edu.wpi.first.apriltag.AprilTag;
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+
+/**
+ * Decides whether a Limelight botpose is worth using, and how much.
+ * <p>
+ * A pose is thrown out if it's off the field, or from one tag that's far away
+ * or ambiguous. It's also thrown out if it names a tag that isn't on the field
+ * or can't be right for the tags it names: a robot can't see the back of a
+ * tag, and the distance to each tag from the pose has to match the distance
+ * the camera measured. It's thrown out if the robot was moving or turning too
+ * fast for a sharp frame, and if it disagrees with where odometry says the
+ * robot went since the last good pose. What's left gets a standard deviation
+ * that grows with distance squared, ambiguity and motion, and shrinks with
+ * more tags.
+ * <p>
+ * The tag positions are unpacked into arrays by id up front, so checking a
+ * frame is a handful of multiplies per tag and never allocates. Counts of
+ * every verdict are kept for telemetry, safe to update from any thread.
+ */
+public class MeasurementValidator {
+
+    public enum Verdict {
+        ACCEPTED,
+        OUT_OF_FIELD,
+        UNKNOWN_TAG, // an id that isn't on this field
+        INCONSISTENT, // the pose doesn't fit the tags it was solved from
+        AMBIGUOUS, // single tag with two near equally good solutions
+        TOO_FAR,
+        MOVING_TOO_FAST, // blur and rolling shutter
+        DISAGREES_WITH_ODOMETRY
+    }
+
+    // layout of the Limelight's botpose arrays
+    public static final int kBotposeLatency = 6;
+    public static final int kBotposeTagCount = 7;
+    public static final int kBotposeFiducials = 11;
+    public static final int kFiducialStride = 7;
+    private static final int kFiducialDistanceToRobot = 5;
+    private static final int kFiducialAmbiguity = 6;
+
+    private final double mFieldLength;
+    private final double mFieldWidth;
+    private final boolean[] mKnown;
+    private final double[] mTagX, mTagY, mTagZ;
+    // direction each tag faces, a robot that can see it is on this side
+    private final double[] mTagCos, mTagSin;
+
+    private final AtomicIntegerArray mCounts = new AtomicIntegerArray(Verdict.values().length);
+
+    public MeasurementValidator(AprilTagFieldLayout layout) {
+        mFieldLength = layout.getFieldLength();
+        mFieldWidth = layout.getFieldWidth();
+        int maxId = 0;
+        for (AprilTag tag : layout.getTags()) {
+            maxId = Math.max(maxId, tag.ID);
+        }
+        mKnown = new boolean[maxId + 1];
+        mTagX = new double[maxId + 1];
+        mTagY = new double[maxId + 1];
+        mTagZ = new double[maxId + 1];
+        mTagCos = new double[maxId + 1];
+        mTagSin = new double[maxId + 1];
+        for (AprilTag tag : layout.getTags()) {
+            mKnown[tag.ID] = true;
+            mTagX[tag.ID] = tag.pose.getX();
+            mTagY[tag.ID] = tag.pose.getY();
+            mTagZ[tag.ID] = tag.pose.getZ();
+            double yaw = tag.pose.getRotation().getZ();
+            mTagCos[tag.ID] = Math.cos(yaw);
+            mTagSin[tag.ID] = Math.sin(yaw);
+        }
+    }
+
+    /**
+     * Checks a pose against the tags it was solved from and fills in its
+     * average distance and standard deviations.
+     *
+     * @param measurement the parsed pose, x, y and tag count set
+     * @param botpose     the frame's botpose array, for the per tag data
+     * @param trust       the camera's standard deviation scale
+     * @param speed       m/s the robot was moving when the frame was taken
+     * @param omega       rad/s the robot was turning
+     */
+    public Verdict validate(PoseMeasurement measurement, double[] botpose, double trust, double speed,
+            double omega) {
+        return record(check(measurement, botpose, trust, speed, omega));
+    }
+
+    private Verdict check(PoseMeasurement measurement, double[] botpose, double trust, double speed,
+            double omega) {
+        double x = measurement.x;
+        double y = measurement.y;
+        if (x < -VisionConstants.kFieldMargin || x > mFieldLength + VisionConstants.kFieldMargin
+                || y < -VisionConstants.kFieldMargin || y > mFieldWidth + VisionConstants.kFieldMargin) {
+            return Verdict.OUT_OF_FIELD;
+        }
+
+        int tags = Math.min(measurement.tagCount, (botpose.length - kBotposeFiducials) / kFiducialStride);
+        if (tags < 1) {
+            return Verdict.INCONSISTENT; // a tag count but no tags
+        }
+        double distanceSum = 0.0;
+        double maxAmbiguity = 0.0;
+        for (int t = 0; t < tags; t++) {
+            int i = kBotposeFiducials + t * kFiducialStride;
+            int id = (int) botpose[i];
+            if (id < 0 || id >= mKnown.length || !mKnown[id]) {
+                return Verdict.UNKNOWN_TAG;
+            }
+            double dx = x - mTagX[id];
+            double dy = y - mTagY[id];
+            if (dx * mTagCos[id] + dy * mTagSin[id] <= 0.0) {
+                return Verdict.INCONSISTENT; // behind the tag
+            }
+            double distance = Math.sqrt(dx * dx + dy * dy + mTagZ[id] * mTagZ[id]);
+            double measured = botpose[i + kFiducialDistanceToRobot];
+            if (measured > 0.0 && Math.abs(distance - measured) > VisionConstants.kMaxDistanceMismatch
+                    + VisionConstants.kMaxDistanceMismatchFraction * measured) {
+                return Verdict.INCONSISTENT;
+            }
+            distanceSum += distance;
+            maxAmbiguity = Math.max(maxAmbiguity, botpose[i + kFiducialAmbiguity]);
+        }
+        double distance = distanceSum / tags;
+        measurement.averageDistance = distance;
+        measurement.tagCount = tags;
+
+        // ambiguity is only meaningful for a single tag solve
+        double ambiguity = tags == 1 ? maxAmbiguity : 0.0;
+        if (ambiguity > VisionConstants.kMaxAmbiguity) {
+            return Verdict.AMBIGUOUS;
+        }
+        if (distance > (tags == 1 ? VisionConstants.kMaxSingleTagDistance : VisionConstants.kMaxMultiTagDistance)) {
+            return Verdict.TOO_FAR;
+        }
+        if (speed > VisionConstants.kMaxCaptureSpeed || Math.abs(omega) > VisionConstants.kMaxCaptureOmega) {
+            return Verdict.MOVING_TOO_FAST;
+        }
+
+        double clamped = Math.max(distance, VisionConstants.kMinDistance);
+        double scale = trust * clamped * clamped / tags
+                * (1.0 + VisionConstants.kAmbiguityStdDevGain * ambiguity)
+                * (1.0 + VisionConstants.kSpeedStdDevGain * speed + VisionConstants.kOmegaStdDevGain * Math.abs(omega));
+        measurement.xyStdDev = VisionConstants.kXYStdDev * scale;
+        measurement.yawStdDev = VisionConstants.kYawStdDevDeg * scale
+                * (tags == 1 ? VisionConstants.kSingleTagYawScale : 1.0);
+        return Verdict.ACCEPTED;
+    }
+
+    /**
+     * Checks a validated pose against one predicted from odometry.
+     *
+     * @param predictedX         where odometry puts the robot at the frame
+     * @param predictedY
+     * @param predictionVariance m^2 the prediction could be off by
+     * @return ACCEPTED or DISAGREES_WITH_ODOMETRY
+     */
+    public Verdict checkOdometry(PoseMeasurement measurement, double predictedX, double predictedY,
+            double predictionVariance) {
+        double dx = measurement.x - predictedX;
+        double dy = measurement.y - predictedY;
+        double variance = measurement.xyStdDev * measurement.xyStdDev + predictionVariance;
+        if ((dx * dx + dy * dy) / variance > VisionConstants.kOdometryGate) {
+            // undo the acceptance it was counted with
+            mCounts.decrementAndGet(Verdict.ACCEPTED.ordinal());
+            return record(Verdict.DISAGREES_WITH_ODOMETRY);
+        }
+        return Verdict.ACCEPTED;
+    }
+
+    private Verdict record(Verdict verdict) {
+        mCounts.incrementAndGet(verdict.ordinal());
+        return verdict;
+    }
+
+    public int getCount(Verdict verdict) {
+        return mCounts.get(verdict.ordinal());
+    }
+
+    public int getRejectedCount() {
+        int rejected = 0;
+        for (Verdict verdict : Verdict.values()) {
+            if (verdict != Verdict.ACCEPTED) {
+                rejected += getCount(verdict);
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * @return accepted fraction of every pose checked, 1 before any are
+     */
+    public double getAcceptanceRate() {
+        int accepted = getCount(Verdict.ACCEPTED);
+        int total = accepted + getRejectedCount();
+        return total == 0 ? 1.0 : (double) accepted / total;
+    }
+}
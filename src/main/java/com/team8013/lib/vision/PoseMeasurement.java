@@ -0,0 +1,31 @@
+package com.team8013.lib.vision;
+
+/**
+ * A robot pose from one camera frame, in the blue alliance field frame. These
+ * are reused slots, copy one out rather than holding on to it.
+ */
+public class PoseMeasurement {
+    public double timestamp; // when the frame was taken, FPGA seconds
+    public double latency; // s from the frame being taken to it arriving
+    public double x;
+    public double y;
+    public double yawDeg;
+    public int tagCount;
+    public int primaryTag; // id of the first tag in the frame
+    public double averageDistance; // m from the camera to the tags
+    public double xyStdDev; // m
+    public double yawStdDev; // deg
+
+    public void copyFrom(PoseMeasurement other) {
+        timestamp = other.timestamp;
+        latency = other.latency;
+        x = other.x;
+        y = other.y;
+        yawDeg = other.yawDeg;
+        tagCount = other.tagCount;
+        primaryTag = other.primaryTag;
+        averageDistance = other.averageDistance;
+        xyStdDev = other.xyStdDev;
+        yawStdDev = other.yawStdDev;
+    }
+}
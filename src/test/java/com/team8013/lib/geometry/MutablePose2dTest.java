@@ -0,0 +1,139 @@
+package com.team8013.lib.geometry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+
+public class MutablePose2dTest {
+
+    private static final double kEpsilon = 1e-9;
+
+    // dtheta either side of the small-angle branch and around the +-pi wrap
+    static final double[][] kTwists = { { 0.0, 0.0, 0.0 }, { 1.0, 0.0, 0.0 }, { 1.0, -0.5, 1e-12 },
+            { -2.0, 0.3, -1e-10 }, { 0.7, 0.7, 1e-8 }, { 1.5, 0.0, 1e-6 }, { 2.0, 1.0, Math.PI },
+            { 2.0, -1.0, -Math.PI }, { 0.1, 3.0, Math.PI - 1e-9 }, { -1.0, 1.0, 2.0 * Math.PI },
+            { 3.0, -2.0, 5.0 } };
+
+    static double[][] poses() {
+        Random random = new Random(8013);
+        double[] angles = MutableRotation2dTest.kAngles;
+        double[][] poses = new double[angles.length + 30][];
+        for (int i = 0; i < angles.length; i++) {
+            poses[i] = new double[] { i - 4.0, 2.0 - i * 0.5, angles[i] };
+        }
+        for (int i = angles.length; i < poses.length; i++) {
+            poses[i] = new double[] { random.nextDouble() * 16.0, random.nextDouble() * 8.0,
+                    (random.nextDouble() * 2.0 - 1.0) * 2.0 * Math.PI };
+        }
+        return poses;
+    }
+
+    static Pose2d wpilib(double[] p) {
+        return new Pose2d(p[0], p[1], new Rotation2d(p[2]));
+    }
+
+    static com.team254.lib.geometry.Pose2d team254(double[] p) {
+        return new com.team254.lib.geometry.Pose2d(p[0], p[1], com.team254.lib.geometry.Rotation2d.fromRadians(p[2]));
+    }
+
+    static MutablePose2d mutable(double[] p) {
+        return new MutablePose2d(p[0], p[1], p[2]);
+    }
+
+    static void assertPose(Pose2d expected, MutablePose2d actual) {
+        assertEquals(expected.getX(), actual.getX(), kEpsilon, "x");
+        assertEquals(expected.getY(), actual.getY(), kEpsilon, "y");
+        MutableRotation2dTest.assertRotation(expected.getRotation().getCos(), expected.getRotation().getSin(),
+                actual.getRotation());
+    }
+
+    static void assertPose(com.team254.lib.geometry.Pose2d expected, MutablePose2d actual) {
+        assertEquals(expected.getTranslation().x(), actual.getX(), kEpsilon, "x");
+        assertEquals(expected.getTranslation().y(), actual.getY(), kEpsilon, "y");
+        MutableRotation2dTest.assertRotation(expected.getRotation().cos(), expected.getRotation().sin(),
+                actual.getRotation());
+    }
+
+    @Test
+    public void transformByMatchesBothLibraries() {
+        double[][] poses = poses();
+        for (double[] a : poses) {
+            for (double[] b : poses) {
+                Pose2d wpilib = wpilib(a).plus(new Transform2d(new Translation2d(b[0], b[1]), new Rotation2d(b[2])));
+                assertPose(wpilib, mutable(a).transformBy(mutable(b)));
+                assertPose(wpilib, mutable(a).transformBy(b[0], b[1], Math.cos(b[2]), Math.sin(b[2])));
+                assertPose(team254(a).transformBy(team254(b)), mutable(a).transformBy(mutable(b)));
+            }
+        }
+    }
+
+    @Test
+    public void relativeToMatchesBothLibraries() {
+        double[][] poses = poses();
+        for (double[] a : poses) {
+            for (double[] b : poses) {
+                assertPose(wpilib(a).relativeTo(wpilib(b)), mutable(a).relativeTo(mutable(b)));
+                // the 254 way round, b^-1 * a
+                assertPose(team254(b).inverse().transformBy(team254(a)), mutable(a).relativeTo(mutable(b)));
+            }
+        }
+    }
+
+    @Test
+    public void inverseMatches254() {
+        for (double[] p : poses()) {
+            assertPose(team254(p).inverse(), mutable(p).inverse());
+            assertPose(new Pose2d(), mutable(p).transformBy(mutable(p).inverse()));
+        }
+    }
+
+    @Test
+    public void expMatchesWpilib() {
+        for (double[] p : poses()) {
+            for (double[] t : kTwists) {
+                Pose2d wpilib = wpilib(p).exp(new Twist2d(t[0], t[1], t[2]));
+                assertPose(wpilib, mutable(p).exp(new MutableTwist2d(t[0], t[1], t[2])));
+                assertPose(wpilib, mutable(p).exp(t[0], t[1], t[2]));
+            }
+        }
+    }
+
+    @Test
+    public void setExpMatches254() {
+        for (double[] t : kTwists) {
+            com.team254.lib.geometry.Pose2d team254 = com.team254.lib.geometry.Pose2d
+                    .exp(new com.team254.lib.geometry.Twist2d(t[0], t[1], t[2]));
+            assertPose(team254, mutable(new double[] { 5.0, -3.0, 1.0 }).setExp(new MutableTwist2d(t[0], t[1], t[2])));
+        }
+    }
+
+    @Test
+    public void nearZeroTwistIsContinuous() {
+        // the small-angle branch should meet the exact one without a jump
+        MutablePose2d straight = new MutablePose2d().exp(1.0, 0.5, 0.0);
+        for (double dtheta = 1e-14; dtheta < 1e-4; dtheta *= 10.0) {
+            MutablePose2d curved = new MutablePose2d().exp(1.0, 0.5, dtheta);
+            assertEquals(straight.getX(), curved.getX(), dtheta * 2.0);
+            assertEquals(straight.getY(), curved.getY(), dtheta * 2.0);
+            assertEquals(dtheta, curved.getRotation().getRadians(), kEpsilon);
+        }
+    }
+
+    @Test
+    public void convertsToBothLibraries() {
+        for (double[] p : poses()) {
+            assertPose(wpilib(p), new MutablePose2d(mutable(p).toWpilib()));
+            assertPose(team254(p), new MutablePose2d(mutable(p).toTeam254()));
+            assertPose(wpilib(p), new MutablePose2d().set(wpilib(p)));
+            assertPose(team254(p), new MutablePose2d().set(team254(p)));
+        }
+    }
+}
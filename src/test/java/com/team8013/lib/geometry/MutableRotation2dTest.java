@@ -0,0 +1,127 @@
+package com.team8013.lib.geometry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+
+public class MutableRotation2dTest {
+
+    private static final double kEpsilon = 1e-9;
+
+    // includes angles either side of the +-pi wrap and past a full turn
+    static final double[] kAngles = { 0.0, 1e-12, -1e-12, 0.5, -2.0, Math.PI / 2.0, 3.0 * Math.PI / 2.0,
+            -3.0 * Math.PI / 2.0, Math.PI, -Math.PI, Math.PI - 1e-12, -Math.PI + 1e-12, 2.0 * Math.PI, 7.0 };
+
+    static double[] angles() {
+        Random random = new Random(8013);
+        double[] angles = new double[kAngles.length + 50];
+        System.arraycopy(kAngles, 0, angles, 0, kAngles.length);
+        for (int i = kAngles.length; i < angles.length; i++) {
+            angles[i] = (random.nextDouble() * 2.0 - 1.0) * 4.0 * Math.PI;
+        }
+        return angles;
+    }
+
+    static void assertRotation(double cos, double sin, MutableRotation2d actual) {
+        assertEquals(cos, actual.getCos(), kEpsilon, "cos");
+        assertEquals(sin, actual.getSin(), kEpsilon, "sin");
+    }
+
+    @Test
+    public void setMatchesBothLibraries() {
+        for (double a : angles()) {
+            Rotation2d wpilib = new Rotation2d(a);
+            com.team254.lib.geometry.Rotation2d team254 = com.team254.lib.geometry.Rotation2d.fromRadians(a);
+            assertRotation(wpilib.getCos(), wpilib.getSin(), new MutableRotation2d(a));
+            assertRotation(wpilib.getCos(), wpilib.getSin(), new MutableRotation2d(wpilib));
+            assertRotation(team254.cos(), team254.sin(), new MutableRotation2d(team254));
+            assertRotation(wpilib.getCos(), wpilib.getSin(), new MutableRotation2d().setDegrees(Math.toDegrees(a)));
+
+            // wrapped into [-pi, pi] like the 254 getRadians
+            double radians = new MutableRotation2d(a).getRadians();
+            assertEquals(0.0, new Rotation2d(radians).minus(wpilib).getSin(), kEpsilon);
+            assertEquals(team254.getRadians(), radians, kEpsilon);
+        }
+    }
+
+    @Test
+    public void setFromDirectionMatchesBothLibraries() {
+        double[][] directions = { { 3.0, 4.0 }, { -1.0, 0.0 }, { -1.0, -1e-13 }, { 0.0, 0.0 }, { 1e-12, 1e-12 } };
+        for (double[] d : directions) {
+            Rotation2d wpilib = new Rotation2d(d[0], d[1]);
+            com.team254.lib.geometry.Rotation2d team254 = new com.team254.lib.geometry.Rotation2d(d[0], d[1], true);
+            MutableRotation2d mutable = new MutableRotation2d().set(d[0], d[1]);
+            assertRotation(wpilib.getCos(), wpilib.getSin(), mutable);
+            // 254 normalizes directions down to 1e-12 long, WPILib and this call ones that short no direction
+            if (Math.hypot(d[0], d[1]) > 1e-6) {
+                assertRotation(team254.cos(), team254.sin(), mutable);
+            }
+        }
+    }
+
+    @Test
+    public void rotateByMatchesBothLibraries() {
+        for (double a : angles()) {
+            for (double b : kAngles) {
+                Rotation2d wpilib = new Rotation2d(a).plus(new Rotation2d(b));
+                com.team254.lib.geometry.Rotation2d team254 = com.team254.lib.geometry.Rotation2d.fromRadians(a)
+                        .rotateBy(com.team254.lib.geometry.Rotation2d.fromRadians(b));
+                assertRotation(wpilib.getCos(), wpilib.getSin(),
+                        new MutableRotation2d(a).rotateBy(new MutableRotation2d(b)));
+                assertRotation(wpilib.getCos(), wpilib.getSin(), new MutableRotation2d(a).rotateBy(new Rotation2d(b)));
+                assertRotation(team254.cos(), team254.sin(),
+                        new MutableRotation2d(a).rotateBy(Math.cos(b), Math.sin(b)));
+            }
+        }
+    }
+
+    @Test
+    public void minusAndInverseMatchBothLibraries() {
+        for (double a : angles()) {
+            for (double b : kAngles) {
+                Rotation2d wpilib = new Rotation2d(a).minus(new Rotation2d(b));
+                assertRotation(wpilib.getCos(), wpilib.getSin(),
+                        new MutableRotation2d(a).minus(new MutableRotation2d(b)));
+
+                // 254 distance is other - this
+                double distance = com.team254.lib.geometry.Rotation2d.fromRadians(b)
+                        .distance(com.team254.lib.geometry.Rotation2d.fromRadians(a));
+                double radiansFrom = new MutableRotation2d(a).radiansFrom(new MutableRotation2d(b));
+                assertEquals(Math.cos(distance), Math.cos(radiansFrom), kEpsilon);
+                assertEquals(Math.sin(distance), Math.sin(radiansFrom), kEpsilon);
+                assertTrue(Math.abs(radiansFrom) <= Math.PI, "radiansFrom wraps");
+            }
+            Rotation2d wpilib = new Rotation2d(a).unaryMinus();
+            com.team254.lib.geometry.Rotation2d team254 = com.team254.lib.geometry.Rotation2d.fromRadians(a)
+                    .inverse();
+            assertRotation(wpilib.getCos(), wpilib.getSin(), new MutableRotation2d(a).inverse());
+            assertRotation(team254.cos(), team254.sin(), new MutableRotation2d(a).inverse());
+        }
+    }
+
+    @Test
+    public void stopsDriftingOverManyRotations() {
+        MutableRotation2d mutable = new MutableRotation2d();
+        Rotation2d wpilib = new Rotation2d();
+        for (int i = 0; i < 100000; i++) {
+            mutable.rotateBy(new MutableRotation2d(0.001));
+            wpilib = wpilib.plus(new Rotation2d(0.001));
+        }
+        assertEquals(1.0, Math.hypot(mutable.getCos(), mutable.getSin()), kEpsilon);
+        assertRotation(wpilib.getCos(), wpilib.getSin(), mutable);
+    }
+
+    @Test
+    public void convertsToBothLibraries() {
+        for (double a : angles()) {
+            MutableRotation2d mutable = new MutableRotation2d(a);
+            assertRotation(mutable.getCos(), mutable.getSin(), new MutableRotation2d(mutable.toWpilib()));
+            assertRotation(mutable.getCos(), mutable.getSin(), new MutableRotation2d(mutable.toTeam254()));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.team8013.lib.geometry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class MutableTranslation2dTest {
+
+    private static final double kEpsilon = 1e-9;
+
+    static double[][] points() {
+        Random random = new Random(8013);
+        double[][] points = new double[40][];
+        points[0] = new double[] { 0.0, 0.0 };
+        points[1] = new double[] { 1e-12, -1e-12 };
+        points[2] = new double[] { -16.5, 8.2 };
+        for (int i = 3; i < points.length; i++) {
+            points[i] = new double[] { random.nextDouble() * 20.0 - 10.0, random.nextDouble() * 20.0 - 10.0 };
+        }
+        return points;
+    }
+
+    static void assertTranslation(double x, double y, MutableTranslation2d actual) {
+        assertEquals(x, actual.getX(), kEpsilon, "x");
+        assertEquals(y, actual.getY(), kEpsilon, "y");
+    }
+
+    @Test
+    public void arithmeticMatchesBothLibraries() {
+        double[][] points = points();
+        for (double[] a : points) {
+            for (double[] b : points) {
+                Translation2d wpilibA = new Translation2d(a[0], a[1]);
+                Translation2d wpilibB = new Translation2d(b[0], b[1]);
+                com.team254.lib.geometry.Translation2d team254A = new com.team254.lib.geometry.Translation2d(a[0], a[1]);
+                com.team254.lib.geometry.Translation2d team254B = new com.team254.lib.geometry.Translation2d(b[0], b[1]);
+
+                Translation2d sum = wpilibA.plus(wpilibB);
+                assertTranslation(sum.getX(), sum.getY(),
+                        new MutableTranslation2d(a[0], a[1]).plus(new MutableTranslation2d(b[0], b[1])));
+                com.team254.lib.geometry.Translation2d translated = team254A.translateBy(team254B);
+                assertTranslation(translated.x(), translated.y(), new MutableTranslation2d(a[0], a[1]).plus(b[0], b[1]));
+
+                Translation2d difference = wpilibA.minus(wpilibB);
+                assertTranslation(difference.getX(), difference.getY(),
+                        new MutableTranslation2d(a[0], a[1]).minus(new MutableTranslation2d(b[0], b[1])));
+
+                assertEquals(wpilibA.getDistance(wpilibB),
+                        new MutableTranslation2d(a[0], a[1]).getDistance(new MutableTranslation2d(b[0], b[1])), kEpsilon);
+                assertEquals(team254A.distance(team254B),
+                        new MutableTranslation2d(a[0], a[1]).getDistance(new MutableTranslation2d(b[0], b[1])), kEpsilon);
+            }
+        }
+    }
+
+    @Test
+    public void rotateScaleAndInverseMatchBothLibraries() {
+        for (double[] p : points()) {
+            for (double angle : MutableRotation2dTest.kAngles) {
+                Translation2d wpilib = new Translation2d(p[0], p[1]).rotateBy(new Rotation2d(angle));
+                com.team254.lib.geometry.Translation2d team254 = new com.team254.lib.geometry.Translation2d(p[0], p[1])
+                        .rotateBy(com.team254.lib.geometry.Rotation2d.fromRadians(angle));
+                assertTranslation(wpilib.getX(), wpilib.getY(),
+                        new MutableTranslation2d(p[0], p[1]).rotateBy(new Rotation2d(angle)));
+                assertTranslation(wpilib.getX(), wpilib.getY(),
+                        new MutableTranslation2d(p[0], p[1]).rotateBy(new MutableRotation2d(angle)));
+                assertTranslation(team254.x(), team254.y(),
+                        new MutableTranslation2d(p[0], p[1]).rotateBy(Math.cos(angle), Math.sin(angle)));
+            }
+
+            Translation2d scaled = new Translation2d(p[0], p[1]).times(-2.5);
+            assertTranslation(scaled.getX(), scaled.getY(), new MutableTranslation2d(p[0], p[1]).scale(-2.5));
+            com.team254.lib.geometry.Translation2d inverse = new com.team254.lib.geometry.Translation2d(p[0], p[1])
+                    .inverse();
+            assertTranslation(inverse.x(), inverse.y(), new MutableTranslation2d(p[0], p[1]).inverse());
+
+            assertEquals(new Translation2d(p[0], p[1]).getNorm(), new MutableTranslation2d(p[0], p[1]).getNorm(),
+                    kEpsilon);
+            assertEquals(new com.team254.lib.geometry.Translation2d(p[0], p[1]).norm(),
+                    new MutableTranslation2d(p[0], p[1]).getNorm(), kEpsilon);
+        }
+    }
+
+    @Test
+    public void convertsToBothLibraries() {
+        for (double[] p : points()) {
+            MutableTranslation2d mutable = new MutableTranslation2d(p[0], p[1]);
+            assertTranslation(p[0], p[1], new MutableTranslation2d(mutable.toWpilib()));
+            assertTranslation(p[0], p[1], new MutableTranslation2d(mutable.toTeam254()));
+        }
+    }
+}
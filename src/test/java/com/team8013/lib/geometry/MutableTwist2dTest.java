@@ -0,0 +1,116 @@
+package com.team8013.lib.geometry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Twist2d;
+
+public class MutableTwist2dTest {
+
+    private static final double kEpsilon = 1e-9;
+
+    static void assertTwist(double dx, double dy, double dtheta, MutableTwist2d actual) {
+        assertTwist(dx, dy, dtheta, actual, kEpsilon);
+    }
+
+    static void assertTwist(double dx, double dy, double dtheta, MutableTwist2d actual, double epsilon) {
+        assertEquals(dx, actual.dx, epsilon, "dx");
+        assertEquals(dy, actual.dy, epsilon, "dy");
+        assertEquals(dtheta, actual.dtheta, epsilon, "dtheta");
+    }
+
+    /**
+     * A rotation of exactly pi has two equally good twists, +pi and -pi, and
+     * which one comes out depends on the sign of a sine that's only rounding
+     * error. Those are compared by where they lead instead.
+     */
+    private static boolean isAmbiguous(double dtheta) {
+        return Math.abs(Math.abs(dtheta) - Math.PI) < 1e-6;
+    }
+
+    @Test
+    public void setLogMatchesBothLibraries() {
+        for (double[] p : MutablePose2dTest.poses()) {
+            MutableTwist2d mutable = new MutableTwist2d().setLog(MutablePose2dTest.mutable(p));
+            com.team254.lib.geometry.Twist2d team254 = com.team254.lib.geometry.Pose2d
+                    .log(MutablePose2dTest.team254(p));
+            Twist2d wpilib = new Pose2d().log(MutablePose2dTest.wpilib(p));
+            if (isAmbiguous(mutable.dtheta)) {
+                MutablePose2dTest.assertPose(MutablePose2dTest.team254(p), new MutablePose2d().setExp(mutable));
+                continue;
+            }
+            assertTwist(team254.dx, team254.dy, team254.dtheta, mutable);
+            assertTwist(wpilib.dx, wpilib.dy, wpilib.dtheta, mutable);
+        }
+    }
+
+    @Test
+    public void setLogBetweenPosesMatchesWpilib() {
+        double[][] poses = MutablePose2dTest.poses();
+        for (double[] a : poses) {
+            for (double[] b : poses) {
+                MutableTwist2d mutable = new MutableTwist2d().setLog(MutablePose2dTest.mutable(a),
+                        MutablePose2dTest.mutable(b));
+                Twist2d wpilib = MutablePose2dTest.wpilib(a).log(MutablePose2dTest.wpilib(b));
+                if (!isAmbiguous(mutable.dtheta)) {
+                    assertTwist(wpilib.dx, wpilib.dy, wpilib.dtheta, mutable);
+                }
+                MutablePose2dTest.assertPose(MutablePose2dTest.wpilib(b),
+                        MutablePose2dTest.mutable(a).exp(mutable));
+            }
+        }
+    }
+
+    @Test
+    public void setLogUndoesExp() {
+        for (double[] t : MutablePose2dTest.kTwists) {
+            MutableTwist2d twist = new MutableTwist2d(t[0], t[1], t[2]);
+            MutablePose2d pose = new MutablePose2d().setExp(twist);
+            MutableTwist2d log = new MutableTwist2d().setLog(pose);
+            // log only recovers twists that turn less than half a revolution. Just
+            // above the small-angle cutoff 1 - cos(dtheta) rounds away in exp (in all
+            // three libraries), so the round trip is a little looser than the rest
+            if (Math.abs(t[2]) < Math.PI) {
+                assertTwist(t[0], t[1], t[2], log, 1e-7);
+            }
+            assertTrue(pose.epsilonEquals(new MutablePose2d().setExp(log), 1e-7), "exp(log(pose)) == pose");
+        }
+    }
+
+    @Test
+    public void nearIdentityMatchesBothLibraries() {
+        double[] small = { 0.0, 1e-14, -1e-12, 1e-10, -1e-9, 1e-7, 1e-5 };
+        for (double dtheta : small) {
+            double[] p = { 0.3, -0.2, dtheta };
+            MutableTwist2d mutable = new MutableTwist2d().setLog(MutablePose2dTest.mutable(p));
+            com.team254.lib.geometry.Twist2d team254 = com.team254.lib.geometry.Pose2d
+                    .log(MutablePose2dTest.team254(p));
+            Twist2d wpilib = new Pose2d().log(MutablePose2dTest.wpilib(p));
+            assertTwist(team254.dx, team254.dy, team254.dtheta, mutable);
+            assertTwist(wpilib.dx, wpilib.dy, wpilib.dtheta, mutable);
+        }
+    }
+
+    @Test
+    public void scaleAndNormMatch254() {
+        for (double[] t : MutablePose2dTest.kTwists) {
+            com.team254.lib.geometry.Twist2d team254 = new com.team254.lib.geometry.Twist2d(t[0], t[1], t[2])
+                    .scaled(0.25);
+            MutableTwist2d mutable = new MutableTwist2d(t[0], t[1], t[2]).scale(0.25);
+            assertTwist(team254.dx, team254.dy, team254.dtheta, mutable);
+            assertEquals(team254.norm(), mutable.getNorm(), kEpsilon);
+        }
+    }
+
+    @Test
+    public void convertsToBothLibraries() {
+        for (double[] t : MutablePose2dTest.kTwists) {
+            MutableTwist2d mutable = new MutableTwist2d(t[0], t[1], t[2]);
+            assertTwist(t[0], t[1], t[2], new MutableTwist2d().set(mutable.toWpilib()));
+            assertTwist(t[0], t[1], t[2], new MutableTwist2d().set(mutable.toTeam254()));
+        }
+    }
+}
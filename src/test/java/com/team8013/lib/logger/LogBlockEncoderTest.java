@@ -0,0 +1,172 @@
+package com.team8013.lib.logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class LogBlockEncoderTest {
+
+    private static final byte[] kTypes = { LogFormat.kTypeDouble, LogFormat.kTypeInt, LogFormat.kTypeBoolean,
+            LogFormat.kTypeString };
+    private static final List<String> kNames = Arrays.asList("x", "count", "enabled", "state");
+
+    private static final double[][] kValues = {
+            { 1.5, 3, 1, 0 },
+            { -0.0, -7, 0, 0 },
+            { Double.NaN, Double.NaN, Double.NaN, 0 },
+            { Double.POSITIVE_INFINITY, Integer.MAX_VALUE, 1, 0 },
+            { 1e-300, Integer.MIN_VALUE, 0, 0 },
+    };
+    private static final String[][] kStrings = {
+            { null, null, null, "IDLE" },
+            { null, null, null, "AIM, then shoot" },
+            { null, null, null, null },
+            { null, null, null, "IDLE" },
+            { null, null, null, "" },
+    };
+    private static final String[] kLines = {
+            "1.5,3,true,IDLE",
+            "-0.0,-7,false,AIM, then shoot",
+            ",,,",
+            "Infinity,2147483647,true,IDLE",
+            "1.0E-300,-2147483648,false,",
+    };
+
+    private static byte[] encode(boolean deflate, int blocks) throws IOException {
+        LogBlockEncoder encoder = new LogBlockEncoder(kTypes, deflate);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.writeSchema(out, kNames);
+        for (int b = 0; b < blocks; b++) {
+            for (int r = 0; r < kValues.length; r++) {
+                encoder.addRow(kValues[r], kStrings[r]);
+            }
+            encoder.writeBlock(out);
+        }
+        encoder.close();
+        return out.toByteArray();
+    }
+
+    private static List<String> decode(byte[] bytes, LogDecoder.Result[] result) throws IOException {
+        Path in = Files.createTempFile("LogBlockEncoderTest", ".bin");
+        Path out = Files.createTempFile("LogBlockEncoderTest", ".csv");
+        try {
+            Files.write(in, bytes);
+            result[0] = LogDecoder.decode(in, out);
+            return Files.readAllLines(out);
+        } finally {
+            Files.deleteIfExists(in);
+            Files.deleteIfExists(out);
+        }
+    }
+
+    private static void assertBlocks(List<String> lines, int blocks) {
+        assertEquals(1 + blocks * kLines.length, lines.size());
+        assertEquals(String.join(",", kNames), lines.get(0));
+        for (int b = 0; b < blocks; b++) {
+            for (int r = 0; r < kLines.length; r++) {
+                assertEquals(kLines[r], lines.get(1 + b * kLines.length + r));
+            }
+        }
+    }
+
+    // the flags byte of the first rows frame, right after the schema frame
+    private static byte firstBlockFlags(byte[] bytes) {
+        int schemaLength = ((bytes[14] & 0xFF) << 24) | ((bytes[15] & 0xFF) << 16) | ((bytes[16] & 0xFF) << 8)
+                | (bytes[17] & 0xFF);
+        return bytes[LogFormat.kFrameHeaderSize + schemaLength + 5];
+    }
+
+    @Test
+    public void rawBlocksRoundTrip() throws IOException {
+        byte[] bytes = encode(false, 3);
+        assertEquals(0, firstBlockFlags(bytes));
+
+        LogDecoder.Result[] result = new LogDecoder.Result[1];
+        assertBlocks(decode(bytes, result), 3);
+        assertEquals(3, result[0].blocks);
+        assertEquals(0, result[0].badBlocks);
+        assertEquals(3 * kLines.length, result[0].rows);
+    }
+
+    @Test
+    public void deflatedBlocksRoundTrip() throws IOException {
+        LogBlockEncoder encoder = new LogBlockEncoder(kTypes, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.writeSchema(out, kNames);
+        // repeats enough to compress
+        for (int i = 0; i < 200; i++) {
+            encoder.addRow(kValues[i % kValues.length], kStrings[i % kStrings.length]);
+        }
+        encoder.writeBlock(out);
+        encoder.close();
+        byte[] bytes = out.toByteArray();
+        assertEquals(LogFormat.kFlagDeflated, firstBlockFlags(bytes));
+
+        LogDecoder.Result[] result = new LogDecoder.Result[1];
+        List<String> lines = decode(bytes, result);
+        assertEquals(201, lines.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(kLines[i % kLines.length], lines.get(1 + i));
+        }
+        assertEquals(1, result[0].blocks);
+        assertEquals(0, result[0].badBlocks);
+    }
+
+    @Test
+    public void incompressibleBlockStaysRaw() throws IOException {
+        byte[] types = { LogFormat.kTypeDouble };
+        LogBlockEncoder encoder = new LogBlockEncoder(types, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.writeSchema(out, Arrays.asList("noise"));
+        Random random = new Random(8013);
+        double[] expected = new double[50];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = random.nextDouble();
+            encoder.addRow(new double[] { expected[i] }, new String[1]);
+        }
+        encoder.writeBlock(out);
+        encoder.close();
+        byte[] bytes = out.toByteArray();
+        assertEquals(0, firstBlockFlags(bytes));
+
+        LogDecoder.Result[] result = new LogDecoder.Result[1];
+        List<String> lines = decode(bytes, result);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(Double.toString(expected[i]), lines.get(1 + i));
+        }
+    }
+
+    @Test
+    public void tornTrailingBlockIsSkipped() throws IOException {
+        byte[] whole = encode(true, 3);
+        byte[] bytes = Arrays.copyOf(whole, whole.length - 5);
+
+        LogDecoder.Result[] result = new LogDecoder.Result[1];
+        assertBlocks(decode(bytes, result), 2);
+        assertEquals(2, result[0].blocks);
+        assertEquals(1, result[0].badBlocks);
+    }
+
+    @Test
+    public void headerBitFlipIsCaught() throws IOException {
+        byte[] bytes = encode(false, 2);
+        int schemaLength = ((bytes[14] & 0xFF) << 24) | ((bytes[15] & 0xFF) << 16) | ((bytes[16] & 0xFF) << 8)
+                | (bytes[17] & 0xFF);
+        // lowest bit of the first block's row count
+        bytes[LogFormat.kFrameHeaderSize + schemaLength + 9] ^= 1;
+
+        LogDecoder.Result[] result = new LogDecoder.Result[1];
+        List<String> lines = decode(bytes, result);
+        assertEquals(1 + kLines.length, lines.size());
+        assertEquals(1, result[0].blocks);
+        assertEquals(1, result[0].badBlocks);
+    }
+}
@@ -0,0 +1,101 @@
+package com.team8013.lib.stats;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class RunningStatsTest {
+
+    private static final double kEpsilon = 1e-9;
+
+    // two passes over every sample
+    private static void assertMatches(List<Double> samples, RunningStats stats) {
+        double sum = 0.0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (double sample : samples) {
+            sum += sample;
+            min = Math.min(min, sample);
+            max = Math.max(max, sample);
+        }
+        double mean = sum / samples.size();
+        double squares = 0.0;
+        for (double sample : samples) {
+            squares += (sample - mean) * (sample - mean);
+        }
+        double variance = samples.size() < 2 ? 0.0 : squares / (samples.size() - 1);
+
+        double scale = Math.max(1.0, Math.abs(mean));
+        assertEquals(samples.size(), stats.getCount());
+        assertEquals(sum, stats.getSum(), kEpsilon * scale * samples.size(), "sum");
+        assertEquals(mean, stats.getMean(), kEpsilon * scale, "mean");
+        assertEquals(variance, stats.getVariance(), 1e-6 * Math.max(1.0, variance), "variance");
+        assertEquals(Math.sqrt(variance), stats.getStandardDeviation(), 1e-6 * Math.max(1.0, variance), "std");
+        assertEquals(min, stats.getMin(), "min");
+        assertEquals(max, stats.getMax(), "max");
+    }
+
+    @Test
+    public void matchesNaiveOnRandomSamples() {
+        Random random = new Random(8013);
+        RunningStats stats = new RunningStats();
+        List<Double> samples = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            double sample = random.nextGaussian() * 3.0 - 7.0;
+            stats.add(sample);
+            samples.add(sample);
+            assertMatches(samples, stats);
+        }
+    }
+
+    @Test
+    public void varianceStaysAccurateWithBigOffset() {
+        // a sum of squares would lose everything after the decimal point here
+        Random random = new Random(254);
+        RunningStats stats = new RunningStats();
+        List<Double> samples = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            double sample = 1e9 + random.nextDouble();
+            stats.add(sample);
+            samples.add(sample);
+        }
+        assertEquals(1.0 / 12.0, stats.getVariance(), 1e-2);
+        assertMatches(samples, stats);
+    }
+
+    @Test
+    public void emptyAndSingleSample() {
+        RunningStats stats = new RunningStats();
+        assertEquals(0, stats.getCount());
+        assertTrue(Double.isNaN(stats.getMean()));
+        assertEquals(0.0, stats.getVariance());
+        assertEquals(Double.POSITIVE_INFINITY, stats.getMin());
+        assertEquals(Double.NEGATIVE_INFINITY, stats.getMax());
+
+        stats.add(2.5);
+        assertEquals(2.5, stats.getMean());
+        assertEquals(0.0, stats.getVariance());
+        assertEquals(2.5, stats.getMin());
+        assertEquals(2.5, stats.getMax());
+    }
+
+    @Test
+    public void clearStartsOver() {
+        RunningStats stats = new RunningStats();
+        for (int i = 0; i < 10; i++) {
+            stats.add(i * 100.0);
+        }
+        stats.clear();
+        List<Double> samples = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            stats.add(-i);
+            samples.add((double) -i);
+            assertMatches(samples, stats);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.team8013.lib.stats;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class WindowedStatsTest {
+
+    private static final double kEpsilon = 1e-9;
+    private static final double[] kPercentiles = { 0.0, 0.1, 0.25, 1.0 / 3.0, 0.5, 0.9, 0.99, 1.0 };
+
+    /**
+     * The last N samples in a deque, everything recomputed from scratch.
+     */
+    private static class NaiveWindow {
+        private final int mCapacity;
+        private final ArrayDeque<Double> mSamples = new ArrayDeque<>();
+
+        NaiveWindow(int capacity) {
+            mCapacity = capacity;
+        }
+
+        void add(double value) {
+            if (mSamples.size() == mCapacity) {
+                mSamples.removeFirst();
+            }
+            mSamples.addLast(value);
+        }
+
+        double[] values() {
+            double[] values = new double[mSamples.size()];
+            int i = 0;
+            for (double value : mSamples) {
+                values[i++] = value;
+            }
+            return values;
+        }
+
+        double mean() {
+            double sum = 0.0;
+            for (double value : mSamples) {
+                sum += value;
+            }
+            return sum / mSamples.size();
+        }
+
+        double variance() {
+            if (mSamples.size() < 2) {
+                return 0.0;
+            }
+            double mean = mean();
+            double sum = 0.0;
+            for (double value : mSamples) {
+                sum += (value - mean) * (value - mean);
+            }
+            return sum / (mSamples.size() - 1);
+        }
+
+        double min() {
+            return Arrays.stream(values()).min().getAsDouble();
+        }
+
+        double max() {
+            return Arrays.stream(values()).max().getAsDouble();
+        }
+
+        // linear between the closest ranks
+        double percentile(double percentile) {
+            double[] sorted = values();
+            Arrays.sort(sorted);
+            double rank = percentile * (sorted.length - 1);
+            int lower = (int) Math.floor(rank);
+            int upper = Math.min(lower + 1, sorted.length - 1);
+            return sorted[lower] + (sorted[upper] - sorted[lower]) * (rank - lower);
+        }
+
+        // the sample where the running count reaches percentile * size, which
+        // is what the histogram interpolates within the bin of
+        double rankSample(double percentile) {
+            double[] sorted = values();
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+    }
+
+    private static void assertMatches(NaiveWindow naive, WindowedStats stats) {
+        double[] values = naive.values();
+        assertEquals(values.length, stats.getSize());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], stats.get(i), "get(" + i + ")");
+        }
+        assertEquals(values[values.length - 1], stats.getLast());
+        double scale = Math.max(1.0, Math.abs(naive.mean()));
+        assertEquals(naive.mean(), stats.getMean(), kEpsilon * scale, "mean");
+        assertEquals(naive.variance(), stats.getVariance(), 1e-6 * Math.max(1.0, naive.variance()), "variance");
+        assertEquals(naive.min(), stats.getMin(), "min");
+        assertEquals(naive.max(), stats.getMax(), "max");
+        for (double p : kPercentiles) {
+            assertEquals(naive.percentile(p), stats.getPercentile(p), kEpsilon * scale, "percentile " + p);
+        }
+        assertEquals(naive.percentile(0.5), stats.getMedian(), kEpsilon * scale, "median");
+    }
+
+    private static void check(int window, double[] samples) {
+        WindowedStats stats = new WindowedStats(window);
+        NaiveWindow naive = new NaiveWindow(window);
+        for (double sample : samples) {
+            stats.add(sample);
+            naive.add(sample);
+            assertMatches(naive, stats);
+        }
+    }
+
+    @Test
+    public void matchesNaiveOnRandomSamples() {
+        Random random = new Random(8013);
+        for (int window : new int[] { 1, 2, 3, 7, 64 }) {
+            double[] samples = new double[500];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = random.nextGaussian() * 10.0;
+            }
+            check(window, samples);
+        }
+    }
+
+    @Test
+    public void minMaxDequesOnMonotonicRuns() {
+        double[] increasing = new double[100];
+        double[] decreasing = new double[100];
+        double[] sawtooth = new double[100];
+        double[] constant = new double[100];
+        for (int i = 0; i < 100; i++) {
+            increasing[i] = i;
+            decreasing[i] = -i;
+            sawtooth[i] = i % 13;
+            constant[i] = 4.0;
+        }
+        // the deques fill up and wrap around the ring
+        for (int window : new int[] { 1, 5, 13, 16 }) {
+            check(window, increasing);
+            check(window, decreasing);
+            check(window, sawtooth);
+            check(window, constant);
+        }
+    }
+
+    @Test
+    public void quickselectHandlesDuplicates() {
+        Random random = new Random(254);
+        double[] samples = new double[300];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = random.nextInt(4);
+        }
+        check(31, samples);
+        check(32, samples);
+    }
+
+    @Test
+    public void evictsOldestSample() {
+        WindowedStats stats = new WindowedStats(3);
+        for (int i = 1; i <= 5; i++) {
+            stats.add(i);
+        }
+        assertTrue(stats.isFull());
+        assertEquals(3, stats.getSize());
+        assertEquals(3.0, stats.get(0));
+        assertEquals(5.0, stats.getLast());
+        assertEquals(12.0, stats.getSum(), kEpsilon);
+        assertEquals(3.0, stats.getMin());
+        assertEquals(5.0, stats.getMax());
+        assertEquals(4.0, stats.getMedian(), kEpsilon);
+    }
+
+    @Test
+    public void emptyAndCleared() {
+        WindowedStats stats = new WindowedStats(4);
+        assertTrue(stats.isEmpty());
+        assertTrue(Double.isNaN(stats.getMean()));
+        assertTrue(Double.isNaN(stats.getMin()));
+        assertTrue(Double.isNaN(stats.getMax()));
+        assertTrue(Double.isNaN(stats.getMedian()));
+        assertTrue(Double.isNaN(stats.getLast()));
+        assertEquals(0.0, stats.getVariance());
+
+        for (int i = 0; i < 10; i++) {
+            stats.add(100.0 + i);
+        }
+        stats.clear();
+        assertTrue(stats.isEmpty());
+        assertTrue(Double.isNaN(stats.getMin()));
+
+        // nothing from before the clear comes back
+        NaiveWindow naive = new NaiveWindow(4);
+        for (int i = 0; i < 6; i++) {
+            stats.add(-i);
+            naive.add(-i);
+            assertMatches(naive, stats);
+        }
+    }
+
+    @Test
+    public void rejectsEmptyWindow() {
+        assertThrows(IllegalArgumentException.class, () -> new WindowedStats(0));
+    }
+
+    @Test
+    public void sumsDontDriftOverLongRuns() {
+        // a big offset makes the running sum of squares lose precision first
+        Random random = new Random(1678);
+        WindowedStats stats = new WindowedStats(50);
+        NaiveWindow naive = new NaiveWindow(50);
+        for (int i = 0; i < 50 * 200; i++) {
+            double sample = 1e4 + random.nextDouble();
+            stats.add(sample);
+            naive.add(sample);
+        }
+        assertEquals(naive.mean(), stats.getMean(), 1e-9 * 1e4);
+        assertEquals(naive.variance(), stats.getVariance(), 1e-3);
+    }
+
+    @Test
+    public void histogramPercentileStaysInTheRightBin() {
+        Random random = new Random(3476);
+        double binWidth = 0.1;
+        WindowedStats stats = new WindowedStats(40).enableHistogram(0.0, 10.0, 100);
+        NaiveWindow naive = new NaiveWindow(40);
+        for (int i = 0; i < 400; i++) {
+            double sample = random.nextDouble() * 10.0;
+            stats.add(sample);
+            naive.add(sample);
+            for (double p : kPercentiles) {
+                double expected = naive.rankSample(p);
+                assertEquals(expected, stats.getPercentile(p), binWidth, "percentile " + p + " after " + i);
+            }
+            assertEquals(naive.min(), stats.getMin());
+            assertEquals(naive.max(), stats.getMax());
+        }
+    }
+
+    @Test
+    public void histogramForgetsEvictedSamples() {
+        WindowedStats stats = new WindowedStats(10).enableHistogram(0.0, 100.0, 100);
+        for (int i = 0; i < 10; i++) {
+            stats.add(5.5);
+        }
+        assertEquals(5.0, stats.getMedian(), 1.0);
+        for (int i = 0; i < 10; i++) {
+            stats.add(90.5);
+        }
+        assertEquals(90.0, stats.getPercentile(0.0), 1.0);
+        assertEquals(91.0, stats.getPercentile(1.0), 1.0);
+    }
+
+    @Test
+    public void histogramEnabledLateCountsWhatsThere() {
+        WindowedStats stats = new WindowedStats(5);
+        for (int i = 0; i < 5; i++) {
+            stats.add(i * 10.0 + 0.5);
+        }
+        stats.enableHistogram(0.0, 50.0, 50);
+        assertEquals(20.0, stats.getMedian(), 1.0);
+    }
+
+    @Test
+    public void histogramClampsOutOfRangeToEndBins() {
+        WindowedStats stats = new WindowedStats(4).enableHistogram(0.0, 1.0, 10);
+        stats.add(-5.0);
+        stats.add(-5.0);
+        stats.add(50.0);
+        stats.add(50.0);
+        assertEquals(0.0, stats.getPercentile(0.0), 0.1);
+        assertEquals(1.0, stats.getPercentile(1.0), 0.1);
+        // exact min and max don't come from the histogram
+        assertEquals(-5.0, stats.getMin());
+        assertEquals(50.0, stats.getMax());
+    }
+}
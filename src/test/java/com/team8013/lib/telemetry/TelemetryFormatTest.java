@@ -0,0 +1,103 @@
+package com.team8013.lib.telemetry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class TelemetryFormatTest {
+
+    // doubles and booleans interleaved, with more than 8 booleans so they span bytes
+    private static TelemetryFormat.Schema makeSchema() {
+        List<String> names = new ArrayList<>();
+        List<Byte> types = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            names.add("Sub/double" + i);
+            types.add(TelemetryFormat.kTypeDouble);
+            names.add("Sub/boolean" + i);
+            types.add(TelemetryFormat.kTypeBoolean);
+        }
+        return new TelemetryFormat.Schema(names, types);
+    }
+
+    @Test
+    public void schemaRoundTrips() {
+        TelemetryFormat.Schema schema = makeSchema();
+        ByteBuffer buffer = TelemetryFormat.allocate(TelemetryFormat.kMaxPacketSize);
+        TelemetryFormat.encodeSchema(buffer, schema);
+
+        assertEquals(TelemetryFormat.kSchemaPacket, TelemetryFormat.readHeader(buffer));
+        TelemetryFormat.Schema decoded = TelemetryFormat.decodeSchema(buffer);
+        assertEquals(schema.id, decoded.id);
+        assertArrayEquals(schema.names, decoded.names);
+        assertArrayEquals(schema.types, decoded.types);
+        assertEquals(schema.getFrameSize(), decoded.getFrameSize());
+    }
+
+    @Test
+    public void frameRoundTrips() {
+        TelemetryFormat.Schema schema = makeSchema();
+        double[] values = new double[schema.size() + 1];
+        double[] doubles = { 0.0, -0.0, 1.5, -273.15, Double.NaN, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE, 1e-300, 12345.678, -1.0 };
+        for (int i = 0; i < 12; i++) {
+            values[1 + 2 * i] = doubles[i];
+            values[1 + 2 * i + 1] = i % 3 == 0 ? 1.0 : 0.0;
+        }
+
+        ByteBuffer buffer = TelemetryFormat.allocate(schema.getFrameSize());
+        TelemetryFormat.encodeFrame(buffer, schema, 42, 3.25, values, 1);
+        assertEquals(schema.getFrameSize(), buffer.remaining());
+
+        assertEquals(TelemetryFormat.kFramePacket, TelemetryFormat.readHeader(buffer));
+        TelemetryFormat.Frame frame = new TelemetryFormat.Frame();
+        double[] decoded = new double[schema.size()];
+        assertTrue(TelemetryFormat.decodeFrame(buffer, schema, frame, decoded));
+        assertEquals(42, frame.sequence);
+        assertEquals(3.25, frame.timestamp);
+        for (int i = 0; i < schema.size(); i++) {
+            assertEquals(Double.doubleToRawLongBits(values[1 + i]), Double.doubleToRawLongBits(decoded[i]),
+                    schema.names[i]);
+        }
+    }
+
+    @Test
+    public void booleansAreAnythingNonZero() {
+        List<String> names = List.of("a", "b", "c");
+        List<Byte> types = List.of(TelemetryFormat.kTypeBoolean, TelemetryFormat.kTypeBoolean,
+                TelemetryFormat.kTypeBoolean);
+        TelemetryFormat.Schema schema = new TelemetryFormat.Schema(names, types);
+        ByteBuffer buffer = TelemetryFormat.allocate(schema.getFrameSize());
+        TelemetryFormat.encodeFrame(buffer, schema, 0, 0.0, new double[] { -2.0, 0.0, Double.NaN }, 0);
+
+        TelemetryFormat.readHeader(buffer);
+        double[] decoded = new double[3];
+        assertTrue(TelemetryFormat.decodeFrame(buffer, schema, new TelemetryFormat.Frame(), decoded));
+        assertArrayEquals(new double[] { 1.0, 0.0, 1.0 }, decoded);
+    }
+
+    @Test
+    public void rejectsFramesFromAnotherSchema() {
+        TelemetryFormat.Schema schema = makeSchema();
+        TelemetryFormat.Schema other = new TelemetryFormat.Schema(List.of("x"), List.of(TelemetryFormat.kTypeDouble));
+        ByteBuffer buffer = TelemetryFormat.allocate(other.getFrameSize());
+        TelemetryFormat.encodeFrame(buffer, other, 1, 1.0, new double[] { 1.0 }, 0);
+
+        TelemetryFormat.readHeader(buffer);
+        assertFalse(TelemetryFormat.decodeFrame(buffer, schema, new TelemetryFormat.Frame(),
+                new double[schema.size()]));
+    }
+
+    @Test
+    public void rejectsForeignPackets() {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 });
+        assertEquals(-1, TelemetryFormat.readHeader(buffer));
+        assertEquals(-1, TelemetryFormat.readHeader(ByteBuffer.allocate(2)));
+    }
+}
@@ -0,0 +1,104 @@
+package com.team8013.lib.telemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.team8013.lib.logger.Log;
+
+public class TelemetryStreamTest {
+
+    private static class Logged {
+        @Log
+        private double position = 1.25;
+        @Log
+        private int count = -7;
+        @Log
+        private boolean enabled = true;
+        private double notLogged = 99.0;
+
+        @Log
+        private double getVelocity() {
+            return position * 2.0;
+        }
+
+        @Log
+        private boolean isStopped() {
+            return false;
+        }
+    }
+
+    private static ByteBuffer receive(DatagramChannel channel, Selector selector) throws Exception {
+        assertTrue(selector.select(2000) > 0, "no packet within 2 s");
+        selector.selectedKeys().clear();
+        ByteBuffer buffer = TelemetryFormat.allocate(TelemetryFormat.kMaxPacketSize);
+        channel.receive(buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    @Test
+    public void streamsLoggedValuesOverLoopback() throws Exception {
+        try (DatagramChannel receiver = DatagramChannel.open(); Selector selector = Selector.open()) {
+            receiver.bind(new InetSocketAddress("127.0.0.1", 0));
+            receiver.configureBlocking(false);
+            receiver.register(selector, SelectionKey.OP_READ);
+            int port = ((InetSocketAddress) receiver.getLocalAddress()).getPort();
+
+            Logged logged = new Logged();
+            TelemetryStream stream = new TelemetryStream();
+            stream.registerObject(Logged.class, logged, "Logged");
+            stream.addDouble("Extra/constant", () -> 4.5);
+            stream.start("127.0.0.1", port);
+            try {
+                stream.sample(10.0);
+                logged.position = -3.0;
+                logged.count = 12;
+                logged.enabled = false;
+                stream.sample(10.02);
+
+                // the schema goes out ahead of the first frame
+                ByteBuffer packet = receive(receiver, selector);
+                assertEquals(TelemetryFormat.kSchemaPacket, TelemetryFormat.readHeader(packet));
+                TelemetryFormat.Schema schema = TelemetryFormat.decodeSchema(packet);
+                assertEquals(6, schema.size());
+                assertTrue(Arrays.asList(schema.names).contains("Logged/getVelocity"));
+                assertTrue(!Arrays.asList(schema.names).contains("Logged/notLogged"));
+
+                double[][] expected = { { 1.25, -7, 1, 2.5, 0, 4.5 }, { -3.0, 12, 0, -6.0, 0, 4.5 } };
+                double[] times = { 10.0, 10.02 };
+                for (int f = 0; f < 2; f++) {
+                    packet = receive(receiver, selector);
+                    assertEquals(TelemetryFormat.kFramePacket, TelemetryFormat.readHeader(packet));
+                    TelemetryFormat.Frame frame = new TelemetryFormat.Frame();
+                    double[] values = new double[schema.size()];
+                    assertTrue(TelemetryFormat.decodeFrame(packet, schema, frame, values));
+                    assertEquals(f, frame.sequence);
+                    assertEquals(times[f], frame.timestamp);
+                    assertEquals(expected[f][0], values[indexOf(schema, "Logged/position")]);
+                    assertEquals(expected[f][1], values[indexOf(schema, "Logged/count")]);
+                    assertEquals(expected[f][2], values[indexOf(schema, "Logged/enabled")]);
+                    assertEquals(expected[f][3], values[indexOf(schema, "Logged/getVelocity")]);
+                    assertEquals(expected[f][4], values[indexOf(schema, "Logged/isStopped")]);
+                    assertEquals(expected[f][5], values[indexOf(schema, "Extra/constant")]);
+                }
+            } finally {
+                stream.stop();
+            }
+        }
+    }
+
+    private static int indexOf(TelemetryFormat.Schema schema, String name) {
+        int index = Arrays.asList(schema.names).indexOf(name);
+        assertTrue(index >= 0, name);
+        return index;
+    }
+}
@@ -0,0 +1,94 @@
+package com.team8013.lib.trajectory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class HeadingProfileTest {
+
+    private static final double kEpsilon = 1e-9;
+    private static final double kLength = 4.0;
+
+    // {start, end, window start, window end}
+    private static final double[][] kProfiles = {
+            { 0.0, Math.PI / 2.0, 0.2, 0.8 },
+            { Math.PI, Math.toRadians(20.0), 0.0, 1.0 },
+            { Math.toRadians(170.0), Math.toRadians(-170.0), 0.5, 0.6 },
+            { -1.0, 2.0, 0.0, 0.1 },
+            { 0.3, -0.3, 0.9, 1.0 },
+    };
+
+    private static HeadingProfile profile(double[] p) {
+        return new HeadingProfile(p[0], p[1], p[2], p[3], kLength);
+    }
+
+    @Test
+    public void holdsOutsideWindow() {
+        for (double[] p : kProfiles) {
+            HeadingProfile profile = profile(p);
+            double delta = Math.IEEEremainder(p[1] - p[0], 2.0 * Math.PI);
+            for (double s = 0.0; s <= profile.getWindowStart(); s += 0.01) {
+                assertEquals(p[0], profile.getHeading(s), kEpsilon);
+                assertEquals(0.0, profile.getHeadingRate(s), kEpsilon);
+            }
+            for (double s = profile.getWindowEnd(); s <= kLength; s += 0.01) {
+                assertEquals(p[0] + delta, profile.getHeading(s), kEpsilon);
+                assertEquals(0.0, profile.getHeadingRate(s), kEpsilon);
+            }
+        }
+    }
+
+    @Test
+    public void turnsTheShortWay() {
+        HeadingProfile profile = new HeadingProfile(Math.toRadians(170.0), Math.toRadians(-170.0), 0.0, 1.0,
+                kLength);
+        assertEquals(Math.toRadians(190.0), profile.getHeading(kLength), kEpsilon);
+        for (double s = 0.0; s <= kLength; s += 0.01) {
+            assertTrue(profile.getHeadingRate(s) >= 0.0);
+        }
+    }
+
+    @Test
+    public void headingIsContinuous() {
+        double ds = 1e-4;
+        for (double[] p : kProfiles) {
+            HeadingProfile profile = profile(p);
+            double maxRate = 1.5 * Math.abs(Math.IEEEremainder(p[1] - p[0], 2.0 * Math.PI))
+                    / (profile.getWindowEnd() - profile.getWindowStart());
+            for (double s = 0.0; s + ds <= kLength; s += ds) {
+                double step = profile.getHeading(s + ds) - profile.getHeading(s);
+                assertTrue(Math.abs(step) <= maxRate * ds + kEpsilon, "jumped by " + step + " at " + s);
+            }
+        }
+    }
+
+    @Test
+    public void rateIsContinuousAndMatchesHeading() {
+        double ds = 1e-4;
+        for (double[] p : kProfiles) {
+            HeadingProfile profile = profile(p);
+            double span = profile.getWindowEnd() - profile.getWindowStart();
+            double maxRateStep = 6.0 * Math.abs(Math.IEEEremainder(p[1] - p[0], 2.0 * Math.PI)) / (span * span);
+            for (double s = ds; s + ds <= kLength; s += ds) {
+                double numeric = (profile.getHeading(s + ds) - profile.getHeading(s - ds)) / (2.0 * ds);
+                assertEquals(numeric, profile.getHeadingRate(s), 1e-3 * maxRateStep, "rate at " + s);
+                double step = profile.getHeadingRate(s + ds) - profile.getHeadingRate(s);
+                assertTrue(Math.abs(step) <= maxRateStep * ds * 1.01, "rate jumped by " + step + " at " + s);
+            }
+            assertEquals(0.0, profile.getHeadingRate(profile.getWindowStart()), kEpsilon);
+            assertEquals(0.0, profile.getHeadingRate(profile.getWindowEnd()), kEpsilon);
+        }
+    }
+
+    @Test
+    public void emptyWindowStillTurns() {
+        HeadingProfile profile = new HeadingProfile(0.0, 1.0, 0.5, 0.5, kLength);
+        assertEquals(0.0, profile.getHeading(0.0), kEpsilon);
+        assertEquals(1.0, profile.getHeading(kLength), kEpsilon);
+        for (double s = 0.0; s <= kLength; s += 0.01) {
+            assertTrue(Double.isFinite(profile.getHeading(s)));
+            assertTrue(Double.isFinite(profile.getHeadingRate(s)));
+        }
+    }
+}
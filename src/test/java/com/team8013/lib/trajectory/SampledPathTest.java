@@ -0,0 +1,99 @@
+package com.team8013.lib.trajectory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.spline.PoseWithCurvature;
+
+public class SampledPathTest {
+
+    private static final double kEpsilon = 1e-9;
+
+    /**
+     * Points along +x to length, bunched up toward the start the way spline
+     * points are where the spline is slow.
+     */
+    static List<PoseWithCurvature> straight(double length, int points) {
+        List<PoseWithCurvature> out = new ArrayList<>();
+        for (int i = 0; i < points; i++) {
+            double u = i / (double) (points - 1);
+            out.add(new PoseWithCurvature(new Pose2d(length * u * u, 0.0, new Rotation2d()), 0.0));
+        }
+        return out;
+    }
+
+    /**
+     * Points around a circle turning left from the origin, heading +x, through
+     * sweep radians.
+     */
+    static List<PoseWithCurvature> arc(double radius, double sweep, int points) {
+        List<PoseWithCurvature> out = new ArrayList<>();
+        for (int i = 0; i < points; i++) {
+            double angle = sweep * i / (points - 1);
+            out.add(new PoseWithCurvature(new Pose2d(radius * Math.sin(angle), radius * (1.0 - Math.cos(angle)),
+                    new Rotation2d(angle)), 1.0 / radius));
+        }
+        return out;
+    }
+
+    @Test
+    public void samplesAreEvenlySpaced() {
+        SampledPath path = new SampledPath(straight(3.0, 40), 0.05);
+        assertEquals(3.0, path.getLength(), kEpsilon);
+        assertTrue(path.getStep() <= 0.05 + kEpsilon);
+        assertEquals(0.0, path.s[0], kEpsilon);
+        for (int k = 0; k < path.size(); k++) {
+            assertEquals(k * path.getStep(), path.s[k], kEpsilon, "s");
+            assertEquals(path.s[k], path.x[k], kEpsilon, "x");
+            assertEquals(0.0, path.y[k], kEpsilon, "y");
+            assertEquals(0.0, path.tangent[k], kEpsilon, "tangent");
+            assertEquals(0.0, path.curvature[k], kEpsilon, "curvature");
+        }
+    }
+
+    @Test
+    public void shortPathStillHasBothEnds() {
+        SampledPath path = new SampledPath(straight(0.01, 3), 0.05);
+        assertEquals(2, path.size());
+        assertEquals(0.0, path.x[0], kEpsilon);
+        assertEquals(0.01, path.x[1], kEpsilon);
+    }
+
+    @Test
+    public void tangentUnwrapsPastHalfTurn() {
+        double radius = 1.0;
+        double sweep = 1.5 * Math.PI;
+        SampledPath path = new SampledPath(arc(radius, sweep, 400), 0.02);
+
+        // chords are a little shorter than the arc
+        assertEquals(radius * sweep, path.getLength(), 1e-4);
+        double maxStep = 0.0;
+        for (int k = 0; k < path.size(); k++) {
+            assertEquals(path.s[k] / radius, path.tangent[k], 1e-3, "tangent");
+            assertEquals(1.0 / radius, path.curvature[k], kEpsilon, "curvature");
+            assertEquals(radius, Math.hypot(path.x[k], path.y[k] - radius), 1e-4, "on the circle");
+            if (k > 0) {
+                maxStep = Math.max(maxStep, Math.abs(path.tangent[k] - path.tangent[k - 1]));
+            }
+        }
+        // no 2 pi jump where the wrapped heading crosses pi
+        assertTrue(maxStep < 2.0 * path.getStep() / radius, "tangent jumped by " + maxStep);
+        assertEquals(sweep, path.tangent[path.size() - 1], 1e-6);
+    }
+
+    @Test
+    public void endsOnLastPoint() {
+        List<PoseWithCurvature> points = arc(2.0, Math.PI / 2.0, 50);
+        SampledPath path = new SampledPath(points, 0.03);
+        Pose2d last = points.get(points.size() - 1).poseMeters;
+        assertEquals(last.getX(), path.x[path.size() - 1], kEpsilon);
+        assertEquals(last.getY(), path.y[path.size() - 1], kEpsilon);
+    }
+}
@@ -0,0 +1,168 @@
+package com.team8013.lib.trajectory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class SwerveTimeParameterizerTest {
+
+    private static final double kEpsilon = 1e-6;
+    private static final double kHalfWheelbase = 0.2572;
+    private static final Translation2d[] kModules = {
+            new Translation2d(kHalfWheelbase, kHalfWheelbase),
+            new Translation2d(kHalfWheelbase, -kHalfWheelbase),
+            new Translation2d(-kHalfWheelbase, kHalfWheelbase),
+            new Translation2d(-kHalfWheelbase, -kHalfWheelbase),
+    };
+
+    // traction limits speeding up and slowing down until near top speed
+    private static SwerveLimits limits() {
+        return new SwerveLimits(kModules, 4.8, 2.0 * Math.PI, 4.0 * Math.PI, 10.0, 9.0, 0.32, 1.51, 0.27, 12.0);
+    }
+
+    // a motor weak enough that the voltage limits speeding up and slowing down everywhere
+    private static SwerveLimits weakLimits() {
+        return new SwerveLimits(kModules, 4.8, 2.0 * Math.PI, 4.0 * Math.PI, 10.0, 9.0, 0.32, 1.51, 1.5, 12.0);
+    }
+
+    private static HeadingProfile noTurn(SampledPath path) {
+        return new HeadingProfile(0.0, 0.0, 0.0, 1.0, path.getLength());
+    }
+
+    @Test
+    public void wheelDecelIncludesFrictionAndBackEmf() {
+        SwerveLimits limits = weakLimits();
+        for (double v = 0.0; v < 4.0; v += 0.5) {
+            assertEquals((12.0 - 0.32 - 1.51 * v) / 1.5, limits.getMaxWheelAccel(v), kEpsilon);
+            assertEquals(Math.min(9.0, (12.0 + 0.32 + 1.51 * v) / 1.5), limits.getMaxWheelDecel(v), kEpsilon);
+            assertTrue(limits.getMaxWheelDecel(v) > limits.getMaxWheelAccel(v));
+        }
+        // no voltage left at top speed, but braking still has all of it
+        assertEquals(0.0, limits.getMaxWheelAccel(10.0), kEpsilon);
+        assertEquals(9.0, limits.getMaxWheelDecel(10.0), kEpsilon);
+    }
+
+    @Test
+    public void forwardPassStaysWithinAccel() {
+        for (SwerveLimits limits : new SwerveLimits[] { limits(), weakLimits() }) {
+            SampledPath path = new SampledPath(SampledPathTest.straight(6.0, 100), 0.02);
+            SwerveTimeParameterizer.TimedPath timed = SwerveTimeParameterizer.parameterize(path, noTurn(path),
+                    limits, 0.0, 0.0);
+            double ds = path.getStep();
+            double[] v = timed.velocity;
+
+            assertEquals(0.0, v[0], kEpsilon);
+            // the first step takes all of it
+            double first = Math.min(limits.getMaxTractionAccel(), limits.getMaxWheelAccel(0.0));
+            assertEquals(Math.sqrt(2.0 * first * ds), v[1], kEpsilon);
+            for (int i = 0; i + 1 < v.length; i++) {
+                double accel = Math.min(limits.getMaxTractionAccel(), limits.getMaxWheelAccel(v[i]));
+                assertTrue(v[i + 1] * v[i + 1] - v[i] * v[i] <= 2.0 * accel * ds + kEpsilon, "sped up at " + i);
+                assertTrue(v[i] <= limits.getMaxModuleSpeed() + kEpsilon);
+            }
+        }
+    }
+
+    @Test
+    public void backwardPassStaysWithinDecel() {
+        for (SwerveLimits limits : new SwerveLimits[] { limits(), weakLimits() }) {
+            SampledPath path = new SampledPath(SampledPathTest.straight(6.0, 100), 0.02);
+            SwerveTimeParameterizer.TimedPath timed = SwerveTimeParameterizer.parameterize(path, noTurn(path),
+                    limits, 0.0, 0.0);
+            double ds = path.getStep();
+            double[] v = timed.velocity;
+            int n = v.length;
+
+            assertEquals(0.0, v[n - 1], kEpsilon);
+            // the last step takes all of it
+            double last = Math.min(limits.getMaxTractionAccel(), limits.getMaxWheelDecel(0.0));
+            assertEquals(Math.sqrt(2.0 * last * ds), v[n - 2], kEpsilon);
+            for (int i = n - 1; i > 0; i--) {
+                double decel = Math.min(limits.getMaxTractionAccel(), limits.getMaxWheelDecel(v[i]));
+                assertTrue(v[i - 1] * v[i - 1] - v[i] * v[i] <= 2.0 * decel * ds + kEpsilon, "slowed at " + i);
+            }
+        }
+    }
+
+    @Test
+    public void keepsStartAndEndSpeeds() {
+        SwerveLimits limits = limits();
+        SampledPath path = new SampledPath(SampledPathTest.straight(6.0, 100), 0.02);
+        SwerveTimeParameterizer.TimedPath timed = SwerveTimeParameterizer.parameterize(path, noTurn(path), limits,
+                1.0, 2.0);
+        assertEquals(1.0, timed.velocity[0], kEpsilon);
+        assertEquals(2.0, timed.velocity[timed.velocity.length - 1], kEpsilon);
+    }
+
+    @Test
+    public void timeMatchesVelocity() {
+        SwerveLimits limits = limits();
+        SampledPath path = new SampledPath(SampledPathTest.straight(6.0, 100), 0.02);
+        SwerveTimeParameterizer.TimedPath timed = SwerveTimeParameterizer.parameterize(path, noTurn(path), limits,
+                0.0, 0.0);
+        double ds = path.getStep();
+        assertEquals(0.0, timed.time[0], kEpsilon);
+        for (int i = 0; i + 1 < timed.time.length; i++) {
+            double average = (timed.velocity[i] + timed.velocity[i + 1]) / 2.0;
+            assertEquals(ds / average, timed.time[i + 1] - timed.time[i], kEpsilon);
+            assertEquals((timed.velocity[i + 1] * timed.velocity[i + 1] - timed.velocity[i] * timed.velocity[i])
+                    / (2.0 * ds), timed.acceleration[i], kEpsilon);
+        }
+        assertTrue(timed.getTotalTime() > path.getLength() / limits.getMaxModuleSpeed());
+
+        double total = 0.0;
+        for (double share : timed.getTimeShares()) {
+            total += share;
+        }
+        assertEquals(1.0, total, kEpsilon);
+    }
+
+    @Test
+    public void turningKeepsEveryWheelWithinLimits() {
+        SwerveLimits limits = limits();
+        SampledPath path = new SampledPath(SampledPathTest.straight(4.0, 100), 0.02);
+        HeadingProfile heading = new HeadingProfile(0.0, Math.PI, 0.2, 0.6, path.getLength());
+        SwerveTimeParameterizer.TimedPath timed = SwerveTimeParameterizer.parameterize(path, heading, limits, 0.0,
+                0.0);
+
+        for (int i = 0; i < path.size(); i++) {
+            double v = timed.velocity[i];
+            double omega = v * heading.getHeadingRate(path.s[i]);
+            assertTrue(Math.abs(omega) <= limits.getMaxAngularSpeed() + kEpsilon, "omega " + omega);
+            double theta = heading.getHeading(path.s[i]);
+            for (Translation2d module : kModules) {
+                double rx = Math.cos(theta) * module.getX() - Math.sin(theta) * module.getY();
+                double ry = Math.sin(theta) * module.getX() + Math.cos(theta) * module.getY();
+                double wheel = Math.hypot(v * Math.cos(path.tangent[i]) - omega * ry,
+                        v * Math.sin(path.tangent[i]) + omega * rx);
+                assertTrue(wheel <= limits.getMaxModuleSpeed() + kEpsilon, "wheel " + wheel + " at " + i);
+            }
+        }
+        SwerveTimeParameterizer.TimedPath straight = SwerveTimeParameterizer.parameterize(path, noTurn(path),
+                limits, 0.0, 0.0);
+        assertTrue(timed.getTotalTime() > straight.getTotalTime());
+    }
+
+    @Test
+    public void cornersStayWithinCentripetal() {
+        SwerveLimits limits = limits();
+        double radius = 1.5;
+        SampledPath path = new SampledPath(SampledPathTest.arc(radius, Math.PI, 200), 0.02);
+        SwerveTimeParameterizer.TimedPath timed = SwerveTimeParameterizer.parameterize(path, noTurn(path), limits,
+                0.0, 0.0);
+
+        // the wheels can't go around the corner any harder than they can speed up
+        double centripetal = Math.min(limits.getMaxCentripetalAccel(), limits.getMaxTractionAccel());
+        double maxSpeed = 0.0;
+        for (int i = 0; i < path.size(); i++) {
+            double v = timed.velocity[i];
+            assertTrue(v * v / radius <= centripetal + kEpsilon);
+            maxSpeed = Math.max(maxSpeed, v);
+        }
+        // speeding up gets slow as the corner takes all the traction
+        assertTrue(maxSpeed > 0.95 * Math.sqrt(centripetal * radius), "only got to " + maxSpeed);
+    }
+}
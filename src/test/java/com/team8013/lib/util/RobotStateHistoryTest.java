@@ -0,0 +1,132 @@
+package com.team8013.lib.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class RobotStateHistoryTest {
+
+    private static final double kEpsilon = 1e-9;
+    private static final double kDt = 0.02;
+
+    private double mValue = 0.0;
+
+    /**
+     * History with one channel that reads mValue, recorded at 50 hz with the
+     * value set to 3 * timestamp + 1 so any point in between is easy to check.
+     */
+    private RobotStateHistory record(int capacity, int samples) {
+        RobotStateHistory history = new RobotStateHistory(capacity);
+        history.addChannel("value", () -> mValue);
+        for (int i = 0; i < samples; i++) {
+            double timestamp = i * kDt;
+            mValue = line(timestamp);
+            history.record(timestamp);
+        }
+        return history;
+    }
+
+    private static double line(double timestamp) {
+        return 3.0 * timestamp + 1.0;
+    }
+
+    @Test
+    public void emptyHistoryIsNaN() {
+        RobotStateHistory history = record(8, 0);
+        assertTrue(Double.isNaN(history.get(0, 1.0)));
+        assertTrue(Double.isNaN(history.getLatest(0)));
+        assertTrue(Double.isNaN(history.getOldestTimestamp()));
+        assertEquals(0, history.getSize());
+    }
+
+    @Test
+    public void samplesComeBackExactly() {
+        RobotStateHistory history = record(16, 10);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(line(i * kDt), history.get(0, i * kDt), kEpsilon);
+        }
+        assertEquals(line(9 * kDt), history.getLatest(0), kEpsilon);
+    }
+
+    @Test
+    public void interpolatesBetweenSamples() {
+        RobotStateHistory history = record(16, 10);
+        for (double t = 0.0; t <= 9 * kDt; t += 0.0037) {
+            assertEquals(line(t), history.get(0, t), kEpsilon, "t = " + t);
+        }
+    }
+
+    @Test
+    public void repeatedQueriesMatchAFreshSearch() {
+        RobotStateHistory history = new RobotStateHistory(32);
+        history.addChannel("value", () -> mValue);
+        for (int i = 0; i < 100; i++) {
+            double timestamp = i * kDt;
+            mValue = line(timestamp);
+            history.record(timestamp);
+            // the usual "60 ms ago" query, then one far away to move the hint
+            assertEquals(line(Math.max(0.0, timestamp - 0.06)), history.getAgo(0, 0.06), kEpsilon);
+            double oldest = history.getOldestTimestamp();
+            assertEquals(line(oldest + 0.25 * (timestamp - oldest)),
+                    history.get(0, oldest + 0.25 * (timestamp - oldest)), kEpsilon);
+        }
+    }
+
+    @Test
+    public void clampsOutsideTheWindow() {
+        RobotStateHistory history = record(16, 10);
+        assertEquals(line(0.0), history.get(0, -5.0), kEpsilon);
+        assertEquals(line(9 * kDt), history.get(0, 5.0), kEpsilon);
+        assertEquals(line(0.0), history.getAgo(0, 100.0), kEpsilon);
+    }
+
+    @Test
+    public void evictsTheOldestSamples() {
+        RobotStateHistory history = record(8, 20);
+        assertEquals(8, history.getSize());
+        assertEquals(12 * kDt, history.getOldestTimestamp(), kEpsilon);
+        assertEquals(19 * kDt, history.getNewestTimestamp(), kEpsilon);
+        // anything before the window clamps to the oldest sample still kept
+        assertEquals(line(12 * kDt), history.get(0, 3 * kDt), kEpsilon);
+        assertEquals(line(12.5 * kDt), history.get(0, 12.5 * kDt), kEpsilon);
+    }
+
+    @Test
+    public void ignoresTimestampsThatDontMoveForward() {
+        RobotStateHistory history = record(8, 5);
+        mValue = 100.0;
+        history.record(4 * kDt);
+        history.record(2 * kDt);
+        assertEquals(5, history.getSize());
+        assertEquals(line(4 * kDt), history.getLatest(0), kEpsilon);
+    }
+
+    @Test
+    public void rangeCountsInterpolatedEnds() {
+        RobotStateHistory history = new RobotStateHistory(16);
+        history.addChannel("value", () -> mValue);
+        double[] values = { 0.0, 4.0, -2.0, 1.0, 3.0 };
+        for (int i = 0; i < values.length; i++) {
+            mValue = values[i];
+            history.record(i * kDt);
+        }
+        double[] range = history.getRange(0, 0.5 * kDt, 3.5 * kDt);
+        assertEquals(-2.0, range[0], kEpsilon);
+        assertEquals(4.0, range[1], kEpsilon);
+        // between two samples only the interpolated ends count
+        range = history.getRange(0, 3.25 * kDt, 3.75 * kDt);
+        assertEquals(1.5, range[0], kEpsilon);
+        assertEquals(2.5, range[1], kEpsilon);
+    }
+
+    @Test
+    public void channelsAreFixedOnceRecordingStarts() {
+        RobotStateHistory history = record(8, 1);
+        assertThrows(IllegalStateException.class, () -> history.addChannel("late", () -> 0.0));
+        RobotStateHistory other = new RobotStateHistory(8);
+        other.addChannel("value", () -> 0.0);
+        assertThrows(IllegalArgumentException.class, () -> other.addChannel("value", () -> 1.0));
+    }
+}